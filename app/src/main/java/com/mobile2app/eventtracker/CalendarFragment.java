@@ -0,0 +1,295 @@
+package com.mobile2app.eventtracker;
+
+import android.os.Bundle;
+import android.text.format.DateFormat;
+import android.view.Gravity;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.mobile2app.eventtracker.model.Event;
+import com.mobile2app.eventtracker.model.EventTimeCodec;
+import com.mobile2app.eventtracker.viewmodel.CalendarViewModel;
+
+import java.text.DateFormatSymbols;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A fragment showing a month grid with the number of events on each day,
+ * and the agenda of the selected day below it. The counts come from the
+ * calendar index, so moving between months costs one lookup per day shown
+ * and never reads the events table.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public class CalendarFragment extends Fragment {
+
+    private CalendarViewModel mCalendarViewModel;
+    private final DayAdapter mDayAdapter = new DayAdapter();
+    private final AgendaAdapter mAgendaAdapter = new AgendaAdapter();
+    private final SimpleDateFormat mMonthFormat = new SimpleDateFormat("MMMM yyyy", Locale.getDefault());
+    private TextView mMonthView;
+    // Month the grid shows, as months since year 0
+    private int mMonth;
+
+    /**
+     * Default constructor for the fragment.
+     * <p>
+     * This constructor is required and should be empty.
+     * </p>
+     */
+    public CalendarFragment() {
+        // empty public constructor
+    }
+
+    /**
+     * Inflates the month grid and agenda and binds them to the view model.
+     *
+     * @param inflater           The LayoutInflater object that can be used to inflate any views in the fragment.
+     * @param container          If non-null, this is the parent view that the fragment's UI should be attached to.
+     * @param savedInstanceState If non-null, this fragment is being re-constructed from a previous saved state as given here.
+     * @return The View for the fragment's UI, or null.
+     */
+    @Override
+    public View onCreateView(LayoutInflater inflater, ViewGroup container,
+                             Bundle savedInstanceState) {
+        View view = inflater.inflate(R.layout.fragment_calendar, container, false);
+        mCalendarViewModel = new ViewModelProvider(this).get(CalendarViewModel.class);
+        mMonthView = view.findViewById(R.id.calendar_month);
+        view.findViewById(R.id.calendar_previous).setOnClickListener(v -> mCalendarViewModel.moveMonth(-1));
+        view.findViewById(R.id.calendar_next).setOnClickListener(v -> mCalendarViewModel.moveMonth(1));
+        addWeekdays(view.findViewById(R.id.calendar_weekdays));
+
+        RecyclerView grid = view.findViewById(R.id.calendar_grid);
+        grid.setLayoutManager(new GridLayoutManager(getActivity(), 7));
+        grid.setAdapter(mDayAdapter);
+        grid.setItemAnimator(null);
+        RecyclerView agenda = view.findViewById(R.id.calendar_agenda);
+        agenda.setLayoutManager(new LinearLayoutManager(getActivity()));
+        mAgendaAdapter.setTimeCodec(timeCodec());
+        agenda.setAdapter(mAgendaAdapter);
+
+        mCalendarViewModel.getMonth().observe(getViewLifecycleOwner(), this::showMonth);
+        mCalendarViewModel.getSelectedDay().observe(getViewLifecycleOwner(), mDayAdapter::setSelectedDay);
+        mCalendarViewModel.getIndexVersion().observe(getViewLifecycleOwner(), version -> recount());
+        mCalendarViewModel.getAgenda().observe(getViewLifecycleOwner(), mAgendaAdapter::setEvents);
+        return view;
+    }
+
+    /**
+     * Rebuilds the index if the time zone changed while the screen was away,
+     * and redraws the agenda if the user changed their clock.
+     */
+    @Override
+    public void onResume() {
+        super.onResume();
+        mCalendarViewModel.refresh();
+        mAgendaAdapter.setTimeCodec(timeCodec());
+    }
+
+    // Returns the codec of the user's locale and clock
+    private EventTimeCodec timeCodec() {
+        return EventTimeCodec.getInstance(Locale.getDefault(), DateFormat.is24HourFormat(requireContext()));
+    }
+
+    // Shows the grid of a month
+    private void showMonth(int month) {
+        mMonth = month;
+        Calendar first = Calendar.getInstance();
+        first.clear();
+        first.set(month / 12, month % 12, 1);
+        mMonthView.setText(mMonthFormat.format(first.getTime()));
+        long firstDay = mCalendarViewModel.firstGridDay(month);
+        // Day of month of each cell, and whether it falls in the month shown
+        int[] dayNumbers = new int[CalendarViewModel.GRID_DAYS];
+        boolean[] inMonth = new boolean[CalendarViewModel.GRID_DAYS];
+        Calendar cell = Calendar.getInstance();
+        cell.setTimeInMillis(mCalendarViewModel.startOfDay(firstDay));
+        for (int i = 0; i < dayNumbers.length; i++) {
+            dayNumbers[i] = cell.get(Calendar.DAY_OF_MONTH);
+            inMonth[i] = cell.get(Calendar.MONTH) == month % 12;
+            cell.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        mDayAdapter.setMonth(firstDay, dayNumbers, inMonth, mCalendarViewModel.countGrid(firstDay));
+    }
+
+    // Redraws the badges after the index changed
+    private void recount() {
+        if (mDayAdapter.getItemCount() > 0) {
+            mDayAdapter.setCounts(mCalendarViewModel.countGrid(mCalendarViewModel.firstGridDay(mMonth)));
+        }
+    }
+
+    // Adds the short weekday names in the order of the locale's week
+    private void addWeekdays(LinearLayout row) {
+        String[] names = DateFormatSymbols.getInstance().getShortWeekdays();
+        int firstDayOfWeek = Calendar.getInstance().getFirstDayOfWeek();
+        for (int i = 0; i < 7; i++) {
+            TextView name = new TextView(row.getContext());
+            name.setText(names[(firstDayOfWeek - 1 + i) % 7 + 1]);
+            name.setGravity(Gravity.CENTER);
+            name.setTextColor(ContextCompat.getColor(row.getContext(), R.color.white));
+            row.addView(name, new LinearLayout.LayoutParams(0, ViewGroup.LayoutParams.WRAP_CONTENT, 1));
+        }
+    }
+
+    /**
+     * Adapter showing the day of month and event count of each cell of the grid.
+     */
+    private class DayAdapter extends RecyclerView.Adapter<DayAdapter.DayHolder> {
+
+        private long mFirstDay;
+        private int[] mDayNumbers = new int[0];
+        private boolean[] mInMonth = new boolean[0];
+        private int[] mCounts = new int[0];
+        private long mSelectedDay = Long.MIN_VALUE;
+
+        // Replaces the days shown
+        void setMonth(long firstDay, int[] dayNumbers, boolean[] inMonth, int[] counts) {
+            mFirstDay = firstDay;
+            mDayNumbers = dayNumbers;
+            mInMonth = inMonth;
+            mCounts = counts;
+            notifyDataSetChanged();
+        }
+
+        // Replaces the counts, redrawing only the cells whose count changed
+        void setCounts(int[] counts) {
+            int[] old = mCounts;
+            mCounts = counts;
+            for (int i = 0; i < counts.length; i++) {
+                if (i >= old.length || old[i] != counts[i]) {
+                    notifyItemChanged(i);
+                }
+            }
+        }
+
+        // Highlights the selected day
+        void setSelectedDay(long day) {
+            long old = mSelectedDay;
+            mSelectedDay = day;
+            notifyDay(old);
+            notifyDay(day);
+        }
+
+        // Redraws the cell of a day if it is shown
+        private void notifyDay(long day) {
+            long position = day - mFirstDay;
+            if (position >= 0 && position < mDayNumbers.length) {
+                notifyItemChanged((int) position);
+            }
+        }
+
+        @NonNull
+        @Override
+        public DayHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.calendar_day, parent, false);
+            return new DayHolder(view);
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull DayHolder holder, int position) {
+            long day = mFirstDay + position;
+            holder.mNumber.setText(String.valueOf(mDayNumbers[position]));
+            holder.mNumber.setTextColor(ContextCompat.getColor(holder.itemView.getContext(),
+                    mInMonth[position] ? R.color.black : R.color.gray));
+            int count = mCounts[position];
+            holder.mBadge.setVisibility(count > 0 ? View.VISIBLE : View.INVISIBLE);
+            holder.mBadge.setText(String.valueOf(count));
+            holder.itemView.setBackgroundColor(ContextCompat.getColor(holder.itemView.getContext(),
+                    day == mSelectedDay ? R.color.light_red : R.color.white));
+            holder.itemView.setOnClickListener(v -> mCalendarViewModel.selectDay(day));
+        }
+
+        // Return number of days in the grid
+        @Override
+        public int getItemCount() {
+            return mDayNumbers.length;
+        }
+
+        /**
+         * ViewHolder for a single day of the grid.
+         */
+        class DayHolder extends RecyclerView.ViewHolder {
+            private final TextView mNumber;
+            private final TextView mBadge;
+
+            DayHolder(View itemView) {
+                super(itemView);
+                mNumber = itemView.findViewById(R.id.calendar_day_number);
+                mBadge = itemView.findViewById(R.id.calendar_day_badge);
+            }
+        }
+    }
+
+    /**
+     * Adapter showing the title and time of each event of the selected day.
+     */
+    private static class AgendaAdapter extends RecyclerView.Adapter<AgendaAdapter.AgendaHolder> {
+
+        private List<Event> mEvents = new ArrayList<>();
+        // Writes dates and times in the user's locale and clock
+        private EventTimeCodec mTimeCodec;
+
+        // Replaces the events shown
+        void setEvents(List<Event> events) {
+            mEvents = events;
+            notifyDataSetChanged();
+        }
+
+        // Sets how dates and times are written, redrawing if that changed
+        void setTimeCodec(EventTimeCodec codec) {
+            if (codec != mTimeCodec) {
+                mTimeCodec = codec;
+                notifyDataSetChanged();
+            }
+        }
+
+        @NonNull
+        @Override
+        public AgendaHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.list_item, parent, false);
+            return new AgendaHolder(view);
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull AgendaHolder holder, int position) {
+            Event event = mEvents.get(position);
+            holder.mLabel.setText(holder.itemView.getContext().getString(R.string.calendar_agenda_item,
+                    mTimeCodec.displayTime(event.getEventTime()), event.getEventTitle()));
+        }
+
+        // Return number of items in data set
+        @Override
+        public int getItemCount() {
+            return mEvents.size();
+        }
+
+        /**
+         * ViewHolder for a single event of the agenda.
+         */
+        static class AgendaHolder extends RecyclerView.ViewHolder {
+            private final TextView mLabel;
+
+            AgendaHolder(View itemView) {
+                super(itemView);
+                mLabel = itemView.findViewById(R.id.label);
+            }
+        }
+    }
+}
@@ -8,6 +8,7 @@ import android.text.format.DateFormat;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
+import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -16,18 +17,21 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
+import androidx.lifecycle.ViewModelProvider;
 
-import com.google.android.gms.tasks.OnSuccessListener;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
+import com.mobile2app.eventtracker.model.Event;
+import com.mobile2app.eventtracker.model.EventTimeCodec;
+import com.mobile2app.eventtracker.model.RecurrenceRule;
+import com.mobile2app.eventtracker.viewmodel.EventListViewModel;
 
 import java.util.Calendar;
-import java.util.HashMap;
+import java.util.Locale;
 
 /**
  * Activity for creating events and providing details like title,
  * date, and time. Allows users to update an events date and time with
- * DatePicker and TimePicker widgets.
+ * DatePicker and TimePicker widgets, and to make it repeat daily,
+ * weekly, or monthly.
  *
  * @author Michael Gagujas
  * @since 2024-08-18
@@ -37,8 +41,13 @@ public class EventCreateActivity extends AppCompatActivity {
     private EditText mEventTitle;
     private TextView mEventDate;
     private TextView mEventTime;
+    private Spinner mEventRepeat;
+    // Stored text of the picked date and time; the views show them in the user's locale
+    private String mStoredDate = "";
+    private String mStoredTime = "";
 
     private Button mCreateButton;
+    private EventListViewModel mEventListViewModel;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -55,15 +64,15 @@ public class EventCreateActivity extends AppCompatActivity {
         mEventTitle = findViewById(R.id.event_title);
         mEventDate = findViewById(R.id.event_date);
         mEventTime = findViewById(R.id.event_time);
+        mEventRepeat = findViewById(R.id.event_repeat);
         mCreateButton = findViewById(R.id.create_button);
+        mEventListViewModel = new ViewModelProvider(this).get(EventListViewModel.class);
 
 
         // Listener for date picker dialog to display the month/date of an event
         DatePickerDialog.OnDateSetListener dateSetListener = (view, year, monthOfYear, dayOfMonth) -> {
-            String month = monthOfYear < 10 ? "0" + (monthOfYear + 1) : String.valueOf(monthOfYear + 1);
-            String day = dayOfMonth < 10 ? "0" + dayOfMonth : String.valueOf(dayOfMonth);
-            String date = month + "/" + day + "/" + year;
-            mEventDate.setText(date);
+            mStoredDate = EventTimeCodec.storedDate(year, monthOfYear + 1, dayOfMonth);
+            mEventDate.setText(timeCodec().displayDate(mStoredDate));
         };
         mEventDate.setOnClickListener(v -> {
             Calendar calendar = Calendar.getInstance();
@@ -80,11 +89,8 @@ public class EventCreateActivity extends AppCompatActivity {
 
         // Listener for time picker dialog to display the time of an event
         TimePickerDialog.OnTimeSetListener timeSetListener = (view, hourOfDay, minutes) -> {
-            String AM_PM = hourOfDay < 13 ? "AM" : "PM";
-            int hour = hourOfDay < 13 ? hourOfDay : (hourOfDay - 12);
-            String min = minutes < 10 ? ("0" + minutes) : String.valueOf(minutes);
-            String time = hour + ":" + min + AM_PM;
-            mEventTime.setText(time);
+            mStoredTime = EventTimeCodec.storedTime(hourOfDay, minutes);
+            mEventTime.setText(timeCodec().displayTime(mStoredTime));
         };
 
         mEventTime.setOnClickListener(v -> {
@@ -102,28 +108,37 @@ public class EventCreateActivity extends AppCompatActivity {
             @Override
             public void onClick(View v) {
                 String txt_title = mEventTitle.getText().toString();
-                String txt_date = mEventDate.getText().toString();
-                String txt_time = mEventTime.getText().toString();
+                String txt_date = mStoredDate;
+                String txt_time = mStoredTime;
                 if(txt_title.isEmpty() || txt_date.isEmpty() || txt_time.isEmpty()) {
                     Toast.makeText(EventCreateActivity.this, "Data missing!", Toast.LENGTH_SHORT).show();
                 } else {
-                    HashMap<String, Object> map = new HashMap<>();
-                    map.put("title", txt_title);
-                    map.put("date", txt_date);
-                    map.put("time", txt_time);
-                    DatabaseReference eventRef = FirebaseDatabase.getInstance().getReference().child("EventTracker").push();
-                    String eventId = eventRef.push().getKey(); // This will create a unique ID for your event
-                    eventRef.setValue(map).addOnSuccessListener(new OnSuccessListener<Void>() {
-                        @Override
-                        public void onSuccess(Void aVoid) {
-                            Intent intent = new Intent(EventCreateActivity.this, MainActivity.class);
-                            startActivity(intent);
-                        }
-                    });
+                    String eventId = mEventListViewModel.newEventId();
+                    Event event = new Event(eventId, txt_title, txt_date, txt_time);
+                    event.setRecurrenceRule(selectedRule());
+                    // Saved locally and synced to Firebase in the background
+                    mEventListViewModel.addEvent(event);
+                    Intent intent = new Intent(EventCreateActivity.this, MainActivity.class);
+                    startActivity(intent);
                     Toast.makeText(EventCreateActivity.this, "Event Created!", Toast.LENGTH_SHORT).show();
 
                 }
             }
         });
     }
+
+    // Returns the codec of the user's locale and clock
+    private EventTimeCodec timeCodec() {
+        return EventTimeCodec.getInstance(Locale.getDefault(), DateFormat.is24HourFormat(this));
+    }
+
+    // Returns the rule chosen in the repeat spinner, or null if the event does not repeat
+    private RecurrenceRule selectedRule() {
+        int position = mEventRepeat.getSelectedItemPosition();
+        if (position <= 0) {
+            return null;
+        }
+        RecurrenceRule.Frequency frequency = RecurrenceRule.Frequency.values()[position - 1];
+        return new RecurrenceRule(frequency, 1, RecurrenceRule.FOREVER, new long[0]);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+package com.mobile2app.eventtracker;
+
+import android.app.Application;
+import android.content.Context;
+
+import com.google.android.gms.auth.api.signin.GoogleSignIn;
+import com.google.android.gms.auth.api.signin.GoogleSignInOptions;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.auth.FirebaseAuth;
+import com.mobile2app.eventtracker.reminder.ReminderScheduler;
+import com.mobile2app.eventtracker.repo.EventRepository;
+import com.mobile2app.eventtracker.startup.StartupInitializer;
+import com.mobile2app.eventtracker.startup.StartupReport;
+
+/**
+ * Application that starts the Firebase, Google Sign-In, database, and
+ * reminder setup on background threads as soon as the process starts, so it overlaps with
+ * inflating and drawing the login screen instead of delaying it.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public class EventTrackerApplication extends Application {
+
+    // Startup task names
+    public static final String TASK_FIREBASE = "firebase";
+    public static final String TASK_GOOGLE_SIGN_IN = "google_sign_in";
+    public static final String TASK_DATABASE = "database";
+    public static final String TASK_REMINDERS = "reminders";
+
+    private StartupReport mStartupReport;
+    private StartupInitializer mStartup;
+
+    /**
+     * Starts the startup tasks. Only cheap work is done on the main thread.
+     */
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        mStartupReport = new StartupReport(this);
+        mStartupReport.mark("application_created");
+        mStartup = new StartupInitializer(mStartupReport);
+
+        // Returns FirebaseAuth since every screen reaches Firebase through it first
+        mStartup.add(TASK_FIREBASE, () -> {
+            FirebaseApp.initializeApp(this);
+            return FirebaseAuth.getInstance();
+        });
+        mStartup.add(TASK_GOOGLE_SIGN_IN, () -> {
+            GoogleSignInOptions options = new GoogleSignInOptions.Builder(GoogleSignInOptions.DEFAULT_SIGN_IN)
+                    .requestIdToken(getString(R.string.client_id))
+                    .requestEmail()
+                    .build();
+            return GoogleSignIn.getClient(this, options);
+        });
+        // Opening the database runs any pending migrations
+        mStartup.add(TASK_DATABASE, () -> {
+            EventRepository eventRepo = EventRepository.getInstance(this);
+            eventRepo.warmUp();
+            return eventRepo;
+        });
+        // Loads the reminder queue once the database is open
+        mStartup.add(TASK_REMINDERS, () -> {
+            ReminderScheduler reminders = ReminderScheduler.getInstance(this);
+            reminders.start();
+            return reminders;
+        }, TASK_DATABASE);
+        mStartup.whenAll(TASK_FIREBASE, TASK_GOOGLE_SIGN_IN, TASK_DATABASE)
+                .whenComplete((ignored, error) -> mStartupReport.mark(StartupReport.MARKER_TASKS_DONE));
+    }
+
+    /**
+     * Returns the application of a context.
+     *
+     * @param context Any context of this app.
+     * @return The EventTrackerApplication instance.
+     */
+    public static EventTrackerApplication from(Context context) {
+        return (EventTrackerApplication) context.getApplicationContext();
+    }
+
+    // Get the startup tasks
+    public StartupInitializer getStartup() {
+        return mStartup;
+    }
+
+    // Get the startup timing report
+    public StartupReport getStartupReport() {
+        return mStartupReport;
+    }
+}
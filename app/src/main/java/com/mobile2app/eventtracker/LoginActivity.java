@@ -1,8 +1,11 @@
 package com.mobile2app.eventtracker;
 
+import static android.content.ContentValues.TAG;
+
 import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.View;
 import android.view.WindowManager;
 import android.view.inputmethod.InputMethodManager;
@@ -25,18 +28,22 @@ import androidx.core.view.WindowInsetsCompat;
 import com.google.android.gms.auth.api.signin.GoogleSignIn;
 import com.google.android.gms.auth.api.signin.GoogleSignInAccount;
 import com.google.android.gms.auth.api.signin.GoogleSignInClient;
-import com.google.android.gms.auth.api.signin.GoogleSignInOptions;
 import com.google.android.gms.common.SignInButton;
 import com.google.android.gms.common.api.ApiException;
 import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.OnFailureListener;
 import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.gms.tasks.Task;
-import com.google.firebase.FirebaseApp;
 import com.google.firebase.auth.AuthCredential;
 import com.google.firebase.auth.AuthResult;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.GoogleAuthProvider;
+import com.mobile2app.eventtracker.startup.StartupInitializer;
+import com.mobile2app.eventtracker.startup.StartupReport;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 /**
  * Handles the Login and Sign Up process for users. Validates credentials
@@ -50,9 +57,12 @@ public class LoginActivity extends AppCompatActivity {
     private EditText emailInput;
     private EditText passwordInput;
 
-    private FirebaseAuth auth;
+    // Completed by the startup tasks started in EventTrackerApplication
+    private CompletableFuture<FirebaseAuth> auth;
 
-    GoogleSignInClient googleSignInClient;
+    CompletableFuture<GoogleSignInClient> googleSignInClient;
+
+    private Executor mainExecutor;
 
     /**
      * Registers an activity result launcher to handle the result of an activity.
@@ -84,7 +94,7 @@ public class LoginActivity extends AppCompatActivity {
                      * @param signInAccount The GoogleSignInAccount object containing the user's sign-in information.
                      */
                     AuthCredential authCredential = GoogleAuthProvider.getCredential(signInAccount.getIdToken(), null);
-                    auth.signInWithCredential(authCredential).addOnCompleteListener(new OnCompleteListener<AuthResult>() {
+                    whenReady(auth, null, firebaseAuth -> firebaseAuth.signInWithCredential(authCredential).addOnCompleteListener(new OnCompleteListener<AuthResult>() {
                         /**
                          * Called when the sign-in task is complete.
                          *
@@ -100,7 +110,7 @@ public class LoginActivity extends AppCompatActivity {
                                 Toast.makeText(LoginActivity.this, "Failed to sign in: " + task.getException(), Toast.LENGTH_SHORT).show();
                             }
                         }
-                    });
+                    }));
                 } catch (ApiException e) {
                     e.printStackTrace();
                 }
@@ -121,22 +131,24 @@ public class LoginActivity extends AppCompatActivity {
         EdgeToEdge.enable(this);
         setContentView(R.layout.activity_login);
 
-        FirebaseApp.initializeApp(this);
-
-        GoogleSignInOptions options = new GoogleSignInOptions.Builder(GoogleSignInOptions.DEFAULT_SIGN_IN)
-                .requestIdToken(getString(R.string.client_id))
-                .requestEmail()
-                .build();
-        googleSignInClient = GoogleSignIn.getClient(LoginActivity.this, options);
-
-        auth = FirebaseAuth.getInstance();
+        // Firebase and Google Sign-In are set up in the background; wait for them only when used
+        EventTrackerApplication app = EventTrackerApplication.from(this);
+        StartupInitializer startup = app.getStartup();
+        StartupReport startupReport = app.getStartupReport();
+        startupReport.mark("login_created");
+        startupReport.trackFirstFrame(this);
+        mainExecutor = ContextCompat.getMainExecutor(this);
+        auth = startup.get(EventTrackerApplication.TASK_FIREBASE);
+        googleSignInClient = startup.get(EventTrackerApplication.TASK_GOOGLE_SIGN_IN);
+        startup.whenAll(EventTrackerApplication.TASK_FIREBASE, EventTrackerApplication.TASK_GOOGLE_SIGN_IN)
+                .thenRunAsync(() -> startupReport.markInteractive(this), mainExecutor);
 
         SignInButton signInButton = findViewById(R.id.buttonGoogleLogin);
         signInButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
-                Intent intent = googleSignInClient.getSignInIntent();
-                activityResultLauncher.launch(intent);
+                whenReady(googleSignInClient, signInButton,
+                        client -> activityResultLauncher.launch(client.getSignInIntent()));
             }
         });
 
@@ -158,8 +170,6 @@ public class LoginActivity extends AppCompatActivity {
         Button loginButton = findViewById(R.id.buttonLogin);
         Button signUpButton = findViewById(R.id.buttonSignUp);
 
-        auth = FirebaseAuth.getInstance();
-
         // Verifies login credentials from user input
         loginButton.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -178,7 +188,7 @@ public class LoginActivity extends AppCompatActivity {
                     passwordInput.requestFocus();
                     return;
                 }
-                loginUser(txt_email, txt_password);
+                loginUser(txt_email, txt_password, loginButton);
             }
         });
 
@@ -196,9 +206,10 @@ public class LoginActivity extends AppCompatActivity {
      *
      * @param email    The email address of the user.
      * @param password The password of the user.
+     * @param button   The button that started the login, disabled until Firebase is ready.
      */
-    private void loginUser(String email, String password) {
-        auth.signInWithEmailAndPassword(email, password)
+    private void loginUser(String email, String password, View button) {
+        whenReady(auth, button, firebaseAuth -> firebaseAuth.signInWithEmailAndPassword(email, password)
                 .addOnSuccessListener(new OnSuccessListener<AuthResult>() {
                     @Override
                     public void onSuccess(AuthResult authResult) {
@@ -212,7 +223,38 @@ public class LoginActivity extends AppCompatActivity {
                     public void onFailure(@NonNull Exception e) {
                         Toast.makeText(LoginActivity.this, "Invalid Credentials!", Toast.LENGTH_SHORT).show();
                     }
-                });
+                }));
+    }
+
+    /**
+     * Runs an action on the main thread with an SDK set up by the startup
+     * tasks, once it is ready. The button is disabled while waiting. If the
+     * SDK failed to set up, the user is told and the button is enabled
+     * again, so sign-in never silently does nothing.
+     *
+     * @param sdk    The startup task providing the SDK.
+     * @param button The button that started the sign-in, or null.
+     * @param action The sign-in to run with the SDK.
+     */
+    private <T> void whenReady(CompletableFuture<T> sdk, View button, Consumer<T> action) {
+        if (button != null) {
+            button.setEnabled(false);
+        }
+        sdk.whenCompleteAsync((result, e) -> {
+            if (isDestroyed()) {
+                return;
+            }
+            if (button != null) {
+                button.setEnabled(true);
+            }
+            if (e != null) {
+                Log.w(TAG, "Sign-in could not be set up.", e);
+                Toast.makeText(LoginActivity.this, "Sign-in is unavailable, please try again later.",
+                        Toast.LENGTH_LONG).show();
+            } else {
+                action.accept(result);
+            }
+        }, mainExecutor);
     }
 
     /**
@@ -10,6 +10,7 @@ import androidx.navigation.ui.NavigationUI;
 import com.google.android.libraries.identity.googleid.GetGoogleIdOption;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
+import com.mobile2app.eventtracker.repo.EventRepository;
 
 /**
  * Primary Activity with a navigation bar for user events, search events,
@@ -73,4 +74,14 @@ public class MainActivity extends AppCompatActivity {
         });
 
     }
+
+    /**
+     * Pulls the events changed on other devices while the app was in the
+     * background or offline.
+     */
+    @Override
+    protected void onStart() {
+        super.onStart();
+        EventRepository.getInstance(this).resumeSync();
+    }
 }
\ No newline at end of file
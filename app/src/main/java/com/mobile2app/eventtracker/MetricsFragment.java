@@ -0,0 +1,149 @@
+package com.mobile2app.eventtracker;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.TextView;
+
+import androidx.fragment.app.Fragment;
+
+import com.mobile2app.eventtracker.metrics.Histogram;
+import com.mobile2app.eventtracker.metrics.MetricsRegistry;
+import com.mobile2app.eventtracker.repo.EventStreamHub;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Debug screen reached from settings that shows the database metrics
+ * recorded so far, refreshed once a second while visible.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public class MetricsFragment extends Fragment {
+
+    // Time between refreshes of the report
+    private static final long REFRESH_INTERVAL_MS = 1000;
+
+    private final MetricsRegistry mMetrics = MetricsRegistry.getInstance();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final StringBuilder mReport = new StringBuilder();
+    private TextView mReportView;
+
+    private final Runnable mRefresh = new Runnable() {
+        @Override
+        public void run() {
+            updateReport();
+            mHandler.postDelayed(this, REFRESH_INTERVAL_MS);
+        }
+    };
+
+    /**
+     * Default constructor for the fragment.
+     * <p>
+     * This constructor is required and should be empty.
+     * </p>
+     */
+    public MetricsFragment() {
+        // empty public constructor
+    }
+
+    /**
+     * Inflates the report view and wires the reset button.
+     *
+     * @param inflater           The LayoutInflater object that can be used to inflate any views in the fragment.
+     * @param container          If non-null, this is the parent view that the fragment's UI should be attached to.
+     * @param savedInstanceState If non-null, this fragment is being re-constructed from a previous saved state as given here.
+     * @return The View for the fragment's UI, or null.
+     */
+    @Override
+    public View onCreateView(LayoutInflater inflater, ViewGroup container,
+                             Bundle savedInstanceState) {
+        View view = inflater.inflate(R.layout.fragment_metrics, container, false);
+        mReportView = view.findViewById(R.id.metrics_report);
+        Button reset = view.findViewById(R.id.metrics_reset);
+        reset.setOnClickListener(v -> {
+            mMetrics.reset();
+            updateReport();
+        });
+        return view;
+    }
+
+    /**
+     * Starts refreshing the report while the screen is visible.
+     */
+    @Override
+    public void onResume() {
+        super.onResume();
+        mHandler.post(mRefresh);
+    }
+
+    /**
+     * Stops refreshing the report.
+     */
+    @Override
+    public void onPause() {
+        super.onPause();
+        mHandler.removeCallbacks(mRefresh);
+    }
+
+    // Rebuilds the report text from the registry
+    private void updateReport() {
+        StringBuilder report = mReport;
+        report.setLength(0);
+        if (!mMetrics.isEnabled()) {
+            report.append(getString(R.string.metrics_disabled)).append("\n\n");
+        }
+
+        report.append("Transactions: ").append(mMetrics.getTransactionCount()).append('\n');
+        appendLatency(report, "  latency", mMetrics.getTransactionLatency());
+
+        report.append("\nQueries (ms: p50 / p95 / p99 / max)\n");
+        for (Map.Entry<String, MetricsRegistry.QueryStats> entry : mMetrics.getQueries().entrySet()) {
+            MetricsRegistry.QueryStats stats = entry.getValue();
+            report.append(entry.getKey()).append(" x").append(stats.getLatency().getCount()).append('\n');
+            appendLatency(report, "  latency", stats.getLatency());
+            appendCounts(report, "  rows", stats.getRows());
+        }
+
+        report.append("\nExecutors\n");
+        for (Map.Entry<String, MetricsRegistry.ExecutorStats> entry : mMetrics.getExecutors().entrySet()) {
+            MetricsRegistry.ExecutorStats stats = entry.getValue();
+            report.append(entry.getKey()).append(" queued ").append(stats.getQueued()).append('\n');
+            appendCounts(report, "  depth", stats.getDepth());
+            appendLatency(report, "  wait", stats.getWait());
+        }
+
+        EventStreamHub hub = EventStreamHub.getInstance();
+        report.append("\nFirebase listeners: ").append(hub.getActiveListenerCount()).append('\n');
+        for (Map.Entry<String, Integer> entry : hub.getObserverCounts().entrySet()) {
+            report.append(entry.getKey()).append(" observers ").append(entry.getValue()).append('\n');
+        }
+
+        report.append("\nSlow queries (over ").append(mMetrics.getSlowQueryThresholdMs()).append(" ms)\n");
+        for (MetricsRegistry.SlowQuery query : mMetrics.getSlowQueries()) {
+            report.append(String.format(Locale.US, "%s %.1f ms, %d rows%n",
+                    query.name, query.durationNanos / 1e6, query.rows));
+        }
+        mReportView.setText(report);
+    }
+
+    // Appends percentiles of a nanosecond histogram in milliseconds
+    private static void appendLatency(StringBuilder report, String label, Histogram histogram) {
+        report.append(String.format(Locale.US, "%s %.2f / %.2f / %.2f / %.2f%n", label,
+                histogram.getPercentile(50) / 1e6, histogram.getPercentile(95) / 1e6,
+                histogram.getPercentile(99) / 1e6, histogram.getMax() / 1e6));
+    }
+
+    // Appends percentiles of a count histogram
+    private static void appendCounts(StringBuilder report, String label, Histogram histogram) {
+        report.append(String.format(Locale.US, "%s %d / %d / %d / %d%n", label,
+                histogram.getPercentile(50), histogram.getPercentile(95),
+                histogram.getPercentile(99), histogram.getMax()));
+    }
+}
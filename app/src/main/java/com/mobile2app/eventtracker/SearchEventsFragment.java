@@ -2,26 +2,60 @@ package com.mobile2app.eventtracker;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 
+import androidx.annotation.NonNull;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.text.format.DateFormat;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
+import android.widget.EditText;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import com.google.firebase.auth.FirebaseAuth;
+import com.mobile2app.eventtracker.model.EventColumns;
+import com.mobile2app.eventtracker.model.EventTimeCodec;
+import com.mobile2app.eventtracker.viewmodel.EventListViewModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  *  * A fragment that provides a search events screen with a logout button.
+ * Searches event titles as the user types, waiting for a short pause before
+ * querying and dropping the results of any search a newer one replaced.
  *
  * @author Michael Gagujas
  * @since 2024-08-18
  */
 public class SearchEventsFragment extends Fragment {
 
+    // Pause in typing before a search is started
+    private static final long SEARCH_DEBOUNCE_MS = 200;
+    // Most results shown for a search
+    private static final int SEARCH_LIMIT = 50;
+
     private Button logout;
+    private EventListViewModel mEventListViewModel;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final SearchAdapter mSearchAdapter = new SearchAdapter();
+    private Runnable mPendingSearch;
+    private Future<?> mRunningSearch;
+    // Incremented for each search so stale results can be recognised
+    private int mSearchGeneration;
 
     /**
      * Default constructor for the fragment.
@@ -38,7 +72,8 @@ public class SearchEventsFragment extends Fragment {
      * <p>
      * This method inflates the layout for this fragment and sets up the logout button.
      * When the logout button is clicked, the user is signed out, a toast message is displayed,
-     * and the user is redirected to the login activity.
+     * and the user is redirected to the login activity. It also wires the search bar
+     * to the full-text event search.
      * </p>
      *
      * @param inflater           The LayoutInflater object that can be used to inflate any views in the fragment.
@@ -56,13 +91,171 @@ public class SearchEventsFragment extends Fragment {
         logout.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                FirebaseAuth.getInstance().signOut();
-                Toast.makeText(getActivity(), "Logged Out!", Toast.LENGTH_SHORT).show();
-                startActivity(new Intent(getActivity(), LoginActivity.class));
+                // Unsent changes are sent first; if they cannot be, the user stays signed in
+                logout.setEnabled(false);
+                mEventListViewModel.stopSync(stopped -> {
+                    if (!isAdded()) {
+                        return;
+                    }
+                    logout.setEnabled(true);
+                    if (!stopped) {
+                        Toast.makeText(getActivity(), R.string.logout_unsent, Toast.LENGTH_LONG).show();
+                        return;
+                    }
+                    FirebaseAuth.getInstance().signOut();
+                    Toast.makeText(getActivity(), "Logged Out!", Toast.LENGTH_SHORT).show();
+                    startActivity(new Intent(getActivity(), LoginActivity.class));
+                });
             }
         });
 
+        mEventListViewModel = new ViewModelProvider(this).get(EventListViewModel.class);
+        RecyclerView recyclerView = view.findViewById(R.id.event_recycler_view);
+        recyclerView.setLayoutManager(new LinearLayoutManager(getActivity()));
+        mSearchAdapter.setTimeCodec(EventTimeCodec.getInstance(Locale.getDefault(),
+                DateFormat.is24HourFormat(requireContext())));
+        recyclerView.setAdapter(mSearchAdapter);
+
+        EditText searchBar = view.findViewById(R.id.search_bar);
+        searchBar.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                scheduleSearch(s.toString());
+            }
+        });
 
         return view;
     }
-}
\ No newline at end of file
+
+    /**
+     * Redraws the results if the user changed their locale or clock while
+     * the screen was away.
+     */
+    @Override
+    public void onResume() {
+        super.onResume();
+        mSearchAdapter.setTimeCodec(EventTimeCodec.getInstance(Locale.getDefault(),
+                DateFormat.is24HourFormat(requireContext())));
+    }
+
+    /**
+     * Cancels any pending or running search when the view is destroyed.
+     */
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        cancelSearch();
+    }
+
+    /**
+     * Restarts the debounce timer for a search of the given text.
+     *
+     * @param text The current contents of the search bar.
+     */
+    private void scheduleSearch(String text) {
+        cancelSearch();
+        mPendingSearch = () -> runSearch(text);
+        mHandler.postDelayed(mPendingSearch, SEARCH_DEBOUNCE_MS);
+    }
+
+    /**
+     * Starts a search and shows its results if no newer search has started by then.
+     *
+     * @param text The text to search for.
+     */
+    private void runSearch(String text) {
+        mPendingSearch = null;
+        int generation = mSearchGeneration;
+        try {
+            mRunningSearch = mEventListViewModel.searchEvents(text, SEARCH_LIMIT, events ->
+                    mHandler.post(() -> {
+                        if (generation == mSearchGeneration) {
+                            mSearchAdapter.setEvents(events);
+                        }
+                    }));
+        } catch (RejectedExecutionException e) {
+            // The database is saturated; try again after another pause
+            scheduleSearch(text);
+        }
+    }
+
+    /**
+     * Drops the pending search and cancels the running one, invalidating its results.
+     */
+    private void cancelSearch() {
+        mSearchGeneration++;
+        if (mPendingSearch != null) {
+            mHandler.removeCallbacks(mPendingSearch);
+            mPendingSearch = null;
+        }
+        if (mRunningSearch != null) {
+            mRunningSearch.cancel(true);
+            mRunningSearch = null;
+        }
+    }
+
+    /**
+     * Adapter showing the title, date, and time of each search result.
+     */
+    private static class SearchAdapter extends RecyclerView.Adapter<SearchAdapter.ResultHolder> {
+
+        private List<EventColumns.Row> mEvents = new ArrayList<>();
+        // Writes dates and times in the user's locale and clock
+        private EventTimeCodec mTimeCodec;
+
+        // Replaces the results shown
+        void setEvents(EventColumns events) {
+            mEvents = events;
+            notifyDataSetChanged();
+        }
+
+        // Sets how dates and times are written, redrawing if that changed
+        void setTimeCodec(EventTimeCodec codec) {
+            if (codec != mTimeCodec) {
+                mTimeCodec = codec;
+                notifyDataSetChanged();
+            }
+        }
+
+        @NonNull
+        @Override
+        public ResultHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.list_item, parent, false);
+            return new ResultHolder(view);
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull ResultHolder holder, int position) {
+            EventColumns.Row event = mEvents.get(position);
+            holder.mLabel.setText(holder.itemView.getContext().getString(R.string.search_result,
+                    event.getEventTitle(), mTimeCodec.displayDate(event.getEventDate()),
+                    mTimeCodec.displayTime(event.getEventTime())));
+        }
+
+        // Return number of items in data set
+        @Override
+        public int getItemCount() {
+            return mEvents.size();
+        }
+
+        /**
+         * ViewHolder for a single search result row.
+         */
+        static class ResultHolder extends RecyclerView.ViewHolder {
+            private final TextView mLabel;
+
+            ResultHolder(View itemView) {
+                super(itemView);
+                mLabel = itemView.findViewById(R.id.label);
+            }
+        }
+    }
+}
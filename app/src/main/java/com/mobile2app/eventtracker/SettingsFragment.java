@@ -1,7 +1,28 @@
 package com.mobile2app.eventtracker;
 
+import static android.content.ContentValues.TAG;
+
+import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
+import android.text.InputType;
+import android.util.Log;
+
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.navigation.fragment.NavHostFragment;
+import androidx.preference.EditTextPreference;
+import androidx.preference.Preference;
 import androidx.preference.PreferenceFragmentCompat;
+import androidx.work.Data;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+
+import com.mobile2app.eventtracker.metrics.MetricsRegistry;
+import com.mobile2app.eventtracker.transfer.EventTransfer;
+import com.mobile2app.eventtracker.transfer.EventTransferWorker;
+
+import java.util.List;
 
 /**
  * Settings screen for changing preferences and account details.
@@ -11,9 +32,141 @@ import androidx.preference.PreferenceFragmentCompat;
  */
 public class SettingsFragment extends PreferenceFragmentCompat {
 
+    // MIME types offered when picking a file to import
+    private static final String[] IMPORT_TYPES = {
+            "application/json", "text/csv", "text/comma-separated-values", "text/plain"};
+
+    private final ActivityResultLauncher<String[]> mImportPicker = registerForActivityResult(
+            new ActivityResultContracts.OpenDocument(), this::startImport);
+    private final ActivityResultLauncher<String> mJsonExportPicker = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument(EventTransfer.Format.JSON.getMimeType()),
+            uri -> startExport(uri, EventTransfer.Format.JSON));
+    private final ActivityResultLauncher<String> mCsvExportPicker = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument(EventTransfer.Format.CSV.getMimeType()),
+            uri -> startExport(uri, EventTransfer.Format.CSV));
+
     @Override
     public void onCreatePreferences(Bundle savedInstanceState, String rootKey) {
         // Load the preferences from an XML resource
         setPreferencesFromResource(R.xml.root_preferences, rootKey);
+
+        // Apply metrics settings as soon as they change
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        Preference enabled = findPreference(MetricsRegistry.PREF_ENABLED);
+        if (enabled != null) {
+            enabled.setOnPreferenceChangeListener((preference, value) -> {
+                metrics.setEnabled((Boolean) value);
+                return true;
+            });
+        }
+        EditTextPreference threshold = findPreference(MetricsRegistry.PREF_SLOW_QUERY_MS);
+        if (threshold != null) {
+            threshold.setOnBindEditTextListener(editText ->
+                    editText.setInputType(InputType.TYPE_CLASS_NUMBER));
+            threshold.setOnPreferenceChangeListener((preference, value) -> {
+                metrics.setSlowQueryThresholdMs(MetricsRegistry.parseThreshold((String) value));
+                return true;
+            });
+        }
+        Preference importEvents = findPreference("import_events");
+        if (importEvents != null) {
+            importEvents.setOnPreferenceClickListener(preference -> {
+                mImportPicker.launch(IMPORT_TYPES);
+                return true;
+            });
+        }
+        Preference exportJson = findPreference("export_events_json");
+        if (exportJson != null) {
+            exportJson.setOnPreferenceClickListener(preference -> {
+                mJsonExportPicker.launch("events.json");
+                return true;
+            });
+        }
+        Preference exportCsv = findPreference("export_events_csv");
+        if (exportCsv != null) {
+            exportCsv.setOnPreferenceClickListener(preference -> {
+                mCsvExportPicker.launch("events.csv");
+                return true;
+            });
+        }
+        observeTransfers();
+        Preference screen = findPreference("metrics_screen");
+        if (screen != null) {
+            screen.setOnPreferenceClickListener(preference -> {
+                NavHostFragment.findNavController(this).navigate(R.id.nav_metrics);
+                return true;
+            });
+        }
+    }
+
+    // Imports a picked document in the background, keeping access to it across restarts
+    private void startImport(Uri uri) {
+        if (uri == null) {
+            return;
+        }
+        keepAccess(uri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        EventTransferWorker.enqueueImport(requireContext(), uri);
+    }
+
+    // Exports every event to a created document in the background
+    private void startExport(Uri uri, EventTransfer.Format format) {
+        if (uri == null) {
+            return;
+        }
+        keepAccess(uri, Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_GRANT_WRITE_URI_PERMISSION);
+        EventTransferWorker.enqueueExport(requireContext(), uri, format);
+    }
+
+    // Persists access to a document so a transfer resumed after a restart can still open it
+    private void keepAccess(Uri uri, int flags) {
+        try {
+            requireContext().getContentResolver().takePersistableUriPermission(uri, flags);
+        } catch (SecurityException e) {
+            // The transfer still runs, but cannot resume once the process is gone
+            Log.w(TAG, "Could not keep access to " + uri + ".", e);
+        }
+    }
+
+    // Shows the progress of imports and exports in their summaries
+    private void observeTransfers() {
+        WorkManager workManager = WorkManager.getInstance(requireContext());
+        workManager.getWorkInfosForUniqueWorkLiveData(EventTransferWorker.WORK_IMPORT)
+                .observe(this, infos -> showTransfer(infos, findPreference("import_events"),
+                        R.string.import_events_progress, R.string.import_events_done,
+                        R.string.import_events_failed));
+        workManager.getWorkInfosForUniqueWorkLiveData(EventTransferWorker.WORK_EXPORT)
+                .observe(this, infos -> {
+                    boolean csv = !infos.isEmpty()
+                            && infos.get(infos.size() - 1).getTags().contains(EventTransfer.Format.CSV.name());
+                    showTransfer(infos, findPreference(csv ? "export_events_csv" : "export_events_json"),
+                            R.string.export_events_progress, R.string.export_events_done,
+                            R.string.export_events_failed);
+                });
+    }
+
+    // Sets a preference's summary from the state of the latest transfer
+    private void showTransfer(List<WorkInfo> infos, Preference preference, int progressText,
+                              int doneText, int failedText) {
+        if (preference == null || infos.isEmpty()) {
+            return;
+        }
+        WorkInfo info = infos.get(infos.size() - 1);
+        switch (info.getState()) {
+            case RUNNING:
+                Data progress = info.getProgress();
+                long done = progress.getLong(EventTransferWorker.KEY_DONE, 0);
+                long total = progress.getLong(EventTransferWorker.KEY_TOTAL, -1);
+                preference.setSummary(getString(progressText, done, Math.max(total, done)));
+                break;
+            case SUCCEEDED:
+                preference.setSummary(getString(doneText,
+                        info.getOutputData().getLong(EventTransferWorker.KEY_DONE, 0)));
+                break;
+            case FAILED:
+                preference.setSummary(failedText);
+                break;
+            default:
+                break;
+        }
     }
-}
\ No newline at end of file
+}
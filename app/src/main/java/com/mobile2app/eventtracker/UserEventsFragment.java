@@ -15,12 +15,14 @@ import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
-import android.telephony.SmsManager;
 import android.text.format.DateFormat;
 import android.util.Log;
+import android.util.LruCache;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -33,17 +35,16 @@ import android.widget.Toast;
 import com.google.android.gms.auth.api.signin.GoogleSignIn;
 import com.google.android.gms.auth.api.signin.GoogleSignInOptions;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
-import com.mobile2app.eventtracker.model.Event;
+import com.mobile2app.eventtracker.digest.SmsDigestEngine;
+import com.mobile2app.eventtracker.model.EventColumns;
+import com.mobile2app.eventtracker.model.EventTimeCodec;
+import com.mobile2app.eventtracker.model.RecurrenceRule;
+import com.mobile2app.eventtracker.repo.EventPatchBuffer;
 import com.mobile2app.eventtracker.viewmodel.EventListViewModel;
 
-import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * UserEventsFragment is a Fragment subclass that represents the events associated with a user.
@@ -55,7 +56,20 @@ import java.util.List;
  */
 public class UserEventsFragment extends Fragment {
     private RecyclerView mRecyclerView;
+    private EventAdapter mEventAdapter;
+    private EventListViewModel mEventListViewModel;
     private final int MY_PERMISSIONS_REQUEST_SEND_SMS = 0;
+    private final int MY_PERMISSIONS_REQUEST_NOTIFICATIONS = 1;
+    // Rows from the end of the loaded events at which the next page is requested
+    private static final int LOAD_MORE_THRESHOLD = 10;
+    // Rows kept bound just off screen, so a short scroll back rebinds nothing
+    private static final int ITEM_CACHE_SIZE = 12;
+    // Unbound rows kept for reuse, enough for the rows a fling scrolls off in one frame
+    private static final int POOL_SIZE = 24;
+    // Rows outlive the list's view, so returning to the list reuses them instead of inflating
+    private final RecyclerView.RecycledViewPool mViewPool = new RecyclerView.RecycledViewPool();
+    // Writes the dates and times of rows in the user's locale and clock
+    private EventTimeCodec mTimeCodec;
     private Button logout;
 
 
@@ -79,48 +93,41 @@ public class UserEventsFragment extends Fragment {
                              Bundle savedInstanceState) {
         View view = inflater.inflate(R.layout.fragment_user_events, container, false);
 
-        ArrayList<Event> list = new ArrayList<>();
-        EventAdapter adapter = new EventAdapter(list);
-        RecyclerView recyclerView = view.findViewById(R.id.event_recycler_view);
-        recyclerView.setAdapter(adapter);
-        recyclerView.setLayoutManager(new LinearLayoutManager(getActivity()));
+        mEventListViewModel = new ViewModelProvider(this).get(EventListViewModel.class);
+        if (mEventAdapter == null) {
+            mEventAdapter = new EventAdapter(getResources().getStringArray(R.array.repeat_entries));
+            mViewPool.setMaxRecycledViews(0, POOL_SIZE);
+        }
+        mTimeCodec = timeCodec();
+        mRecyclerView = view.findViewById(R.id.event_recycler_view);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(getActivity());
+        // Prefetch binds the next rows in the idle time of frames during a fling
+        layoutManager.setItemPrefetchEnabled(true);
+        mRecyclerView.setLayoutManager(layoutManager);
+        mRecyclerView.setHasFixedSize(true);
+        mRecyclerView.setItemViewCacheSize(ITEM_CACHE_SIZE);
+        mRecyclerView.setRecycledViewPool(mViewPool);
+        // Swapping keeps the pool filled by the last view; setAdapter would clear it
+        mRecyclerView.swapAdapter(mEventAdapter, false);
 
         /**
-         * Sets up a Firebase Database reference to the "EventTracker" node and adds a ValueEventListener to it.
-         * The listener fetches event data from the database, clears the existing list of events, and repopulates it with the new data.
-         * The adapter is then notified of the data change to update the UI.
+         * Requests the next page of events from Room once the last loaded rows come into view.
+         * Reads and writes go through Room, which EventSyncEngine keeps in step with Firebase.
          */
-        DatabaseReference reference = FirebaseDatabase.getInstance().getReference().child("EventTracker");
-        reference.addValueEventListener(new ValueEventListener() {
-            /**
-             * This method is called whenever data at the specified database reference changes.
-             * It clears the current list of events, iterates through the children of the DataSnapshot,
-             * extracts event details, creates Event objects, and adds them to the list.
-             * Finally, it notifies the adapter that the data has changed.
-             *
-             * @param dataSnapshot The DataSnapshot containing data from the database reference.
-             */
+        mRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                list.clear();
-                for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
-                    String id = snapshot.getKey(); // This will get the key of the child node, which is the ID of the event
-                    String title = snapshot.child("title").getValue(String.class);
-                    String date = snapshot.child("date").getValue(String.class);
-                    String time = snapshot.child("time").getValue(String.class);
-                    Event event = new Event(id, title, date, time);
-                    list.add(event);
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                int lastVisible = layoutManager.findLastVisibleItemPosition();
+                if (lastVisible >= mEventAdapter.getItemCount() - LOAD_MORE_THRESHOLD) {
+                    mEventListViewModel.loadMoreEvents();
                 }
-                adapter.notifyDataSetChanged();
             }
-
-            @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                // Log the error
-                Log.w(TAG, "Failed to read value.", error.toException());
-
-                // Show a toast message to the user
-                Toast.makeText(getContext(), "Failed to load data.", Toast.LENGTH_SHORT).show();
+        });
+        mEventListViewModel.getEventPages().observe(getViewLifecycleOwner(), this::updateUI);
+        // The list has already rolled back an edit that could not be saved; say so
+        mEventListViewModel.getRejectedEdits().observe(getViewLifecycleOwner(), count -> {
+            if (mEventListViewModel.takeNewRejections(count)) {
+                Toast.makeText(getActivity(), R.string.edit_rejected, Toast.LENGTH_SHORT).show();
             }
         });
 
@@ -140,15 +147,27 @@ public class UserEventsFragment extends Fragment {
              */
             @Override
             public void onClick(View v) {
-                FirebaseAuth.getInstance().signOut();
+                // Unsent changes are sent first; if they cannot be, the user stays signed in
+                logout.setEnabled(false);
+                mEventListViewModel.stopSync(stopped -> {
+                    if (!isAdded()) {
+                        return;
+                    }
+                    logout.setEnabled(true);
+                    if (!stopped) {
+                        Toast.makeText(getActivity(), R.string.logout_unsent, Toast.LENGTH_LONG).show();
+                        return;
+                    }
+                    FirebaseAuth.getInstance().signOut();
 
-                GoogleSignIn.getClient(
-                        getActivity(),
-                        new GoogleSignInOptions.Builder(GoogleSignInOptions.DEFAULT_SIGN_IN).build()
-                ).signOut();
+                    GoogleSignIn.getClient(
+                            getActivity(),
+                            new GoogleSignInOptions.Builder(GoogleSignInOptions.DEFAULT_SIGN_IN).build()
+                    ).signOut();
 
-                Toast.makeText(getActivity(), "Logged Out!", Toast.LENGTH_SHORT).show();
-                startActivity(new Intent(getActivity(), LoginActivity.class));
+                    Toast.makeText(getActivity(), "Logged Out!", Toast.LENGTH_SHORT).show();
+                    startActivity(new Intent(getActivity(), LoginActivity.class));
+                });
             }
         });
 
@@ -156,60 +175,60 @@ public class UserEventsFragment extends Fragment {
         return view;
     }
 
+    /**
+     * Redraws the dates and times if the user changed their locale or
+     * clock while the list was away.
+     */
+    @Override
+    public void onResume() {
+        super.onResume();
+        EventTimeCodec codec = timeCodec();
+        if (codec != mTimeCodec) {
+            mTimeCodec = codec;
+            mEventAdapter.notifyItemRangeChanged(0, mEventAdapter.getItemCount(),
+                    EventColumns.Row.FIELD_DATE | EventColumns.Row.FIELD_TIME);
+        }
+    }
+
+    // Returns the codec of the user's locale and clock
+    private EventTimeCodec timeCodec() {
+        return EventTimeCodec.getInstance(Locale.getDefault(), DateFormat.is24HourFormat(requireContext()));
+    }
+
+    /**
+     * Hands the rows of the list to the pool and detaches the adapter, which
+     * outlives the view, from the list being destroyed.
+     */
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        mRecyclerView.swapAdapter(null, true);
+        mRecyclerView = null;
+    }
+
     /**
      * Checks for the necessary permissions used in the app.
      * If the SEND_SMS permission is not granted, it shows a custom permission screen.
-     * If the permission is granted, it proceeds to prepare a message with upcoming events.
+     * If the permission is granted, it schedules the periodic digest of upcoming events,
+     * which is sent to the phone number set in settings, and asks to post event reminders.
      */
     private void checkPermissions() {
         // Check if the permission is already granted
         if (ContextCompat.checkSelfPermission(requireActivity(), android.Manifest.permission.SEND_SMS) != PackageManager.PERMISSION_GRANTED) {
             showCustomPermissionScreen();
         } else {
-            // Hard-coded number, associate with account phone number or user-input
-            String phoneNumber = "15551234567";
-            final String[] message = {"Your upcoming events:\n"};
-
-            /**
-             * Retrieves event data from the Firebase database and sends it via SMS.
-             * The method gets a reference to the "EventTracker" node in the Firebase database,
-             * listens for changes, and sends the event details as an SMS message.
-             */
-            DatabaseReference reference = FirebaseDatabase.getInstance().getReference().child("EventTracker");
-            reference.addValueEventListener(new ValueEventListener() {
-                /**
-                 * Called when data at the "EventTracker" location is updated.
-                 * Iterates through the children of the dataSnapshot, retrieves event details,
-                 * and appends them to the message. Sends the message via SMS.
-                 *
-                 * @param dataSnapshot The snapshot of the data at the "EventTracker" location.
-                 */
-                @Override
-                public void onDataChange(DataSnapshot dataSnapshot) {
-                    for (DataSnapshot snapshot: dataSnapshot.getChildren()) {
-                        String title = snapshot.child("title").getValue(String.class);
-                        String date = snapshot.child("date").getValue(String.class);
-                        String time = snapshot.child("time").getValue(String.class);
-                        message[0] += title + ": " + date + "\n";
-                    }
-                    SmsManager smsManager = SmsManager.getDefault();
-                    smsManager.sendTextMessage(phoneNumber, null, message[0], null, null);
-                }
-
-                /**
-                 * Called when the read operation is canceled.
-                 * Logs the error code to the console.
-                 *
-                 * @param databaseError The error that caused the read to fail.
-                 */
-                @Override
-                public void onCancelled(DatabaseError databaseError) {
-                    System.out.println("The read failed: " + databaseError.getCode());
-                }
-            });
+            SmsDigestEngine.schedule(requireContext());
+            if (!canPostNotifications()) {
+                ActivityCompat.requestPermissions(requireActivity(), new String[]{Manifest.permission.POST_NOTIFICATIONS}, MY_PERMISSIONS_REQUEST_NOTIFICATIONS);
+            }
         }
     }
 
+    // Check whether event reminders may be posted
+    private boolean canPostNotifications() {
+        return ContextCompat.checkSelfPermission(requireActivity(), Manifest.permission.POST_NOTIFICATIONS) == PackageManager.PERMISSION_GRANTED;
+    }
+
     /**
      * Displays a custom dialog to request SMS permissions from the user.
      * The dialog includes buttons to approve or deny the permission request.
@@ -225,8 +244,11 @@ public class UserEventsFragment extends Fragment {
         // Set an onClick listener for the button
         btnApprove.setOnClickListener(v -> {
             dialog.setOnDismissListener(dialogInterface -> {
-                // When the dialog is dismissed, request the permission
-                ActivityCompat.requestPermissions(requireActivity(), new String[]{Manifest.permission.SEND_SMS}, MY_PERMISSIONS_REQUEST_SEND_SMS);
+                // When the dialog is dismissed, request the permission, and the reminders one with it
+                String[] permissions = canPostNotifications()
+                        ? new String[]{Manifest.permission.SEND_SMS}
+                        : new String[]{Manifest.permission.SEND_SMS, Manifest.permission.POST_NOTIFICATIONS};
+                ActivityCompat.requestPermissions(requireActivity(), permissions, MY_PERMISSIONS_REQUEST_SEND_SMS);
             });
             dialog.dismiss();
         });
@@ -239,31 +261,103 @@ public class UserEventsFragment extends Fragment {
 
     /**
      * Updates the user interface (UI) with a list of events.
-     * This method creates a new EventAdapter with the provided list of events,
-     * and sets it as the adapter for the RecyclerView.
+     * This method submits the list to the EventAdapter, which diffs it against
+     * the current list in the background and notifies only the changed rows.
      *
-     * @param eventList The list of events to display in the UI.
+     * @param eventList The columns of events to display in the UI.
      */
-    private void updateUI(List<Event> eventList) {
-        EventAdapter mEventAdapter = new EventAdapter(eventList);
-        mRecyclerView.setAdapter(mEventAdapter);
+    private void updateUI(EventColumns eventList) {
+        mEventAdapter.submitList(eventList);
+    }
+
+    // Most displayed titles kept by the adapter, several screens of rows
+    private static final int MAX_TITLE_LABELS = 256;
+
+    // Mask binding every field of a row
+    private static final int FIELD_ALL = EventColumns.Row.FIELD_TITLE | EventColumns.Row.FIELD_DATE
+            | EventColumns.Row.FIELD_TIME;
+
+    // The displayed title of an event and the fields it was built from
+    private static final class TitleLabel {
+        final String mTitle;
+        final String mRecurrence;
+        final String mText;
+
+        TitleLabel(String title, String recurrence, String text) {
+            mTitle = title;
+            mRecurrence = recurrence;
+            mText = text;
+        }
     }
 
+    /**
+     * Compares rows by id to find moved rows and by field values to find changed rows.
+     * Rows from the same pager share a string pool, so both compare int references.
+     * A changed row carries the mask of its changed fields, so only those are rebound.
+     */
+    private static final DiffUtil.ItemCallback<EventColumns.Row> EVENT_DIFF = new DiffUtil.ItemCallback<EventColumns.Row>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull EventColumns.Row oldItem, @NonNull EventColumns.Row newItem) {
+            return oldItem.isSameEvent(newItem);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull EventColumns.Row oldItem, @NonNull EventColumns.Row newItem) {
+            return oldItem.hasSameContents(newItem);
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull EventColumns.Row oldItem, @NonNull EventColumns.Row newItem) {
+            return oldItem.changedFields(newItem);
+        }
+    };
+
     /**
      * Adapter class that bridges the data to be displayed in a RecyclerView.
-     * This adapter handles a list of Event objects and binds them to the RecyclerView.
+     * This adapter handles rows of the event columns and binds them to the RecyclerView.
+     * Rows have stable ids, so the list keeps each event's view across page loads.
      */
-    private class EventAdapter extends RecyclerView.Adapter<EventAdapter.EventHolder> {
+    private class EventAdapter extends ListAdapter<EventColumns.Row, EventAdapter.EventHolder> {
 
-        private final List<Event> mEventList;
+        // How each kind of series is labeled, read once rather than on every bind
+        private final String[] mRepeatEntries;
+        // Displayed titles of the events bound last, by stable id; a few screens' worth is kept
+        private final LruCache<Long, TitleLabel> mTitleLabels = new LruCache<>(MAX_TITLE_LABELS);
 
         /**
          * Constructor for the EventAdapter.
          *
-         * @param events The list of Event objects to be displayed in the RecyclerView.
+         * @param repeatEntries The labels of the repeat choices, "Does not repeat" first.
          */
-        public EventAdapter(List<Event> events) {
-            mEventList = events;
+        public EventAdapter(String[] repeatEntries) {
+            super(EVENT_DIFF);
+            mRepeatEntries = repeatEntries;
+            setHasStableIds(true);
+        }
+
+        // Get the stable id of the event at a position
+        @Override
+        public long getItemId(int position) {
+            return getItem(position).getStableId();
+        }
+
+        /**
+         * Returns the displayed title of an event, reusing the one built
+         * before unless its title or recurrence changed since. The strings
+         * come from the pager's pool, so the check compares references.
+         */
+        String titleLabel(EventColumns.Row event) {
+            String title = event.getEventTitle();
+            String recurrence = event.getRecurrence();
+            TitleLabel label = mTitleLabels.get(event.getStableId());
+            if (label == null || label.mTitle != title || label.mRecurrence != recurrence) {
+                RecurrenceRule rule = RecurrenceRule.parse(recurrence);
+                String text = rule == null ? title : getString(R.string.recurring_title, title,
+                        mRepeatEntries[rule.getFrequency().ordinal() + 1]);
+                label = new TitleLabel(title, recurrence, text);
+                mTitleLabels.put(event.getStableId(), label);
+            }
+            return label.mText;
         }
 
         /**
@@ -287,15 +381,31 @@ public class UserEventsFragment extends Fragment {
          *
          * @param holder The ViewHolder which should be updated to represent the contents of the item at the given position.
          * @param position The position of the item within the adapter's data set.
-         */        @Override
-        public void onBindViewHolder(EventHolder holder, int position){
-            holder.bind(mEventList.get(position));
+         */
+        @Override
+        public void onBindViewHolder(@NonNull EventHolder holder, int position) {
+            holder.bind(getItem(position), FIELD_ALL);
         }
 
-        // Return number of items in data set
+        /**
+         * Rebinds only the fields a change touched, such as the time after a
+         * time-only edit; falls back to a full bind without payloads.
+         *
+         * @param holder   The ViewHolder to update.
+         * @param position The position of the item within the adapter's data set.
+         * @param payloads The masks of changed fields merged since the last bind.
+         */
         @Override
-        public int getItemCount() {
-            return mEventList.size();
+        public void onBindViewHolder(@NonNull EventHolder holder, int position, @NonNull List<Object> payloads) {
+            if (payloads.isEmpty()) {
+                onBindViewHolder(holder, position);
+                return;
+            }
+            int fields = 0;
+            for (Object payload : payloads) {
+                fields |= (Integer) payload;
+            }
+            holder.bind(getItem(position), fields);
         }
 
         /**
@@ -307,6 +417,9 @@ public class UserEventsFragment extends Fragment {
             private final TextView mEventTextView;
             private final TextView mEventDateView;
             private final TextView mEventTimeView;
+            // Display text of the date and time, rewritten in place on each bind
+            private final char[] mDateText = new char[EventTimeCodec.BUFFER_LENGTH];
+            private final char[] mTimeText = new char[EventTimeCodec.BUFFER_LENGTH];
 
             /**
              * Constructor for the EventHolder.
@@ -323,20 +436,16 @@ public class UserEventsFragment extends Fragment {
                 ImageButton mDeleteButton = itemView.findViewById(R.id.delete_button);
 
                 DatePickerDialog.OnDateSetListener dateSetListener = (view, year, monthOfYear, dayOfMonth) -> {
-                    // Add leading zeros to single digits
-                    String month = monthOfYear < 10 ? "0" + (monthOfYear + 1) : String.valueOf(monthOfYear + 1);
-                    String day = dayOfMonth < 10 ? "0" + dayOfMonth : String.valueOf(dayOfMonth);
-                    String date = month + "/" + day + "/" + year;
+                    String date = EventTimeCodec.storedDate(year, monthOfYear + 1, dayOfMonth);
 
                     // Get the position of the current item
                     int position = getAdapterPosition();
-                    Event event = mEventList.get(position);
-                    // Update event's date with DatePicker
-                    event.setEventDate(date);
-                    // Get a reference to the specific event node
-                    DatabaseReference reference = FirebaseDatabase.getInstance().getReference().child("EventTracker").child(event.getId());
-                    // Update the event in the database
-                    reference.child("date").setValue(date);
+                    if (position == RecyclerView.NO_POSITION) {
+                        return;
+                    }
+                    // Shown at once and written with any other edit made before the user pauses;
+                    // moving a series moves its first occurrence
+                    mEventListViewModel.patchEvent(getItem(position).getId(), EventPatchBuffer.FIELD_DATE, date);
                 };
 
                 mEventDateView.setOnClickListener(v -> {
@@ -353,21 +462,15 @@ public class UserEventsFragment extends Fragment {
                 });
 
                 TimePickerDialog.OnTimeSetListener timeSetListener = (view, hourOfDay, minutes) -> {
-                    // Format time as string
-                    String AM_PM = hourOfDay < 13 ? "AM" : "PM";
-                    int hour = hourOfDay < 13 ? hourOfDay : (hourOfDay - 12);
-                    String min = minutes < 10 ? ("0" + minutes) : String.valueOf(minutes);
-                    String time = hour + ":" + min + AM_PM;
+                    String time = EventTimeCodec.storedTime(hourOfDay, minutes);
 
                     // Get position of current item
                     int position = getAdapterPosition();
-                    Event event = mEventList.get(position);
-                    // Update event's time with TimePicker
-                    event.setEventTime(time);
-                    // Get a reference to the specific event node
-                    DatabaseReference reference = FirebaseDatabase.getInstance().getReference().child("EventTracker").child(event.getId());
-                    // Update the event in the database
-                    reference.child("time").setValue(time);
+                    if (position == RecyclerView.NO_POSITION) {
+                        return;
+                    }
+                    // Shown at once and written with any other edit made before the user pauses
+                    mEventListViewModel.patchEvent(getItem(position).getId(), EventPatchBuffer.FIELD_TIME, time);
                 };
 
                 mEventTimeView.setOnClickListener(v -> {
@@ -385,21 +488,34 @@ public class UserEventsFragment extends Fragment {
                     int position = getAdapterPosition();
                     // Check position is valid
                     if (position != RecyclerView.NO_POSITION) {
-                        Event event = mEventList.get(position);
-                        mEventList.remove(position);
-                        notifyItemRemoved(position);
-                        // Delete event from Firebase Realtime Database
-                        DatabaseReference mDatabase = FirebaseDatabase.getInstance().getReference("EventTracker");
-                        mDatabase.child(event.getId()).removeValue();
+                        // Delete the event locally; the row is removed when the next page list
+                        // arrives and the deletion is synced to Firebase in the background
+                        mEventListViewModel.deleteEvent(getItem(position).toEvent());
                     }
                 });
             }
 
-            // Bind data of event object to views
-            public void bind(Event event) {
-                mEventTextView.setText(event.getEventTitle());
-                mEventDateView.setText(event.getEventDate());
-                mEventTimeView.setText(event.getEventTime());
+            // Bind the given fields of an event row to views; a series is listed once, labeled with how it repeats
+            public void bind(EventColumns.Row event, int fields) {
+                if ((fields & EventColumns.Row.FIELD_TITLE) != 0) {
+                    mEventTextView.setText(titleLabel(event));
+                }
+                if ((fields & (EventColumns.Row.FIELD_DATE | EventColumns.Row.FIELD_TIME)) == 0) {
+                    return;
+                }
+                // Written into the holder's buffers, so binding a scrolled-in row allocates no text
+                long packed = EventTimeCodec.parse(event.getEventDate(), event.getEventTime());
+                if (packed == EventTimeCodec.UNKNOWN) {
+                    mEventDateView.setText(event.getEventDate());
+                    mEventTimeView.setText(event.getEventTime());
+                    return;
+                }
+                if ((fields & EventColumns.Row.FIELD_DATE) != 0) {
+                    mEventDateView.setText(mDateText, 0, mTimeCodec.formatDate(packed, mDateText));
+                }
+                if ((fields & EventColumns.Row.FIELD_TIME) != 0) {
+                    mEventTimeView.setText(mTimeText, 0, mTimeCodec.formatTime(packed, mTimeText));
+                }
             }
         }
     }
@@ -0,0 +1,193 @@
+package com.mobile2app.eventtracker.calendar;
+
+import static android.content.ContentValues.TAG;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.mobile2app.eventtracker.model.Event;
+import com.mobile2app.eventtracker.model.EventDayIndex;
+import com.mobile2app.eventtracker.model.EventStartTime;
+import com.mobile2app.eventtracker.repo.EventRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the day index the calendar draws from. The index is built once
+ * from the schedule of every event, read without the rest of each row,
+ * and then updated from each committed batch of writes, so opening the
+ * calendar or moving between months never reads the events table. It is
+ * rebuilt only when the device's time zone changes, which moves the
+ * midnights dividing its days.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public final class CalendarIndex implements EventRepository.EventChangeListener {
+
+    private static volatile CalendarIndex mCalendarIndex;
+
+    private final EventRepository mEventRepo;
+    // Runs the build, which reads the database
+    private final ExecutorService mWorker = Executors.newSingleThreadExecutor();
+    // Bumped after every change to the index, so the calendar knows to recount
+    private final MutableLiveData<Integer> mVersion = new MutableLiveData<>(0);
+
+    // Guarded by this
+    private EventDayIndex mIndex = new EventDayIndex(TimeZone.getDefault());
+    private boolean mReady;
+    private boolean mListening;
+    // Changes committed while a build reads the table, replayed on top of it; null when not building
+    private List<Consumer<EventDayIndex>> mChangesDuringBuild;
+    private int mVersionCount;
+
+    private CalendarIndex(Context context) {
+        mEventRepo = EventRepository.getInstance(context.getApplicationContext());
+    }
+
+    /**
+     * Returns the single instance of CalendarIndex, creating it if necessary.
+     *
+     * @param context Any context of this app.
+     * @return The singleton instance of CalendarIndex.
+     */
+    public static CalendarIndex getInstance(Context context) {
+        CalendarIndex calendarIndex = mCalendarIndex;
+        if (calendarIndex == null) {
+            synchronized (CalendarIndex.class) {
+                calendarIndex = mCalendarIndex;
+                if (calendarIndex == null) {
+                    calendarIndex = new CalendarIndex(context);
+                    mCalendarIndex = calendarIndex;
+                }
+            }
+        }
+        return calendarIndex;
+    }
+
+    /**
+     * Builds the index the first time, or again if the time zone changed.
+     * Returns at once; the version is bumped when the index is ready.
+     */
+    public void start() {
+        TimeZone zone = TimeZone.getDefault();
+        synchronized (this) {
+            if (!mListening) {
+                mListening = true;
+                mEventRepo.addChangeListener(this);
+            } else if (mChangesDuringBuild != null
+                    || (mReady && mIndex.getTimeZone().getID().equals(zone.getID()))) {
+                return;
+            }
+            mChangesDuringBuild = new ArrayList<>();
+        }
+        mWorker.execute(() -> build(zone));
+    }
+
+    // Get the number bumped after every change, observed to redraw
+    public LiveData<Integer> getVersion() {
+        return mVersion;
+    }
+
+    // Check whether the index has been built
+    public synchronized boolean isReady() {
+        return mReady;
+    }
+
+    /**
+     * Counts the events on each day of a window.
+     *
+     * @param firstDay The number of the first day.
+     * @param days     The number of days.
+     * @return The number of events starting on each day, all zero until ready.
+     */
+    public synchronized int[] countDays(long firstDay, int days) {
+        return mReady ? mIndex.countDays(firstDay, days) : new int[days];
+    }
+
+    // Returns the number of the day holding a time
+    public synchronized long dayOf(long time) {
+        return mIndex.dayOf(time);
+    }
+
+    // Returns the first instant of a day
+    public synchronized long startOfDay(long day) {
+        return mIndex.startOfDay(day);
+    }
+
+    @Override
+    public void onEventsChanged(List<Event> changed, Set<String> deletedIds) {
+        apply(index -> {
+            for (Event event : changed) {
+                if (deletedIds.contains(event.getId())) {
+                    index.remove(event.getId());
+                } else {
+                    index.put(event.getId(), event.getStartTime(), event.getRecurrence(), event.getTimeZone());
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onEventsCleared() {
+        apply(EventDayIndex::clear);
+    }
+
+    // Applies a change to the index, and to the one being built if any
+    private void apply(Consumer<EventDayIndex> change) {
+        synchronized (this) {
+            change.accept(mIndex);
+            if (mChangesDuringBuild != null) {
+                mChangesDuringBuild.add(change);
+            }
+        }
+        bumpVersion();
+    }
+
+    /**
+     * Reads every schedule into a new index outside the lock, then replays
+     * the changes committed meanwhile; each is a put or remove of a whole
+     * row, so replaying one the read already saw does no harm.
+     */
+    private void build(TimeZone zone) {
+        EventDayIndex index = new EventDayIndex(zone);
+        try {
+            for (EventStartTime startTime : mEventRepo.loadStartTimesAfter(Long.MIN_VALUE)) {
+                index.put(startTime.id, startTime.startTime, startTime.recurrence, startTime.timeZone);
+            }
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Could not build the calendar index.", e);
+            synchronized (this) {
+                mChangesDuringBuild = null;
+            }
+            return;
+        }
+        synchronized (this) {
+            for (Consumer<EventDayIndex> change : mChangesDuringBuild) {
+                change.accept(index);
+            }
+            mChangesDuringBuild = null;
+            mIndex = index;
+            mReady = true;
+        }
+        bumpVersion();
+    }
+
+    // Tells observers the counts may have changed
+    private void bumpVersion() {
+        int version;
+        synchronized (this) {
+            version = ++mVersionCount;
+        }
+        mVersion.postValue(version);
+    }
+}
@@ -0,0 +1,185 @@
+package com.mobile2app.eventtracker.digest;
+
+import static android.content.ContentValues.TAG;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.telephony.SmsManager;
+import android.text.format.DateFormat;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+import androidx.preference.PreferenceManager;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+
+import com.mobile2app.eventtracker.model.Event;
+import com.mobile2app.eventtracker.model.EventTimeCodec;
+import com.mobile2app.eventtracker.repo.EventRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends a text message listing the events starting in the next week to the
+ * phone number set in settings. Runs on a schedule rather than on every
+ * change: each run reads only the events in the window, writes the message
+ * into a buffer kept between runs, and sends it only if it differs from
+ * the last digest sent. Messages longer than one SMS are sent as a
+ * multipart message.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public final class SmsDigestEngine {
+
+    // Time between digest runs
+    public static final long DIGEST_INTERVAL_HOURS = 6;
+    // How far ahead events are included
+    public static final long WINDOW_MS = TimeUnit.DAYS.toMillis(7);
+    // Most events listed; the rest are summarized in one line
+    public static final int MAX_EVENTS = 20;
+    // Preference holding the number digests are sent to
+    public static final String PREF_PHONE_NUMBER = "phone_number";
+
+    // Private preferences remembering the last digest sent
+    private static final String DIGEST_PREFS = "sms_digest";
+    private static final String KEY_LAST_DIGEST = "last_digest";
+    private static final String KEY_LAST_SENT_AT = "last_sent_at";
+    // Unique name of the periodic digest work
+    private static final String WORK_NAME = "sms_digest";
+
+    /**
+     * Outcome of a digest run.
+     */
+    public enum Result {
+        SENT, UNCHANGED, NO_EVENTS, NO_NUMBER, NO_PERMISSION
+    }
+
+    private static volatile SmsDigestEngine mDigestEngine;
+
+    private final Context mContext;
+    private final EventRepository mEventRepo;
+    // Reused by every run so building a digest does not allocate a new buffer
+    private final StringBuilder mBuffer = new StringBuilder(1024);
+
+    private SmsDigestEngine(Context context) {
+        mContext = context.getApplicationContext();
+        mEventRepo = EventRepository.getInstance(mContext);
+    }
+
+    /**
+     * Returns the single instance of SmsDigestEngine, creating it if necessary.
+     *
+     * @param context Any context of this app.
+     * @return The singleton instance of SmsDigestEngine.
+     */
+    public static SmsDigestEngine getInstance(Context context) {
+        SmsDigestEngine digestEngine = mDigestEngine;
+        if (digestEngine == null) {
+            synchronized (SmsDigestEngine.class) {
+                digestEngine = mDigestEngine;
+                if (digestEngine == null) {
+                    digestEngine = new SmsDigestEngine(context);
+                    mDigestEngine = digestEngine;
+                }
+            }
+        }
+        return digestEngine;
+    }
+
+    /**
+     * Schedules the periodic digest. Scheduling again keeps the existing
+     * schedule, so it is safe to call every time the events screen opens.
+     *
+     * @param context Any context of this app.
+     */
+    public static void schedule(Context context) {
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(
+                SmsDigestWorker.class, DIGEST_INTERVAL_HOURS, TimeUnit.HOURS).build();
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+                WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    /**
+     * Builds the digest for the window starting now and sends it if it has
+     * changed since the last one. Blocks, so must be called off the main thread.
+     *
+     * @param now The current time in epoch milliseconds.
+     * @return What the run did.
+     */
+    public synchronized Result run(long now) {
+        if (ContextCompat.checkSelfPermission(mContext, Manifest.permission.SEND_SMS)
+                != PackageManager.PERMISSION_GRANTED) {
+            return Result.NO_PERMISSION;
+        }
+        String phoneNumber = PreferenceManager.getDefaultSharedPreferences(mContext)
+                .getString(PREF_PHONE_NUMBER, "").trim();
+        if (phoneNumber.isEmpty()) {
+            return Result.NO_NUMBER;
+        }
+
+        long end = now + WINDOW_MS;
+        List<Event> events = mEventRepo.loadEventsBetween(now, end, MAX_EVENTS);
+        if (events.isEmpty()) {
+            return Result.NO_EVENTS;
+        }
+        int more = events.size() < MAX_EVENTS ? 0 : mEventRepo.countEventsBetween(now, end) - events.size();
+        EventTimeCodec codec = EventTimeCodec.getInstance(Locale.getDefault(), DateFormat.is24HourFormat(mContext));
+        appendDigest(mBuffer, codec, events, more);
+
+        SharedPreferences digestPrefs = mContext.getSharedPreferences(DIGEST_PREFS, Context.MODE_PRIVATE);
+        String lastDigest = digestPrefs.getString(KEY_LAST_DIGEST, null);
+        if (lastDigest != null && lastDigest.contentEquals(mBuffer)) {
+            return Result.UNCHANGED;
+        }
+
+        String message = mBuffer.toString();
+        SmsManager smsManager = mContext.getSystemService(SmsManager.class);
+        ArrayList<String> parts = smsManager.divideMessage(message);
+        if (parts.size() == 1) {
+            smsManager.sendTextMessage(phoneNumber, null, message, null, null);
+        } else {
+            smsManager.sendMultipartTextMessage(phoneNumber, null, parts, null, null);
+        }
+        Log.i(TAG, "Sent event digest of " + events.size() + " events in " + parts.size() + " parts.");
+        digestPrefs.edit()
+                .putString(KEY_LAST_DIGEST, message)
+                .putLong(KEY_LAST_SENT_AT, now)
+                .apply();
+        return Result.SENT;
+    }
+
+    /**
+     * Writes the digest text into a buffer, replacing what it held.
+     *
+     * @param buffer The buffer to write into.
+     * @param codec  Writes dates and times as the user reads them.
+     * @param events The events to list, in chronological order.
+     * @param more   The number of further events in the window not listed.
+     */
+    static void appendDigest(StringBuilder buffer, EventTimeCodec codec, List<Event> events, int more) {
+        buffer.setLength(0);
+        buffer.append("Your upcoming events:\n");
+        char[] text = new char[EventTimeCodec.BUFFER_LENGTH];
+        for (Event event : events) {
+            buffer.append(event.getEventTitle()).append(": ");
+            long packed = EventTimeCodec.parse(event.getEventDate(), event.getEventTime());
+            if (packed == EventTimeCodec.UNKNOWN) {
+                buffer.append(event.getEventDate()).append(' ').append(event.getEventTime());
+            } else {
+                buffer.append(text, 0, codec.formatDate(packed, text)).append(' ');
+                buffer.append(text, 0, codec.formatTime(packed, text));
+            }
+            buffer.append('\n');
+        }
+        if (more > 0) {
+            buffer.append("...and ").append(more).append(" more\n");
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.mobile2app.eventtracker.digest;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+/**
+ * Periodic work that runs one pass of the SMS digest engine.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public class SmsDigestWorker extends Worker {
+
+    public SmsDigestWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        SmsDigestEngine.getInstance(getApplicationContext()).run(System.currentTimeMillis());
+        return Result.success();
+    }
+}
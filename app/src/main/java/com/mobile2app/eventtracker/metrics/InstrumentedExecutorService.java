@@ -0,0 +1,76 @@
+package com.mobile2app.eventtracker.metrics;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor wrapper that records how many tasks are waiting and how long
+ * each one waited before it started. While metrics are disabled tasks are
+ * handed to the delegate unwrapped.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+final class InstrumentedExecutorService extends AbstractExecutorService {
+
+    private final ExecutorService mDelegate;
+    private final MetricsRegistry mRegistry;
+    private final MetricsRegistry.ExecutorStats mStats;
+
+    InstrumentedExecutorService(ExecutorService delegate, MetricsRegistry registry,
+                                MetricsRegistry.ExecutorStats stats) {
+        mDelegate = delegate;
+        mRegistry = registry;
+        mStats = stats;
+    }
+
+    @Override
+    public void execute(@NonNull Runnable command) {
+        if (!mRegistry.isEnabled()) {
+            mDelegate.execute(command);
+            return;
+        }
+        long queuedAt = System.nanoTime();
+        mStats.onQueued();
+        try {
+            mDelegate.execute(() -> {
+                mStats.onStarted(System.nanoTime() - queuedAt);
+                command.run();
+            });
+        } catch (RuntimeException e) {
+            // Rejected, so it will never start
+            mStats.onDropped();
+            throw e;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        mDelegate.shutdown();
+    }
+
+    @NonNull
+    @Override
+    public List<Runnable> shutdownNow() {
+        return mDelegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return mDelegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return mDelegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        return mDelegate.awaitTermination(timeout, unit);
+    }
+}
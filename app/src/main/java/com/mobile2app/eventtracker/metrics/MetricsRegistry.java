@@ -0,0 +1,326 @@
+package com.mobile2app.eventtracker.metrics;
+
+import static android.content.ContentValues.TAG;
+
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide registry of database timings: latency and row count
+ * histograms per DAO method, queue depth and wait time per executor,
+ * transaction counts, and a log of the slowest queries. Disabled by
+ * default; while disabled every timing call returns after reading one
+ * volatile flag and nothing is allocated or recorded.
+ *
+ * <pre>
+ * long start = metrics.startTimer();
+ * List&lt;Event&gt; page = eventDao.getFirstPage(limit);
+ * metrics.recordQuery("EventDao.getFirstPage", start, page.size());
+ * </pre>
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public final class MetricsRegistry {
+
+    // Preference keys read by applyPreferences
+    public static final String PREF_ENABLED = "metrics_enabled";
+    public static final String PREF_SLOW_QUERY_MS = "metrics_slow_query_ms";
+    // Default time above which a query is logged as slow
+    public static final long DEFAULT_SLOW_QUERY_MS = 50;
+    // Slow queries kept for the debug screen
+    private static final int SLOW_LOG_CAPACITY = 50;
+
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    /**
+     * Latency and row count histograms for one DAO method.
+     */
+    public static final class QueryStats {
+        final Histogram mLatency = new Histogram();
+        final Histogram mRows = new Histogram();
+
+        // Get latencies in nanoseconds
+        public Histogram getLatency() {
+            return mLatency;
+        }
+
+        // Get rows returned or written per call
+        public Histogram getRows() {
+            return mRows;
+        }
+    }
+
+    /**
+     * Queue depth and wait time for one executor.
+     */
+    public static final class ExecutorStats {
+        final AtomicInteger mQueued = new AtomicInteger();
+        final Histogram mDepth = new Histogram();
+        final Histogram mWait = new Histogram();
+
+        // Counts a submitted task and samples the depth it found
+        public void onQueued() {
+            mDepth.record(mQueued.incrementAndGet());
+        }
+
+        // Counts a task leaving the queue after waiting the given nanoseconds
+        public void onStarted(long waitNanos) {
+            mQueued.decrementAndGet();
+            mWait.record(waitNanos);
+        }
+
+        // Counts a task that left the queue without starting, refused or cancelled
+        public void onDropped() {
+            mQueued.decrementAndGet();
+        }
+
+        // Get number of tasks waiting to start right now
+        public int getQueued() {
+            return mQueued.get();
+        }
+
+        // Get queue depths seen by submitted tasks
+        public Histogram getDepth() {
+            return mDepth;
+        }
+
+        // Get queue wait times in nanoseconds
+        public Histogram getWait() {
+            return mWait;
+        }
+    }
+
+    /**
+     * A query that took longer than the slow query threshold.
+     */
+    public static final class SlowQuery {
+        public final String name;
+        public final long durationNanos;
+        public final int rows;
+        public final long loggedAt;
+
+        SlowQuery(String name, long durationNanos, int rows, long loggedAt) {
+            this.name = name;
+            this.durationNanos = durationNanos;
+            this.rows = rows;
+            this.loggedAt = loggedAt;
+        }
+    }
+
+    private volatile boolean mEnabled;
+    private volatile long mSlowQueryNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_QUERY_MS);
+    private final ConcurrentHashMap<String, QueryStats> mQueries = new ConcurrentHashMap<>();
+    private final Map<String, ExecutorStats> mExecutors = new ConcurrentHashMap<>();
+    private final AtomicLong mTransactions = new AtomicLong();
+    private final Histogram mTransactionLatency = new Histogram();
+    private final ArrayDeque<SlowQuery> mSlowQueries = new ArrayDeque<>();
+
+    private MetricsRegistry() {
+    }
+
+    /**
+     * Returns the process-wide registry.
+     *
+     * @return The single instance of MetricsRegistry.
+     */
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    // Get whether timings are being recorded
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    // Set whether timings are recorded
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    // Get slow query threshold in milliseconds
+    public long getSlowQueryThresholdMs() {
+        return TimeUnit.NANOSECONDS.toMillis(mSlowQueryNanos);
+    }
+
+    // Set slow query threshold in milliseconds
+    public void setSlowQueryThresholdMs(long thresholdMs) {
+        mSlowQueryNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, thresholdMs));
+    }
+
+    /**
+     * Applies the metrics settings stored by the settings screen.
+     *
+     * @param preferences The default shared preferences.
+     */
+    public void applyPreferences(SharedPreferences preferences) {
+        setEnabled(preferences.getBoolean(PREF_ENABLED, false));
+        setSlowQueryThresholdMs(parseThreshold(preferences.getString(PREF_SLOW_QUERY_MS, null)));
+    }
+
+    /**
+     * Parses a slow query threshold typed into the settings screen.
+     *
+     * @param value The text entered, may be null.
+     * @return The threshold in milliseconds, or the default if the text is not a number.
+     */
+    public static long parseThreshold(String value) {
+        if (value == null) {
+            return DEFAULT_SLOW_QUERY_MS;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return DEFAULT_SLOW_QUERY_MS;
+        }
+    }
+
+    /**
+     * Starts timing an operation.
+     *
+     * @return The start time to pass to a record method, or 0 if metrics are disabled.
+     */
+    public long startTimer() {
+        return mEnabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records a DAO call started with startTimer. Does nothing if metrics
+     * were disabled when the timer started.
+     *
+     * @param name        The DAO method, such as "EventDao.getFirstPage".
+     * @param startNanos  The value returned by startTimer.
+     * @param rows        The rows the call returned or wrote.
+     */
+    public void recordQuery(String name, long startNanos, int rows) {
+        if (startNanos == 0) {
+            return;
+        }
+        long duration = System.nanoTime() - startNanos;
+        QueryStats stats = mQueries.get(name);
+        if (stats == null) {
+            stats = new QueryStats();
+            QueryStats existing = mQueries.putIfAbsent(name, stats);
+            if (existing != null) {
+                stats = existing;
+            }
+        }
+        stats.mLatency.record(duration);
+        stats.mRows.record(rows);
+        if (duration >= mSlowQueryNanos) {
+            logSlowQuery(name, duration, rows);
+        }
+    }
+
+    /**
+     * Records a committed transaction started with startTimer.
+     *
+     * @param startNanos The value returned by startTimer.
+     */
+    public void recordTransaction(long startNanos) {
+        if (startNanos == 0) {
+            return;
+        }
+        mTransactions.incrementAndGet();
+        mTransactionLatency.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Wraps an executor so its queue depth and wait times are recorded
+     * under the given name while metrics are enabled.
+     *
+     * @param name     The name shown on the debug screen.
+     * @param executor The executor to wrap.
+     * @return An executor that runs tasks on the given one.
+     */
+    public ExecutorService instrument(String name, ExecutorService executor) {
+        return new InstrumentedExecutorService(executor, this, registerExecutor(name));
+    }
+
+    /**
+     * Registers queue stats for an executor that records them itself, for
+     * executors whose tasks cannot be wrapped by instrument.
+     *
+     * @param name The name shown on the debug screen.
+     * @return The stats to update as tasks are queued and started.
+     */
+    public ExecutorStats registerExecutor(String name) {
+        ExecutorStats stats = new ExecutorStats();
+        mExecutors.put(name, stats);
+        return stats;
+    }
+
+    // Keeps the most recent slow queries, dropping the oldest
+    private void logSlowQuery(String name, long durationNanos, int rows) {
+        Log.w(TAG, String.format(Locale.US, "Slow query %s took %.1f ms for %d rows",
+                name, durationNanos / 1e6, rows));
+        synchronized (mSlowQueries) {
+            if (mSlowQueries.size() == SLOW_LOG_CAPACITY) {
+                mSlowQueries.removeFirst();
+            }
+            mSlowQueries.addLast(new SlowQuery(name, durationNanos, rows, System.currentTimeMillis()));
+        }
+    }
+
+    // Get stats for each DAO method recorded, sorted by name
+    public Map<String, QueryStats> getQueries() {
+        return new TreeMap<>(mQueries);
+    }
+
+    // Get stats for each instrumented executor, sorted by name
+    public Map<String, ExecutorStats> getExecutors() {
+        return new TreeMap<>(mExecutors);
+    }
+
+    // Get number of transactions committed
+    public long getTransactionCount() {
+        return mTransactions.get();
+    }
+
+    // Get transaction latencies in nanoseconds
+    public Histogram getTransactionLatency() {
+        return mTransactionLatency;
+    }
+
+    // Get slow queries, most recent first
+    public List<SlowQuery> getSlowQueries() {
+        synchronized (mSlowQueries) {
+            List<SlowQuery> queries = new ArrayList<>(mSlowQueries);
+            Collections.reverse(queries);
+            return queries;
+        }
+    }
+
+    /**
+     * Clears every recorded value. Executors stay instrumented and tasks
+     * already waiting are still counted in the queue depth.
+     */
+    public void reset() {
+        for (QueryStats stats : mQueries.values()) {
+            stats.mLatency.reset();
+            stats.mRows.reset();
+        }
+        for (ExecutorStats stats : mExecutors.values()) {
+            stats.mDepth.reset();
+            stats.mWait.reset();
+        }
+        mTransactions.set(0);
+        mTransactionLatency.reset();
+        synchronized (mSlowQueries) {
+            mSlowQueries.clear();
+        }
+    }
+}
@@ -3,18 +3,32 @@ package com.mobile2app.eventtracker.model;
 import androidx.annotation.NonNull;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
+import java.util.Comparator;
+import java.util.TimeZone;
+
 /**
  * Event object that holds an id, title, time, and date. Uses
- * Room Persistence Library to interact with SQLite table
+ * Room Persistence Library to interact with SQLite table.
+ * The start of the event is also kept as epoch milliseconds so
+ * lists and range queries can seek on the (start_time, id) index.
+ * A recurring event is one row holding its RecurrenceRule; the row's
+ * date and time are those of the first occurrence, and the others are
+ * produced by {@link #occurrence(long)} when a window is read.
  *
  * @author Michael gagujas
  * @since 2024-08-18
  */
-@Entity
+@Entity(indices = {@Index(value = {"start_time", "id"}), @Index(value = {"recurrence"})})
 public class Event {
 
+    // Orders events the same way as the (start_time, id) index
+    public static final Comparator<Event> START_ORDER = (a, b) ->
+            compareKeys(a.mStartTime, a.mId, b.mStartTime, b.mId);
+
     // Real-time Database makes unique key from time
     @NonNull
     @PrimaryKey(autoGenerate = false)
@@ -27,17 +41,39 @@ public class Event {
     private String mEventTime;
     @ColumnInfo(name = "date")
     private String mEventDate;
+    // Start of the event in epoch milliseconds
+    @ColumnInfo(name = "start_time", defaultValue = "0")
+    private long mStartTime;
+    // Time zone id the date and time were entered in
+    @ColumnInfo(name = "time_zone")
+    private String mTimeZone;
+    // Text of the RecurrenceRule of a series, or null for a single event
+    @ColumnInfo(name = "recurrence")
+    private String mRecurrence;
+    // Latest start of any occurrence of a series; only read for series
+    @ColumnInfo(name = "series_end", defaultValue = "0")
+    private long mSeriesEnd;
 
     // Constructor for Room
     public Event(){
     }
 
-    // Constructor assigning title, date, and time
+    // Constructor assigning title, date, and time in the device time zone
+    @Ignore
     public Event(String id, @NonNull String title, String date, String time) {
+        this(id, title, date, time, TimeZone.getDefault().getID());
+    }
+
+    // Constructor assigning title, date, and time in the given time zone, or the device's if null
+    @Ignore
+    public Event(String id, @NonNull String title, String date, String time, String timeZone) {
         this.mId = id;
         mEventTitle = title;
         mEventDate = date;
         mEventTime = time;
+        mTimeZone = timeZone != null ? timeZone : TimeZone.getDefault().getID();
+        mStartTime = EventTimes.parseStartTime(date, time, TimeZone.getTimeZone(mTimeZone));
+        mSeriesEnd = mStartTime;
     }
 
     // Get the Id of an event
@@ -69,4 +105,86 @@ public class Event {
     public void setEventTime(String time) {
         mEventTime = time;
     }
+
+    // Get the start of an event in epoch milliseconds
+    public long getStartTime() { return mStartTime; }
+    // Set the start of an event in epoch milliseconds
+    public void setStartTime(long startTime) {
+        mStartTime = startTime;
+    }
+
+    // Get the time zone id of an event
+    public String getTimeZone() { return mTimeZone; }
+    // Set the time zone id of an event
+    public void setTimeZone(String timeZone) {
+        mTimeZone = timeZone;
+    }
+
+    // Get the recurrence rule text of an event, or null if it does not repeat
+    public String getRecurrence() { return mRecurrence; }
+    // Set the recurrence rule text of an event
+    public void setRecurrence(String recurrence) {
+        mRecurrence = recurrence;
+    }
+
+    // Get the latest start of any occurrence of a series
+    public long getSeriesEnd() { return mSeriesEnd; }
+    // Set the latest start of any occurrence of a series
+    public void setSeriesEnd(long seriesEnd) {
+        mSeriesEnd = seriesEnd;
+    }
+
+    // Check whether an event is a recurring series
+    public boolean isRecurring() {
+        return mRecurrence != null;
+    }
+
+    // Get the parsed recurrence rule of an event, or null if it does not repeat
+    public RecurrenceRule getRecurrenceRule() {
+        return RecurrenceRule.parse(mRecurrence);
+    }
+
+    /**
+     * Makes the event a series repeating by a rule, or a single event if
+     * the rule is null, keeping the series end the queries use in step.
+     *
+     * @param rule The rule, or null.
+     */
+    public void setRecurrenceRule(RecurrenceRule rule) {
+        mRecurrence = rule == null ? null : rule.toString();
+        mSeriesEnd = rule == null ? mStartTime : rule.getUntil();
+    }
+
+    /**
+     * Returns one occurrence of a series as an event with the same id and
+     * rule, starting at the given time with its date to match. The time of
+     * day is the series' own, since occurrences keep its wall-clock time.
+     *
+     * @param startTime The start of the occurrence in epoch milliseconds.
+     * @return A new Event for the occurrence.
+     */
+    public Event occurrence(long startTime) {
+        Event event = new Event();
+        event.mId = mId;
+        event.mEventTitle = mEventTitle;
+        event.mEventTime = mEventTime;
+        event.mTimeZone = mTimeZone;
+        event.mRecurrence = mRecurrence;
+        event.mSeriesEnd = mSeriesEnd;
+        event.mStartTime = startTime;
+        event.mEventDate = startTime == mStartTime ? mEventDate
+                : EventTimes.formatDate(startTime, TimeZone.getTimeZone(mTimeZone));
+        return event;
+    }
+
+    /**
+     * Compares two (start time, id) keys in index order.
+     *
+     * @return A negative number, zero, or a positive number as the first key
+     *         is less than, equal to, or greater than the second.
+     */
+    public static int compareKeys(long startTime1, String id1, long startTime2, String id2) {
+        int result = Long.compare(startTime1, startTime2);
+        return result != 0 ? result : id1.compareTo(id2);
+    }
 }
\ No newline at end of file
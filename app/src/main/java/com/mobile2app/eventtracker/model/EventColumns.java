@@ -0,0 +1,439 @@
+package com.mobile2app.eventtracker.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list of events stored as columns instead of Event objects.
+ * Start times are kept in a long[] and every string field as an int
+ * reference into a shared StringPool, so an event costs a few array slots
+ * rather than an object and five strings, and scans over start times walk
+ * one contiguous array. Rows are handed out as small views over the
+ * columns; an Event is only built when one is needed for an edit.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public final class EventColumns extends AbstractList<EventColumns.Row> implements RandomAccess {
+
+    private final StringPool mPool;
+    private final long[] mStartTimes;
+    private final int[] mIds;
+    private final int[] mTitles;
+    private final int[] mDates;
+    private final int[] mTimes;
+    private final int[] mTimeZones;
+    private final int[] mRecurrences;
+    // Range of the arrays this list covers, so sub-ranges share the arrays
+    private final int mOffset;
+    private final int mSize;
+
+    /**
+     * A view of one event in the columns.
+     */
+    public static final class Row {
+        // Bits of changedFields: the displayed title, which includes how a series repeats
+        public static final int FIELD_TITLE = 1;
+        public static final int FIELD_DATE = 2;
+        public static final int FIELD_TIME = 4;
+
+        private final EventColumns mColumns;
+        private final int mIndex;
+
+        private Row(EventColumns columns, int index) {
+            mColumns = columns;
+            mIndex = index;
+        }
+
+        // Get the id of the event
+        public String getId() {
+            return mColumns.getId(mIndex);
+        }
+
+        // Get the title of the event
+        public String getEventTitle() {
+            return mColumns.getTitle(mIndex);
+        }
+
+        // Get the date of the event
+        public String getEventDate() {
+            return mColumns.getDate(mIndex);
+        }
+
+        // Get the time of the event
+        public String getEventTime() {
+            return mColumns.getTime(mIndex);
+        }
+
+        // Get the start of the event in epoch milliseconds
+        public long getStartTime() {
+            return mColumns.getStartTime(mIndex);
+        }
+
+        // Get the time zone id of the event
+        public String getTimeZone() {
+            return mColumns.getTimeZone(mIndex);
+        }
+
+        // Get the recurrence rule text of the event, or null if it does not repeat
+        public String getRecurrence() {
+            return mColumns.getRecurrence(mIndex);
+        }
+
+        // Build an Event holding the row's values
+        public Event toEvent() {
+            return mColumns.toEvent(mIndex);
+        }
+
+        /**
+         * Checks whether two rows are the same event. Rows from the same
+         * pool are compared by reference without reading the strings.
+         *
+         * @param other The row to compare with.
+         * @return True if both rows have the same id.
+         */
+        public boolean isSameEvent(Row other) {
+            if (mColumns.mPool == other.mColumns.mPool) {
+                return mColumns.idRef(mIndex) == other.mColumns.idRef(other.mIndex);
+            }
+            return getId().equals(other.getId());
+        }
+
+        /**
+         * Returns a number identifying the event among all rows built from
+         * the same pool: the reference of its id, which the pool never
+         * reuses, so it cannot collide the way a hash of the id could.
+         *
+         * @return The id's reference in the pool.
+         */
+        public long getStableId() {
+            return mColumns.idRef(mIndex);
+        }
+
+        /**
+         * Returns which displayed fields differ between two rows of the same
+         * event, so a view can rebind only those.
+         *
+         * @param other The row to compare with.
+         * @return A mask of FIELD_TITLE, FIELD_DATE, and FIELD_TIME; 0 if none differ.
+         */
+        public int changedFields(Row other) {
+            EventColumns a = mColumns;
+            EventColumns b = other.mColumns;
+            int i = a.mOffset + mIndex;
+            int j = b.mOffset + other.mIndex;
+            int changed = 0;
+            if (a.mPool == b.mPool) {
+                if (a.mTitles[i] != b.mTitles[j] || a.mRecurrences[i] != b.mRecurrences[j]) {
+                    changed |= FIELD_TITLE;
+                }
+                if (a.mDates[i] != b.mDates[j]) {
+                    changed |= FIELD_DATE;
+                }
+                if (a.mTimes[i] != b.mTimes[j]) {
+                    changed |= FIELD_TIME;
+                }
+                return changed;
+            }
+            if (!equalStrings(getEventTitle(), other.getEventTitle())
+                    || !equalStrings(getRecurrence(), other.getRecurrence())) {
+                changed |= FIELD_TITLE;
+            }
+            if (!equalStrings(getEventDate(), other.getEventDate())) {
+                changed |= FIELD_DATE;
+            }
+            if (!equalStrings(getEventTime(), other.getEventTime())) {
+                changed |= FIELD_TIME;
+            }
+            return changed;
+        }
+
+        /**
+         * Checks whether two rows show the same title, date, time, and recurrence.
+         *
+         * @param other The row to compare with.
+         * @return True if the displayed fields are equal.
+         */
+        public boolean hasSameContents(Row other) {
+            return changedFields(other) == 0;
+        }
+    }
+
+    /**
+     * Appends events to new columns. Not thread-safe; build on one thread,
+     * then share the immutable result.
+     */
+    public static final class Builder {
+        private final StringPool mPool;
+        private long[] mStartTimes;
+        private int[] mIds;
+        private int[] mTitles;
+        private int[] mDates;
+        private int[] mTimes;
+        private int[] mTimeZones;
+        private int[] mRecurrences;
+        private int mSize;
+
+        /**
+         * Creates a builder interning strings into a pool.
+         *
+         * @param pool     The pool the columns refer to.
+         * @param capacity The expected number of events.
+         */
+        public Builder(StringPool pool, int capacity) {
+            mPool = pool;
+            int size = Math.max(capacity, 1);
+            mStartTimes = new long[size];
+            mIds = new int[size];
+            mTitles = new int[size];
+            mDates = new int[size];
+            mTimes = new int[size];
+            mTimeZones = new int[size];
+            mRecurrences = new int[size];
+        }
+
+        // Append one event
+        public Builder add(Event event) {
+            ensureCapacity(mSize + 1);
+            mStartTimes[mSize] = event.getStartTime();
+            mIds[mSize] = mPool.intern(event.getId());
+            mTitles[mSize] = mPool.intern(event.getEventTitle());
+            mDates[mSize] = mPool.intern(event.getEventDate());
+            mTimes[mSize] = mPool.intern(event.getEventTime());
+            mTimeZones[mSize] = mPool.intern(event.getTimeZone());
+            mRecurrences[mSize] = mPool.intern(event.getRecurrence());
+            mSize++;
+            return this;
+        }
+
+        // Append a list of events
+        public Builder addAll(List<Event> events) {
+            ensureCapacity(mSize + events.size());
+            for (Event event : events) {
+                add(event);
+            }
+            return this;
+        }
+
+        /**
+         * Appends one row of columns built from the same pool by copying its references.
+         *
+         * @param columns The columns holding the row.
+         * @param index   The index of the row in the columns.
+         * @return This builder.
+         */
+        public Builder add(EventColumns columns, int index) {
+            if (columns.mPool != mPool) {
+                throw new IllegalArgumentException("Columns belong to a different pool");
+            }
+            columns.checkIndex(index);
+            ensureCapacity(mSize + 1);
+            int from = columns.mOffset + index;
+            mStartTimes[mSize] = columns.mStartTimes[from];
+            mIds[mSize] = columns.mIds[from];
+            mTitles[mSize] = columns.mTitles[from];
+            mDates[mSize] = columns.mDates[from];
+            mTimes[mSize] = columns.mTimes[from];
+            mTimeZones[mSize] = columns.mTimeZones[from];
+            mRecurrences[mSize] = columns.mRecurrences[from];
+            mSize++;
+            return this;
+        }
+
+        /**
+         * Appends columns built from the same pool by copying their arrays.
+         *
+         * @param columns The columns to append.
+         * @return This builder.
+         */
+        public Builder addAll(EventColumns columns) {
+            if (columns.mPool != mPool) {
+                throw new IllegalArgumentException("Columns belong to a different pool");
+            }
+            int count = columns.mSize;
+            ensureCapacity(mSize + count);
+            int from = columns.mOffset;
+            System.arraycopy(columns.mStartTimes, from, mStartTimes, mSize, count);
+            System.arraycopy(columns.mIds, from, mIds, mSize, count);
+            System.arraycopy(columns.mTitles, from, mTitles, mSize, count);
+            System.arraycopy(columns.mDates, from, mDates, mSize, count);
+            System.arraycopy(columns.mTimes, from, mTimes, mSize, count);
+            System.arraycopy(columns.mTimeZones, from, mTimeZones, mSize, count);
+            System.arraycopy(columns.mRecurrences, from, mRecurrences, mSize, count);
+            mSize += count;
+            return this;
+        }
+
+        // Build the columns; the builder must not be used afterwards
+        public EventColumns build() {
+            return new EventColumns(mPool, mStartTimes, mIds, mTitles, mDates, mTimes, mTimeZones,
+                    mRecurrences, 0, mSize);
+        }
+
+        // Grows every column to hold at least the given number of events
+        private void ensureCapacity(int capacity) {
+            if (capacity <= mStartTimes.length) {
+                return;
+            }
+            int size = Math.max(capacity, mStartTimes.length * 2);
+            mStartTimes = Arrays.copyOf(mStartTimes, size);
+            mIds = Arrays.copyOf(mIds, size);
+            mTitles = Arrays.copyOf(mTitles, size);
+            mDates = Arrays.copyOf(mDates, size);
+            mTimes = Arrays.copyOf(mTimes, size);
+            mTimeZones = Arrays.copyOf(mTimeZones, size);
+            mRecurrences = Arrays.copyOf(mRecurrences, size);
+        }
+    }
+
+    private EventColumns(StringPool pool, long[] startTimes, int[] ids, int[] titles, int[] dates,
+                         int[] times, int[] timeZones, int[] recurrences, int offset, int size) {
+        mPool = pool;
+        mStartTimes = startTimes;
+        mIds = ids;
+        mTitles = titles;
+        mDates = dates;
+        mTimes = times;
+        mTimeZones = timeZones;
+        mRecurrences = recurrences;
+        mOffset = offset;
+        mSize = size;
+    }
+
+    /**
+     * Builds columns holding a list of events.
+     *
+     * @param pool   The pool the columns refer to.
+     * @param events The events, in the order they are listed.
+     * @return The columns.
+     */
+    public static EventColumns of(StringPool pool, List<Event> events) {
+        return new Builder(pool, events.size()).addAll(events).build();
+    }
+
+    // Get the pool the string columns refer to
+    public StringPool getPool() {
+        return mPool;
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public Row get(int index) {
+        checkIndex(index);
+        return new Row(this, index);
+    }
+
+    // Get the start time of the event at an index
+    public long getStartTime(int index) {
+        checkIndex(index);
+        return mStartTimes[mOffset + index];
+    }
+
+    // Get the id of the event at an index
+    public String getId(int index) {
+        return mPool.get(idRef(index));
+    }
+
+    // Get the title of the event at an index
+    public String getTitle(int index) {
+        checkIndex(index);
+        return mPool.get(mTitles[mOffset + index]);
+    }
+
+    // Get the date of the event at an index
+    public String getDate(int index) {
+        checkIndex(index);
+        return mPool.get(mDates[mOffset + index]);
+    }
+
+    // Get the time of the event at an index
+    public String getTime(int index) {
+        checkIndex(index);
+        return mPool.get(mTimes[mOffset + index]);
+    }
+
+    // Get the time zone id of the event at an index
+    public String getTimeZone(int index) {
+        checkIndex(index);
+        return mPool.get(mTimeZones[mOffset + index]);
+    }
+
+    // Get the recurrence rule text of the event at an index, or null
+    public String getRecurrence(int index) {
+        checkIndex(index);
+        return mPool.get(mRecurrences[mOffset + index]);
+    }
+
+    /**
+     * Builds an Event holding the values at an index, without parsing the
+     * start time again.
+     *
+     * @param index The index of the event.
+     * @return A new Event.
+     */
+    public Event toEvent(int index) {
+        Event event = new Event();
+        event.setId(getId(index));
+        event.setEventTitle(getTitle(index));
+        event.setEventDate(getDate(index));
+        event.setEventTime(getTime(index));
+        event.setTimeZone(getTimeZone(index));
+        event.setStartTime(getStartTime(index));
+        event.setRecurrenceRule(RecurrenceRule.parse(getRecurrence(index)));
+        return event;
+    }
+
+    /**
+     * Returns the events starting within a time range, sharing these
+     * columns. The columns must be in start time order.
+     *
+     * @param from Inclusive start of the range in epoch milliseconds.
+     * @param to   Exclusive end of the range in epoch milliseconds.
+     * @return A view of the events in the range.
+     */
+    public EventColumns between(long from, long to) {
+        int start = lowerBound(from);
+        int end = Math.max(start, lowerBound(to));
+        return new EventColumns(mPool, mStartTimes, mIds, mTitles, mDates, mTimes, mTimeZones,
+                mRecurrences, mOffset + start, end - start);
+    }
+
+    // Returns the index of the first event starting at or after a time
+    private int lowerBound(long startTime) {
+        int low = 0;
+        int high = mSize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mStartTimes[mOffset + mid] < startTime) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Returns the pool reference of the id at an index
+    private int idRef(int index) {
+        checkIndex(index);
+        return mIds[mOffset + index];
+    }
+
+    // Fails for an index outside this list, which may be a sub-range of the arrays
+    private void checkIndex(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + mSize);
+        }
+    }
+
+    // Compares two strings that may be null
+    private static boolean equalStrings(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,224 @@
+package com.mobile2app.eventtracker.model;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * Index from local calendar days to the events on them, for drawing a
+ * month without reading the events table. Built once from the start times
+ * of every event and then kept current by applying each added, edited, or
+ * deleted event, so the cost of a change is that of the event changed.
+ *
+ * <p>Days are numbered from the epoch in the index's time zone. Single
+ * events are filed under the day they start on, with a reverse map so an
+ * edit or delete finds the day it leaves; counting a day is one lookup.
+ * Series would occupy every day they repeat on, so they are kept aside and
+ * expanded over the window asked for, and the expansion is reused until a
+ * series changes or another window is asked for. Not thread safe.</p>
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public final class EventDayIndex {
+
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    // The schedule of a series
+    private static final class Series {
+        final long mStartTime;
+        final RecurrenceRule mRule;
+        final TimeZone mZone;
+
+        Series(long startTime, RecurrenceRule rule, TimeZone zone) {
+            mStartTime = startTime;
+            mRule = rule;
+            mZone = zone;
+        }
+    }
+
+    private final TimeZone mZone;
+    private final Calendar mUtc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+    private final Calendar mLocal;
+    // Ids of the single events starting on each day, by day number
+    private final Map<Long, Set<String>> mDays = new HashMap<>();
+    // Day number of each single event, by id
+    private final Map<String, Long> mDayOf = new HashMap<>();
+    // Series by id
+    private final Map<String, Series> mSeries = new HashMap<>();
+
+    // Occurrences of every series per day of the last window counted, or null once stale
+    private int[] mSeriesCounts;
+    private long mSeriesFirstDay;
+
+    /**
+     * Creates an empty index of the days of a time zone.
+     *
+     * @param zone The time zone whose midnights divide the days.
+     */
+    public EventDayIndex(TimeZone zone) {
+        mZone = zone;
+        mLocal = Calendar.getInstance(zone);
+    }
+
+    // Get the time zone whose midnights divide the days
+    public TimeZone getTimeZone() {
+        return mZone;
+    }
+
+    /**
+     * Adds an event, or moves it if already indexed.
+     *
+     * @param id         The id of the event.
+     * @param startTime  The start of the event, or of the first occurrence of a series.
+     * @param recurrence The rule of a series, or null for a single event.
+     * @param timeZone   The time zone id a series repeats in.
+     */
+    public void put(String id, long startTime, String recurrence, String timeZone) {
+        remove(id);
+        RecurrenceRule rule = null;
+        try {
+            rule = RecurrenceRule.parse(recurrence);
+        } catch (IllegalArgumentException e) {
+            // Shown as a single event, as the list does
+        }
+        if (rule != null) {
+            mSeries.put(id, new Series(startTime, rule, TimeZone.getTimeZone(timeZone)));
+            mSeriesCounts = null;
+            return;
+        }
+        if (startTime == EventTimes.UNKNOWN_START_TIME) {
+            return;
+        }
+        long day = dayOf(startTime);
+        Set<String> ids = mDays.get(day);
+        if (ids == null) {
+            ids = new LinkedHashSet<>();
+            mDays.put(day, ids);
+        }
+        ids.add(id);
+        mDayOf.put(id, day);
+    }
+
+    /**
+     * Removes an event if it is indexed.
+     *
+     * @param id The id of the event.
+     */
+    public void remove(String id) {
+        if (mSeries.remove(id) != null) {
+            mSeriesCounts = null;
+            return;
+        }
+        Long day = mDayOf.remove(id);
+        if (day == null) {
+            return;
+        }
+        Set<String> ids = mDays.get(day);
+        ids.remove(id);
+        if (ids.isEmpty()) {
+            mDays.remove(day);
+        }
+    }
+
+    // Removes every event
+    public void clear() {
+        mDays.clear();
+        mDayOf.clear();
+        mSeries.clear();
+        mSeriesCounts = null;
+    }
+
+    // Get the number of events and series indexed
+    public int size() {
+        return mDayOf.size() + mSeries.size();
+    }
+
+    /**
+     * Counts the events on each day of a window, such as the weeks a month
+     * view shows.
+     *
+     * @param firstDay The number of the first day.
+     * @param days     The number of days.
+     * @return The number of events and occurrences starting on each day.
+     */
+    public int[] countDays(long firstDay, int days) {
+        int[] seriesCounts = seriesCounts(firstDay, days);
+        int[] counts = new int[days];
+        for (int i = 0; i < days; i++) {
+            Set<String> ids = mDays.get(firstDay + i);
+            counts[i] = (ids == null ? 0 : ids.size()) + seriesCounts[i];
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the ids of the events on a day: single events in the order
+     * they were indexed, then series with an occurrence that day.
+     *
+     * @param day The number of the day.
+     * @return The ids.
+     */
+    public List<String> idsOn(long day) {
+        Set<String> ids = mDays.get(day);
+        List<String> result = ids == null ? new ArrayList<>() : new ArrayList<>(ids);
+        long from = startOfDay(day);
+        long to = startOfDay(day + 1);
+        for (Map.Entry<String, Series> entry : mSeries.entrySet()) {
+            Series series = entry.getValue();
+            if (series.mRule.occurrences(series.mStartTime, series.mZone, from, to).hasNext()) {
+                result.add(entry.getKey());
+            }
+        }
+        return result.isEmpty() ? Collections.<String>emptyList() : result;
+    }
+
+    /**
+     * Returns the number of the day holding a time.
+     *
+     * @param time A time in epoch milliseconds.
+     * @return The number of days between the epoch and that day.
+     */
+    public long dayOf(long time) {
+        return Math.floorDiv(time + mZone.getOffset(time), DAY_MS);
+    }
+
+    /**
+     * Returns the first instant of a day.
+     *
+     * @param day The number of the day.
+     * @return Its midnight in epoch milliseconds.
+     */
+    public long startOfDay(long day) {
+        mUtc.setTimeInMillis(day * DAY_MS);
+        mLocal.clear();
+        mLocal.set(mUtc.get(Calendar.YEAR), mUtc.get(Calendar.MONTH), mUtc.get(Calendar.DAY_OF_MONTH));
+        return mLocal.getTimeInMillis();
+    }
+
+    // Returns the occurrences of every series per day of a window, expanding them if stale
+    private int[] seriesCounts(long firstDay, int days) {
+        if (mSeriesCounts != null && mSeriesFirstDay == firstDay && mSeriesCounts.length == days) {
+            return mSeriesCounts;
+        }
+        int[] counts = new int[days];
+        long from = startOfDay(firstDay);
+        long to = startOfDay(firstDay + days);
+        for (Series series : mSeries.values()) {
+            PrimitiveIterator.OfLong starts = series.mRule.occurrences(series.mStartTime, series.mZone, from, to);
+            while (starts.hasNext()) {
+                counts[(int) (dayOf(starts.nextLong()) - firstDay)]++;
+            }
+        }
+        mSeriesCounts = counts;
+        mSeriesFirstDay = firstDay;
+        return counts;
+    }
+}
@@ -0,0 +1,28 @@
+package com.mobile2app.eventtracker.model;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+
+/**
+ * Full-text index over event titles. Uses the Event table as external
+ * content, so the index stores only tokens and Room keeps it in sync with
+ * Event through insert, update, and delete triggers.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+@Fts4(contentEntity = Event.class)
+@Entity(tableName = "EventFts")
+public class EventFts {
+
+    @ColumnInfo(name = "title")
+    private String mTitle;
+
+    // Get the indexed title
+    public String getTitle() { return mTitle; }
+    // Set the indexed title
+    public void setTitle(String title) {
+        mTitle = title;
+    }
+}
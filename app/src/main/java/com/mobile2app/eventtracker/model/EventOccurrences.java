@@ -0,0 +1,119 @@
+package com.mobile2app.eventtracker.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.PriorityQueue;
+import java.util.TimeZone;
+
+/**
+ * Reads the occurrences of a window out of the rows a range query returns:
+ * single events starting in the window and series overlapping it. Series
+ * are expanded through their rule's iterator and merged with the single
+ * events in start time order, so only the occurrences actually returned
+ * are ever built and a series repeating for years costs nothing beyond
+ * the window read.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public final class EventOccurrences {
+
+    private EventOccurrences() {
+    }
+
+    // The next start time of one row within the window
+    private static final class Cursor {
+        final Event mRow;
+        // Null for a single event, which has one start time
+        final PrimitiveIterator.OfLong mStarts;
+        long mStartTime;
+
+        Cursor(Event row, PrimitiveIterator.OfLong starts) {
+            mRow = row;
+            mStarts = starts;
+        }
+
+        // Moves to the next start time; returns false when there is none
+        boolean advance() {
+            if (mStarts == null || !mStarts.hasNext()) {
+                return false;
+            }
+            mStartTime = mStarts.nextLong();
+            return true;
+        }
+
+        // The event at the current start time
+        Event current() {
+            return mStarts == null ? mRow : mRow.occurrence(mStartTime);
+        }
+    }
+
+    /**
+     * Returns the first occurrences starting within a window, in
+     * (start time, id) order.
+     *
+     * @param rows  Single events starting in the window and series overlapping it, in any order.
+     * @param from  Inclusive start of the window in epoch milliseconds.
+     * @param to    Exclusive end of the window in epoch milliseconds.
+     * @param limit The most occurrences to return.
+     * @return Single events as given and new events for series occurrences.
+     */
+    public static List<Event> between(List<Event> rows, long from, long to, int limit) {
+        PriorityQueue<Cursor> cursors = new PriorityQueue<>(Math.max(rows.size(), 1),
+                (a, b) -> Event.compareKeys(a.mStartTime, a.mRow.getId(), b.mStartTime, b.mRow.getId()));
+        for (Event row : rows) {
+            RecurrenceRule rule = row.getRecurrenceRule();
+            if (rule == null) {
+                if (row.getStartTime() >= from && row.getStartTime() < to) {
+                    Cursor cursor = new Cursor(row, null);
+                    cursor.mStartTime = row.getStartTime();
+                    cursors.add(cursor);
+                }
+                continue;
+            }
+            Cursor cursor = new Cursor(row, rule.occurrences(row.getStartTime(),
+                    TimeZone.getTimeZone(row.getTimeZone()), from, to));
+            if (cursor.advance()) {
+                cursors.add(cursor);
+            }
+        }
+        List<Event> occurrences = new ArrayList<>(Math.min(limit, cursors.size()));
+        while (occurrences.size() < limit && !cursors.isEmpty()) {
+            Cursor cursor = cursors.poll();
+            occurrences.add(cursor.current());
+            if (cursor.advance()) {
+                cursors.add(cursor);
+            }
+        }
+        return occurrences;
+    }
+
+    /**
+     * Counts the occurrences starting within a window without building them.
+     *
+     * @param rows Single events and series, in any order.
+     * @param from Inclusive start of the window in epoch milliseconds.
+     * @param to   Exclusive end of the window in epoch milliseconds.
+     * @return The number of occurrences.
+     */
+    public static int count(List<Event> rows, long from, long to) {
+        int count = 0;
+        for (Event row : rows) {
+            RecurrenceRule rule = row.getRecurrenceRule();
+            if (rule == null) {
+                if (row.getStartTime() >= from && row.getStartTime() < to) {
+                    count++;
+                }
+                continue;
+            }
+            PrimitiveIterator.OfLong starts = rule.occurrences(row.getStartTime(),
+                    TimeZone.getTimeZone(row.getTimeZone()), from, to);
+            while (starts.hasNext()) {
+                starts.nextLong();
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,138 @@
+package com.mobile2app.eventtracker.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * An event matched by a full-text search, reduced to its chronological
+ * key and relevance score so every match can be ranked without loading
+ * whole events.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public class EventSearchResult {
+
+    // Orders the most relevant match first, then chronologically
+    public static final Comparator<EventSearchResult> RANK_ORDER = (a, b) -> {
+        int result = Double.compare(b.mScore, a.mScore);
+        return result != 0 ? result : Event.compareKeys(a.mStartTime, a.mId, b.mStartTime, b.mId);
+    };
+
+    private final long mStartTime;
+    private final String mId;
+    private final double mScore;
+
+    /**
+     * Creates a scored match.
+     *
+     * @param startTime The start time of the matched event.
+     * @param id        The id of the matched event.
+     * @param matchInfo The raw FTS4 matchinfo(..., 'pcnx') blob of the match.
+     */
+    public EventSearchResult(long startTime, String id, byte[] matchInfo) {
+        mStartTime = startTime;
+        mId = id;
+        mScore = score(matchInfo);
+    }
+
+    // Return the id of the matched event
+    public String getId() {
+        return mId;
+    }
+
+    // Return the relevance score, higher is better
+    public double getScore() {
+        return mScore;
+    }
+
+    /**
+     * Scores a match with a TF-IDF sum over the query phrases: each phrase
+     * contributes its hits in this title weighted by how rare the phrase is
+     * across all titles. matchinfo is an array of native-order 32-bit ints,
+     * little-endian on Android devices:
+     * phrase count, column count, row count, then three ints per phrase and
+     * column of which the first is the hit count in this row and the third
+     * the number of rows with a hit.
+     *
+     * @param matchInfo The raw matchinfo blob, may be null.
+     * @return The relevance score, higher is better.
+     */
+    public static double score(byte[] matchInfo) {
+        if (matchInfo == null || matchInfo.length < 12) {
+            return 0;
+        }
+        int phrases = readInt(matchInfo, 0);
+        int columns = readInt(matchInfo, 1);
+        int rows = readInt(matchInfo, 2);
+        double score = 0;
+        for (int phrase = 0; phrase < phrases; phrase++) {
+            for (int column = 0; column < columns; column++) {
+                int base = 3 + 3 * (phrase * columns + column);
+                if ((base + 3) * 4 > matchInfo.length) {
+                    return score;
+                }
+                int hits = readInt(matchInfo, base);
+                int rowsWithHits = readInt(matchInfo, base + 2);
+                if (hits > 0 && rowsWithHits > 0) {
+                    score += hits * Math.log(1.0 + (double) rows / rowsWithHits);
+                }
+            }
+        }
+        return score;
+    }
+
+    // Reads the n-th little-endian int of a matchinfo blob
+    private static int readInt(byte[] matchInfo, int n) {
+        int offset = n * 4;
+        return (matchInfo[offset] & 0xff)
+                | (matchInfo[offset + 1] & 0xff) << 8
+                | (matchInfo[offset + 2] & 0xff) << 16
+                | (matchInfo[offset + 3] & 0xff) << 24;
+    }
+
+    /**
+     * Keeps the best matches seen so far in a heap bounded by the result
+     * limit, so every match of a short prefix can be ranked in fixed memory.
+     */
+    public static class TopResults {
+
+        private final int mLimit;
+        // Worst kept match at the head so it is the one replaced
+        private final PriorityQueue<EventSearchResult> mHeap;
+
+        /**
+         * @param limit The most matches to keep.
+         */
+        public TopResults(int limit) {
+            mLimit = limit;
+            mHeap = new PriorityQueue<>(Math.max(1, limit), Collections.reverseOrder(RANK_ORDER));
+        }
+
+        /**
+         * Keeps a match if it ranks among the best seen so far.
+         *
+         * @param result The scored match.
+         */
+        public void offer(EventSearchResult result) {
+            if (mHeap.size() < mLimit) {
+                mHeap.add(result);
+            } else if (mLimit > 0 && RANK_ORDER.compare(result, mHeap.peek()) < 0) {
+                mHeap.poll();
+                mHeap.add(result);
+            }
+        }
+
+        /**
+         * @return The kept matches, most relevant first.
+         */
+        public List<EventSearchResult> toList() {
+            List<EventSearchResult> results = new ArrayList<>(mHeap);
+            Collections.sort(results, RANK_ORDER);
+            return results;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.mobile2app.eventtracker.model;
+
+import androidx.room.ColumnInfo;
+
+/**
+ * The id and start time of an event, read without the rest of the row
+ * when only the schedule is needed. For a series the start time is that
+ * of its first occurrence, and the rule gives the others.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public class EventStartTime {
+
+    @ColumnInfo(name = "id")
+    public String id;
+
+    // Start of the event in epoch milliseconds
+    @ColumnInfo(name = "start_time")
+    public long startTime;
+
+    // Recurrence rule text of a series, or null for a single event
+    @ColumnInfo(name = "recurrence")
+    public String recurrence;
+
+    // Time zone id the series repeats in
+    @ColumnInfo(name = "time_zone")
+    public String timeZone;
+}
@@ -0,0 +1,89 @@
+package com.mobile2app.eventtracker.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Number of single events starting in one local day, week, or month. The
+ * table is kept current by triggers on Event, so statistics are read from
+ * one row per bucket rather than by grouping the events. Buckets are keyed
+ * by text that sorts in time order: "yyyy-MM-dd" for a day, the date of
+ * its Monday for a week, and "yyyy-MM" for a month, all in the device's
+ * time zone. Series are not counted here, since their occurrences are
+ * unbounded; readers expand the series overlapping a window instead.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+@Entity(primaryKeys = {"period", "bucket"})
+public class EventStat {
+
+    // Period of a bucket holding one day
+    public static final String PERIOD_DAY = "D";
+    // Period of a bucket holding one week, starting on Monday
+    public static final String PERIOD_WEEK = "W";
+    // Period of a bucket holding one calendar month
+    public static final String PERIOD_MONTH = "M";
+
+    @NonNull
+    @ColumnInfo(name = "period")
+    private String mPeriod = PERIOD_DAY;
+    @NonNull
+    @ColumnInfo(name = "bucket")
+    private String mBucket = "";
+    @ColumnInfo(name = "count")
+    private int mCount;
+
+    // Get the period of the bucket
+    @NonNull
+    public String getPeriod() { return mPeriod; }
+    // Set the period of the bucket
+    public void setPeriod(@NonNull String period) {
+        mPeriod = period;
+    }
+
+    // Get the key of the bucket
+    @NonNull
+    public String getBucket() { return mBucket; }
+    // Set the key of the bucket
+    public void setBucket(@NonNull String bucket) {
+        mBucket = bucket;
+    }
+
+    // Get the number of events in the bucket
+    public int getCount() { return mCount; }
+    // Set the number of events in the bucket
+    public void setCount(int count) {
+        mCount = count;
+    }
+
+    /**
+     * Returns the key of the bucket of a period holding a time, matching
+     * the keys the triggers compute.
+     *
+     * @param period PERIOD_DAY, PERIOD_WEEK, or PERIOD_MONTH.
+     * @param time   A time in epoch milliseconds.
+     * @param zone   The device's time zone.
+     * @return The bucket key.
+     */
+    public static String bucketOf(String period, long time, TimeZone zone) {
+        Calendar calendar = Calendar.getInstance(zone);
+        calendar.setTimeInMillis(time);
+        if (PERIOD_MONTH.equals(period)) {
+            return String.format(Locale.US, "%04d-%02d",
+                    calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1);
+        }
+        if (PERIOD_WEEK.equals(period)) {
+            // Back to Monday, as SQLite's "-6 days", "weekday 1" does
+            int sinceMonday = (calendar.get(Calendar.DAY_OF_WEEK) - Calendar.MONDAY + 7) % 7;
+            calendar.add(Calendar.DAY_OF_MONTH, -sinceMonday);
+        }
+        return String.format(Locale.US, "%04d-%02d-%02d", calendar.get(Calendar.YEAR),
+                calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DAY_OF_MONTH));
+    }
+}
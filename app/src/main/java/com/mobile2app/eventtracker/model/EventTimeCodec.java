@@ -0,0 +1,383 @@
+package com.mobile2app.eventtracker.model;
+
+import java.text.DateFormat;
+import java.text.DateFormatSymbols;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Converts between event dates and times packed into one number and their
+ * text. Two kinds of text are written: the stored "MM/dd/yyyy" date and
+ * "h:mmAM" time kept in Room and Firebase, and display text in the order
+ * and clock of the user's locale. Packed values are decimal
+ * yyyyMMddHHmm, so they sort in time order and read back at a glance.
+ * <p>
+ * Stored times keep the reading of the strings the pickers used to write:
+ * an hour below twelve before AM is that hour of the morning, "0:xxAM"
+ * included, and "12:xxAM" is noon, since the old pickers wrote noon that
+ * way. New stored times write midnight as "0:xxAM" and noon as "12:xxPM",
+ * which read the same under both the old and the usual rules; only display
+ * text shows midnight as 12 AM.
+ * </p>
+ * <p>
+ * An instance holds the field order, separator, and AM/PM markers of one
+ * locale, so writing display text into a caller's buffer allocates nothing.
+ * </p>
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public final class EventTimeCodec {
+
+    // Returned when a date string cannot be parsed
+    public static final long UNKNOWN = -1L;
+    // Length of a buffer that holds any display text of any instance
+    public static final int BUFFER_LENGTH = 32;
+
+    // Codec of the last locale and clock asked for
+    private static volatile EventTimeCodec mEventTimeCodec;
+
+    private final Locale mLocale;
+    private final boolean mIs24Hour;
+    // Fields of a date in the locale's order: 'y', 'M', and 'd'
+    private final char[] mDateOrder;
+    private final char mDateSeparator;
+    private final char[] mAm;
+    private final char[] mPm;
+
+    private EventTimeCodec(Locale locale, boolean is24Hour) {
+        mLocale = locale;
+        mIs24Hour = is24Hour;
+        String pattern = "MM/dd/yyyy";
+        DateFormat format = DateFormat.getDateInstance(DateFormat.SHORT, locale);
+        if (format instanceof SimpleDateFormat) {
+            pattern = ((SimpleDateFormat) format).toPattern();
+        }
+        mDateOrder = new char[3];
+        char separator = '/';
+        int fields = 0;
+        for (int i = 0; i < pattern.length() && fields < 3; i++) {
+            char c = pattern.charAt(i);
+            if ((c == 'y' || c == 'M' || c == 'd') && (fields == 0 || mDateOrder[fields - 1] != c)) {
+                mDateOrder[fields++] = c;
+            } else if (fields == 1 && c != '\'' && c != ' ' && !Character.isLetter(c)) {
+                separator = c;
+            }
+        }
+        if (fields < 3) {
+            mDateOrder[0] = 'M';
+            mDateOrder[1] = 'd';
+            mDateOrder[2] = 'y';
+        }
+        mDateSeparator = separator;
+        String[] amPm = DateFormatSymbols.getInstance(locale).getAmPmStrings();
+        mAm = marker(amPm[0]);
+        mPm = marker(amPm[1]);
+    }
+
+    /**
+     * Returns the codec of a locale and clock, reusing the last one when
+     * neither changed.
+     *
+     * @param locale   The locale display text is written for.
+     * @param is24Hour Whether the user chose a 24-hour clock.
+     * @return The codec.
+     */
+    public static EventTimeCodec getInstance(Locale locale, boolean is24Hour) {
+        EventTimeCodec codec = mEventTimeCodec;
+        if (codec == null || codec.mIs24Hour != is24Hour || !codec.mLocale.equals(locale)) {
+            codec = new EventTimeCodec(locale, is24Hour);
+            mEventTimeCodec = codec;
+        }
+        return codec;
+    }
+
+    // Trims an AM/PM marker to what fits a buffer after the time
+    private static char[] marker(String marker) {
+        return marker.substring(0, Math.min(marker.length(), BUFFER_LENGTH - 6)).toCharArray();
+    }
+
+    /**
+     * Packs a date and time of day.
+     *
+     * @param year       The year.
+     * @param month      The month, 1 to 12.
+     * @param dayOfMonth The day of the month.
+     * @param hourOfDay  The hour, 0 to 23.
+     * @param minute     The minute.
+     * @return The packed value.
+     */
+    public static long pack(int year, int month, int dayOfMonth, int hourOfDay, int minute) {
+        return (((year * 100L + month) * 100 + dayOfMonth) * 100 + hourOfDay) * 100 + minute;
+    }
+
+    /**
+     * Packs the date and time of day at an instant.
+     *
+     * @param time A time in epoch milliseconds.
+     * @param zone The time zone the date and time are read in.
+     * @return The packed value.
+     */
+    public static long pack(long time, TimeZone zone) {
+        Calendar calendar = Calendar.getInstance(zone);
+        calendar.setTimeInMillis(time);
+        return pack(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1,
+                calendar.get(Calendar.DAY_OF_MONTH), calendar.get(Calendar.HOUR_OF_DAY),
+                calendar.get(Calendar.MINUTE));
+    }
+
+    // Get the year of a packed value
+    public static int year(long packed) {
+        return (int) (packed / 100000000L);
+    }
+
+    // Get the month, 1 to 12, of a packed value
+    public static int month(long packed) {
+        return (int) (packed / 1000000L % 100);
+    }
+
+    // Get the day of the month of a packed value
+    public static int dayOfMonth(long packed) {
+        return (int) (packed / 10000L % 100);
+    }
+
+    // Get the hour of day, 0 to 23, of a packed value
+    public static int hourOfDay(long packed) {
+        return (int) (packed / 100L % 100);
+    }
+
+    // Get the minute of a packed value
+    public static int minute(long packed) {
+        return (int) (packed % 100);
+    }
+
+    /**
+     * Parses the stored date and time strings of an event. Nothing is
+     * allocated, so the Room migration can backfill large tables and list
+     * rows can be bound from their strings.
+     *
+     * @param date The "MM/dd/yyyy" date of the event.
+     * @param time The "h:mmAM" time of the event, may be null or empty for midnight.
+     * @return The packed value, or UNKNOWN when the date cannot be parsed.
+     */
+    public static long parse(CharSequence date, CharSequence time) {
+        if (date == null) {
+            return UNKNOWN;
+        }
+        int firstSlash = indexOf(date, '/', 0);
+        int secondSlash = firstSlash < 0 ? -1 : indexOf(date, '/', firstSlash + 1);
+        if (secondSlash < 0) {
+            return UNKNOWN;
+        }
+        int month = parseDigits(date, 0, firstSlash);
+        int day = parseDigits(date, firstSlash + 1, secondSlash);
+        int year = parseDigits(date, secondSlash + 1, date.length());
+        if (month < 1 || month > 12 || day < 1 || day > 31 || year < 0) {
+            return UNKNOWN;
+        }
+
+        // A missing or malformed time is midnight
+        int time100 = parseTime(time);
+        int hourOfDay = time100 < 0 ? 0 : time100 / 100;
+        int minute = time100 < 0 ? 0 : time100 % 100;
+        return pack(year, month, day, hourOfDay, minute);
+    }
+
+    // Parses a stored time as hour of day times 100 plus minute, or -1 when malformed
+    private static int parseTime(CharSequence time) {
+        int colon = time == null ? -1 : indexOf(time, ':', 0);
+        if (colon <= 0) {
+            return -1;
+        }
+        int end = colon + 1;
+        while (end < time.length() && Character.isDigit(time.charAt(end))) {
+            end++;
+        }
+        int hour = parseDigits(time, 0, colon);
+        int minute = parseDigits(time, colon + 1, end);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+            return -1;
+        }
+        boolean pm = end + 1 < time.length()
+                && Character.toUpperCase(time.charAt(end)) == 'P'
+                && Character.toUpperCase(time.charAt(end + 1)) == 'M';
+        return (pm && hour < 12 ? hour + 12 : hour) * 100 + minute;
+    }
+
+    /**
+     * Writes the stored "MM/dd/yyyy" text of a date, as the date pickers save it.
+     *
+     * @param year       The year.
+     * @param month      The month, 1 to 12.
+     * @param dayOfMonth The day of the month.
+     * @return The date string.
+     */
+    public static String storedDate(int year, int month, int dayOfMonth) {
+        char[] date = new char[10];
+        putTwoDigits(date, 0, month);
+        date[2] = '/';
+        putTwoDigits(date, 3, dayOfMonth);
+        date[5] = '/';
+        putTwoDigits(date, 6, year / 100 % 100);
+        putTwoDigits(date, 8, year % 100);
+        return new String(date);
+    }
+
+    // Writes the stored date of a packed value
+    public static String storedDate(long packed) {
+        return storedDate(year(packed), month(packed), dayOfMonth(packed));
+    }
+
+    /**
+     * Writes the stored "h:mmAM" text of a time of day, as the time pickers
+     * save it: midnight as "0:mmAM" and noon as "12:mmPM", see the class
+     * comment.
+     *
+     * @param hourOfDay The hour, 0 to 23.
+     * @param minute    The minute.
+     * @return The time string.
+     */
+    public static String storedTime(int hourOfDay, int minute) {
+        char[] time = new char[7];
+        int hour = hourOfDay > 12 ? hourOfDay - 12 : hourOfDay;
+        int at = 0;
+        if (hour >= 10) {
+            time[at++] = '1';
+        }
+        time[at++] = (char) ('0' + hour % 10);
+        time[at++] = ':';
+        putTwoDigits(time, at, minute);
+        at += 2;
+        time[at++] = hourOfDay < 12 ? 'A' : 'P';
+        time[at++] = 'M';
+        return new String(time, 0, at);
+    }
+
+    // Writes the stored time of a packed value
+    public static String storedTime(long packed) {
+        return storedTime(hourOfDay(packed), minute(packed));
+    }
+
+    /**
+     * Writes the display text of the date of a packed value in the
+     * locale's order, with a four digit year.
+     *
+     * @param packed The packed value.
+     * @param out    A buffer of at least BUFFER_LENGTH chars.
+     * @return The number of chars written.
+     */
+    public int formatDate(long packed, char[] out) {
+        int at = 0;
+        for (int i = 0; i < mDateOrder.length; i++) {
+            if (i > 0) {
+                out[at++] = mDateSeparator;
+            }
+            if (mDateOrder[i] == 'y') {
+                int year = year(packed);
+                putTwoDigits(out, at, year / 100 % 100);
+                putTwoDigits(out, at + 2, year % 100);
+                at += 4;
+            } else {
+                putTwoDigits(out, at, mDateOrder[i] == 'M' ? month(packed) : dayOfMonth(packed));
+                at += 2;
+            }
+        }
+        return at;
+    }
+
+    /**
+     * Writes the display text of the time of a packed value: "HH:mm" on a
+     * 24-hour clock, otherwise "h:mm" and the locale's AM or PM marker,
+     * with 12 for the midnight and noon hours.
+     *
+     * @param packed The packed value.
+     * @param out    A buffer of at least BUFFER_LENGTH chars.
+     * @return The number of chars written.
+     */
+    public int formatTime(long packed, char[] out) {
+        int hourOfDay = hourOfDay(packed);
+        int at = 0;
+        if (mIs24Hour) {
+            putTwoDigits(out, at, hourOfDay);
+            at += 2;
+        } else {
+            int hour = hourOfDay % 12 == 0 ? 12 : hourOfDay % 12;
+            if (hour >= 10) {
+                out[at++] = '1';
+            }
+            out[at++] = (char) ('0' + hour % 10);
+        }
+        out[at++] = ':';
+        putTwoDigits(out, at, minute(packed));
+        at += 2;
+        if (!mIs24Hour) {
+            char[] marker = hourOfDay < 12 ? mAm : mPm;
+            out[at++] = ' ';
+            System.arraycopy(marker, 0, out, at, marker.length);
+            at += marker.length;
+        }
+        return at;
+    }
+
+    /**
+     * Returns the display text of a stored date, or the stored text itself
+     * when it cannot be parsed. For messages and other text built once;
+     * list rows write into a buffer with formatDate instead.
+     */
+    public String displayDate(String date) {
+        long packed = parse(date, null);
+        if (packed == UNKNOWN) {
+            return date;
+        }
+        char[] out = new char[BUFFER_LENGTH];
+        return new String(out, 0, formatDate(packed, out));
+    }
+
+    /**
+     * Returns the display text of a stored time, or the stored text itself
+     * when it cannot be parsed.
+     */
+    public String displayTime(String time) {
+        int time100 = parseTime(time);
+        if (time100 < 0) {
+            return time;
+        }
+        char[] out = new char[BUFFER_LENGTH];
+        // A time without a date packs as its hour times 100 plus its minute
+        return new String(out, 0, formatTime(time100, out));
+    }
+
+    // Finds a char in a sequence, returning -1 when absent
+    private static int indexOf(CharSequence s, char c, int from) {
+        for (int i = from; i < s.length(); i++) {
+            if (s.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Writes a value below 100 as two ASCII digits
+    private static void putTwoDigits(char[] out, int at, int value) {
+        out[at] = (char) ('0' + value / 10);
+        out[at + 1] = (char) ('0' + value % 10);
+    }
+
+    // Parses a run of ASCII digits, returning -1 when the run is empty or malformed
+    private static int parseDigits(CharSequence s, int start, int end) {
+        if (start >= end) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
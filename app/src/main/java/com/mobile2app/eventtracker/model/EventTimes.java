@@ -0,0 +1,57 @@
+package com.mobile2app.eventtracker.model;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Converts the "MM/dd/yyyy" date and "h:mmAM" time strings written by the
+ * picker dialogs into an epoch start time, and back for dates. The strings
+ * are read and written by EventTimeCodec, which parses without a formatter
+ * per row so the Room migration can backfill large tables.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public final class EventTimes {
+
+    // Returned when a date string cannot be parsed
+    public static final long UNKNOWN_START_TIME = 0L;
+
+    private EventTimes() {
+    }
+
+    /**
+     * Parses the date and time strings of an event into epoch milliseconds.
+     * The suffix only adds twelve hours for PM below twelve, matching what
+     * the pickers have written; see EventTimeCodec.
+     *
+     * @param date The "MM/dd/yyyy" date of the event.
+     * @param time The "h:mmAM" time of the event, may be null or empty.
+     * @param zone The time zone the strings were entered in.
+     * @return The start time in epoch milliseconds, or UNKNOWN_START_TIME.
+     */
+    public static long parseStartTime(String date, String time, TimeZone zone) {
+        long packed = EventTimeCodec.parse(date, time);
+        if (packed == EventTimeCodec.UNKNOWN) {
+            return UNKNOWN_START_TIME;
+        }
+        Calendar calendar = Calendar.getInstance(zone);
+        calendar.clear();
+        calendar.set(EventTimeCodec.year(packed), EventTimeCodec.month(packed) - 1,
+                EventTimeCodec.dayOfMonth(packed), EventTimeCodec.hourOfDay(packed),
+                EventTimeCodec.minute(packed));
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * Formats a start time as the "MM/dd/yyyy" date the pickers write, for
+     * occurrences of a series whose date differs from the stored one.
+     *
+     * @param startTime The time in epoch milliseconds.
+     * @param zone      The time zone the date is shown in.
+     * @return The date string.
+     */
+    public static String formatDate(long startTime, TimeZone zone) {
+        return EventTimeCodec.storedDate(EventTimeCodec.pack(startTime, zone));
+    }
+}
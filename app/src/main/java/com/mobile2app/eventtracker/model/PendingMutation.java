@@ -0,0 +1,79 @@
+package com.mobile2app.eventtracker.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Outbox entry recording that an event was changed locally and still has
+ * to be written to the Realtime Database. Only the event id and the kind
+ * of change are kept; the event itself is read from the Event table when
+ * the outbox is flushed, so repeated edits collapse into one write.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+@Entity(indices = {@Index(value = {"event_id"})})
+public class PendingMutation {
+
+    // The event was added or updated
+    public static final int OP_UPSERT = 0;
+    // The event was deleted
+    public static final int OP_DELETE = 1;
+
+    // Increasing sequence number that orders mutations
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo(name = "seq")
+    private long mSeq;
+    @NonNull
+    @ColumnInfo(name = "event_id")
+    private String mEventId = "";
+    @ColumnInfo(name = "op")
+    private int mOp;
+    @ColumnInfo(name = "created_at")
+    private long mCreatedAt;
+
+    // Constructor for Room
+    public PendingMutation() {
+    }
+
+    // Constructor assigning the event id and kind of change
+    @Ignore
+    public PendingMutation(@NonNull String eventId, int op) {
+        mEventId = eventId;
+        mOp = op;
+        mCreatedAt = System.currentTimeMillis();
+    }
+
+    // Get the sequence number of a mutation
+    public long getSeq() { return mSeq; }
+    // Set the sequence number of a mutation
+    public void setSeq(long seq) {
+        mSeq = seq;
+    }
+
+    // Get the id of the changed event
+    @NonNull
+    public String getEventId() { return mEventId; }
+    // Set the id of the changed event
+    public void setEventId(@NonNull String eventId) {
+        mEventId = eventId;
+    }
+
+    // Get the kind of change
+    public int getOp() { return mOp; }
+    // Set the kind of change
+    public void setOp(int op) {
+        mOp = op;
+    }
+
+    // Get the time the mutation was recorded
+    public long getCreatedAt() { return mCreatedAt; }
+    // Set the time the mutation was recorded
+    public void setCreatedAt(long createdAt) {
+        mCreatedAt = createdAt;
+    }
+}
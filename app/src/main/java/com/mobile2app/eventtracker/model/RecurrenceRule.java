@@ -0,0 +1,298 @@
+package com.mobile2app.eventtracker.model;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.TimeZone;
+
+/**
+ * How a series of events repeats: every n days, weeks, or months from the
+ * start of its first occurrence, optionally until a given time, minus a
+ * set of skipped occurrences. A series is stored as one event row holding
+ * the rule as text, and its occurrences are generated on demand by an
+ * iterator bounded to the window being read, so no occurrence is ever
+ * stored. Occurrences keep the wall-clock time of the first one in the
+ * series' time zone, across daylight saving changes; a monthly series
+ * started on the 31st skips months without one. Immutable.
+ *
+ * <p>The text form is "FREQ=WEEKLY;INTERVAL=2;UNTIL=1735689600000;EXDATE=t1,t2",
+ * with times in epoch milliseconds; only FREQ is required.</p>
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public final class RecurrenceRule {
+
+    /**
+     * The unit a series repeats in.
+     */
+    public enum Frequency {
+        DAILY(Calendar.DAY_OF_MONTH, 1),
+        WEEKLY(Calendar.DAY_OF_MONTH, 7),
+        MONTHLY(Calendar.MONTH, 1);
+
+        final int mField;
+        final int mAmount;
+
+        Frequency(int field, int amount) {
+            mField = field;
+            mAmount = amount;
+        }
+    }
+
+    // Until value of a series that never ends
+    public static final long FOREVER = Long.MAX_VALUE;
+
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+    private static final long[] NO_EXCEPTIONS = new long[0];
+    // Step results of the iterator that are not start times
+    private static final long NO_OCCURRENCE = Long.MIN_VALUE;
+    private static final long PAST_RANGE = Long.MIN_VALUE + 1;
+
+    private final Frequency mFrequency;
+    private final int mInterval;
+    private final long mUntil;
+    // Start times of skipped occurrences, sorted
+    private final long[] mExceptions;
+
+    /**
+     * Creates a rule.
+     *
+     * @param frequency  The unit the series repeats in.
+     * @param interval   How many units lie between occurrences, at least 1.
+     * @param until      The latest start time of an occurrence, or FOREVER.
+     * @param exceptions The start times of skipped occurrences, in any order.
+     */
+    public RecurrenceRule(Frequency frequency, int interval, long until, long[] exceptions) {
+        if (frequency == null || interval < 1) {
+            throw new IllegalArgumentException("Invalid recurrence " + frequency + " every " + interval);
+        }
+        mFrequency = frequency;
+        mInterval = interval;
+        mUntil = until;
+        mExceptions = exceptions.clone();
+        Arrays.sort(mExceptions);
+    }
+
+    /**
+     * Parses the text form of a rule.
+     *
+     * @param text The rule as stored, may be null.
+     * @return The rule, or null if the text is null or empty.
+     * @throws IllegalArgumentException If the text is not a valid rule.
+     */
+    public static RecurrenceRule parse(String text) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        Frequency frequency = null;
+        int interval = 1;
+        long until = FOREVER;
+        long[] exceptions = NO_EXCEPTIONS;
+        try {
+            for (String part : text.split(";")) {
+                int equals = part.indexOf('=');
+                String name = equals < 0 ? part : part.substring(0, equals);
+                String value = equals < 0 ? "" : part.substring(equals + 1);
+                switch (name) {
+                    case "FREQ":
+                        frequency = Frequency.valueOf(value);
+                        break;
+                    case "INTERVAL":
+                        interval = Integer.parseInt(value);
+                        break;
+                    case "UNTIL":
+                        until = Long.parseLong(value);
+                        break;
+                    case "EXDATE":
+                        String[] values = value.isEmpty() ? new String[0] : value.split(",");
+                        exceptions = new long[values.length];
+                        for (int i = 0; i < values.length; i++) {
+                            exceptions[i] = Long.parseLong(values[i]);
+                        }
+                        break;
+                    default:
+                        // Unknown parts are ignored so newer rules still expand
+                        break;
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid recurrence " + text, e);
+        }
+        if (frequency == null) {
+            throw new IllegalArgumentException("Recurrence without FREQ: " + text);
+        }
+        return new RecurrenceRule(frequency, interval, until, exceptions);
+    }
+
+    // Get the unit the series repeats in
+    public Frequency getFrequency() {
+        return mFrequency;
+    }
+
+    // Get the number of units between occurrences
+    public int getInterval() {
+        return mInterval;
+    }
+
+    // Get the latest start time of an occurrence, or FOREVER
+    public long getUntil() {
+        return mUntil;
+    }
+
+    /**
+     * Returns a copy of this rule that also skips one occurrence.
+     *
+     * @param occurrenceStart The start time of the occurrence to skip.
+     * @return The new rule.
+     */
+    public RecurrenceRule withException(long occurrenceStart) {
+        if (isException(occurrenceStart)) {
+            return this;
+        }
+        long[] exceptions = Arrays.copyOf(mExceptions, mExceptions.length + 1);
+        exceptions[mExceptions.length] = occurrenceStart;
+        return new RecurrenceRule(mFrequency, mInterval, mUntil, exceptions);
+    }
+
+    // Check whether an occurrence has been skipped
+    public boolean isException(long occurrenceStart) {
+        return Arrays.binarySearch(mExceptions, occurrenceStart) >= 0;
+    }
+
+    /**
+     * Returns the start times of the occurrences that start within a window,
+     * in order, computing each one only when it is asked for.
+     *
+     * @param seriesStart The start time of the first occurrence.
+     * @param zone        The time zone the series was entered in.
+     * @param from        Inclusive start of the window in epoch milliseconds.
+     * @param to          Exclusive end of the window in epoch milliseconds.
+     * @return An iterator over the occurrence start times.
+     */
+    public PrimitiveIterator.OfLong occurrences(long seriesStart, TimeZone zone, long from, long to) {
+        return new OccurrenceIterator(seriesStart, zone, Math.max(from, seriesStart),
+                mUntil == FOREVER ? to : Math.min(to, mUntil + 1));
+    }
+
+    /**
+     * Returns the first occurrence starting after a time.
+     *
+     * @param seriesStart The start time of the first occurrence.
+     * @param zone        The time zone the series was entered in.
+     * @param after       Only occurrences starting after this are returned.
+     * @return The start time of the occurrence, or -1 if the series has ended.
+     */
+    public long nextAfter(long seriesStart, TimeZone zone, long after) {
+        PrimitiveIterator.OfLong occurrences = occurrences(seriesStart, zone,
+                after == Long.MAX_VALUE ? after : after + 1, Long.MAX_VALUE);
+        return occurrences.hasNext() ? occurrences.nextLong() : -1;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("FREQ=").append(mFrequency.name());
+        if (mInterval != 1) {
+            text.append(";INTERVAL=").append(mInterval);
+        }
+        if (mUntil != FOREVER) {
+            text.append(";UNTIL=").append(mUntil);
+        }
+        if (mExceptions.length > 0) {
+            text.append(";EXDATE=");
+            for (int i = 0; i < mExceptions.length; i++) {
+                if (i > 0) {
+                    text.append(',');
+                }
+                text.append(mExceptions[i]);
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Generates occurrence n as the series start plus n steps, computed from
+     * the start each time so months of different lengths never shift later
+     * occurrences. Starts at the first step that can reach the window.
+     */
+    private final class OccurrenceIterator implements PrimitiveIterator.OfLong {
+        private final Calendar mCalendar;
+        private final long mSeriesStart;
+        private final int mDayOfMonth;
+        private final long mTo;
+        private long mStep;
+        private long mNext = -1;
+
+        OccurrenceIterator(long seriesStart, TimeZone zone, long from, long to) {
+            mCalendar = Calendar.getInstance(zone);
+            mCalendar.setTimeInMillis(seriesStart);
+            mDayOfMonth = mCalendar.get(Calendar.DAY_OF_MONTH);
+            mSeriesStart = seriesStart;
+            mTo = to;
+            mStep = firstStep(from);
+            advance(from);
+        }
+
+        // Estimates the last step starting before the window, erring early
+        private long firstStep(long from) {
+            if (from <= mSeriesStart) {
+                return 0;
+            }
+            long span = from - mSeriesStart;
+            long stepMs = mFrequency == Frequency.MONTHLY ? 31 * DAY_MS : mFrequency.mAmount * DAY_MS;
+            // One step of slack covers daylight saving shifts and short months
+            return Math.max(0, span / (stepMs * mInterval) - 1);
+        }
+
+        // Moves to the first occurrence at or after a time that is not skipped
+        private void advance(long from) {
+            mNext = -1;
+            while (true) {
+                long start = occurrence(mStep);
+                if (start == NO_OCCURRENCE) {
+                    mStep++;
+                    continue;
+                }
+                if (start >= mTo || start == PAST_RANGE) {
+                    return;
+                }
+                mStep++;
+                if (start >= from && !isException(start)) {
+                    mNext = start;
+                    return;
+                }
+            }
+        }
+
+        // Returns the start of step n, NO_OCCURRENCE, or PAST_RANGE
+        private long occurrence(long step) {
+            mCalendar.setTimeInMillis(mSeriesStart);
+            long amount = step * mInterval * mFrequency.mAmount;
+            if (amount > Integer.MAX_VALUE) {
+                return PAST_RANGE;
+            }
+            mCalendar.add(mFrequency.mField, (int) amount);
+            if (mFrequency == Frequency.MONTHLY && mCalendar.get(Calendar.DAY_OF_MONTH) != mDayOfMonth) {
+                // Calendar clamped the 31st to a shorter month; that month has no occurrence
+                return NO_OCCURRENCE;
+            }
+            return mCalendar.getTimeInMillis();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return mNext >= 0;
+        }
+
+        @Override
+        public long nextLong() {
+            if (mNext < 0) {
+                throw new NoSuchElementException();
+            }
+            long next = mNext;
+            advance(next + 1);
+            return next;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.mobile2app.eventtracker.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Deduplicating string table shared by the event columns built from it.
+ * Each distinct string is stored once and referred to by an int, so a
+ * title or date repeated across thousands of events costs one string, and
+ * two references from the same pool are equal exactly when their strings
+ * are. Strings are only removed all at once, by clear, when nothing built
+ * from the pool is shown any more; a pool otherwise lives as long as the
+ * list that owns it. Safe to use from several threads. Adding locks, but
+ * looking a string up does not, since lists are read far more often than
+ * they are built.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public final class StringPool {
+
+    // Reference stored for a null string
+    public static final int NULL_REF = -1;
+
+    private final Map<String, Integer> mRefs = new HashMap<>();
+    // Written under the lock; a reader that sees mSize sees the strings stored before it
+    private volatile String[] mStrings = new String[64];
+    private volatile int mSize;
+
+    /**
+     * Returns the reference of a string, adding it to the pool if it is new.
+     *
+     * @param value The string to intern, may be null.
+     * @return The reference of the string, or NULL_REF for null.
+     */
+    public synchronized int intern(String value) {
+        if (value == null) {
+            return NULL_REF;
+        }
+        Integer ref = mRefs.get(value);
+        if (ref != null) {
+            return ref;
+        }
+        int size = mSize;
+        String[] strings = mStrings;
+        if (size == strings.length) {
+            strings = Arrays.copyOf(strings, size * 2);
+            mStrings = strings;
+        }
+        strings[size] = value;
+        mRefs.put(value, size);
+        // Publishes the string to readers that do not lock
+        mSize = size + 1;
+        return size;
+    }
+
+    /**
+     * Returns the string a reference was given for.
+     *
+     * @param ref A reference returned by intern.
+     * @return The string, or null for NULL_REF.
+     */
+    public String get(int ref) {
+        if (ref == NULL_REF) {
+            return null;
+        }
+        // Read mSize first, so mStrings is at least as new as the string's ref
+        int size = mSize;
+        if (ref >= size) {
+            throw new IndexOutOfBoundsException("No string " + ref + " in a pool of " + size);
+        }
+        return mStrings[ref];
+    }
+
+    // Get number of distinct strings in the pool
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Removes every string, releasing the memory they hold. References
+     * given out before are no longer valid, so the lists built from the
+     * pool must no longer be read.
+     */
+    public synchronized void clear() {
+        mRefs.clear();
+        mStrings = new String[64];
+        mSize = 0;
+    }
+}
@@ -0,0 +1,166 @@
+package com.mobile2app.eventtracker.reminder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary min-heap of the next reminder of each event, ordered by fire
+ * time. An index from event id to heap position lets an event's reminder
+ * be added, moved, or removed in O(log n) when the event changes, and the
+ * earliest reminder is always at the root. Not thread-safe.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+final class ReminderQueue {
+
+    /**
+     * The next reminder of one event.
+     */
+    static final class Entry {
+        final String eventId;
+        long startTime;
+        long fireTime;
+        // Position in the heap array
+        int position;
+
+        Entry(String eventId, long startTime, long fireTime) {
+            this.eventId = eventId;
+            this.startTime = startTime;
+            this.fireTime = fireTime;
+        }
+    }
+
+    private final List<Entry> mHeap = new ArrayList<>();
+    private final Map<String, Entry> mEntries = new HashMap<>();
+
+    /**
+     * Returns the next fire time of an event: the first start time minus an
+     * offset that falls after a given time.
+     *
+     * @param startTime The start of the event in epoch milliseconds.
+     * @param offsetsMs The reminder offsets before the start, largest first.
+     * @param after     Only fire times after this are returned.
+     * @return The next fire time, or -1 if every reminder is past.
+     */
+    static long nextFireTime(long startTime, long[] offsetsMs, long after) {
+        for (long offset : offsetsMs) {
+            long fireTime = startTime - offset;
+            if (fireTime > after) {
+                return fireTime;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds or replaces the reminder of an event.
+     *
+     * @param eventId   The id of the event.
+     * @param startTime The start of the event in epoch milliseconds.
+     * @param fireTime  When the reminder fires in epoch milliseconds.
+     */
+    void put(String eventId, long startTime, long fireTime) {
+        Entry entry = mEntries.get(eventId);
+        if (entry == null) {
+            entry = new Entry(eventId, startTime, fireTime);
+            entry.position = mHeap.size();
+            mHeap.add(entry);
+            mEntries.put(eventId, entry);
+            siftUp(entry.position);
+            return;
+        }
+        long oldFireTime = entry.fireTime;
+        entry.startTime = startTime;
+        entry.fireTime = fireTime;
+        if (fireTime < oldFireTime) {
+            siftUp(entry.position);
+        } else {
+            siftDown(entry.position);
+        }
+    }
+
+    /**
+     * Removes the reminder of an event if it has one.
+     *
+     * @param eventId The id of the event.
+     */
+    void remove(String eventId) {
+        Entry entry = mEntries.remove(eventId);
+        if (entry == null) {
+            return;
+        }
+        int position = entry.position;
+        Entry last = mHeap.remove(mHeap.size() - 1);
+        if (last != entry) {
+            mHeap.set(position, last);
+            last.position = position;
+            siftDown(position);
+            siftUp(last.position);
+        }
+    }
+
+    // Returns the earliest reminder, or null if there is none
+    Entry peek() {
+        return mHeap.isEmpty() ? null : mHeap.get(0);
+    }
+
+    // Returns the reminder of an event, or null if it has none
+    Entry get(String eventId) {
+        return mEntries.get(eventId);
+    }
+
+    // Get number of events with a pending reminder
+    int size() {
+        return mHeap.size();
+    }
+
+    // Removes every reminder
+    void clear() {
+        mHeap.clear();
+        mEntries.clear();
+    }
+
+    // Moves an entry towards the root while it fires before its parent
+    private void siftUp(int position) {
+        Entry entry = mHeap.get(position);
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            Entry parentEntry = mHeap.get(parent);
+            if (parentEntry.fireTime <= entry.fireTime) {
+                break;
+            }
+            mHeap.set(position, parentEntry);
+            parentEntry.position = position;
+            position = parent;
+        }
+        mHeap.set(position, entry);
+        entry.position = position;
+    }
+
+    // Moves an entry towards the leaves while a child fires before it
+    private void siftDown(int position) {
+        Entry entry = mHeap.get(position);
+        int size = mHeap.size();
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && mHeap.get(child + 1).fireTime < mHeap.get(child).fireTime) {
+                child++;
+            }
+            Entry childEntry = mHeap.get(child);
+            if (entry.fireTime <= childEntry.fireTime) {
+                break;
+            }
+            mHeap.set(position, childEntry);
+            childEntry.position = position;
+            position = child;
+        }
+        mHeap.set(position, entry);
+        entry.position = position;
+    }
+}
@@ -0,0 +1,28 @@
+package com.mobile2app.eventtracker.reminder;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Receives the reminder alarm and the boot broadcast, handing both to the
+ * ReminderScheduler without blocking the main thread.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public class ReminderReceiver extends BroadcastReceiver {
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        ReminderScheduler scheduler = ReminderScheduler.getInstance(context);
+        PendingResult result = goAsync();
+        if (Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction())) {
+            scheduler.onBoot(result::finish);
+        } else if (ReminderScheduler.ACTION_FIRE.equals(intent.getAction())) {
+            scheduler.onAlarm(result::finish);
+        } else {
+            result.finish();
+        }
+    }
+}
@@ -0,0 +1,447 @@
+package com.mobile2app.eventtracker.reminder;
+
+import static android.content.ContentValues.TAG;
+
+import android.Manifest;
+import android.app.AlarmManager;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.text.format.DateFormat;
+import android.content.pm.PackageManager;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+import androidx.core.content.ContextCompat;
+import androidx.preference.PreferenceManager;
+
+import com.mobile2app.eventtracker.MainActivity;
+import com.mobile2app.eventtracker.R;
+import com.mobile2app.eventtracker.model.Event;
+import com.mobile2app.eventtracker.model.EventStartTime;
+import com.mobile2app.eventtracker.model.EventTimeCodec;
+import com.mobile2app.eventtracker.model.RecurrenceRule;
+import com.mobile2app.eventtracker.repo.EventRepository;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shows a notification before each event at the offsets chosen in
+ * settings. The next reminder of every upcoming event is kept in a
+ * ReminderQueue, and only the earliest one has a system alarm: when it
+ * fires, the due reminders are shown, each event moves on to its next
+ * offset, and the single alarm is set again for the new earliest one. The
+ * queue is loaded once from the events table and then kept up to date from
+ * the repository's committed changes, so the number of wakeups depends on
+ * the reminders due, not on how many events there are. A series holds one
+ * queue entry for its next occurrence's reminder, found by walking its
+ * rule from the current time, so no occurrence is stored ahead of time.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public final class ReminderScheduler implements EventRepository.EventChangeListener {
+
+    // Preference turning reminders on or off
+    public static final String PREF_ENABLED = "reminders_enabled";
+    // Preference holding the offsets before the start, in minutes
+    public static final String PREF_OFFSETS = "reminder_offsets";
+    // Offsets used until the user chooses others
+    public static final Set<String> DEFAULT_OFFSETS = Collections.singleton("10");
+
+    // Notification channel of the reminders
+    static final String CHANNEL_ID = "event_reminders";
+    // Action of the intent the alarm delivers to ReminderReceiver
+    static final String ACTION_FIRE = "com.mobile2app.eventtracker.action.FIRE_REMINDER";
+
+    private static volatile ReminderScheduler mReminderScheduler;
+
+    private final Context mContext;
+    private final EventRepository mEventRepo;
+    private final AlarmManager mAlarmManager;
+    private final PendingIntent mAlarmIntent;
+    // Runs loading and firing, which read the database
+    private final ExecutorService mWorker = Executors.newSingleThreadExecutor();
+    // Guarded by this
+    private final ReminderQueue mQueue = new ReminderQueue();
+    // Series with a queued reminder by event id; guarded by this
+    private final Map<String, Series> mSeries = new HashMap<>();
+    private long[] mOffsetsMs = new long[0];
+    private boolean mStarted;
+    // Fire time the alarm is set for, or -1 if none is set
+    private long mArmedTime = -1;
+    // Held so the preference listener is not garbage collected
+    private final SharedPreferences.OnSharedPreferenceChangeListener mPrefsListener = (prefs, key) -> {
+        if (PREF_ENABLED.equals(key) || PREF_OFFSETS.equals(key)) {
+            refresh();
+        }
+    };
+
+    // The schedule of a recurring event
+    private static final class Series {
+        final long mStartTime;
+        final RecurrenceRule mRule;
+        final TimeZone mZone;
+
+        Series(long startTime, RecurrenceRule rule, TimeZone zone) {
+            mStartTime = startTime;
+            mRule = rule;
+            mZone = zone;
+        }
+    }
+
+    private ReminderScheduler(Context context) {
+        mContext = context.getApplicationContext();
+        mEventRepo = EventRepository.getInstance(mContext);
+        mAlarmManager = mContext.getSystemService(AlarmManager.class);
+        Intent intent = new Intent(mContext, ReminderReceiver.class).setAction(ACTION_FIRE);
+        mAlarmIntent = PendingIntent.getBroadcast(mContext, 0, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+
+    /**
+     * Returns the single instance of ReminderScheduler, creating it if necessary.
+     *
+     * @param context Any context of this app.
+     * @return The singleton instance of ReminderScheduler.
+     */
+    public static ReminderScheduler getInstance(Context context) {
+        ReminderScheduler reminderScheduler = mReminderScheduler;
+        if (reminderScheduler == null) {
+            synchronized (ReminderScheduler.class) {
+                reminderScheduler = mReminderScheduler;
+                if (reminderScheduler == null) {
+                    reminderScheduler = new ReminderScheduler(context);
+                    mReminderScheduler = reminderScheduler;
+                }
+            }
+        }
+        return reminderScheduler;
+    }
+
+    /**
+     * Loads the queue and sets the alarm in the background, then follows
+     * changes to the events table. Calling it again has no effect.
+     */
+    public void start() {
+        mWorker.execute(this::ensureStarted);
+    }
+
+    /**
+     * Reloads the queue, as is done whenever the reminder settings change.
+     */
+    public void refresh() {
+        mWorker.execute(() -> {
+            if (!ensureStarted()) {
+                reload(System.currentTimeMillis());
+            }
+        });
+    }
+
+    /**
+     * Shows the reminders that are due and sets the alarm for the next one.
+     * Called by ReminderReceiver when the alarm fires.
+     *
+     * @param done Run once the reminders have been handled.
+     */
+    void onAlarm(Runnable done) {
+        mWorker.execute(() -> {
+            try {
+                ensureStarted();
+                fireDue(System.currentTimeMillis());
+            } finally {
+                done.run();
+            }
+        });
+    }
+
+    /**
+     * Sets the alarm again after a reboot, which clears every alarm.
+     *
+     * @param done Run once the alarm has been set.
+     */
+    void onBoot(Runnable done) {
+        mWorker.execute(() -> {
+            try {
+                synchronized (this) {
+                    mArmedTime = -1;
+                }
+                if (!ensureStarted()) {
+                    reload(System.currentTimeMillis());
+                }
+            } finally {
+                done.run();
+            }
+        });
+    }
+
+    @Override
+    public synchronized void onEventsChanged(List<Event> changed, Set<String> deletedIds) {
+        if (!mStarted) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Event event : changed) {
+            if (deletedIds.contains(event.getId())) {
+                mQueue.remove(event.getId());
+                mSeries.remove(event.getId());
+            } else {
+                schedule(event.getId(), event.getStartTime(), event.getRecurrence(), event.getTimeZone(), now);
+            }
+        }
+        arm();
+    }
+
+    @Override
+    public synchronized void onEventsCleared() {
+        mQueue.clear();
+        mSeries.clear();
+        arm();
+    }
+
+    // Get number of events with a pending reminder
+    public synchronized int getPendingCount() {
+        return mQueue.size();
+    }
+
+    // Loads the queue the first time; returns true if it did
+    private boolean ensureStarted() {
+        synchronized (this) {
+            if (mStarted) {
+                return false;
+            }
+            mStarted = true;
+        }
+        createChannel();
+        PreferenceManager.getDefaultSharedPreferences(mContext)
+                .registerOnSharedPreferenceChangeListener(mPrefsListener);
+        mEventRepo.addChangeListener(this);
+        reload(System.currentTimeMillis());
+        return true;
+    }
+
+    // Rebuilds the queue from the events table and sets the alarm
+    private void reload(long now) {
+        long[] offsetsMs = readOffsets();
+        // Read outside the lock so committed changes are not held up by the query
+        List<EventStartTime> startTimes = offsetsMs.length == 0
+                ? Collections.<EventStartTime>emptyList()
+                : mEventRepo.loadStartTimesAfter(now);
+        synchronized (this) {
+            mOffsetsMs = offsetsMs;
+            mQueue.clear();
+            mSeries.clear();
+            for (EventStartTime startTime : startTimes) {
+                schedule(startTime.id, startTime.startTime, startTime.recurrence, startTime.timeZone, now);
+            }
+            arm();
+        }
+    }
+
+    // Shows every reminder due by now and moves each event to its next offset
+    private void fireDue(long now) {
+        while (true) {
+            String eventId;
+            long startTime;
+            synchronized (this) {
+                mArmedTime = -1;
+                ReminderQueue.Entry due = mQueue.peek();
+                if (due == null || due.fireTime > now) {
+                    arm();
+                    return;
+                }
+                // Rescheduling updates the entry in place with the next occurrence
+                eventId = due.eventId;
+                startTime = due.startTime;
+                Series series = mSeries.get(eventId);
+                if (series == null) {
+                    scheduleOnce(eventId, startTime, now);
+                } else {
+                    scheduleSeries(eventId, series, now);
+                }
+            }
+            showReminder(eventId, startTime, now);
+        }
+    }
+
+    // Queues the next reminder of an event or series after a time
+    private void schedule(String eventId, long startTime, String recurrence, String timeZone, long after) {
+        RecurrenceRule rule = null;
+        try {
+            rule = RecurrenceRule.parse(recurrence);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Ignoring recurrence of event " + eventId + ".", e);
+        }
+        if (rule == null) {
+            mSeries.remove(eventId);
+            scheduleOnce(eventId, startTime, after);
+            return;
+        }
+        Series series = new Series(startTime, rule, TimeZone.getTimeZone(timeZone));
+        mSeries.put(eventId, series);
+        scheduleSeries(eventId, series, after);
+    }
+
+    // Queues the next reminder of a single event after a time, or drops it if none is left
+    private void scheduleOnce(String eventId, long startTime, long after) {
+        long fireTime = ReminderQueue.nextFireTime(startTime, mOffsetsMs, after);
+        if (fireTime < 0) {
+            mQueue.remove(eventId);
+        } else {
+            mQueue.put(eventId, startTime, fireTime);
+        }
+    }
+
+    /**
+     * Queues the earliest reminder of a series after a time. A reminder of
+     * an occurrence fires at least the smallest offset before it, so the
+     * walk starts there, and it stops at the first occurrence beyond the
+     * largest offset, whose reminders are all later than any found before.
+     */
+    private void scheduleSeries(String eventId, Series series, long after) {
+        if (mOffsetsMs.length == 0) {
+            mQueue.remove(eventId);
+            mSeries.remove(eventId);
+            return;
+        }
+        long largest = mOffsetsMs[0];
+        long smallest = mOffsetsMs[mOffsetsMs.length - 1];
+        PrimitiveIterator.OfLong starts = series.mRule.occurrences(series.mStartTime, series.mZone,
+                after + smallest + 1, Long.MAX_VALUE);
+        long bestStart = -1;
+        long bestFire = Long.MAX_VALUE;
+        while (starts.hasNext()) {
+            long start = starts.nextLong();
+            long fireTime = ReminderQueue.nextFireTime(start, mOffsetsMs, after);
+            if (fireTime >= 0 && fireTime < bestFire) {
+                bestFire = fireTime;
+                bestStart = start;
+            }
+            if (start > after + largest) {
+                break;
+            }
+        }
+        if (bestStart < 0) {
+            mQueue.remove(eventId);
+            mSeries.remove(eventId);
+        } else {
+            mQueue.put(eventId, bestStart, bestFire);
+        }
+    }
+
+    // Sets the one alarm for the earliest reminder, or cancels it if there is none
+    private void arm() {
+        ReminderQueue.Entry next = mQueue.peek();
+        if (next == null) {
+            // Also clears an alarm left by a previous process
+            mAlarmManager.cancel(mAlarmIntent);
+            mArmedTime = -1;
+            return;
+        }
+        if (next.fireTime == mArmedTime) {
+            return;
+        }
+        if (mAlarmManager.canScheduleExactAlarms()) {
+            mAlarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, next.fireTime, mAlarmIntent);
+        } else {
+            mAlarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, next.fireTime, mAlarmIntent);
+        }
+        mArmedTime = next.fireTime;
+    }
+
+    // Posts the notification for the reminder of an event, or of one occurrence of a series
+    private void showReminder(String eventId, long startTime, long now) {
+        if (ContextCompat.checkSelfPermission(mContext, Manifest.permission.POST_NOTIFICATIONS)
+                != PackageManager.PERMISSION_GRANTED) {
+            return;
+        }
+        Event event = mEventRepo.loadEvent(eventId);
+        if (event == null) {
+            return;
+        }
+        if (event.isRecurring()) {
+            event = event.occurrence(startTime);
+        }
+        long minutes = Math.max(0, TimeUnit.MILLISECONDS.toMinutes(event.getStartTime() - now + 30_000));
+        EventTimeCodec codec = EventTimeCodec.getInstance(Locale.getDefault(), DateFormat.is24HourFormat(mContext));
+        String time = codec.displayTime(event.getEventTime());
+        String text = minutes == 0
+                ? mContext.getString(R.string.reminder_now, time)
+                : mContext.getString(R.string.reminder_in_minutes, minutes, codec.displayDate(event.getEventDate()), time);
+        PendingIntent open = PendingIntent.getActivity(mContext, 0,
+                new Intent(mContext, MainActivity.class), PendingIntent.FLAG_IMMUTABLE);
+        NotificationCompat.Builder notification = new NotificationCompat.Builder(mContext, CHANNEL_ID)
+                .setSmallIcon(R.drawable.pic_notifications_active)
+                .setContentTitle(event.getEventTitle())
+                .setContentText(text)
+                .setContentIntent(open)
+                .setAutoCancel(true)
+                .setCategory(NotificationCompat.CATEGORY_REMINDER)
+                .setPriority(NotificationCompat.PRIORITY_HIGH);
+        NotificationManagerCompat.from(mContext).notify(eventId.hashCode(), notification.build());
+    }
+
+    // Reads the enabled offsets in milliseconds, largest first, or none if reminders are off
+    private long[] readOffsets() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        if (!prefs.getBoolean(PREF_ENABLED, true)) {
+            return new long[0];
+        }
+        Set<String> minutes = prefs.getStringSet(PREF_OFFSETS, DEFAULT_OFFSETS);
+        return parseOffsets(minutes);
+    }
+
+    /**
+     * Converts offsets in minutes to milliseconds, largest first, skipping
+     * values that are not whole non-negative numbers.
+     *
+     * @param minutes The offsets before the start, in minutes.
+     * @return The distinct offsets in milliseconds, in descending order.
+     */
+    static long[] parseOffsets(Set<String> minutes) {
+        Set<Long> offsets = new HashSet<>();
+        for (String value : minutes) {
+            try {
+                long parsed = Long.parseLong(value.trim());
+                if (parsed >= 0) {
+                    offsets.add(TimeUnit.MINUTES.toMillis(parsed));
+                }
+            } catch (NumberFormatException e) {
+                Log.w(TAG, "Ignoring reminder offset " + value + ".");
+            }
+        }
+        long[] result = new long[offsets.size()];
+        int i = 0;
+        for (long offset : offsets) {
+            result[i++] = -offset;
+        }
+        Arrays.sort(result);
+        for (i = 0; i < result.length; i++) {
+            result[i] = -result[i];
+        }
+        return result;
+    }
+
+    // Registers the reminders channel; doing it again has no effect
+    private void createChannel() {
+        NotificationChannel channel = new NotificationChannel(CHANNEL_ID,
+                mContext.getString(R.string.reminder_channel_name), NotificationManager.IMPORTANCE_HIGH);
+        mContext.getSystemService(NotificationManager.class).createNotificationChannel(channel);
+    }
+}
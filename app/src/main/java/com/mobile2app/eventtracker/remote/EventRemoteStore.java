@@ -0,0 +1,163 @@
+package com.mobile2app.eventtracker.remote;
+
+import com.mobile2app.eventtracker.model.Event;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The remote side of event sync: where the sync engine sends local
+ * writes and pulls changes made elsewhere, partitioned by user. The app
+ * uses the Realtime Database; InMemoryEventRemoteStore stands in for it
+ * in-process, so the sync paths can be driven and load-tested on a plain
+ * JVM without a backend.
+ * <p>
+ * Every node written is stamped with the store's time, and a deletion
+ * leaves a tombstone, so the changes after any (updatedAt, id) can be
+ * read in order. Live queries push the events entering, changing in and
+ * leaving a range of start times, or the set of series. Results complete,
+ * and listeners are called, on whatever thread the store uses; the
+ * Realtime Database uses the main thread.
+ * </p>
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public interface EventRemoteStore {
+
+    /**
+     * A live query, closed when its events are no longer needed.
+     */
+    interface Subscription {
+        // Stops calling the listener; closing twice has no effect
+        void close();
+    }
+
+    /**
+     * Receives the events of a live query.
+     */
+    interface ChangeListener {
+        /**
+         * Called for an event that entered the query or changed while in it,
+         * starting with every event in it when subscribed.
+         *
+         * @param change The event as last written.
+         */
+        void onChanged(RemoteChange change);
+
+        /**
+         * Called for an event that left the query. It may have been deleted,
+         * or moved out of the range, or pushed past the query's limit.
+         *
+         * @param id The id of the event.
+         */
+        void onRemoved(String id);
+
+        /**
+         * Called when the store cancelled the query, which then stays silent.
+         *
+         * @param e The reason.
+         */
+        void onFailed(Exception e);
+    }
+
+    /**
+     * Receives the events of a window of start times.
+     */
+    interface WindowListener extends ChangeListener {
+        /**
+         * Called once the events in the window when subscribed have been
+         * passed to onChanged.
+         *
+         * @param count         The number of those events.
+         * @param lastStartTime The start time of the last of them in (startTime, id) order.
+         * @param lastId        The id of that event, or null if there were none.
+         */
+        void onLoaded(int count, long lastStartTime, String lastId);
+    }
+
+    /**
+     * Returns a new event id, unique across devices and ordered by creation
+     * time. Generated locally, so it works offline.
+     *
+     * @return The id.
+     */
+    String newKey();
+
+    /**
+     * Writes events and deletions of one user as one atomic update.
+     *
+     * @param uid        The user whose events are written.
+     * @param events     The events to create or replace, by id.
+     * @param deletedIds The ids of events to replace with tombstones.
+     * @return Completes when the store has committed the update.
+     */
+    CompletableFuture<Void> write(String uid, Map<String, Event> events, Collection<String> deletedIds);
+
+    /**
+     * Reads the changes of one user in (updatedAt, id) order.
+     *
+     * @param uid       The user whose changes are read.
+     * @param updatedAt The time to start at.
+     * @param afterId   The id of the last change already read at that time,
+     *                  or null to read every change at that time or later.
+     * @param limit     The most changes to return.
+     * @return Completes with the changes.
+     */
+    CompletableFuture<List<RemoteChange>> loadChanges(String uid, long updatedAt, String afterId, int limit);
+
+    /**
+     * Reads the time of the newest change of one user.
+     *
+     * @param uid The user whose changes are read.
+     * @return Completes with the time, or 0 if nothing was written.
+     */
+    CompletableFuture<Long> loadNewestUpdatedAt(String uid);
+
+    /**
+     * Removes the tombstones of one user last written before a time. A
+     * client whose watermark is older than that syncs in full instead.
+     *
+     * @param uid    The user whose tombstones are removed.
+     * @param before Tombstones stamped before this time are removed.
+     * @return Completes with the number of tombstones removed.
+     */
+    CompletableFuture<Integer> pruneTombstones(String uid, long before);
+
+    /**
+     * Reads one event node of a user.
+     *
+     * @param uid The user whose event is read.
+     * @param id  The id of the event.
+     * @return Completes with the event, its tombstone, or null if there is no node.
+     */
+    CompletableFuture<RemoteChange> loadEvent(String uid, String id);
+
+    /**
+     * Listens to the live events of one user whose start time lies in
+     * [from, to), in (startTime, id) order and capped at limit, as one
+     * window of the upcoming events.
+     *
+     * @param uid      The user whose events are listened to.
+     * @param from     The first start time in the window.
+     * @param fromId   The id of the last event of a previous window that
+     *                 filled its limit at from, to continue from it, or null.
+     * @param to       The start time after the window.
+     * @param limit    The most events in the window.
+     * @param listener Receives the window's events.
+     * @return The subscription to close when the window is no longer needed.
+     */
+    Subscription listenWindow(String uid, long from, String fromId, long to, int limit,
+                              WindowListener listener);
+
+    /**
+     * Listens to every live series of one user, whatever its start time.
+     *
+     * @param uid      The user whose series are listened to.
+     * @param listener Receives the series.
+     * @return The subscription to close when the series are no longer needed.
+     */
+    Subscription listenSeries(String uid, ChangeListener listener);
+}
@@ -0,0 +1,491 @@
+package com.mobile2app.eventtracker.remote;
+
+import com.mobile2app.eventtracker.model.Event;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * An in-process remote store with the behavior the sync engine relies on:
+ * atomic multi-event writes, server-stamped updatedAt, tombstones, changes
+ * read in (updatedAt, id) order, and live windows and series queries.
+ * Each call can be delayed by a seeded random latency and failed at a
+ * given rate, half the delay before the store applies it and half after,
+ * as a request and its response would be. Nothing leaves the process, so
+ * sync can be load-tested on any JVM.
+ * <p>
+ * Events are copied in and out, so callers may keep changing their own.
+ * Writes of different calls may commit out of order under jitter; the
+ * sync engine has one write in flight per client, as with the Realtime
+ * Database.
+ * </p>
+ * <p>
+ * Live queries are told of each committed write after the least latency,
+ * without jitter or faults, one notification at a time on a thread of
+ * their own, so every listener sees the changes in commit order.
+ * </p>
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public final class InMemoryEventRemoteStore implements EventRemoteStore {
+
+    private static final String PUSH_CHARS =
+            "-0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz";
+
+    /**
+     * Position of a node in the change order, by updatedAt, or in the
+     * start order of live events, by start time.
+     */
+    private static final class Stamp implements Comparable<Stamp> {
+        final long mTime;
+        final String mId;
+
+        Stamp(long time, String id) {
+            mTime = time;
+            mId = id;
+        }
+
+        @Override
+        public int compareTo(Stamp other) {
+            int result = Long.compare(mTime, other.mTime);
+            return result != 0 ? result : mId.compareTo(other.mId);
+        }
+    }
+
+    /**
+     * The events of one user. Guarded by itself.
+     */
+    private static final class Partition {
+        // Last change of each event by id
+        final Map<String, RemoteChange> mNodes = new HashMap<>();
+        // The same changes in (updatedAt, id) order
+        final NavigableMap<Stamp, RemoteChange> mLog = new TreeMap<>();
+        // The live events in (startTime, id) order
+        final NavigableMap<Stamp, RemoteChange> mByStart = new TreeMap<>();
+        // Open live queries
+        final List<LiveQuery> mQueries = new ArrayList<>();
+    }
+
+    /**
+     * An open window or series query and the events it holds. Its members
+     * are guarded by the partition; mClosed is read on the push thread.
+     */
+    private final class LiveQuery implements Subscription {
+        final Partition mPartition;
+        final ChangeListener mListener;
+        // The window's first key and the start time after it, or null for the series query
+        final Stamp mFrom;
+        final long mTo;
+        final int mLimit;
+        // Ids of the events the listener was last told are in the query
+        Set<String> mMembers = new HashSet<>();
+        volatile boolean mClosed;
+
+        LiveQuery(Partition partition, ChangeListener listener, Stamp from, long to, int limit) {
+            mPartition = partition;
+            mListener = listener;
+            mFrom = from;
+            mTo = to;
+            mLimit = limit;
+        }
+
+        // Returns the events now in the query, in (startTime, id) order
+        List<RemoteChange> select() {
+            List<RemoteChange> selected = new ArrayList<>();
+            if (mFrom == null) {
+                for (RemoteChange change : mPartition.mByStart.values()) {
+                    if (change.getEvent().getRecurrence() != null) {
+                        selected.add(change);
+                    }
+                }
+                return selected;
+            }
+            for (RemoteChange change : mPartition.mByStart.subMap(mFrom, true, new Stamp(mTo, ""), false)
+                    .values()) {
+                if (selected.size() == mLimit) {
+                    break;
+                }
+                selected.add(change);
+            }
+            return selected;
+        }
+
+        /**
+         * Compares the query with what the listener was last told and pushes
+         * the difference: events that left it, then events that entered it
+         * or were among the ids just written. Called with the partition held.
+         */
+        void refresh(Set<String> writtenIds) {
+            List<RemoteChange> selected = select();
+            Set<String> members = new HashSet<>();
+            List<String> removed = new ArrayList<>();
+            List<RemoteChange> changed = new ArrayList<>();
+            for (RemoteChange change : selected) {
+                members.add(change.getId());
+                if (!mMembers.contains(change.getId()) || writtenIds.contains(change.getId())) {
+                    changed.add(new RemoteChange(change.getId(), copy(change.getEvent()), change.getUpdatedAt()));
+                }
+            }
+            for (String id : mMembers) {
+                if (!members.contains(id)) {
+                    removed.add(id);
+                }
+            }
+            mMembers = members;
+            if (!removed.isEmpty() || !changed.isEmpty()) {
+                push(() -> {
+                    for (String id : removed) {
+                        mListener.onRemoved(id);
+                    }
+                    for (RemoteChange change : changed) {
+                        mListener.onChanged(change);
+                    }
+                });
+            }
+        }
+
+        // Pushes the events in the query when subscribed, then reports a window loaded
+        void load() {
+            List<RemoteChange> selected = select();
+            List<RemoteChange> initial = new ArrayList<>(selected.size());
+            for (RemoteChange change : selected) {
+                mMembers.add(change.getId());
+                initial.add(new RemoteChange(change.getId(), copy(change.getEvent()), change.getUpdatedAt()));
+            }
+            push(() -> {
+                for (RemoteChange change : initial) {
+                    mListener.onChanged(change);
+                }
+                if (mListener instanceof WindowListener) {
+                    RemoteChange last = initial.isEmpty() ? null : initial.get(initial.size() - 1);
+                    ((WindowListener) mListener).onLoaded(initial.size(),
+                            last == null ? mFrom.mTime : last.getEvent().getStartTime(),
+                            last == null ? null : last.getId());
+                }
+            });
+        }
+
+        // Runs a notification on the push thread after the latency, unless closed by then
+        void push(Runnable notification) {
+            mPusher.schedule(() -> {
+                if (!mClosed) {
+                    notification.run();
+                }
+            }, mLatencyMs, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void close() {
+            mClosed = true;
+            synchronized (mPartition) {
+                mPartition.mQueries.remove(this);
+            }
+        }
+    }
+
+    private final long mLatencyMs;
+    private final long mJitterMs;
+    private final double mFaultRate;
+    // Seeded, so the same calls see the same delays and faults; guarded by itself
+    private final Random mRandom;
+    private final ScheduledExecutorService mScheduler;
+    // Tells live queries of writes, in commit order
+    private final ScheduledExecutorService mPusher;
+    private final Map<String, Partition> mPartitions = new ConcurrentHashMap<>();
+    // Last time stamped, so stamps never go back; guarded by this
+    private long mLastStamp;
+    private long mLastKeyTime;
+    private int mKeySequence;
+
+    /**
+     * Creates a store answering at once, without faults.
+     */
+    public InMemoryEventRemoteStore() {
+        this(0, 0, 0, 0);
+    }
+
+    /**
+     * Creates a store with injected latency and faults.
+     *
+     * @param latencyMs The least time each call takes.
+     * @param jitterMs  The most extra time, drawn uniformly per call.
+     * @param faultRate The share of calls failed with an IOException, 0 to 1.
+     * @param seed      The seed of the delays and faults.
+     */
+    public InMemoryEventRemoteStore(long latencyMs, long jitterMs, double faultRate, long seed) {
+        mLatencyMs = latencyMs;
+        mJitterMs = jitterMs;
+        mFaultRate = faultRate;
+        mRandom = new Random(seed);
+        mScheduler = Executors.newScheduledThreadPool(
+                Math.max(2, Runtime.getRuntime().availableProcessors()), runnable -> {
+                    Thread thread = new Thread(runnable, "remote-store");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        mPusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "remote-store-push");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Builds a push id as the Realtime Database does: 8 characters of the
+     * time then 12 more, here a sequence number within the millisecond so
+     * ids stay unique and ordered.
+     */
+    @Override
+    public synchronized String newKey() {
+        long now = System.currentTimeMillis();
+        if (now <= mLastKeyTime) {
+            now = mLastKeyTime;
+            mKeySequence++;
+        } else {
+            mLastKeyTime = now;
+            mKeySequence = 0;
+        }
+        char[] id = new char[20];
+        long time = now;
+        for (int i = 7; i >= 0; i--) {
+            id[i] = PUSH_CHARS.charAt((int) (time % 64));
+            time /= 64;
+        }
+        long sequence = mKeySequence;
+        for (int i = 19; i >= 8; i--) {
+            id[i] = PUSH_CHARS.charAt((int) (sequence % 64));
+            sequence /= 64;
+        }
+        return new String(id);
+    }
+
+    @Override
+    public CompletableFuture<Void> write(String uid, Map<String, Event> events, Collection<String> deletedIds) {
+        // Copied now, as a request body would be
+        List<RemoteChange> changes = new ArrayList<>(events.size() + deletedIds.size());
+        for (Map.Entry<String, Event> entry : events.entrySet()) {
+            changes.add(new RemoteChange(entry.getKey(), copy(entry.getValue()), 0));
+        }
+        for (String id : deletedIds) {
+            changes.add(new RemoteChange(id, null, 0));
+        }
+        return call(() -> {
+            Partition partition = partition(uid);
+            synchronized (partition) {
+                long updatedAt = stamp();
+                Set<String> writtenIds = new HashSet<>();
+                for (RemoteChange change : changes) {
+                    RemoteChange stamped = new RemoteChange(change.getId(), change.getEvent(), updatedAt);
+                    RemoteChange old = partition.mNodes.put(change.getId(), stamped);
+                    if (old != null) {
+                        partition.mLog.remove(new Stamp(old.getUpdatedAt(), old.getId()));
+                        if (!old.isDeleted()) {
+                            partition.mByStart.remove(new Stamp(old.getEvent().getStartTime(), old.getId()));
+                        }
+                    }
+                    partition.mLog.put(new Stamp(updatedAt, change.getId()), stamped);
+                    if (!stamped.isDeleted()) {
+                        partition.mByStart.put(new Stamp(stamped.getEvent().getStartTime(), stamped.getId()),
+                                stamped);
+                    }
+                    writtenIds.add(change.getId());
+                }
+                for (LiveQuery query : partition.mQueries) {
+                    query.refresh(writtenIds);
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<RemoteChange>> loadChanges(String uid, long updatedAt, String afterId, int limit) {
+        return call(() -> {
+            Partition partition = partition(uid);
+            List<RemoteChange> changes = new ArrayList<>(Math.min(limit, 1024));
+            synchronized (partition) {
+                NavigableMap<Stamp, RemoteChange> tail = afterId == null
+                        ? partition.mLog.tailMap(new Stamp(updatedAt, ""), true)
+                        : partition.mLog.tailMap(new Stamp(updatedAt, afterId), false);
+                for (RemoteChange change : tail.values()) {
+                    if (changes.size() == limit) {
+                        break;
+                    }
+                    changes.add(new RemoteChange(change.getId(), copy(change.getEvent()), change.getUpdatedAt()));
+                }
+            }
+            return changes;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Long> loadNewestUpdatedAt(String uid) {
+        return call(() -> {
+            Partition partition = partition(uid);
+            synchronized (partition) {
+                return partition.mLog.isEmpty() ? 0L : partition.mLog.lastKey().mTime;
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Integer> pruneTombstones(String uid, long before) {
+        return call(() -> {
+            Partition partition = partition(uid);
+            int pruned = 0;
+            synchronized (partition) {
+                Iterator<RemoteChange> changes = partition.mLog.headMap(new Stamp(before, ""), false)
+                        .values().iterator();
+                while (changes.hasNext()) {
+                    RemoteChange change = changes.next();
+                    if (change.isDeleted()) {
+                        changes.remove();
+                        partition.mNodes.remove(change.getId());
+                        pruned++;
+                    }
+                }
+            }
+            return pruned;
+        });
+    }
+
+    @Override
+    public CompletableFuture<RemoteChange> loadEvent(String uid, String id) {
+        return call(() -> {
+            Partition partition = partition(uid);
+            synchronized (partition) {
+                RemoteChange change = partition.mNodes.get(id);
+                return change == null ? null
+                        : new RemoteChange(id, copy(change.getEvent()), change.getUpdatedAt());
+            }
+        });
+    }
+
+    // Starts at (from, fromId) inclusive, as a Realtime Database startAt does
+    @Override
+    public Subscription listenWindow(String uid, long from, String fromId, long to, int limit,
+                                     WindowListener listener) {
+        return listen(uid, listener, new Stamp(from, fromId == null ? "" : fromId), to, limit);
+    }
+
+    @Override
+    public Subscription listenSeries(String uid, ChangeListener listener) {
+        return listen(uid, listener, null, 0, Integer.MAX_VALUE);
+    }
+
+    // Registers a live query and pushes its initial events
+    private Subscription listen(String uid, ChangeListener listener, Stamp from, long to, int limit) {
+        Partition partition = partition(uid);
+        LiveQuery query = new LiveQuery(partition, listener, from, to, limit);
+        synchronized (partition) {
+            partition.mQueries.add(query);
+            query.load();
+        }
+        return query;
+    }
+
+    // Get the number of events, tombstones included, stored for a user
+    public int size(String uid) {
+        Partition partition = partition(uid);
+        synchronized (partition) {
+            return partition.mNodes.size();
+        }
+    }
+
+    /**
+     * Stops the threads answering calls and live queries. Calls not yet
+     * answered never complete.
+     */
+    public void shutdown() {
+        mScheduler.shutdownNow();
+        mPusher.shutdownNow();
+    }
+
+    /**
+     * Runs an operation after half the call's delay and completes its
+     * result after the other half, or fails the call without running it.
+     */
+    private <T> CompletableFuture<T> call(Supplier<T> operation) {
+        long delay;
+        boolean fault;
+        synchronized (mRandom) {
+            delay = mLatencyMs + (mJitterMs > 0 ? (long) (mRandom.nextDouble() * mJitterMs) : 0);
+            fault = mFaultRate > 0 && mRandom.nextDouble() < mFaultRate;
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long requestDelay = delay / 2;
+        long responseDelay = delay - requestDelay;
+        mScheduler.schedule(() -> {
+            if (fault) {
+                result.completeExceptionally(new IOException("Injected remote store fault"));
+                return;
+            }
+            T value;
+            try {
+                value = operation.get();
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            if (responseDelay == 0) {
+                result.complete(value);
+            } else {
+                mScheduler.schedule(() -> result.complete(value), responseDelay, TimeUnit.MILLISECONDS);
+            }
+        }, requestDelay, TimeUnit.MILLISECONDS);
+        return result;
+    }
+
+    // Returns the events of a user, creating the partition on first use
+    private Partition partition(String uid) {
+        Partition partition = mPartitions.get(uid);
+        if (partition == null) {
+            partition = new Partition();
+            Partition raced = mPartitions.putIfAbsent(uid, partition);
+            if (raced != null) {
+                partition = raced;
+            }
+        }
+        return partition;
+    }
+
+    // Returns the store's time for a write, never earlier than the last
+    private synchronized long stamp() {
+        mLastStamp = Math.max(mLastStamp, System.currentTimeMillis());
+        return mLastStamp;
+    }
+
+    // Copies an event, so neither side sees the other's later changes
+    private static Event copy(Event event) {
+        if (event == null) {
+            return null;
+        }
+        Event copy = new Event();
+        copy.setId(event.getId());
+        copy.setEventTitle(event.getEventTitle());
+        copy.setEventDate(event.getEventDate());
+        copy.setEventTime(event.getEventTime());
+        copy.setTimeZone(event.getTimeZone());
+        copy.setStartTime(event.getStartTime());
+        copy.setRecurrence(event.getRecurrence());
+        copy.setSeriesEnd(event.getSeriesEnd());
+        return copy;
+    }
+}
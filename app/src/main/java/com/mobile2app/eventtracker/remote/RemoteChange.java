@@ -0,0 +1,51 @@
+package com.mobile2app.eventtracker.remote;
+
+import com.mobile2app.eventtracker.model.Event;
+
+/**
+ * One event node as a remote store returns it from a catch-up: the event
+ * as last written, or nothing for the tombstone of a deleted event, with
+ * the server time of that write.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public final class RemoteChange {
+
+    private final String mId;
+    private final Event mEvent;
+    private final long mUpdatedAt;
+
+    /**
+     * Creates a change.
+     *
+     * @param id        The id of the event.
+     * @param event     The event as last written, or null if it was deleted.
+     * @param updatedAt The server time of the write in epoch milliseconds.
+     */
+    public RemoteChange(String id, Event event, long updatedAt) {
+        mId = id;
+        mEvent = event;
+        mUpdatedAt = updatedAt;
+    }
+
+    // Get the id of the event
+    public String getId() {
+        return mId;
+    }
+
+    // Get the event as last written, or null for a deletion
+    public Event getEvent() {
+        return mEvent;
+    }
+
+    // Check whether the change is the tombstone of a deleted event
+    public boolean isDeleted() {
+        return mEvent == null;
+    }
+
+    // Get the server time of the write
+    public long getUpdatedAt() {
+        return mUpdatedAt;
+    }
+}
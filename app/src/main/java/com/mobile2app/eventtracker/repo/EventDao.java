@@ -1,13 +1,17 @@
 package com.mobile2app.eventtracker.repo;
 
+import android.database.Cursor;
 import androidx.room.*;
 import com.mobile2app.eventtracker.model.Event;
+import com.mobile2app.eventtracker.model.EventStartTime;
+import com.mobile2app.eventtracker.model.EventStat;
 import java.util.List;
 import androidx.lifecycle.LiveData;
 
 /**
  * Data Access Object (DAO) for performing CRUD operations on events.
- * Uses LiveData to handle lifecycle states.
+ * Uses LiveData to handle lifecycle states. Ordering and range queries
+ * use the (start_time, id) index so they are seeks rather than scans.
  *
  * @author Michael Gagujas
  * @since 2024-08-18
@@ -18,10 +22,121 @@ public interface EventDao {
     @Query("SELECT * FROM Event WHERE title = :title")
     LiveData<Event> getEvent(String title);
 
-    // Return LiveData of all events by date
-    @Query("SELECT * FROM Event ORDER BY date COLLATE NOCASE")
+    // Return an event by id, for use off the main thread
+    @Query("SELECT * FROM Event WHERE id = :id")
+    Event loadEvent(String id);
+
+    // Return LiveData of all events in chronological order
+    @Query("SELECT * FROM Event ORDER BY start_time, id")
     LiveData<List<Event>> getEvents();
 
+    // Return LiveData of single events starting in [from, to) and series overlapping it
+    @Query("SELECT * FROM Event WHERE (recurrence IS NULL AND start_time >= :from AND start_time < :to) "
+            + "OR (recurrence IS NOT NULL AND start_time < :to AND series_end >= :from) ORDER BY start_time, id")
+    LiveData<List<Event>> getRowsOverlapping(long from, long to);
+
+    // Return single events starting in [from, to), for use off the main thread
+    @Query("SELECT * FROM Event WHERE start_time >= :from AND start_time < :to AND recurrence IS NULL "
+            + "ORDER BY start_time, id")
+    List<Event> loadEventsBetween(long from, long to);
+
+    // Return at most limit single events starting in [from, to), for use off the main thread
+    @Query("SELECT * FROM Event WHERE start_time >= :from AND start_time < :to AND recurrence IS NULL "
+            + "ORDER BY start_time, id LIMIT :limit")
+    List<Event> loadEventsBetween(long from, long to, int limit);
+
+    // Count single events starting in [from, to)
+    @Query("SELECT COUNT(*) FROM Event WHERE start_time >= :from AND start_time < :to AND recurrence IS NULL")
+    int countEventsBetween(long from, long to);
+
+    // Return the series with an occurrence that may start in [from, to)
+    @Query("SELECT * FROM Event WHERE recurrence IS NOT NULL AND start_time < :to AND series_end >= :from")
+    List<Event> loadSeriesOverlapping(long from, long to);
+
+    // Return the schedule of every event starting after a time and every series still running
+    @Query("SELECT id, start_time, recurrence, time_zone FROM Event WHERE start_time > :from "
+            + "OR (recurrence IS NOT NULL AND series_end > :from)")
+    List<EventStartTime> loadStartTimesAfter(long from);
+
+    // Return the id of every event row
+    @Query("SELECT id FROM Event")
+    List<String> loadAllIds();
+
+    // Count every event row, counting a series once
+    @Query("SELECT COUNT(*) FROM Event")
+    int countEvents();
+
+    // Return LiveData of the buckets of a period with keys in [from, to), in time order
+    @Query("SELECT * FROM EventStat WHERE period = :period AND bucket >= :from AND bucket < :to ORDER BY bucket")
+    LiveData<List<EventStat>> getStats(String period, String from, String to);
+
+    // Return the buckets of a period with keys in [from, to), in time order
+    @Query("SELECT * FROM EventStat WHERE period = :period AND bucket >= :from AND bucket < :to ORDER BY bucket")
+    List<EventStat> loadStats(String period, String from, String to);
+
+    // Return the buckets of a period holding the most events, busiest first
+    @Query("SELECT * FROM EventStat WHERE period = :period ORDER BY count DESC, bucket LIMIT :limit")
+    List<EventStat> loadBusiestStats(String period, int limit);
+
+    // Sum the events of the buckets of a period with keys in [from, to)
+    @Query("SELECT COALESCE(SUM(count), 0) FROM EventStat WHERE period = :period AND bucket >= :from AND bucket < :to")
+    int sumStats(String period, String from, String to);
+
+    // Remove every bucket, before a rebuild
+    @Query("DELETE FROM EventStat")
+    void clearStats();
+
+    // Recount the day buckets from the events
+    @Query(EventDatabase.REBUILD_DAY_STATS)
+    void rebuildDayStats();
+
+    // Recount the week buckets from the events
+    @Query(EventDatabase.REBUILD_WEEK_STATS)
+    void rebuildWeekStats();
+
+    // Recount the month buckets from the events
+    @Query(EventDatabase.REBUILD_MONTH_STATS)
+    void rebuildMonthStats();
+
+    /**
+     * Recounts every statistics bucket from the Event table in one
+     * transaction, repairing buckets computed in a previous time zone.
+     */
+    @Transaction
+    default void rebuildStats() {
+        clearStats();
+        rebuildDayStats();
+        rebuildWeekStats();
+        rebuildMonthStats();
+    }
+
+    // Return the first page of events in chronological order
+    @Query("SELECT * FROM Event ORDER BY start_time, id LIMIT :limit")
+    List<Event> getFirstPage(int limit);
+
+    // Return the page of events that follows the (startTime, id) key
+    @Query("SELECT * FROM Event WHERE start_time >= :startTime "
+            + "AND (start_time > :startTime OR id > :id) "
+            + "ORDER BY start_time, id LIMIT :limit")
+    List<Event> getPageAfter(long startTime, String id, int limit);
+
+    // Return the events with keys in ((fromTime, fromId), (toTime, toId)]
+    @Query("SELECT * FROM Event WHERE start_time >= :fromTime "
+            + "AND (start_time > :fromTime OR id > :fromId) "
+            + "AND start_time <= :toTime AND (start_time < :toTime OR id <= :toId) "
+            + "ORDER BY start_time, id")
+    List<Event> getPageRange(long fromTime, String fromId, long toTime, String toId);
+
+    // Return events whose title matches an FTS query, in chronological order
+    @Query("SELECT Event.* FROM Event JOIN EventFts ON Event.rowid = EventFts.docid "
+            + "WHERE EventFts MATCH :match ORDER BY Event.start_time, Event.id LIMIT :limit")
+    List<Event> searchEvents(String match, int limit);
+
+    // Return every FTS match as start time, id and the matchinfo used for ranking
+    @Query("SELECT Event.start_time, Event.id, matchinfo(EventFts, 'pcnx') FROM Event "
+            + "JOIN EventFts ON Event.rowid = EventFts.docid WHERE EventFts MATCH :match")
+    Cursor searchMatches(String match);
+
     // Add an event
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     long addEvent(Event event);
@@ -33,4 +148,28 @@ public interface EventDao {
     // Delete an event
     @Delete
     void deleteEvent(Event event);
-}
\ No newline at end of file
+
+    // Delete an event by id
+    @Query("DELETE FROM Event WHERE id = :id")
+    int deleteEventById(String id);
+
+    // Return the events with the given ids
+    @Query("SELECT * FROM Event WHERE id IN (:ids)")
+    List<Event> loadEvents(List<String> ids);
+
+    // Add or replace a collection of events in one statement loop
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void addEvents(List<Event> events);
+
+    // Update a collection of events
+    @Update
+    void updateEvents(List<Event> events);
+
+    // Delete a collection of events
+    @Delete
+    void deleteEvents(List<Event> events);
+
+    // Delete the events with the given ids
+    @Query("DELETE FROM Event WHERE id IN (:ids)")
+    int deleteEventsById(List<String> ids);
+}
@@ -1,8 +1,20 @@
 package com.mobile2app.eventtracker.repo;
 
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
 import com.mobile2app.eventtracker.model.Event;
+import com.mobile2app.eventtracker.model.EventFts;
+import com.mobile2app.eventtracker.model.EventStat;
+import com.mobile2app.eventtracker.model.EventTimes;
+import com.mobile2app.eventtracker.model.PendingMutation;
+
+import java.util.TimeZone;
 
 /**
  * Identifies the class as a Room database and lists the tables
@@ -11,7 +23,181 @@ import com.mobile2app.eventtracker.model.Event;
  * @author Michael Gagujas
  * @since 2024-08-18
  */
-@Database(entities = {Event.class}, version = 1)
+@Database(entities = {Event.class, PendingMutation.class, EventFts.class, EventStat.class}, version = 6)
 public abstract class EventDatabase extends RoomDatabase {
+    // Rows read per cursor window while backfilling existing events
+    private static final int MIGRATION_CHUNK_SIZE = 500;
+
+    // Bucket keys of an Event row's start_time in the device's time zone, as EventStat.bucketOf computes them
+    static final String DAY_BUCKET = "date(start_time / 1000, 'unixepoch', 'localtime')";
+    static final String WEEK_BUCKET = "date(start_time / 1000, 'unixepoch', 'localtime', '-6 days', 'weekday 1')";
+    static final String MONTH_BUCKET = "strftime('%Y-%m', start_time / 1000, 'unixepoch', 'localtime')";
+    // Rows counted in EventStat: single events with a known start time
+    static final String COUNTED = "recurrence IS NULL AND start_time > 0";
+
+    // Recounts one period of EventStat from the Event table
+    static final String REBUILD_DAY_STATS = "INSERT INTO EventStat (period, bucket, count) SELECT '"
+            + EventStat.PERIOD_DAY + "', " + DAY_BUCKET + ", COUNT(*) FROM Event WHERE " + COUNTED + " GROUP BY 2";
+    static final String REBUILD_WEEK_STATS = "INSERT INTO EventStat (period, bucket, count) SELECT '"
+            + EventStat.PERIOD_WEEK + "', " + WEEK_BUCKET + ", COUNT(*) FROM Event WHERE " + COUNTED + " GROUP BY 2";
+    static final String REBUILD_MONTH_STATS = "INSERT INTO EventStat (period, bucket, count) SELECT '"
+            + EventStat.PERIOD_MONTH + "', " + MONTH_BUCKET + ", COUNT(*) FROM Event WHERE " + COUNTED + " GROUP BY 2";
+
     public abstract EventDao eventDao();
-}
\ No newline at end of file
+    public abstract OutboxDao outboxDao();
+
+    /**
+     * Adds the start_time and time_zone columns and backfills them from the
+     * legacy date and time strings. Rows are read in rowid order in fixed-size
+     * chunks so the cursor never holds the whole table, and the index is built
+     * once after the backfill rather than maintained on every update.
+     */
+    public static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE Event ADD COLUMN start_time INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE Event ADD COLUMN time_zone TEXT");
+
+            // Existing rows were entered on this device, so assume its time zone
+            TimeZone zone = TimeZone.getDefault();
+            SupportSQLiteStatement update = db.compileStatement(
+                    "UPDATE Event SET start_time = ?, time_zone = ? WHERE rowid = ?");
+            long lastRowId = -1;
+            int read;
+            do {
+                read = 0;
+                try (Cursor cursor = db.query(
+                        "SELECT rowid, date, time FROM Event WHERE rowid > ? ORDER BY rowid LIMIT "
+                                + MIGRATION_CHUNK_SIZE, new Object[]{lastRowId})) {
+                    while (cursor.moveToNext()) {
+                        lastRowId = cursor.getLong(0);
+                        long startTime = EventTimes.parseStartTime(
+                                cursor.getString(1), cursor.getString(2), zone);
+                        update.bindLong(1, startTime);
+                        update.bindString(2, zone.getID());
+                        update.bindLong(3, lastRowId);
+                        update.executeUpdateDelete();
+                        update.clearBindings();
+                        read++;
+                    }
+                }
+            } while (read == MIGRATION_CHUNK_SIZE);
+
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_Event_start_time_id` ON `Event` (`start_time`, `id`)");
+        }
+    };
+
+    /**
+     * Adds the outbox table of local changes waiting to be synced.
+     */
+    public static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `PendingMutation` (`seq` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`event_id` TEXT NOT NULL, `op` INTEGER NOT NULL, `created_at` INTEGER NOT NULL)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_PendingMutation_event_id` ON `PendingMutation` (`event_id`)");
+        }
+    };
+
+    /**
+     * Adds the full-text index over event titles, creates the triggers Room
+     * would have created for a new database, and indexes the existing rows.
+     */
+    public static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `EventFts` USING FTS4(`title` TEXT, content=`Event`)");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_EventFts_BEFORE_UPDATE BEFORE UPDATE ON `Event` "
+                    + "BEGIN DELETE FROM `EventFts` WHERE `docid`=OLD.`rowid`; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_EventFts_BEFORE_DELETE BEFORE DELETE ON `Event` "
+                    + "BEGIN DELETE FROM `EventFts` WHERE `docid`=OLD.`rowid`; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_EventFts_AFTER_UPDATE AFTER UPDATE ON `Event` "
+                    + "BEGIN INSERT INTO `EventFts`(`docid`, `title`) VALUES (NEW.`rowid`, NEW.`title`); END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_EventFts_AFTER_INSERT AFTER INSERT ON `Event` "
+                    + "BEGIN INSERT INTO `EventFts`(`docid`, `title`) VALUES (NEW.`rowid`, NEW.`title`); END");
+            db.execSQL("INSERT INTO `EventFts`(`EventFts`) VALUES ('rebuild')");
+        }
+    };
+
+    /**
+     * Adds the recurrence rule and series end columns. Every existing row
+     * is a single event, so its series end is simply its start time.
+     */
+    public static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE Event ADD COLUMN recurrence TEXT");
+            db.execSQL("ALTER TABLE Event ADD COLUMN series_end INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("UPDATE Event SET series_end = start_time");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_Event_recurrence` ON `Event` (`recurrence`)");
+        }
+    };
+
+    /**
+     * Adds the statistics table, its triggers, and counts the existing rows.
+     */
+    public static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `EventStat` (`period` TEXT NOT NULL, `bucket` TEXT NOT NULL, "
+                    + "`count` INTEGER NOT NULL, PRIMARY KEY(`period`, `bucket`))");
+            createStatsTriggers(db);
+            rebuildStats(db);
+        }
+    };
+
+    /**
+     * Creates the triggers keeping EventStat current. Each insert, update,
+     * or delete of a counted row moves one count in each period, so a write
+     * costs three upserts however large the table. With recursive triggers
+     * on, INSERT OR REPLACE runs the delete trigger for the row it replaces,
+     * so upserts are counted once. Buckets left empty are dropped.
+     *
+     * @param db The database, in a new or migrating state.
+     */
+    static void createStatsTriggers(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS event_stats_after_insert AFTER INSERT ON `Event` "
+                + "BEGIN " + countStats("NEW", 1) + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS event_stats_after_delete AFTER DELETE ON `Event` "
+                + "BEGIN " + countStats("OLD", -1) + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS event_stats_after_update AFTER UPDATE OF start_time, recurrence "
+                + "ON `Event` BEGIN " + countStats("OLD", -1) + countStats("NEW", 1) + "END");
+    }
+
+    /**
+     * Recounts EventStat from the Event table, for migrations and to repair
+     * the buckets after the device's time zone changed. Runs in the caller's
+     * transaction.
+     *
+     * @param db The database.
+     */
+    static void rebuildStats(SupportSQLiteDatabase db) {
+        db.execSQL("DELETE FROM EventStat");
+        db.execSQL(REBUILD_DAY_STATS);
+        db.execSQL(REBUILD_WEEK_STATS);
+        db.execSQL(REBUILD_MONTH_STATS);
+    }
+
+    // Returns the trigger statements adding delta to the buckets of the OLD or NEW row
+    private static String countStats(String row, int delta) {
+        String counted = COUNTED.replace("recurrence", row + ".recurrence").replace("start_time", row + ".start_time");
+        String[][] periods = {
+                {EventStat.PERIOD_DAY, DAY_BUCKET},
+                {EventStat.PERIOD_WEEK, WEEK_BUCKET},
+                {EventStat.PERIOD_MONTH, MONTH_BUCKET}};
+        StringBuilder sql = new StringBuilder();
+        StringBuilder emptied = new StringBuilder();
+        for (String[] period : periods) {
+            String bucket = period[1].replace("start_time", row + ".start_time");
+            sql.append("INSERT INTO EventStat (period, bucket, count) SELECT '").append(period[0]).append("', ")
+                    .append(bucket).append(", ").append(delta).append(" WHERE ").append(counted)
+                    .append(" ON CONFLICT(period, bucket) DO UPDATE SET count = count + ").append(delta).append("; ");
+            emptied.append(emptied.length() == 0 ? "" : " OR ")
+                    .append("(period = '").append(period[0]).append("' AND bucket = ").append(bucket).append(')');
+        }
+        if (delta < 0) {
+            sql.append("DELETE FROM EventStat WHERE count <= 0 AND (").append(emptied).append("); ");
+        }
+        return sql.toString();
+    }
+}
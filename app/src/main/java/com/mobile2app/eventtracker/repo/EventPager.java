@@ -0,0 +1,384 @@
+package com.mobile2app.eventtracker.repo;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.mobile2app.eventtracker.metrics.MetricsRegistry;
+import com.mobile2app.eventtracker.model.Event;
+import com.mobile2app.eventtracker.model.EventColumns;
+import com.mobile2app.eventtracker.model.StringPool;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Loads events in chronological order one fixed-size page at a time by
+ * seeking on the (start_time, id) index. Each loaded page covers the key
+ * range between the last key of the previous page and its own last key,
+ * so a write only reloads the page whose range contains the written key.
+ * Page loads and reloads run on the read pool at UI priority; writes that
+ * land while a reload is queued are folded into it. Queries run under a
+ * separate lock from the scheduling state, so the main thread asking for
+ * more never waits for a query to finish. Pages are kept as EventColumns
+ * over one string pool, so the loaded list costs a few array slots per
+ * event and unchanged strings are shared between reloads. Inline edits
+ * not yet committed are laid over the published rows, so they show at
+ * once and disappear if they are rolled back.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public class EventPager {
+
+    // Number of rows fetched for each new page
+    public static final int PAGE_SIZE = 50;
+
+    // Lower bound that sorts before every real (start_time, id) key
+    private static final long MIN_START_TIME = Long.MIN_VALUE;
+    private static final String MIN_ID = "";
+
+    private final EventDao mEventDao;
+    private final ReadExecutor mReadExecutor;
+    private final MetricsRegistry mMetrics;
+    private final Runnable mOnEndReached;
+    private final EventPatchBuffer mPatches;
+    private final MutableLiveData<EventColumns> mEvents = new MutableLiveData<>();
+    // Interns the strings of every page this pager loads
+    private final StringPool mPool = new StringPool();
+
+    // Guards the loaded pages and the queries that change them
+    private final Object mPagesLock = new Object();
+    // Loaded pages in key order; page i covers (last key of page i - 1, last key of page i]
+    private final List<EventColumns> mPages = new ArrayList<>();
+    private volatile boolean mEndReached;
+    private volatile boolean mClosed;
+    // Scheduling state, guarded by this
+    private boolean mLoading;
+    // Events written since the last reload, and the reload queued for them
+    private List<Event> mWritten = new ArrayList<>();
+    private Future<?> mLoad;
+    private Future<?> mReload;
+
+    /**
+     * Creates a pager that runs its queries on the given executor.
+     *
+     * @param eventDao The DAO used to read pages.
+     * @param readExecutor The pool pages are read on.
+     * @param metrics      The registry query timings are recorded in.
+     * @param onEndReached Run when more is asked for after the last local page,
+     *                     so further events can be fetched from the server.
+     * @param patches      The inline edits laid over the loaded rows.
+     */
+    EventPager(EventDao eventDao, ReadExecutor readExecutor, MetricsRegistry metrics,
+               Runnable onEndReached, EventPatchBuffer patches) {
+        mEventDao = eventDao;
+        mReadExecutor = readExecutor;
+        mMetrics = metrics;
+        mOnEndReached = onEndReached;
+        mPatches = patches;
+    }
+
+    /**
+     * Returns the events loaded so far, in chronological order.
+     *
+     * @return LiveData columns of the loaded events.
+     */
+    public LiveData<EventColumns> getEvents() {
+        return mEvents;
+    }
+
+    /**
+     * Loads the next page if one is not already loading and the end of the
+     * table has not been reached. At the end of the table, asks for more
+     * events from the server instead; they arrive through onEventsWritten.
+     * Called as the list scrolls near its end.
+     */
+    public synchronized void loadMore() {
+        if (mLoading || mClosed) {
+            return;
+        }
+        if (mEndReached) {
+            mOnEndReached.run();
+            return;
+        }
+        try {
+            mLoad = mReadExecutor.submit(ReadExecutor.PRIORITY_UI, null, this::loadNextPage);
+            mLoading = true;
+        } catch (RejectedExecutionException e) {
+            // The next scroll asks again
+        }
+    }
+
+    // Reads the page after the last one loaded; a failed read leaves the next scroll to try again
+    private void loadNextPage() {
+        try {
+            synchronized (mPagesLock) {
+                if (!mClosed) {
+                    EventColumns page;
+                    if (mPages.isEmpty()) {
+                        page = queryFirstPage();
+                    } else {
+                        int last = mPages.size() - 1;
+                        page = queryPageAfter(lastStartTime(last), lastId(last));
+                    }
+                    if (!page.isEmpty()) {
+                        mPages.add(page);
+                    }
+                    mEndReached = page.size() < PAGE_SIZE;
+                    publish();
+                }
+            }
+        } finally {
+            synchronized (this) {
+                mLoading = false;
+                mLoad = null;
+            }
+        }
+    }
+
+    /**
+     * Queues a reload of the pages touched by committed writes, or adds the
+     * events to the reload already queued.
+     *
+     * @param events The events that were added, updated, or deleted.
+     */
+    synchronized void onEventsWritten(List<Event> events) {
+        if (mClosed || events.isEmpty()) {
+            return;
+        }
+        mWritten.addAll(events);
+        if (mReload != null) {
+            return;
+        }
+        try {
+            mReload = mReadExecutor.submit(ReadExecutor.PRIORITY_UI, null, this::reloadWritten);
+        } catch (RejectedExecutionException e) {
+            // Kept in mWritten and retried with the next write
+        }
+    }
+
+    // Runs the queued reload for the events written since the last one
+    private void reloadWritten() {
+        List<Event> events;
+        synchronized (this) {
+            mReload = null;
+            events = mWritten;
+            mWritten = new ArrayList<>();
+        }
+        synchronized (mPagesLock) {
+            if (!mClosed) {
+                reloadPages(events);
+            }
+        }
+    }
+
+    /**
+     * Reloads the pages whose key ranges contain the old or new key of any
+     * written event, each at most once. Caller holds the pages lock.
+     *
+     * @param events The events that were added, updated, or deleted.
+     */
+    private void reloadPages(List<Event> events) {
+        if (mPages.isEmpty()) {
+            // Only an empty table that was fully read can gain its first page here
+            if (mEndReached) {
+                EventColumns page = queryFirstPage();
+                if (!page.isEmpty()) {
+                    mPages.add(page);
+                    mEndReached = page.size() < PAGE_SIZE;
+                    publish();
+                }
+            }
+            return;
+        }
+
+        // Collect affected pages against the current boundaries before reloading any
+        Map<String, Integer> loadedPages = new HashMap<>();
+        for (int i = 0; i < mPages.size(); i++) {
+            EventColumns page = mPages.get(i);
+            for (int j = 0; j < page.size(); j++) {
+                loadedPages.put(page.getId(j), i);
+            }
+        }
+        TreeSet<Integer> affected = new TreeSet<>();
+        for (Event event : events) {
+            // The event may have moved, so also reload the page it was loaded in
+            Integer oldPage = loadedPages.get(event.getId());
+            if (oldPage != null) {
+                affected.add(oldPage);
+            }
+            int newPage = findPageForKey(event.getStartTime(), event.getId());
+            if (newPage >= 0) {
+                affected.add(newPage);
+            }
+        }
+        if (affected.isEmpty()) {
+            return;
+        }
+        // Reload from the end so removing an emptied page does not shift pending indexes
+        for (int index : affected.descendingSet()) {
+            reloadPage(index);
+        }
+        publish();
+    }
+
+    /**
+     * Publishes the loaded pages again with the current inline edits, after
+     * one was added or rolled back. Reads nothing from the database.
+     */
+    void onPatchesChanged() {
+        if (mClosed) {
+            return;
+        }
+        try {
+            mReadExecutor.submit(ReadExecutor.PRIORITY_UI, null, () -> {
+                synchronized (mPagesLock) {
+                    if (!mClosed) {
+                        publish();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The next load or reload publishes the edits
+        }
+    }
+
+    /**
+     * Drops every loaded page after the tables were cleared and starts again
+     * from the first page. Called on the write lane.
+     */
+    void onCleared() {
+        synchronized (mPagesLock) {
+            mPages.clear();
+            mEndReached = false;
+            publish();
+        }
+        loadMore();
+    }
+
+    /**
+     * Stops the pager from loading or reloading any more pages and releases
+     * the strings of its pages. The lists it published must no longer be read.
+     */
+    public synchronized void close() {
+        mClosed = true;
+        mWritten.clear();
+        mPool.clear();
+        // Drop reads still queued; one already running sees mClosed and stops
+        if (mLoad != null) {
+            mLoad.cancel(false);
+        }
+        if (mReload != null) {
+            mReload.cancel(false);
+        }
+    }
+
+    // Returns the index of the page whose key range contains the key, or -1 if it is not loaded
+    private int findPageForKey(long startTime, String id) {
+        int low = 0;
+        int high = mPages.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (Event.compareKeys(lastStartTime(mid), lastId(mid), startTime, id) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (low < mPages.size()) {
+            return low;
+        }
+        // Keys past the last page belong to it only once the whole table is loaded
+        return mEndReached && !mPages.isEmpty() ? mPages.size() - 1 : -1;
+    }
+
+    // Re-queries one page's key range
+    private void reloadPage(int index) {
+        long fromTime = MIN_START_TIME;
+        String fromId = MIN_ID;
+        if (index > 0) {
+            fromTime = lastStartTime(index - 1);
+            fromId = lastId(index - 1);
+        }
+        EventColumns page;
+        if (index == mPages.size() - 1 && mEndReached) {
+            // The last page is open-ended and may have grown past its old last key
+            page = index == 0
+                    ? queryFirstPage()
+                    : queryPageAfter(fromTime, fromId);
+            mEndReached = page.size() < PAGE_SIZE;
+        } else {
+            page = queryPageRange(fromTime, fromId, lastStartTime(index), lastId(index));
+        }
+        if (page.isEmpty()) {
+            mPages.remove(index);
+        } else {
+            mPages.set(index, page);
+        }
+    }
+
+    // Reads the first page, recording its timing
+    private EventColumns queryFirstPage() {
+        long start = mMetrics.startTimer();
+        List<Event> page = mEventDao.getFirstPage(PAGE_SIZE);
+        mMetrics.recordQuery("EventDao.getFirstPage", start, page.size());
+        return EventColumns.of(mPool, page);
+    }
+
+    // Reads the page after a key, recording its timing
+    private EventColumns queryPageAfter(long startTime, String id) {
+        long start = mMetrics.startTimer();
+        List<Event> page = mEventDao.getPageAfter(startTime, id, PAGE_SIZE);
+        mMetrics.recordQuery("EventDao.getPageAfter", start, page.size());
+        return EventColumns.of(mPool, page);
+    }
+
+    // Reads the events in a key range, recording its timing
+    private EventColumns queryPageRange(long fromTime, String fromId, long toTime, String toId) {
+        long start = mMetrics.startTimer();
+        List<Event> page = mEventDao.getPageRange(fromTime, fromId, toTime, toId);
+        mMetrics.recordQuery("EventDao.getPageRange", start, page.size());
+        return EventColumns.of(mPool, page);
+    }
+
+    // Returns the start time of the last event of a loaded page
+    private long lastStartTime(int page) {
+        EventColumns events = mPages.get(page);
+        return events.getStartTime(events.size() - 1);
+    }
+
+    // Returns the id of the last event of a loaded page
+    private String lastId(int page) {
+        EventColumns events = mPages.get(page);
+        return events.getId(events.size() - 1);
+    }
+
+    // Posts the concatenation of the loaded pages, with inline edits applied, to observers
+    private void publish() {
+        int size = 0;
+        for (EventColumns page : mPages) {
+            size += page.size();
+        }
+        EventColumns.Builder events = new EventColumns.Builder(mPool, size);
+        boolean patched = !mPatches.isEmpty();
+        for (EventColumns page : mPages) {
+            if (!patched) {
+                events.addAll(page);
+                continue;
+            }
+            for (int i = 0; i < page.size(); i++) {
+                if (mPatches.isPatched(page.getId(i))) {
+                    events.add(mPatches.overlay(page.toEvent(i)));
+                } else {
+                    events.add(page, i);
+                }
+            }
+        }
+        mEvents.postValue(events.build());
+    }
+}
@@ -0,0 +1,310 @@
+package com.mobile2app.eventtracker.repo;
+
+import static android.content.ContentValues.TAG;
+
+import android.util.Log;
+
+import com.mobile2app.eventtracker.model.Event;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects inline edits of single fields per event and writes them once
+ * the user pauses. Each edit restarts a short debounce, bounded by a
+ * maximum wait, so editing the date and then the time, or moving a field
+ * several times, becomes one write of the event, one outbox entry, and one
+ * node in the sync engine's multi-path update. The fields are applied to
+ * the row as stored when the write runs rather than to the row the list
+ * showed when the picker opened, so a second edit never undoes the first.
+ *
+ * <p>Until a write commits, its fields are laid over the loaded pages so
+ * the list shows the edit at once. If the stored row cannot be read or the
+ * write fails, the edit is queued again after the debounce, a few times at
+ * most. If the event is gone, or the edit still cannot be written, the
+ * fields are dropped, which rolls the list back to the stored row, and the
+ * listener is told.</p>
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public final class EventPatchBuffer {
+
+    // Field holding the "MM/dd/yyyy" date of an event
+    public static final String FIELD_DATE = "date";
+    // Field holding the time of day of an event
+    public static final String FIELD_TIME = "time";
+
+    // Quiet time after the last edit before the edits are written
+    static final long DEBOUNCE_MS = 750;
+    // Longest the first edit of a burst waits to be written
+    static final long MAX_DELAY_MS = 3000;
+    // Writes of an edit tried before it is rolled back
+    static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * Notified when the edits laid over the stored events change.
+     */
+    interface Listener {
+        // Called after an edit is added or rolled back
+        void onPatchesChanged();
+
+        // Called after the edits of an event were dropped because they could not be written
+        void onPatchRejected(String id);
+    }
+
+    // The unconfirmed edits of one event
+    private static final class Patch {
+        final Map<String, String> mFields = new LinkedHashMap<>();
+        // Bumped by every edit, so a commit only confirms the edits it wrote
+        long mVersion;
+        boolean mWritten;
+        // Failed writes of the current version
+        int mAttempts;
+    }
+
+    private final EventDao mEventDao;
+    private final EventWriteBatcher mWriteBatcher;
+    private final Executor mWriteLane;
+    private final Listener mListener;
+    private final ScheduledExecutorService mTimer = Executors.newSingleThreadScheduledExecutor();
+
+    // Guarded by this
+    private final Map<String, Patch> mPatches = new HashMap<>();
+    private ScheduledFuture<?> mScheduledFlush;
+    private long mFirstPendingAt;
+    private long mVersion;
+
+    EventPatchBuffer(EventDao eventDao, EventWriteBatcher writeBatcher, Executor writeLane, Listener listener) {
+        mEventDao = eventDao;
+        mWriteBatcher = writeBatcher;
+        mWriteLane = writeLane;
+        mListener = listener;
+    }
+
+    /**
+     * Records an edit of one field and restarts the debounce.
+     *
+     * @param id    The id of the event.
+     * @param field FIELD_DATE or FIELD_TIME.
+     * @param value The new value of the field.
+     */
+    void patch(String id, String field, String value) {
+        if (!FIELD_DATE.equals(field) && !FIELD_TIME.equals(field)) {
+            throw new IllegalArgumentException("Unknown event field " + field);
+        }
+        synchronized (this) {
+            Patch patch = mPatches.get(id);
+            if (patch == null) {
+                patch = new Patch();
+                mPatches.put(id, patch);
+            }
+            patch.mFields.put(field, value);
+            patch.mVersion = ++mVersion;
+            patch.mWritten = false;
+            patch.mAttempts = 0;
+            scheduleFlush();
+        }
+        mListener.onPatchesChanged();
+    }
+
+    /**
+     * Writes every edit now instead of waiting for the debounce, for
+     * example when the screen is left.
+     */
+    void flushNow() {
+        synchronized (this) {
+            if (mScheduledFlush != null) {
+                mScheduledFlush.cancel(false);
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Returns whether any edit is waiting to be written or confirmed.
+     */
+    synchronized boolean isEmpty() {
+        return mPatches.isEmpty();
+    }
+
+    // Check whether an event has unconfirmed edits
+    synchronized boolean isPatched(String id) {
+        return mPatches.containsKey(id);
+    }
+
+    /**
+     * Returns the stored event with its unconfirmed edits applied, or the
+     * event itself if it has none.
+     *
+     * @param event The event as stored.
+     * @return The event as the user last edited it.
+     */
+    Event overlay(Event event) {
+        Map<String, String> fields;
+        synchronized (this) {
+            Patch patch = mPatches.get(event.getId());
+            if (patch == null) {
+                return event;
+            }
+            fields = new HashMap<>(patch.mFields);
+        }
+        return apply(event, fields);
+    }
+
+    // Drops every edit after the tables were cleared
+    void clear() {
+        synchronized (this) {
+            mPatches.clear();
+            if (mScheduledFlush != null) {
+                mScheduledFlush.cancel(false);
+                mScheduledFlush = null;
+            }
+        }
+        mListener.onPatchesChanged();
+    }
+
+    // Restarts the debounce unless the first pending edit has waited its maximum; caller holds the lock
+    private void scheduleFlush() {
+        long now = System.currentTimeMillis();
+        if (mScheduledFlush == null || mScheduledFlush.isDone()) {
+            mFirstPendingAt = now;
+        } else {
+            mScheduledFlush.cancel(false);
+        }
+        long delay = Math.min(DEBOUNCE_MS, Math.max(0, mFirstPendingAt + MAX_DELAY_MS - now));
+        mScheduledFlush = mTimer.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+    }
+
+    // Hands the edits not yet written to the write lane
+    private void flush() {
+        Map<String, Map<String, String>> fields = new HashMap<>();
+        Map<String, Long> versions = new HashMap<>();
+        synchronized (this) {
+            mScheduledFlush = null;
+            for (Map.Entry<String, Patch> entry : mPatches.entrySet()) {
+                Patch patch = entry.getValue();
+                if (!patch.mWritten) {
+                    patch.mWritten = true;
+                    fields.put(entry.getKey(), new HashMap<>(patch.mFields));
+                    versions.put(entry.getKey(), patch.mVersion);
+                }
+            }
+        }
+        if (fields.isEmpty()) {
+            return;
+        }
+        mWriteLane.execute(() -> write(fields, versions));
+    }
+
+    /**
+     * Applies the edits to the stored rows and queues them as one batch.
+     * Runs on the write lane, so the rows read include every write queued
+     * before the edits; local writes win over remote ones in the batch.
+     */
+    private void write(Map<String, Map<String, String>> fields, Map<String, Long> versions) {
+        List<String> ids = new ArrayList<>(fields.keySet());
+        Map<String, Event> stored = new HashMap<>();
+        try {
+            for (Event event : mEventDao.loadEvents(ids)) {
+                stored.put(event.getId(), event);
+            }
+        } catch (RuntimeException e) {
+            // Not knowing whether the rows exist is no reason to drop the edits
+            Log.w(TAG, "Could not read edited events.", e);
+            for (String id : ids) {
+                retry(id, versions.get(id));
+            }
+            return;
+        }
+        for (String id : ids) {
+            Event event = stored.get(id);
+            long version = versions.get(id);
+            if (event == null) {
+                reject(id, version, "missing event");
+            } else {
+                mWriteBatcher.upsert(apply(event, fields.get(id)), true, new EventWriteBatcher.Callback() {
+                    @Override
+                    public void onBatchCommitted(int batchSize) {
+                        confirm(id, version);
+                    }
+
+                    @Override
+                    public void onBatchFailed(RuntimeException error) {
+                        retry(id, version);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Drops the edits of an event once written, unless it was edited again
+     * meanwhile. The commit already reloads the pages holding the event, so
+     * the list moves from the overlay to the stored row without a republish.
+     */
+    private synchronized void confirm(String id, long version) {
+        Patch patch = mPatches.get(id);
+        if (patch != null && patch.mVersion == version) {
+            mPatches.remove(id);
+        }
+    }
+
+    /**
+     * Queues the edits of an event again after a failed write, or rolls
+     * them back once they have failed MAX_ATTEMPTS times. A newer edit is
+     * written anyway, so a failure of an older one is ignored.
+     */
+    private void retry(String id, long version) {
+        synchronized (this) {
+            Patch patch = mPatches.get(id);
+            if (patch == null || patch.mVersion != version) {
+                return;
+            }
+            if (++patch.mAttempts < MAX_ATTEMPTS) {
+                patch.mWritten = false;
+                scheduleFlush();
+                return;
+            }
+        }
+        reject(id, version, "event that could not be written");
+    }
+
+    // Rolls back the edits of an event that could not be written
+    private void reject(String id, long version, String reason) {
+        synchronized (this) {
+            Patch patch = mPatches.get(id);
+            if (patch == null || patch.mVersion != version) {
+                return;
+            }
+            mPatches.remove(id);
+        }
+        Log.w(TAG, "Dropped edits of " + reason + " " + id + ".");
+        mListener.onPatchesChanged();
+        mListener.onPatchRejected(id);
+    }
+
+    /**
+     * Returns a copy of an event with edited fields, its start time
+     * recomputed from them, and its recurrence kept.
+     *
+     * @param event  The event to edit.
+     * @param fields The edited fields by name.
+     * @return The edited event.
+     */
+    static Event apply(Event event, Map<String, String> fields) {
+        String date = fields.containsKey(FIELD_DATE) ? fields.get(FIELD_DATE) : event.getEventDate();
+        String time = fields.containsKey(FIELD_TIME) ? fields.get(FIELD_TIME) : event.getEventTime();
+        Event edited = new Event(event.getId(), event.getEventTitle(), date, time, event.getTimeZone());
+        edited.setRecurrenceRule(event.getRecurrenceRule());
+        return edited;
+    }
+}
@@ -1,64 +1,342 @@
 package com.mobile2app.eventtracker.repo;
 
+import static android.content.ContentValues.TAG;
+
 import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
+import androidx.preference.PreferenceManager;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
 import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.mobile2app.eventtracker.metrics.MetricsRegistry;
 import com.mobile2app.eventtracker.model.Event;
+import com.mobile2app.eventtracker.model.EventOccurrences;
+import com.mobile2app.eventtracker.model.EventSearchResult;
+import com.mobile2app.eventtracker.model.EventStartTime;
+import com.mobile2app.eventtracker.model.EventStat;
+import com.mobile2app.eventtracker.model.RecurrenceRule;
+import com.mobile2app.eventtracker.remote.EventRemoteStore;
 
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Singleton class for handling interactions involving
- * events in a database.
+ * events in a database. Room is the source of truth: writes complete
+ * locally and are queued in the outbox for EventSyncEngine to push to
+ * the Realtime Database. All writes run one at a time on a single write
+ * lane, so they never contend for SQLite's write lock, while reads run on
+ * a small pool that serves screen reads ahead of background sync.
  *
  * @author Michael Gagujas
  * @since 2024-08-18
  */
 public class EventRepository {
-    private static EventRepository mEventRepo;
+
+    /**
+     * Receives the results of a search on the database executor.
+     */
+    public interface SearchCallback {
+        /**
+         * Called with the matching events unless the search was cancelled.
+         *
+         * @param events The matching events.
+         */
+        void onResults(List<Event> events);
+    }
+
+    /**
+     * Receives the outcome of stopSync.
+     */
+    public interface StopSyncCallback {
+        /**
+         * Called on the main thread once the outbox was sent or could not be.
+         *
+         * @param stopped True if every local change was sent and syncing stopped,
+         *                false if some could not be sent and syncing goes on.
+         */
+        void onSyncStopped(boolean stopped);
+    }
+
+    /**
+     * Receives every committed change to the events table on the write lane.
+     */
+    public interface EventChangeListener {
+        /**
+         * Called after a batch of writes has been committed.
+         *
+         * @param changed    The events added, updated, or removed.
+         * @param deletedIds The ids of the events in changed that were removed.
+         */
+        void onEventsChanged(List<Event> changed, Set<String> deletedIds);
+
+        /**
+         * Called after every event was removed because another account signed in.
+         */
+        void onEventsCleared();
+    }
+
+    // Private preferences remembering whose events the local tables hold
+    private static final String SYNC_PREFS = "event_sync";
+    private static final String KEY_OWNER = "owner";
+    // Time zone the statistics buckets were computed in
+    private static final String KEY_STATS_ZONE = "stats_zone";
+
+    private static volatile EventRepository mEventRepo;
+    private final SharedPreferences mSyncPrefs;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    // Account whose sync starts once the local tables are cleared; main thread only
+    private String mPendingOwner;
+    private final EventDatabase mDatabase;
     private final EventDao mEventDao;
-    private static final int NUMBER_OF_THREADS = 4;
-    // Runs database operations in the background
-    private static final ExecutorService mDatabaseExecutor =
-            Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+    private final OutboxDao mOutboxDao;
+    private final EventSyncEngine mSyncEngine;
+    // Where events are synced to; every remote read and write goes through it
+    private final EventRemoteStore mRemoteStore;
+    private final EventWriteBatcher mWriteBatcher;
+    // Inline field edits waiting to be written, shown in the pagers meanwhile
+    private final EventPatchBuffer mPatchBuffer;
+    // Number of events whose inline edits were rolled back
+    private final AtomicInteger mRejectedEditCount = new AtomicInteger();
+    private final MutableLiveData<Integer> mRejectedEdits = new MutableLiveData<>(0);
+    // Open pagers that need to reload pages touched by a write
+    private final Set<EventPager> mPagers = new CopyOnWriteArraySet<>();
+    private final Set<EventChangeListener> mChangeListeners = new CopyOnWriteArraySet<>();
+    // Reads that may run at once; SQLite serves them in parallel with the writer
+    private static final int NUMBER_OF_READ_THREADS = 2;
+    private final MetricsRegistry mMetrics = MetricsRegistry.getInstance();
+    // Runs database reads in the background by priority
+    private final ReadExecutor mReadExecutor = new ReadExecutor(NUMBER_OF_READ_THREADS, mMetrics);
+    // Runs every database write, one at a time
+    private final ExecutorService mWriteLane =
+            mMetrics.instrument("write", Executors.newSingleThreadExecutor());
 
     /**
      * Returns the single instance of EventRepository, creating it if necessary.
+     * Safe to call from any thread; the startup tasks create it in the background.
      *
      * @param context The application context.
      * @return The singleton instance of EventRepository.
      */
     public static EventRepository getInstance(Context context) {
-        if (mEventRepo == null) {
-            mEventRepo = new EventRepository(context);
+        EventRepository eventRepo = mEventRepo;
+        if (eventRepo == null) {
+            synchronized (EventRepository.class) {
+                eventRepo = mEventRepo;
+                if (eventRepo == null) {
+                    eventRepo = new EventRepository(context.getApplicationContext(), new FirebaseEventRemoteStore());
+                    mEventRepo = eventRepo;
+                }
+            }
         }
-        return mEventRepo;
+        return eventRepo;
     }
 
     /**
-     * Private constructor to set up the Room database and initialize the EventDao object.
+     * Constructor to set up the Room database and initialize the EventDao object.
+     * The app uses the instance from getInstance; tests may build one on
+     * another store.
      *
-     * @param context The application context.
+     * @param context     The application context.
+     * @param remoteStore The store events are synced with.
      */
-    private EventRepository(Context context) {
+    EventRepository(Context context, EventRemoteStore remoteStore) {
+        mRemoteStore = remoteStore;
+        mMetrics.applyPreferences(PreferenceManager.getDefaultSharedPreferences(context));
+        mSyncPrefs = context.getSharedPreferences(SYNC_PREFS, Context.MODE_PRIVATE);
         RoomDatabase.Callback databaseCallback = new RoomDatabase.Callback() {
             @Override
             public void onCreate(@NonNull SupportSQLiteDatabase db) {
                 super.onCreate(db);
+                EventDatabase.createStatsTriggers(db);
+            }
+
+            @Override
+            public void onOpen(@NonNull SupportSQLiteDatabase db) {
+                super.onOpen(db);
+                // INSERT OR REPLACE only fires the delete triggers that keep
+                // EventFts in sync when recursive triggers are enabled
+                db.execSQL("PRAGMA recursive_triggers = ON");
             }
         };
         // Build database labeled event.db
-        EventDatabase database = Room.databaseBuilder(context, EventDatabase.class, "event.db")
+        mDatabase = Room.databaseBuilder(context, EventDatabase.class, "event.db")
                 .addCallback(databaseCallback)
+                .addMigrations(EventDatabase.MIGRATION_1_2, EventDatabase.MIGRATION_2_3,
+                        EventDatabase.MIGRATION_3_4, EventDatabase.MIGRATION_4_5,
+                        EventDatabase.MIGRATION_5_6)
                 .build();
 
-        mEventDao = database.eventDao();
+        mEventDao = mDatabase.eventDao();
+        mOutboxDao = mDatabase.outboxDao();
+        mWriteBatcher = new EventWriteBatcher(mDatabase, mWriteLane, this::onBatchCommitted, mMetrics);
+        mSyncEngine = new EventSyncEngine(mWriteBatcher, mRemoteStore, mEventDao, mOutboxDao, mReadExecutor,
+                mWriteLane, mMetrics, mSyncPrefs, mMainHandler::post);
+        mPatchBuffer = new EventPatchBuffer(mEventDao, mWriteBatcher, mWriteLane, new EventPatchBuffer.Listener() {
+            @Override
+            public void onPatchesChanged() {
+                for (EventPager pager : mPagers) {
+                    pager.onPatchesChanged();
+                }
+            }
+
+            @Override
+            public void onPatchRejected(String id) {
+                mRejectedEdits.postValue(mRejectedEditCount.incrementAndGet());
+            }
+        });
+    }
+
+    /**
+     * Opens the database, running any pending migrations, so the first
+     * query does not pay for it. Blocks, so must be called off the main thread.
+     */
+    public void warmUp() {
+        mDatabase.getOpenHelper().getWritableDatabase();
+        String zone = TimeZone.getDefault().getID();
+        if (!zone.equals(mSyncPrefs.getString(KEY_STATS_ZONE, zone))) {
+            // The triggers bucket by local time, so buckets from the old zone are off
+            rebuildStats();
+        }
+        mSyncPrefs.edit().putString(KEY_STATS_ZONE, zone).apply();
+    }
+
+    /**
+     * Starts syncing the signed-in user's events with their partition of the
+     * Realtime Database. Tables recording no owner, filled before owners were
+     * recorded, are kept as the user's own. Tables holding another account's
+     * events are cleared first, but only once that account's outbox is
+     * empty; while it has unsent changes the tables are left untouched and
+     * this user is not synced. Does nothing while signed out. Safe to call
+     * more than once. Must be called on the main thread.
+     */
+    public void startSync() {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null) {
+            return;
+        }
+        String uid = user.getUid();
+        String owner = mSyncPrefs.getString(KEY_OWNER, null);
+        if (uid.equals(owner)) {
+            mSyncEngine.start(uid);
+            return;
+        }
+        if (uid.equals(mPendingOwner)) {
+            return;
+        }
+        mPendingOwner = uid;
+        mSyncEngine.stop();
+        mWriteLane.execute(() -> {
+            int action = SyncOwner.decide(owner, uid, mOutboxDao.countPending());
+            if (action == SyncOwner.HOLD) {
+                Log.w(TAG, "Not syncing the signed-in account; another account's changes are still unsent.");
+                mMainHandler.post(() -> {
+                    if (uid.equals(mPendingOwner)) {
+                        mPendingOwner = null;
+                    }
+                });
+                return;
+            }
+            if (action == SyncOwner.CLEAR) {
+                mDatabase.clearAllTables();
+                mPatchBuffer.clear();
+                mSyncEngine.resetWatermark();
+            }
+            mSyncPrefs.edit().putString(KEY_OWNER, uid).apply();
+            if (action == SyncOwner.CLEAR) {
+                for (EventPager pager : mPagers) {
+                    pager.onCleared();
+                }
+                for (EventChangeListener listener : mChangeListeners) {
+                    listener.onEventsCleared();
+                }
+            }
+            mMainHandler.post(() -> {
+                if (uid.equals(mPendingOwner)) {
+                    mPendingOwner = null;
+                    mSyncEngine.start(uid);
+                }
+            });
+        });
+    }
+
+    /**
+     * Returns an id for a new event from the remote store. Ids are made on
+     * the device, so events can be created offline.
+     *
+     * @return The id.
+     */
+    public String newEventId() {
+        return mRemoteStore.newKey();
+    }
+
+    /**
+     * Pulls the changes made on other devices since the last catch-up.
+     * Called when the app returns to the foreground; does nothing while not
+     * syncing. Must be called on the main thread.
+     */
+    public void resumeSync() {
+        mSyncEngine.catchUp();
+    }
+
+    /**
+     * Sends every local change still waiting, then stops syncing, so the
+     * user can sign out without leaving changes only another sign-in of the
+     * same account could send. Inline edits and writes still being batched
+     * are committed first. If the changes cannot be sent, for example while
+     * offline, syncing goes on and the callback is told, so the caller can
+     * keep the user signed in. Must be called on the main thread.
+     *
+     * @param callback Told on the main thread whether syncing stopped.
+     */
+    public void stopSync(StopSyncCallback callback) {
+        mPatchBuffer.flushNow();
+        mWriteLane.execute(() -> {
+            // Queued behind the inline edits just flushed
+            mWriteBatcher.commitNow();
+            mWriteLane.execute(() -> {
+                // While not syncing, as when another account's changes are held, the outbox waits for its owner
+                if (!mSyncEngine.isStarted() || mOutboxDao.countPending() == 0) {
+                    mMainHandler.post(() -> finishStopSync(true, callback));
+                } else {
+                    mSyncEngine.drain(sent -> mMainHandler.post(() -> finishStopSync(sent, callback)));
+                }
+            });
+        });
+    }
+
+    // Stops syncing once the outbox is empty and tells the caller
+    private void finishStopSync(boolean sent, StopSyncCallback callback) {
+        if (sent) {
+            mPendingOwner = null;
+            mSyncEngine.stop();
+        }
+        callback.onSyncStopped(sent);
     }
 
     /**
@@ -67,7 +345,7 @@ public class EventRepository {
      * @param event The event to be added.
      */
     public void addEvent(Event event) {
-        mDatabaseExecutor.execute(() -> mEventDao.addEvent(event));
+        mWriteBatcher.upsert(event, true, null);
     }
 
     /**
@@ -76,7 +354,7 @@ public class EventRepository {
      * @param event The event to be updated.
      */
     public void updateEvent(Event event) {
-        mDatabaseExecutor.execute(() -> mEventDao.updateEvent(event));
+        mWriteBatcher.upsert(event, true, null);
     }
 
     /**
@@ -85,7 +363,96 @@ public class EventRepository {
      * @param event The event to be deleted.
      */
     public void deleteEvent(Event event) {
-        mDatabaseExecutor.execute(() -> mEventDao.deleteEvent(event));
+        mWriteBatcher.delete(event.getId(), true, null);
+    }
+
+    /**
+     * Edits one field of an event inline. Edits made in quick succession
+     * are collected per event and written together once the user pauses;
+     * open pagers show them immediately.
+     *
+     * @param id    The id of the event.
+     * @param field EventPatchBuffer.FIELD_DATE or EventPatchBuffer.FIELD_TIME.
+     * @param value The new value of the field.
+     */
+    public void patchEvent(String id, String field, String value) {
+        mPatchBuffer.patch(id, field, value);
+    }
+
+    /**
+     * Writes the inline edits still waiting for the user to pause, for
+     * example when the screen is left.
+     */
+    public void flushPatches() {
+        mPatchBuffer.flushNow();
+    }
+
+    /**
+     * Returns how many events had inline edits that could not be written and
+     * were rolled back, for example because the event was deleted meanwhile.
+     *
+     * @return LiveData holding the number of rejected edits since the app started.
+     */
+    public LiveData<Integer> getRejectedEdits() {
+        return mRejectedEdits;
+    }
+
+    /**
+     * Skips one occurrence of a series by adding it to the rule's
+     * exceptions. The stored row is read first, so an occurrence returned by
+     * a range query may be passed without moving the series to its date.
+     *
+     * @param event           The series or one of its occurrences.
+     * @param occurrenceStart The start of the occurrence to skip.
+     */
+    public void skipOccurrence(Event event, long occurrenceStart) {
+        String id = event.getId();
+        mWriteLane.execute(() -> {
+            Event series = mEventDao.loadEvent(id);
+            RecurrenceRule rule = series == null ? null : series.getRecurrenceRule();
+            if (rule == null) {
+                return;
+            }
+            series.setRecurrenceRule(rule.withException(occurrenceStart));
+            mWriteBatcher.upsert(series, true, null);
+        });
+    }
+
+    /**
+     * Adds or replaces a collection of events. The writes are coalesced with
+     * any others issued close together and committed in as few transactions
+     * as the batch policy allows.
+     *
+     * @param events   The events to be stored.
+     * @param callback Notified once per committed batch holding these writes, may be null.
+     */
+    public void addEvents(List<Event> events, EventWriteBatcher.Callback callback) {
+        for (Event event : events) {
+            mWriteBatcher.upsert(event, true, callback);
+        }
+    }
+
+    /**
+     * Deletes a collection of events, coalesced like addEvents.
+     *
+     * @param events   The events to be deleted.
+     * @param callback Notified once per committed batch holding these writes, may be null.
+     */
+    public void deleteEvents(List<Event> events, EventWriteBatcher.Callback callback) {
+        for (Event event : events) {
+            mWriteBatcher.delete(event.getId(), true, callback);
+        }
+    }
+
+    /**
+     * Sets how many writes are coalesced into one transaction and how long a
+     * write may wait for others before it is committed.
+     *
+     * @param maxBatchSize The number of writes that commits a batch immediately.
+     * @param maxLatencyMs The longest a write waits before its batch is committed.
+     */
+    public void setBatchPolicy(int maxBatchSize, long maxLatencyMs) {
+        mWriteBatcher.setPolicy(maxBatchSize, maxLatencyMs);
     }
 
     /**
@@ -96,4 +463,350 @@ public class EventRepository {
     public LiveData<List<Event>> getEvents() {
         return mEventDao.getEvents();
     }
+
+    /**
+     * Returns a LiveData list of the occurrences starting within a time
+     * range: single events and the occurrences of series, expanded only
+     * for this range.
+     *
+     * @param from Inclusive start of the range in epoch milliseconds.
+     * @param to   Exclusive end of the range in epoch milliseconds.
+     * @return LiveData list of occurrences in chronological order.
+     */
+    public LiveData<List<Event>> getEventsBetween(long from, long to) {
+        return Transformations.map(mEventDao.getRowsOverlapping(from, to),
+                rows -> EventOccurrences.between(rows, from, to, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Reads the first occurrences starting within a time range, merging
+     * single events with series expanded lazily up to the limit. Blocks, so
+     * must be called off the main thread.
+     *
+     * @param from  Inclusive start of the range in epoch milliseconds.
+     * @param to    Exclusive end of the range in epoch milliseconds.
+     * @param limit The most occurrences to return.
+     * @return Occurrences in chronological order.
+     */
+    public List<Event> loadEventsBetween(long from, long to, int limit) {
+        long start = mMetrics.startTimer();
+        List<Event> events = mEventDao.loadEventsBetween(from, to, limit);
+        mMetrics.recordQuery("EventDao.loadEventsBetween", start, events.size());
+        List<Event> series = loadSeriesOverlapping(from, to);
+        if (series.isEmpty()) {
+            return events;
+        }
+        List<Event> rows = new ArrayList<>(events.size() + series.size());
+        rows.addAll(events);
+        rows.addAll(series);
+        return EventOccurrences.between(rows, from, to, limit);
+    }
+
+    // Reads the series with an occurrence that may start within a time range
+    private List<Event> loadSeriesOverlapping(long from, long to) {
+        long start = mMetrics.startTimer();
+        List<Event> series = mEventDao.loadSeriesOverlapping(from, to);
+        mMetrics.recordQuery("EventDao.loadSeriesOverlapping", start, series.size());
+        return series;
+    }
+
+    /**
+     * Reads one event. Blocks, so must be called off the main thread.
+     *
+     * @param id The id of the event.
+     * @return The event, or null if there is none with that id.
+     */
+    public Event loadEvent(String id) {
+        long start = mMetrics.startTimer();
+        Event event = mEventDao.loadEvent(id);
+        mMetrics.recordQuery("EventDao.loadEvent", start, event == null ? 0 : 1);
+        return event;
+    }
+
+    /**
+     * Reads the id and start time of every event starting after a time, and
+     * the rule of every series still running then, without the rest of each
+     * row. Blocks, so must be called off the main thread.
+     *
+     * @param from Exclusive lower bound in epoch milliseconds.
+     * @return The schedules, in no particular order.
+     */
+    public List<EventStartTime> loadStartTimesAfter(long from) {
+        long start = mMetrics.startTimer();
+        List<EventStartTime> startTimes = mEventDao.loadStartTimesAfter(from);
+        mMetrics.recordQuery("EventDao.loadStartTimesAfter", start, startTimes.size());
+        return startTimes;
+    }
+
+    /**
+     * Reads one page of events in (start time, id) order after a key,
+     * seeking on the index, for reading the whole table with bounded
+     * memory. Blocks, so must be called off the main thread.
+     *
+     * @param startTime The start time of the last event read, or Long.MIN_VALUE to start.
+     * @param id        The id of the last event read, or "" to start.
+     * @param limit     The most events to return.
+     * @return The events after the key, in order.
+     */
+    public List<Event> loadPageAfter(long startTime, String id, int limit) {
+        long start = mMetrics.startTimer();
+        List<Event> events = mEventDao.getPageAfter(startTime, id, limit);
+        mMetrics.recordQuery("EventDao.getPageAfter", start, events.size());
+        return events;
+    }
+
+    /**
+     * Counts the event rows, counting each series once. Blocks, so must be
+     * called off the main thread.
+     *
+     * @return The number of rows.
+     */
+    public int countEvents() {
+        long start = mMetrics.startTimer();
+        int count = mEventDao.countEvents();
+        mMetrics.recordQuery("EventDao.countEvents", start, 1);
+        return count;
+    }
+
+    /**
+     * Stores a chunk of imported events in one transaction of its own and
+     * waits until it has committed, queuing them for upload like any local
+     * change. Blocks, so must be called off the main thread and never on the
+     * write lane.
+     *
+     * @param events The events to store.
+     * @throws InterruptedException If interrupted while waiting.
+     * @throws ExecutionException   If the transaction failed.
+     */
+    public void importEvents(List<Event> events) throws InterruptedException, ExecutionException {
+        if (!events.isEmpty()) {
+            mWriteBatcher.upsertAll(events, true).get();
+        }
+    }
+
+    /**
+     * Adds a listener notified of every committed change to the events table.
+     *
+     * @param listener The listener to add.
+     */
+    public void addChangeListener(EventChangeListener listener) {
+        mChangeListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with addChangeListener.
+     *
+     * @param listener The listener to remove.
+     */
+    public void removeChangeListener(EventChangeListener listener) {
+        mChangeListeners.remove(listener);
+    }
+
+    /**
+     * Counts the occurrences starting within a time range without building
+     * them. Blocks, so must be called off the main thread.
+     *
+     * @param from Inclusive start of the range in epoch milliseconds.
+     * @param to   Exclusive end of the range in epoch milliseconds.
+     * @return The number of occurrences in the range.
+     */
+    public int countEventsBetween(long from, long to) {
+        long start = mMetrics.startTimer();
+        int count = mEventDao.countEventsBetween(from, to);
+        mMetrics.recordQuery("EventDao.countEventsBetween", start, 1);
+        return count + EventOccurrences.count(loadSeriesOverlapping(from, to), from, to);
+    }
+
+    /**
+     * Returns the statistics buckets of a period covering a time range,
+     * reading one row per bucket. Series are not included.
+     *
+     * @param period EventStat.PERIOD_DAY, PERIOD_WEEK, or PERIOD_MONTH.
+     * @param from   A time in the first bucket, in epoch milliseconds.
+     * @param to     A time in the bucket after the last, in epoch milliseconds.
+     * @return A LiveData object containing the non-empty buckets in time order.
+     */
+    public LiveData<List<EventStat>> getStats(String period, long from, long to) {
+        TimeZone zone = TimeZone.getDefault();
+        return mEventDao.getStats(period, EventStat.bucketOf(period, from, zone),
+                EventStat.bucketOf(period, to, zone));
+    }
+
+    /**
+     * Reads the days holding the most single events. Blocks, so must be
+     * called off the main thread.
+     *
+     * @param limit The most days to return.
+     * @return The day buckets, busiest first.
+     */
+    public List<EventStat> loadBusiestDays(int limit) {
+        long start = mMetrics.startTimer();
+        List<EventStat> days = mEventDao.loadBusiestStats(EventStat.PERIOD_DAY, limit);
+        mMetrics.recordQuery("EventDao.loadBusiestStats", start, days.size());
+        return days;
+    }
+
+    /**
+     * Counts the occurrences of today and the following days, summing the
+     * day buckets of single events and expanding the series overlapping the
+     * window. Blocks, so must be called off the main thread.
+     *
+     * @param now  The current time in epoch milliseconds.
+     * @param days The number of days counted, starting with today.
+     * @return The number of occurrences in those days.
+     */
+    public int countUpcoming(long now, int days) {
+        TimeZone zone = TimeZone.getDefault();
+        Calendar calendar = Calendar.getInstance(zone);
+        calendar.setTimeInMillis(now);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        long from = calendar.getTimeInMillis();
+        calendar.add(Calendar.DAY_OF_MONTH, days);
+        long to = calendar.getTimeInMillis();
+        long start = mMetrics.startTimer();
+        int count = mEventDao.sumStats(EventStat.PERIOD_DAY, EventStat.bucketOf(EventStat.PERIOD_DAY, from, zone),
+                EventStat.bucketOf(EventStat.PERIOD_DAY, to, zone));
+        mMetrics.recordQuery("EventDao.sumStats", start, 1);
+        return count + EventOccurrences.count(loadSeriesOverlapping(from, to), from, to);
+    }
+
+    /**
+     * Recounts the statistics buckets from the events on the write lane,
+     * so no write is counted twice or missed while it runs.
+     */
+    public void rebuildStats() {
+        mWriteLane.execute(() -> {
+            long start = mMetrics.startTimer();
+            mEventDao.rebuildStats();
+            mMetrics.recordQuery("EventDao.rebuildStats", start, 0);
+        });
+    }
+
+    /**
+     * Searches event titles through the full-text index. Every word typed is
+     * matched as a prefix, so "car fa" finds "Career Fair".
+     *
+     * @param text     The text typed by the user.
+     * @param limit    The most results to return.
+     * @param ranked   True to order by relevance, false for chronological order.
+     * @param scope    The scope of the screen searching, cancelling the search when closed.
+     * @param callback Receives the results unless the returned Future is cancelled first.
+     * @return A Future that can be cancelled when a newer search supersedes this one.
+     * @throws RejectedExecutionException If too many reads are already waiting.
+     */
+    public Future<?> searchEvents(String text, int limit, boolean ranked, QueryScope scope,
+                                  SearchCallback callback) {
+        String match = toMatchQuery(text);
+        return mReadExecutor.submit(ReadExecutor.PRIORITY_UI, scope, () -> {
+            List<Event> events;
+            long start = mMetrics.startTimer();
+            if (match.isEmpty()) {
+                events = Collections.emptyList();
+            } else if (ranked) {
+                events = searchRanked(match, limit, start);
+            } else {
+                events = mEventDao.searchEvents(match, limit);
+                mMetrics.recordQuery("EventDao.searchEvents", start, events.size());
+            }
+            if (!Thread.currentThread().isInterrupted()) {
+                callback.onResults(events);
+            }
+        });
+    }
+
+    // Builds an FTS MATCH expression with one prefix term per word of the text
+    private static String toMatchQuery(String text) {
+        StringBuilder match = new StringBuilder();
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append(text, start, i).append('*');
+            }
+        }
+        return match.toString();
+    }
+
+    // Scores every match while keeping only the best, then loads those events
+    private List<Event> searchRanked(String match, int limit, long start) {
+        EventSearchResult.TopResults top = new EventSearchResult.TopResults(limit);
+        int matched = 0;
+        try (Cursor cursor = mEventDao.searchMatches(match)) {
+            while (cursor.moveToNext()) {
+                top.offer(new EventSearchResult(cursor.getLong(0), cursor.getString(1), cursor.getBlob(2)));
+                matched++;
+            }
+        }
+        mMetrics.recordQuery("EventDao.searchMatches", start, matched);
+        List<EventSearchResult> results = top.toList();
+        if (results.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> ids = new ArrayList<>(results.size());
+        for (EventSearchResult result : results) {
+            ids.add(result.getId());
+        }
+        Map<String, Event> loaded = new HashMap<>();
+        for (Event event : mEventDao.loadEvents(ids)) {
+            loaded.put(event.getId(), event);
+        }
+        List<Event> events = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Event event = loaded.get(id);
+            if (event != null) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Opens a pager over all events in chronological order. The first page
+     * is loaded immediately and later pages are loaded on demand.
+     *
+     * @return A pager that must be closed with closeEventPager when no longer used.
+     */
+    public EventPager openEventPager() {
+        EventPager pager = new EventPager(mEventDao, mReadExecutor, mMetrics, mSyncEngine::extendWindow,
+                mPatchBuffer);
+        mPagers.add(pager);
+        pager.loadMore();
+        return pager;
+    }
+
+    /**
+     * Closes a pager opened by openEventPager so writes no longer reload its pages.
+     *
+     * @param pager The pager to close.
+     */
+    public void closeEventPager(EventPager pager) {
+        mPagers.remove(pager);
+        pager.close();
+    }
+
+    // Lets each open pager reload the pages touched by a batch and pushes local changes
+    private void onBatchCommitted(List<Event> changed, Set<String> deletedIds, boolean hasLocal) {
+        for (EventPager pager : mPagers) {
+            pager.onEventsWritten(changed);
+        }
+        for (EventChangeListener listener : mChangeListeners) {
+            listener.onEventsChanged(changed, deletedIds);
+        }
+        if (hasLocal) {
+            mSyncEngine.requestFlush();
+        }
+    }
 }
@@ -0,0 +1,291 @@
+package com.mobile2app.eventtracker.repo;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.Query;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * App-wide owner of Realtime Database listeners. Each distinct query is
+ * listened to once no matter how many observers subscribe to it; the
+ * children it has delivered are kept while it has observers, so a late
+ * subscriber is brought up to date from memory instead of downloading
+ * them again. When the last observer of a query leaves, the children are
+ * dropped but the listener stays attached for a grace period, so moving
+ * between screens does not detach and re-download it.
+ * All methods must be called on the main thread, where Firebase delivers
+ * its callbacks.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public final class EventStreamHub {
+
+    // How long a query stays attached after its last observer leaves
+    public static final long DETACH_GRACE_MS = 10_000;
+
+    private static final EventStreamHub INSTANCE = new EventStreamHub();
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, Stream> mStreams = new HashMap<>();
+
+    /**
+     * An observer's registration, closed when it no longer needs the query.
+     */
+    public final class Subscription {
+        private final Stream mStream;
+        private final ChildEventListener mObserver;
+        private boolean mClosed;
+
+        private Subscription(Stream stream, ChildEventListener observer) {
+            mStream = stream;
+            mObserver = observer;
+        }
+
+        /**
+         * Stops delivering events to the observer. Closing twice has no effect.
+         */
+        public void close() {
+            checkMainThread();
+            if (!mClosed) {
+                mClosed = true;
+                mStream.removeObserver(mObserver);
+            }
+        }
+    }
+
+    private EventStreamHub() {
+    }
+
+    /**
+     * Returns the app-wide hub.
+     *
+     * @return The single instance of EventStreamHub.
+     */
+    public static EventStreamHub getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Subscribes an observer to a query. The observer first receives
+     * onChildAdded for every child already delivered for the query, then
+     * live changes.
+     *
+     * @param key      Identifies the query; equal keys must describe equal queries.
+     * @param query    The query to listen to if it is not attached yet.
+     * @param observer Receives the query's child events.
+     * @return The subscription to close when the observer is done.
+     */
+    public Subscription subscribe(String key, Query query, ChildEventListener observer) {
+        checkMainThread();
+        Stream stream = mStreams.get(key);
+        if (stream == null) {
+            stream = new Stream(key, query);
+            mStreams.put(key, stream);
+            stream.attach();
+        }
+        stream.addObserver(observer);
+        return new Subscription(stream, observer);
+    }
+
+    // Get number of queries with a Firebase listener attached
+    public int getActiveListenerCount() {
+        checkMainThread();
+        return mStreams.size();
+    }
+
+    // Get number of observers of each attached query, sorted by key
+    public Map<String, Integer> getObserverCounts() {
+        checkMainThread();
+        Map<String, Integer> counts = new TreeMap<>();
+        for (Stream stream : mStreams.values()) {
+            counts.put(stream.mKey, stream.mObservers.size());
+        }
+        return counts;
+    }
+
+    // Fails fast when called off the main thread
+    private static void checkMainThread() {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            throw new IllegalStateException("EventStreamHub must be used on the main thread");
+        }
+    }
+
+    /**
+     * One attached query, fanning its events out to the observers. The
+     * children are cached only while the query has observers; once the
+     * last one leaves they are dropped, and an observer arriving within
+     * the grace period is caught up by Firebase from the data it still
+     * holds for the attached query.
+     */
+    private final class Stream {
+        final String mKey;
+        final Query mQuery;
+        // Copied on write so observers may unsubscribe from inside a callback
+        final List<ChildEventListener> mObservers = new CopyOnWriteArrayList<>();
+        // Children delivered since the stream last had observers, in the order they were added
+        final LinkedHashMap<String, DataSnapshot> mChildren = new LinkedHashMap<>();
+        final Runnable mDetach = this::detach;
+        // The listener attached to the query; events from a replaced one are ignored
+        Relay mRelay;
+
+        Stream(String key, Query query) {
+            mKey = key;
+            mQuery = query;
+        }
+
+        // Attaches the first listener to the query
+        void attach() {
+            mRelay = new Relay(this);
+            mQuery.addChildEventListener(mRelay);
+        }
+
+        // Catches a new observer up from the cache, then adds it to the fan-out
+        void addObserver(ChildEventListener observer) {
+            mHandler.removeCallbacks(mDetach);
+            if (mObservers.isEmpty() && mRelay.mDelivered) {
+                // The cache was dropped; a new listener added before the old one is removed
+                // is served the query's children again from the data Firebase still holds
+                mObservers.add(observer);
+                Relay stale = mRelay;
+                mRelay = new Relay(this);
+                mQuery.addChildEventListener(mRelay);
+                mQuery.removeEventListener(stale);
+                return;
+            }
+            String previous = null;
+            for (Map.Entry<String, DataSnapshot> child : mChildren.entrySet()) {
+                observer.onChildAdded(child.getValue(), previous);
+                previous = child.getKey();
+            }
+            mObservers.add(observer);
+        }
+
+        // Removes an observer; the last one drops the cache and detaches after the grace period
+        void removeObserver(ChildEventListener observer) {
+            mObservers.remove(observer);
+            if (mObservers.isEmpty()) {
+                mChildren.clear();
+                mHandler.postDelayed(mDetach, DETACH_GRACE_MS);
+            }
+        }
+
+        // Removes the Firebase listener
+        void detach() {
+            if (!mObservers.isEmpty() || mStreams.get(mKey) != this) {
+                return;
+            }
+            mQuery.removeEventListener(mRelay);
+            mStreams.remove(mKey);
+        }
+
+        void onChildAdded(DataSnapshot snapshot, String previousChildName) {
+            if (mObservers.isEmpty()) {
+                return;
+            }
+            mChildren.put(snapshot.getKey(), snapshot);
+            for (ChildEventListener observer : mObservers) {
+                observer.onChildAdded(snapshot, previousChildName);
+            }
+        }
+
+        void onChildChanged(DataSnapshot snapshot, String previousChildName) {
+            if (mObservers.isEmpty()) {
+                return;
+            }
+            mChildren.put(snapshot.getKey(), snapshot);
+            for (ChildEventListener observer : mObservers) {
+                observer.onChildChanged(snapshot, previousChildName);
+            }
+        }
+
+        void onChildRemoved(DataSnapshot snapshot) {
+            mChildren.remove(snapshot.getKey());
+            for (ChildEventListener observer : mObservers) {
+                observer.onChildRemoved(snapshot);
+            }
+        }
+
+        void onChildMoved(DataSnapshot snapshot, String previousChildName) {
+            // Cached children are replayed in arrival order, which consumers do not rely on
+            for (ChildEventListener observer : mObservers) {
+                observer.onChildMoved(snapshot, previousChildName);
+            }
+        }
+
+        void onCancelled(DatabaseError error) {
+            // Firebase has already removed the listener, so the next subscriber attaches anew
+            mHandler.removeCallbacks(mDetach);
+            if (mStreams.get(mKey) == this) {
+                mStreams.remove(mKey);
+            }
+            mChildren.clear();
+            for (ChildEventListener observer : mObservers) {
+                observer.onCancelled(error);
+            }
+        }
+    }
+
+    /**
+     * The Firebase listener of a stream, passing on events while it is the
+     * stream's current listener.
+     */
+    private static final class Relay implements ChildEventListener {
+        final Stream mStream;
+        // Set once Firebase has delivered to this listener, so a replacement is served the children again
+        boolean mDelivered;
+
+        Relay(Stream stream) {
+            mStream = stream;
+        }
+
+        @Override
+        public void onChildAdded(@NonNull DataSnapshot snapshot, String previousChildName) {
+            mDelivered = true;
+            if (mStream.mRelay == this) {
+                mStream.onChildAdded(snapshot, previousChildName);
+            }
+        }
+
+        @Override
+        public void onChildChanged(@NonNull DataSnapshot snapshot, String previousChildName) {
+            mDelivered = true;
+            if (mStream.mRelay == this) {
+                mStream.onChildChanged(snapshot, previousChildName);
+            }
+        }
+
+        @Override
+        public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+            if (mStream.mRelay == this) {
+                mStream.onChildRemoved(snapshot);
+            }
+        }
+
+        @Override
+        public void onChildMoved(@NonNull DataSnapshot snapshot, String previousChildName) {
+            if (mStream.mRelay == this) {
+                mStream.onChildMoved(snapshot, previousChildName);
+            }
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError error) {
+            if (mStream.mRelay == this) {
+                mStream.onCancelled(error);
+            }
+        }
+    }
+}
@@ -0,0 +1,453 @@
+package com.mobile2app.eventtracker.repo;
+
+import static android.content.ContentValues.TAG;
+
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.mobile2app.eventtracker.metrics.MetricsRegistry;
+import com.mobile2app.eventtracker.model.Event;
+import com.mobile2app.eventtracker.model.PendingMutation;
+import com.mobile2app.eventtracker.remote.EventRemoteStore;
+import com.mobile2app.eventtracker.remote.RemoteChange;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the Room database and the signed-in user's partition of the
+ * remote store in step. Only upcoming events are listened to, a window of
+ * start times at a time. Local writes are recorded in the outbox and
+ * pushed in batched multi-path updates a short time after the last edit,
+ * retrying with backoff while offline. Outbox reads run at background
+ * priority so they wait behind reads for the screen, and trimming the
+ * outbox runs on the write lane with every other write. Remote changes
+ * are applied to Room by event id through the repository's write batcher,
+ * which skips events that still have local changes waiting in the outbox.
+ * Every change written is stamped with the server time and deletions
+ * leave tombstones, so on start and on resume only the changes since the
+ * last catch-up are pulled.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public class EventSyncEngine {
+
+    /**
+     * Receives the outcome of a drain.
+     */
+    interface DrainCallback {
+        /**
+         * Called once the outbox was emptied or a flush failed.
+         *
+         * @param sent True if every entry was sent, false if one failed or the engine stopped.
+         */
+        void onDrained(boolean sent);
+    }
+
+    // Delay after the last local write before flushing, so bursts of edits share a batch
+    private static final long FLUSH_DELAY_MS = 500;
+    // Longest a burst of writes that keeps going may put its first write off
+    private static final long MAX_FLUSH_DELAY_MS = 5000;
+    // Backoff bounds for retrying a failed flush
+    private static final long MIN_RETRY_DELAY_MS = 1000;
+    private static final long MAX_RETRY_DELAY_MS = 5 * 60 * 1000;
+    // Most outbox entries sent in one multi-path update
+    private static final int MAX_BATCH_SIZE = 200;
+
+    // Applies remote changes to Room, skipping events with local changes
+    private final EventWriteBatcher mWriteBatcher;
+    // Where local writes are sent and remote changes pulled from
+    private final EventRemoteStore mRemoteStore;
+    private final EventDao mEventDao;
+    private final OutboxDao mOutboxDao;
+    private final ReadExecutor mReadExecutor;
+    private final Executor mWriteLane;
+    private final MetricsRegistry mMetrics;
+    // Runs catch-up steps that follow a commit on the main thread
+    private final Executor mMainThread;
+    private final ScheduledExecutorService mScheduler = Executors.newSingleThreadScheduledExecutor();
+
+    private ScheduledFuture<?> mScheduledFlush;
+    // Time the first write waiting for the scheduled flush was made
+    private long mFirstRequestAt;
+    // True while the scheduled flush is a retry, which later writes leave in place
+    private boolean mRetryScheduled;
+    private boolean mFlushing;
+    private long mRetryDelayMs = MIN_RETRY_DELAY_MS;
+    // Callers waiting for the outbox to be emptied
+    private final List<DrainCallback> mDrainCallbacks = new ArrayList<>();
+    // The signed-in user, or null while stopped
+    private String mUid;
+    private UpcomingEventWindows mWindows;
+    private WatermarkSync mWatermarkSync;
+    // Preferences the catch-up watermark is kept in
+    private final SharedPreferences mSyncPrefs;
+    // Rows stored when the running full sync started; write lane only
+    private Set<String> mIdsBeforeFullSync;
+
+    /**
+     * Creates a sync engine working on the repository's tables.
+     *
+     * @param writeBatcher The batcher remote changes are applied through.
+     * @param remoteStore  The store local writes are sent to and changes come from.
+     * @param eventDao     The DAO for reading events to send.
+     * @param outboxDao    The DAO for the outbox of pending mutations.
+     * @param readExecutor The pool outbox reads run on.
+     * @param writeLane    The serial lane outbox deletes run on.
+     * @param metrics      The registry query timings are recorded in.
+     * @param syncPrefs    The preferences the catch-up watermark is kept in.
+     * @param mainThread   Runs tasks on the main thread.
+     */
+    EventSyncEngine(EventWriteBatcher writeBatcher, EventRemoteStore remoteStore, EventDao eventDao,
+                    OutboxDao outboxDao, ReadExecutor readExecutor, Executor writeLane, MetricsRegistry metrics,
+                    SharedPreferences syncPrefs, Executor mainThread) {
+        mWriteBatcher = writeBatcher;
+        mRemoteStore = remoteStore;
+        mEventDao = eventDao;
+        mOutboxDao = outboxDao;
+        mReadExecutor = readExecutor;
+        mWriteLane = writeLane;
+        mMetrics = metrics;
+        mSyncPrefs = syncPrefs;
+        mMainThread = mainThread;
+    }
+
+    /**
+     * Starts listening for remote changes to a user's upcoming events
+     * through the remote store's live queries, pulls the changes made
+     * anywhere since the last catch-up, and flushes anything left in the
+     * outbox by a previous run. Only the first window of start times is
+     * subscribed; later ones follow {@link #extendWindow()}. Calling it
+     * again for the same user has no effect; the engine must be stopped
+     * before starting it for another user. Must be called on the main
+     * thread.
+     *
+     * @param uid The Firebase uid of the signed-in user.
+     */
+    public synchronized void start(String uid) {
+        if (mUid != null) {
+            return;
+        }
+        mUid = uid;
+        mWindows = new UpcomingEventWindows(mRemoteStore, uid, new UpcomingEventWindows.Listener() {
+            @Override
+            public void onEvent(RemoteChange change) {
+                if (change.isDeleted()) {
+                    // A tombstone read back after its event left a window
+                    mWriteBatcher.delete(change.getId(), false, null);
+                } else {
+                    mWriteBatcher.upsert(change.getEvent(), false, null);
+                }
+            }
+
+            @Override
+            public void onDeleted(String id) {
+                mWriteBatcher.delete(id, false, null);
+            }
+        }, mMainThread);
+        mWindows.open();
+        mWatermarkSync = new WatermarkSync(mRemoteStore, uid, mSyncPrefs, new WatermarkSync.Listener() {
+            @Override
+            public void onPage(List<RemoteChange> changes, WatermarkSync.PageCallback callback) {
+                mWriteBatcher.applyRemote(changes, new EventWriteBatcher.Callback() {
+                    @Override
+                    public void onBatchCommitted(int batchSize) {
+                        callback.onStored();
+                    }
+
+                    @Override
+                    public void onBatchFailed(RuntimeException error) {
+                        callback.onFailed(error);
+                    }
+                });
+            }
+
+            @Override
+            public void onFullSyncStarted() {
+                // Queued ahead of the rows the sync applies, so only rows stored before it are listed
+                mWriteLane.execute(() -> mIdsBeforeFullSync = new HashSet<>(mEventDao.loadAllIds()));
+            }
+
+            @Override
+            public void onFullSyncFinished(Set<String> liveIds) {
+                Set<String> live = new HashSet<>(liveIds);
+                mWriteLane.execute(() -> removeDeletedSince(live));
+            }
+        }, mMainThread);
+        mWatermarkSync.catchUp();
+        scheduleFlush(0, false);
+    }
+
+    /**
+     * Stops listening and flushing, for example when the user signs out.
+     * Local changes stay in the outbox until the engine is started again.
+     * Must be called on the main thread.
+     */
+    public synchronized void stop() {
+        if (mUid == null) {
+            return;
+        }
+        mWindows.close();
+        mWindows = null;
+        mWatermarkSync.close();
+        mWatermarkSync = null;
+        mUid = null;
+        if (mScheduledFlush != null) {
+            mScheduledFlush.cancel(false);
+            mScheduledFlush = null;
+        }
+        mRetryScheduled = false;
+        notifyDrained(false);
+    }
+
+    // Returns whether the engine is syncing a user
+    synchronized boolean isStarted() {
+        return mUid != null;
+    }
+
+    /**
+     * Flushes the outbox now, batch after batch, and reports once it is
+     * empty or a flush fails. A retry waiting out its backoff is tried at
+     * once instead. Reports failure straight away while stopped.
+     *
+     * @param callback Told on the thread the last flush completed on.
+     */
+    void drain(DrainCallback callback) {
+        synchronized (this) {
+            if (mUid != null) {
+                mDrainCallbacks.add(callback);
+                if (mFlushing) {
+                    // The running flush carries on until the outbox is empty
+                    return;
+                }
+                if (mScheduledFlush != null) {
+                    mScheduledFlush.cancel(false);
+                }
+                mRetryScheduled = false;
+                mRetryDelayMs = MIN_RETRY_DELAY_MS;
+                mScheduledFlush = mScheduler.schedule(this::startFlush, 0, TimeUnit.MILLISECONDS);
+                return;
+            }
+        }
+        callback.onDrained(false);
+    }
+
+    /**
+     * Pulls the changes made since the last catch-up, for example when the
+     * app comes back to the foreground after being offline. Does nothing
+     * while stopped. Must be called on the main thread.
+     */
+    public synchronized void catchUp() {
+        if (mWatermarkSync != null) {
+            mWatermarkSync.catchUp();
+        }
+    }
+
+    /**
+     * Forgets the catch-up watermark, so the next start syncs from scratch.
+     * Called when the local tables are cleared for another account.
+     */
+    void resetWatermark() {
+        mSyncPrefs.edit().remove(WatermarkSync.KEY_WATERMARK).remove(WatermarkSync.KEY_FULL_SYNC).apply();
+    }
+
+    /**
+     * Removes the rows stored before a full sync that the store no longer
+     * holds, as their tombstones may have been pruned. Rows with local
+     * changes still to send are kept by the write batcher. Runs on the
+     * write lane.
+     *
+     * @param liveIds The ids of every live event the full sync read.
+     */
+    private void removeDeletedSince(Set<String> liveIds) {
+        Set<String> before = mIdsBeforeFullSync;
+        mIdsBeforeFullSync = null;
+        if (before == null) {
+            return;
+        }
+        for (String id : before) {
+            if (!liveIds.contains(id)) {
+                mWriteBatcher.delete(id, false, null);
+            }
+        }
+    }
+
+    /**
+     * Subscribes to the next window of upcoming events, once the current
+     * last window has loaded. Called when the list reaches its end; safe to
+     * call from any thread and while stopped.
+     */
+    public void extendWindow() {
+        UpcomingEventWindows windows;
+        synchronized (this) {
+            windows = mWindows;
+        }
+        if (windows != null) {
+            windows.requestMore();
+        }
+    }
+
+    /**
+     * Schedules a flush the short batching delay after this write, putting
+     * off one already scheduled, but never more than the longest delay after
+     * the first write it waits for. Called after each local write. Leaves a
+     * retry waiting out its backoff, and a flush already running, which
+     * sends this write when it finds more in the outbox.
+     */
+    public synchronized void requestFlush() {
+        if (mUid == null || mFlushing || mRetryScheduled) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+        if (mScheduledFlush != null && !mScheduledFlush.isDone()) {
+            if (!mScheduledFlush.cancel(false)) {
+                return;
+            }
+        } else {
+            mFirstRequestAt = now;
+        }
+        long delay = Math.min(FLUSH_DELAY_MS, mFirstRequestAt + MAX_FLUSH_DELAY_MS - now);
+        mScheduledFlush = mScheduler.schedule(this::startFlush, Math.max(0, delay), TimeUnit.MILLISECONDS);
+    }
+
+    // Schedules a flush unless stopped or one is already scheduled or running
+    private synchronized void scheduleFlush(long delayMs, boolean retry) {
+        if (mUid == null || mFlushing || (mScheduledFlush != null && !mScheduledFlush.isDone())) {
+            return;
+        }
+        mRetryScheduled = retry;
+        mScheduledFlush = mScheduler.schedule(this::startFlush, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Queues a flush on the read pool, backing off if the pool is saturated
+    private void startFlush() {
+        synchronized (this) {
+            mRetryScheduled = false;
+        }
+        try {
+            mReadExecutor.submit(ReadExecutor.PRIORITY_BACKGROUND, null, this::flush);
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                mScheduledFlush = null;
+            }
+            retryFlush();
+        }
+    }
+
+    /**
+     * Sends the oldest outbox entries as one multi-path update. Mutations of
+     * the same event collapse into one write of its current row, or a
+     * tombstone for a deleted event. Runs on the read pool.
+     */
+    private void flush() {
+        String uid;
+        synchronized (this) {
+            uid = mUid;
+            if (mFlushing || uid == null) {
+                return;
+            }
+            mFlushing = true;
+        }
+        long start = mMetrics.startTimer();
+        List<PendingMutation> pending = mOutboxDao.getPending(MAX_BATCH_SIZE);
+        mMetrics.recordQuery("OutboxDao.getPending", start, pending.size());
+        if (pending.isEmpty()) {
+            finishFlush(false);
+            return;
+        }
+
+        // Keep only the last mutation of each event
+        Map<String, Integer> lastOps = new LinkedHashMap<>();
+        long maxSeq = 0;
+        for (PendingMutation mutation : pending) {
+            lastOps.put(mutation.getEventId(), mutation.getOp());
+            maxSeq = Math.max(maxSeq, mutation.getSeq());
+        }
+        Map<String, Event> events = new HashMap<>();
+        List<String> deletedIds = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : lastOps.entrySet()) {
+            Event event = null;
+            if (entry.getValue() != PendingMutation.OP_DELETE) {
+                start = mMetrics.startTimer();
+                event = mEventDao.loadEvent(entry.getKey());
+                mMetrics.recordQuery("EventDao.loadEvent", start, event == null ? 0 : 1);
+            }
+            if (event == null) {
+                deletedIds.add(entry.getKey());
+            } else {
+                events.put(entry.getKey(), event);
+            }
+        }
+
+        final long flushedSeq = maxSeq;
+        final boolean batchFull = pending.size() == MAX_BATCH_SIZE;
+        mRemoteStore.write(uid, events, deletedIds).whenComplete((result, error) ->
+                mWriteLane.execute(() -> {
+                    if (error == null) {
+                        long deleteStart = mMetrics.startTimer();
+                        int deleted = mOutboxDao.deleteUpTo(flushedSeq);
+                        mMetrics.recordQuery("OutboxDao.deleteUpTo", deleteStart, deleted);
+                        synchronized (this) {
+                            mRetryDelayMs = MIN_RETRY_DELAY_MS;
+                        }
+                        // Drain whatever was queued while this batch was in flight
+                        finishFlush(batchFull || mOutboxDao.countPending() > 0);
+                    } else {
+                        Log.w(TAG, "Event sync flush failed, retrying.", error);
+                        retryFlush();
+                    }
+                }));
+    }
+
+    // Ends a flush, starting the next one immediately if more is waiting
+    private void finishFlush(boolean more) {
+        synchronized (this) {
+            mFlushing = false;
+        }
+        if (more) {
+            scheduleFlush(0, false);
+        } else {
+            notifyDrained(true);
+        }
+    }
+
+    // Ends a failed flush and schedules another attempt with exponential backoff
+    private void retryFlush() {
+        long delay;
+        synchronized (this) {
+            mFlushing = false;
+            delay = mRetryDelayMs;
+            mRetryDelayMs = Math.min(mRetryDelayMs * 2, MAX_RETRY_DELAY_MS);
+        }
+        notifyDrained(false);
+        scheduleFlush(delay, true);
+    }
+
+    // Tells every caller waiting for a drain how it ended
+    private void notifyDrained(boolean sent) {
+        List<DrainCallback> callbacks;
+        synchronized (this) {
+            if (mDrainCallbacks.isEmpty()) {
+                return;
+            }
+            callbacks = new ArrayList<>(mDrainCallbacks);
+            mDrainCallbacks.clear();
+        }
+        for (DrainCallback callback : callbacks) {
+            callback.onDrained(sent);
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package com.mobile2app.eventtracker.repo;
+
+import static android.content.ContentValues.TAG;
+
+import android.util.Log;
+
+import com.mobile2app.eventtracker.metrics.MetricsRegistry;
+import com.mobile2app.eventtracker.model.Event;
+import com.mobile2app.eventtracker.model.PendingMutation;
+import com.mobile2app.eventtracker.remote.RemoteChange;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Collects event writes issued close together and commits them as one
+ * Room transaction. A batch is committed when it reaches the maximum
+ * batch size or when its oldest write has waited the maximum latency,
+ * whichever comes first. Writes to the same event within a batch
+ * collapse into the last one. Batches are committed one at a time on the
+ * repository's serial write lane so they are applied in the order they
+ * were made and never contend with each other for SQLite's write lock.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public class EventWriteBatcher {
+
+    // Default number of writes that forces a commit
+    public static final int DEFAULT_MAX_BATCH_SIZE = 500;
+    // Default time the first write of a batch may wait for others
+    public static final long DEFAULT_MAX_LATENCY_MS = 50;
+    // Ids bound per IN (...) query, below SQLite's 999 variable limit
+    private static final int MAX_QUERY_IDS = 500;
+
+    /**
+     * Notified once for each batch that contained a write made with it,
+     * whether the batch committed or failed.
+     */
+    public interface Callback {
+        /**
+         * Called on the write lane after the batch has been committed.
+         *
+         * @param batchSize The number of writes in the batch.
+         */
+        void onBatchCommitted(int batchSize);
+
+        /**
+         * Called on the write lane after the batch's transaction failed and
+         * was rolled back, so none of its writes were stored.
+         *
+         * @param error The error the transaction failed with.
+         */
+        default void onBatchFailed(RuntimeException error) {
+        }
+    }
+
+    /**
+     * Receives the events changed by each committed batch.
+     */
+    interface CommitListener {
+        /**
+         * Called on the write lane after a batch has been committed.
+         *
+         * @param changed    The events added, updated, or removed, with their last stored keys.
+         * @param deletedIds The ids of the events in changed that were removed.
+         * @param hasLocal   True if the batch recorded local changes in the outbox.
+         */
+        void onCommitted(List<Event> changed, Set<String> deletedIds, boolean hasLocal);
+    }
+
+    // A single queued write
+    private static final class Write {
+        final String mId;
+        final Event mEvent;
+        final boolean mLocal;
+        final Callback mCallback;
+
+        Write(String id, Event event, boolean local, Callback callback) {
+            mId = id;
+            mEvent = event;
+            mLocal = local;
+            mCallback = callback;
+        }
+    }
+
+    // Runs a batch's statements as one transaction
+    private final Consumer<Runnable> mTransactions;
+    private final EventDao mEventDao;
+    private final OutboxDao mOutboxDao;
+    private final CommitListener mCommitListener;
+    private final MetricsRegistry mMetrics;
+    // Commits batches serially, shared with other writes
+    private final Executor mWriteLane;
+    // Fires the latency bound of the open batch
+    private final ScheduledExecutorService mTimer = Executors.newSingleThreadScheduledExecutor();
+
+    private List<Write> mPending = new ArrayList<>();
+    private ScheduledFuture<?> mScheduledCommit;
+    private int mMaxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private long mMaxLatencyMs = DEFAULT_MAX_LATENCY_MS;
+
+    EventWriteBatcher(EventDatabase database, Executor writeLane, CommitListener commitListener,
+                      MetricsRegistry metrics) {
+        this(database::runInTransaction, database.eventDao(), database.outboxDao(), writeLane, commitListener,
+                metrics);
+    }
+
+    /**
+     * Creates a batcher over DAOs and the transactions they run in, so the
+     * sync path can be run without a Room database.
+     *
+     * @param transactions   Runs a batch's statements as one transaction.
+     * @param eventDao       The DAO events are written with.
+     * @param outboxDao      The DAO local changes are recorded with.
+     * @param writeLane      The serial lane batches are committed on.
+     * @param commitListener Told of the events changed by each batch.
+     * @param metrics        The registry query timings are recorded in.
+     */
+    EventWriteBatcher(Consumer<Runnable> transactions, EventDao eventDao, OutboxDao outboxDao, Executor writeLane,
+                      CommitListener commitListener, MetricsRegistry metrics) {
+        mTransactions = transactions;
+        mWriteLane = writeLane;
+        mEventDao = eventDao;
+        mOutboxDao = outboxDao;
+        mCommitListener = commitListener;
+        mMetrics = metrics;
+    }
+
+    /**
+     * Sets when a batch is committed.
+     *
+     * @param maxBatchSize The number of writes that commits a batch immediately.
+     * @param maxLatencyMs The longest a write waits for others before its batch is committed.
+     */
+    public synchronized void setPolicy(int maxBatchSize, long maxLatencyMs) {
+        if (maxBatchSize < 1 || maxLatencyMs < 0) {
+            throw new IllegalArgumentException("Invalid batch policy");
+        }
+        mMaxBatchSize = maxBatchSize;
+        mMaxLatencyMs = maxLatencyMs;
+    }
+
+    /**
+     * Queues an added or updated event.
+     *
+     * @param event    The event to store.
+     * @param local    True if the change was made on this device and must be synced.
+     * @param callback Notified when the batch is committed or fails, may be null.
+     */
+    void upsert(Event event, boolean local, Callback callback) {
+        submit(new Write(event.getId(), event, local, callback));
+    }
+
+    /**
+     * Queues the deletion of an event.
+     *
+     * @param id       The id of the event to delete.
+     * @param local    True if the change was made on this device and must be synced.
+     * @param callback Notified when the batch is committed or fails, may be null.
+     */
+    void delete(String id, boolean local, Callback callback) {
+        submit(new Write(id, null, local, callback));
+    }
+
+    /**
+     * Commits the open batch now instead of waiting for its latency bound.
+     */
+    void commitNow() {
+        commitPending();
+    }
+
+    /**
+     * Commits a list of events as one transaction of their own, after any
+     * writes already queued, for bulk loads that must know when each chunk
+     * is durable.
+     *
+     * @param events The events to store.
+     * @param local  True if the changes were made on this device and must be synced.
+     * @return A Future completed once the transaction has committed, or failed with its error.
+     */
+    Future<?> upsertAll(List<Event> events, boolean local) {
+        List<Write> batch = new ArrayList<>(events.size());
+        for (Event event : events) {
+            batch.add(new Write(event.getId(), event, local, null));
+        }
+        FutureTask<Void> task = new FutureTask<>(() -> commit(batch), null);
+        synchronized (this) {
+            // Queued under the lock, behind the open batch, so writes stay in order
+            commitPending();
+            mWriteLane.execute(task);
+        }
+        return task;
+    }
+
+    /**
+     * Applies a page of remote changes as one transaction of its own, after
+     * any writes already queued, so the callback hears exactly once whether
+     * the whole page was stored. Changes to events with local changes in
+     * the outbox are skipped, as for single remote writes.
+     *
+     * @param changes  The changes to apply, not empty.
+     * @param callback Notified when the transaction commits or fails.
+     */
+    void applyRemote(List<RemoteChange> changes, Callback callback) {
+        List<Write> batch = new ArrayList<>(changes.size());
+        for (RemoteChange change : changes) {
+            batch.add(new Write(change.getId(), change.getEvent(), false, callback));
+        }
+        synchronized (this) {
+            // Queued under the lock, behind the open batch, so writes stay in order
+            commitPending();
+            mWriteLane.execute(() -> commitOnLane(batch));
+        }
+    }
+
+    // Adds a write to the current batch, committing or scheduling the batch as needed
+    private synchronized void submit(Write write) {
+        mPending.add(write);
+        if (mPending.size() >= mMaxBatchSize) {
+            commitPending();
+        } else if (mScheduledCommit == null) {
+            mScheduledCommit = mTimer.schedule(this::commitPending, mMaxLatencyMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Detaches the current batch and queues it on the write lane
+    private synchronized void commitPending() {
+        List<Write> batch = mPending;
+        mPending = new ArrayList<>();
+        if (mScheduledCommit != null) {
+            mScheduledCommit.cancel(false);
+            mScheduledCommit = null;
+        }
+        // Queued under the lock so batches reach the lane in the order they were taken
+        if (!batch.isEmpty()) {
+            mWriteLane.execute(() -> commitOnLane(batch));
+        }
+    }
+
+    // Commits a batch queued on the lane, logging a failure the callbacks were told of
+    private void commitOnLane(List<Write> batch) {
+        try {
+            commit(batch);
+        } catch (RuntimeException e) {
+            // Keep the lane alive for the writes behind it
+            Log.e(TAG, "Could not commit " + batch.size() + " event writes.", e);
+        }
+    }
+
+    /**
+     * Applies a batch in a single transaction. Remote writes are skipped for
+     * events that have local changes in the outbox or in the same batch.
+     * If the transaction fails, the callbacks are told and the error is
+     * rethrown. Runs on the write lane.
+     */
+    private void commit(List<Write> batch) {
+        // Keep only the last write of each event, but let any local write win over remote ones
+        Map<String, Write> lastWrites = new LinkedHashMap<>();
+        Set<String> localIds = new HashSet<>();
+        for (Write write : batch) {
+            if (write.mLocal) {
+                localIds.add(write.mId);
+                lastWrites.put(write.mId, write);
+            } else if (!localIds.contains(write.mId)) {
+                lastWrites.put(write.mId, write);
+            }
+        }
+
+        List<Event> changed = new ArrayList<>();
+        Set<String> deletedIds = new HashSet<>();
+        boolean[] hasLocal = new boolean[1];
+        long transactionStart = mMetrics.startTimer();
+        try {
+            mTransactions.accept(() -> {
+                List<String> remoteIds = new ArrayList<>();
+                for (Write write : lastWrites.values()) {
+                    if (!write.mLocal) {
+                        remoteIds.add(write.mId);
+                    }
+                }
+                Set<String> pendingIds = new HashSet<>();
+                for (List<String> chunk : chunks(remoteIds)) {
+                    long start = mMetrics.startTimer();
+                    List<String> ids = mOutboxDao.getPendingIds(chunk);
+                    mMetrics.recordQuery("OutboxDao.getPendingIds", start, ids.size());
+                    pendingIds.addAll(ids);
+                }
+
+                List<Event> upserts = new ArrayList<>();
+                List<String> deleteIds = new ArrayList<>();
+                List<PendingMutation> mutations = new ArrayList<>();
+                for (Write write : lastWrites.values()) {
+                    if (!write.mLocal && pendingIds.contains(write.mId)) {
+                        continue;
+                    }
+                    if (write.mEvent != null) {
+                        upserts.add(write.mEvent);
+                    } else {
+                        deleteIds.add(write.mId);
+                    }
+                    if (write.mLocal) {
+                        mutations.add(new PendingMutation(write.mId, write.mEvent != null
+                                ? PendingMutation.OP_UPSERT : PendingMutation.OP_DELETE));
+                    }
+                }
+
+                for (List<String> chunk : chunks(deleteIds)) {
+                    // Keep the removed rows so pagers can find the pages they were in
+                    long start = mMetrics.startTimer();
+                    List<Event> removed = mEventDao.loadEvents(chunk);
+                    mMetrics.recordQuery("EventDao.loadEvents", start, removed.size());
+                    changed.addAll(removed);
+                    deletedIds.addAll(chunk);
+                    start = mMetrics.startTimer();
+                    int deleted = mEventDao.deleteEventsById(chunk);
+                    mMetrics.recordQuery("EventDao.deleteEventsById", start, deleted);
+                }
+                if (!upserts.isEmpty()) {
+                    long start = mMetrics.startTimer();
+                    mEventDao.addEvents(upserts);
+                    mMetrics.recordQuery("EventDao.addEvents", start, upserts.size());
+                    changed.addAll(upserts);
+                }
+                if (!mutations.isEmpty()) {
+                    long start = mMetrics.startTimer();
+                    mOutboxDao.addMutations(mutations);
+                    mMetrics.recordQuery("OutboxDao.addMutations", start, mutations.size());
+                    hasLocal[0] = true;
+                }
+            });
+        } catch (RuntimeException e) {
+            for (Callback callback : callbacks(batch)) {
+                callback.onBatchFailed(e);
+            }
+            throw e;
+        }
+        mMetrics.recordTransaction(transactionStart);
+
+        mCommitListener.onCommitted(changed, deletedIds, hasLocal[0]);
+        for (Callback callback : callbacks(batch)) {
+            callback.onBatchCommitted(batch.size());
+        }
+    }
+
+    // Returns the distinct callbacks of a batch's writes
+    private static Set<Callback> callbacks(List<Write> batch) {
+        Set<Callback> callbacks = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Write write : batch) {
+            if (write.mCallback != null) {
+                callbacks.add(write.mCallback);
+            }
+        }
+        return callbacks;
+    }
+
+    // Splits ids into lists small enough to bind in one query
+    private static List<List<String>> chunks(List<String> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<List<String>> chunks = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += MAX_QUERY_IDS) {
+            chunks.add(ids.subList(i, Math.min(ids.size(), i + MAX_QUERY_IDS)));
+        }
+        return chunks;
+    }
+}
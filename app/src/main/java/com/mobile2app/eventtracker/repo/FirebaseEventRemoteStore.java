@@ -0,0 +1,319 @@
+package com.mobile2app.eventtracker.repo;
+
+import static android.content.ContentValues.TAG;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.ValueEventListener;
+import com.mobile2app.eventtracker.model.Event;
+import com.mobile2app.eventtracker.model.RecurrenceRule;
+import com.mobile2app.eventtracker.remote.EventRemoteStore;
+import com.mobile2app.eventtracker.remote.RemoteChange;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * The remote store of the app: each user's partition of the Realtime
+ * Database, "users/{uid}/events". Events are written as the nodes toNode
+ * builds, deletions as tombstones, and changes are read with a query
+ * ordered by updatedAt. Live queries are shared app-wide through the
+ * EventStreamHub. Results complete, and listeners are called, on the main
+ * thread, where Firebase delivers its callbacks.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+final class FirebaseEventRemoteStore implements EventRemoteStore {
+
+    // Node holding one partition per signed-in user, keyed by uid
+    static final String USERS_NODE = "users";
+    // Child of a user's partition holding their events
+    static final String EVENTS_CHILD = "events";
+    // Child of an event node holding the sortable start time
+    static final String START_TIME_CHILD = "startTime";
+    // Child of an event node holding the recurrence rule of a series
+    static final String RECURRENCE_CHILD = "recurrence";
+    // Child holding the server time of a node's last write
+    static final String UPDATED_AT_CHILD = "updatedAt";
+    // Child set on the tombstone left by a deletion
+    static final String DELETED_CHILD = "deleted";
+
+    /**
+     * Passes the child events of a query on as remote changes.
+     */
+    private static final class ChildRelay implements ChildEventListener {
+        final ChangeListener mListener;
+
+        ChildRelay(ChangeListener listener) {
+            mListener = listener;
+        }
+
+        @Override
+        public void onChildAdded(@NonNull DataSnapshot snapshot, String previousChildName) {
+            mListener.onChanged(toChange(snapshot, 0));
+        }
+
+        @Override
+        public void onChildChanged(@NonNull DataSnapshot snapshot, String previousChildName) {
+            mListener.onChanged(toChange(snapshot, 0));
+        }
+
+        @Override
+        public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+            mListener.onRemoved(snapshot.getKey());
+        }
+
+        @Override
+        public void onChildMoved(@NonNull DataSnapshot snapshot, String previousChildName) {
+            // Ordering comes from the start_time index, not Firebase ordering
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError error) {
+            mListener.onFailed(error.toException());
+        }
+    }
+
+    /**
+     * Returns the node a user's events are stored under, "users/{uid}/events".
+     *
+     * @param uid The Firebase uid of the user.
+     * @return The reference to the user's events.
+     */
+    private static DatabaseReference eventsReference(String uid) {
+        return FirebaseDatabase.getInstance().getReference()
+                .child(USERS_NODE).child(uid).child(EVENTS_CHILD);
+    }
+
+    // Push ids are generated on the device, so this works offline
+    @Override
+    public String newKey() {
+        return FirebaseDatabase.getInstance().getReference().push().getKey();
+    }
+
+    @Override
+    public CompletableFuture<Void> write(String uid, Map<String, Event> events, Collection<String> deletedIds) {
+        Map<String, Object> updates = new HashMap<>();
+        for (Map.Entry<String, Event> entry : events.entrySet()) {
+            updates.put(entry.getKey(), toNode(entry.getValue()));
+        }
+        for (String id : deletedIds) {
+            updates.put(id, toTombstone());
+        }
+        return complete(eventsReference(uid).updateChildren(updates), result -> null);
+    }
+
+    @Override
+    public CompletableFuture<List<RemoteChange>> loadChanges(String uid, long updatedAt, String afterId, int limit) {
+        Query query = eventsReference(uid).orderByChild(UPDATED_AT_CHILD);
+        query = afterId == null ? query.startAt(updatedAt) : query.startAfter(updatedAt, afterId);
+        return complete(query.limitToFirst(limit).get(), snapshot -> {
+            List<RemoteChange> changes = new ArrayList<>((int) snapshot.getChildrenCount());
+            for (DataSnapshot child : snapshot.getChildren()) {
+                changes.add(toChange(child, updatedAt));
+            }
+            return changes;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Long> loadNewestUpdatedAt(String uid) {
+        Query query = eventsReference(uid).orderByChild(UPDATED_AT_CHILD).limitToLast(1);
+        return complete(query.get(), snapshot -> {
+            long newest = 0;
+            for (DataSnapshot child : snapshot.getChildren()) {
+                Long updatedAt = child.child(UPDATED_AT_CHILD).getValue(Long.class);
+                if (updatedAt != null) {
+                    newest = updatedAt;
+                }
+            }
+            return newest;
+        });
+    }
+
+    // Finds the tombstones through the deleted index, so live events are never downloaded
+    @Override
+    public CompletableFuture<Integer> pruneTombstones(String uid, long before) {
+        DatabaseReference events = eventsReference(uid);
+        Query query = events.orderByChild(DELETED_CHILD).equalTo(true);
+        return complete(query.get(), snapshot -> {
+            Map<String, Object> removals = new HashMap<>();
+            for (DataSnapshot child : snapshot.getChildren()) {
+                Long updatedAt = child.child(UPDATED_AT_CHILD).getValue(Long.class);
+                if (updatedAt != null && updatedAt < before) {
+                    removals.put(child.getKey(), null);
+                }
+            }
+            return removals;
+        }).thenCompose(removals -> removals.isEmpty()
+                ? CompletableFuture.completedFuture(0)
+                : complete(events.updateChildren(removals), result -> removals.size()));
+    }
+
+    @Override
+    public CompletableFuture<RemoteChange> loadEvent(String uid, String id) {
+        return complete(eventsReference(uid).child(id).get(),
+                snapshot -> snapshot.exists() ? toChange(snapshot, 0) : null);
+    }
+
+    // One query per window, shared through the hub; its initial contents are
+    // served from the data the child listener already fetched
+    @Override
+    public Subscription listenWindow(String uid, long from, String fromId, long to, int limit,
+                                     WindowListener listener) {
+        DatabaseReference events = eventsReference(uid);
+        Query ordered = events.orderByChild(START_TIME_CHILD);
+        Query query = (fromId == null ? ordered.startAt(from) : ordered.startAt(from, fromId))
+                .endBefore(to).limitToFirst(limit);
+        String key = events.getPath() + "?" + START_TIME_CHILD + "=[" + from
+                + (fromId == null ? "" : "," + fromId) + "," + to + ")#" + limit;
+        ValueEventListener loaded = new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                long lastStartTime = from;
+                String lastId = null;
+                for (DataSnapshot child : snapshot.getChildren()) {
+                    Long startTime = child.child(START_TIME_CHILD).getValue(Long.class);
+                    lastStartTime = startTime == null ? from : startTime;
+                    lastId = child.getKey();
+                }
+                listener.onLoaded((int) snapshot.getChildrenCount(), lastStartTime, lastId);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.w(TAG, "Could not load event window " + key + ".", error.toException());
+            }
+        };
+        EventStreamHub.Subscription stream = EventStreamHub.getInstance().subscribe(key, query,
+                new ChildRelay(listener));
+        query.addListenerForSingleValueEvent(loaded);
+        return () -> {
+            query.removeEventListener(loaded);
+            stream.close();
+        };
+    }
+
+    @Override
+    public Subscription listenSeries(String uid, ChangeListener listener) {
+        DatabaseReference events = eventsReference(uid);
+        // Every rule is a string, and strings sort after the nodes without one
+        Query series = events.orderByChild(RECURRENCE_CHILD).startAt("");
+        EventStreamHub.Subscription stream = EventStreamHub.getInstance().subscribe(
+                events.getPath() + "?" + RECURRENCE_CHILD, series, new ChildRelay(listener));
+        return stream::close;
+    }
+
+    /**
+     * Reads an event node as a change, the tombstone of a deletion included.
+     *
+     * @param snapshot  The DataSnapshot of a single event.
+     * @param updatedAt The time to use if the node has none.
+     * @return The change.
+     */
+    private static RemoteChange toChange(DataSnapshot snapshot, long updatedAt) {
+        Long childUpdatedAt = snapshot.child(UPDATED_AT_CHILD).getValue(Long.class);
+        return new RemoteChange(snapshot.getKey(), isTombstone(snapshot) ? null : eventFromSnapshot(snapshot),
+                childUpdatedAt == null ? updatedAt : childUpdatedAt);
+    }
+
+    /**
+     * Returns whether a node is the tombstone of a deleted event.
+     *
+     * @param snapshot The DataSnapshot of a single event.
+     * @return True if the event was deleted.
+     */
+    private static boolean isTombstone(DataSnapshot snapshot) {
+        return Boolean.TRUE.equals(snapshot.child(DELETED_CHILD).getValue(Boolean.class));
+    }
+
+    /**
+     * Creates an Event from a child of an events node. Nodes written
+     * before the start time was synced have it parsed from the date and time.
+     * A recurrence rule this version cannot read is dropped, leaving the
+     * first occurrence as a single event.
+     *
+     * @param snapshot The DataSnapshot of a single event.
+     * @return The Event read from the snapshot.
+     */
+    private static Event eventFromSnapshot(DataSnapshot snapshot) {
+        String id = snapshot.getKey();
+        String title = snapshot.child("title").getValue(String.class);
+        String date = snapshot.child("date").getValue(String.class);
+        String time = snapshot.child("time").getValue(String.class);
+        String timeZone = snapshot.child("timeZone").getValue(String.class);
+        Event event = new Event(id, title == null ? "" : title, date, time, timeZone);
+        Long startTime = snapshot.child(START_TIME_CHILD).getValue(Long.class);
+        if (startTime != null) {
+            event.setStartTime(startTime);
+        }
+        String recurrence = snapshot.child(RECURRENCE_CHILD).getValue(String.class);
+        try {
+            event.setRecurrenceRule(RecurrenceRule.parse(recurrence));
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Ignoring recurrence of event " + id + ".", e);
+            event.setRecurrenceRule(null);
+        }
+        return event;
+    }
+
+    // Returns the Realtime Database node written for an event
+    private static Map<String, Object> toNode(Event event) {
+        Map<String, Object> node = new HashMap<>();
+        node.put("title", event.getEventTitle());
+        node.put("date", event.getEventDate());
+        node.put("time", event.getEventTime());
+        node.put(START_TIME_CHILD, event.getStartTime());
+        node.put("timeZone", event.getTimeZone());
+        node.put(RECURRENCE_CHILD, event.getRecurrence());
+        node.put(UPDATED_AT_CHILD, ServerValue.TIMESTAMP);
+        return node;
+    }
+
+    /**
+     * Returns the node left in place of a deleted event. It has no start
+     * time or recurrence, so it drops out of every window and the series
+     * query, while the catch-up still sees the deletion by its updatedAt.
+     */
+    private static Map<String, Object> toTombstone() {
+        Map<String, Object> node = new HashMap<>();
+        node.put(DELETED_CHILD, true);
+        node.put(UPDATED_AT_CHILD, ServerValue.TIMESTAMP);
+        return node;
+    }
+
+    // Completes a future with the mapped result of a Firebase task
+    private static <R, T> CompletableFuture<T> complete(Task<R> task, Function<R, T> map) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        task.addOnCompleteListener(done -> {
+            if (!done.isSuccessful()) {
+                Exception e = done.getException();
+                future.completeExceptionally(e != null ? e : new CancellationException());
+                return;
+            }
+            try {
+                future.complete(map.apply(done.getResult()));
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+}
@@ -0,0 +1,39 @@
+package com.mobile2app.eventtracker.repo;
+
+import androidx.room.*;
+import com.mobile2app.eventtracker.model.PendingMutation;
+import java.util.List;
+
+/**
+ * Data Access Object (DAO) for the outbox of local changes that have not
+ * yet been written to the Realtime Database.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+@Dao
+public interface OutboxDao {
+    // Record a pending mutation
+    @Insert
+    long addMutation(PendingMutation mutation);
+
+    // Record a collection of pending mutations
+    @Insert
+    void addMutations(List<PendingMutation> mutations);
+
+    // Return the oldest pending mutations in the order they were made
+    @Query("SELECT * FROM PendingMutation ORDER BY seq LIMIT :limit")
+    List<PendingMutation> getPending(int limit);
+
+    // Remove the mutations up to and including a flushed sequence number
+    @Query("DELETE FROM PendingMutation WHERE seq <= :seq")
+    int deleteUpTo(long seq);
+
+    // Return which of the given events have local changes that are not yet flushed
+    @Query("SELECT DISTINCT event_id FROM PendingMutation WHERE event_id IN (:eventIds)")
+    List<String> getPendingIds(List<String> eventIds);
+
+    // Count the pending mutations
+    @Query("SELECT COUNT(*) FROM PendingMutation")
+    int countPending();
+}
@@ -0,0 +1,49 @@
+package com.mobile2app.eventtracker.repo;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+
+/**
+ * Groups the reads started for one screen so they can all be cancelled when
+ * the screen goes away. Reads still queued are dropped without running and
+ * running reads are interrupted; their callbacks are not called.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public final class QueryScope {
+
+    private final Set<Future<?>> mFutures = ConcurrentHashMap.newKeySet();
+    private volatile boolean mClosed;
+
+    /**
+     * Cancels every read still tracked and any started in this scope later.
+     */
+    public void close() {
+        mClosed = true;
+        for (Future<?> future : mFutures) {
+            future.cancel(true);
+        }
+        mFutures.clear();
+    }
+
+    // Get whether the scope has been closed
+    public boolean isClosed() {
+        return mClosed;
+    }
+
+    // Tracks a read, cancelling it at once if the scope is already closed
+    void add(Future<?> future) {
+        mFutures.add(future);
+        if (mClosed) {
+            future.cancel(true);
+            mFutures.remove(future);
+        }
+    }
+
+    // Stops tracking a read that has finished
+    void remove(Future<?> future) {
+        mFutures.remove(future);
+    }
+}
@@ -0,0 +1,149 @@
+package com.mobile2app.eventtracker.repo;
+
+import com.mobile2app.eventtracker.metrics.MetricsRegistry;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed pool of threads for database reads. Queued reads run by priority,
+ * so a read a screen is waiting on starts ahead of background sync reads
+ * queued before it, and in submission order within a priority. The queue
+ * is bounded: once it is full new reads are refused rather than letting a
+ * backlog grow without limit. Writes never run here; they go through the
+ * repository's serial write lane so they cannot hold up reads.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+final class ReadExecutor {
+
+    // Reads a screen is waiting on
+    static final int PRIORITY_UI = 0;
+    // Reads for sync and other work nobody is watching
+    static final int PRIORITY_BACKGROUND = 1;
+    // Most reads waiting to start before new ones are refused
+    private static final int MAX_QUEUED = 128;
+
+    private final ThreadPoolExecutor mPool;
+    private final AtomicLong mSequence = new AtomicLong();
+    private final MetricsRegistry mMetrics;
+    private final MetricsRegistry.ExecutorStats mStats;
+
+    /**
+     * Creates a read pool.
+     *
+     * @param threads The number of reads that may run at once.
+     * @param metrics The registry queue depth and wait times are recorded in.
+     */
+    ReadExecutor(int threads, MetricsRegistry metrics) {
+        mPool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>());
+        mMetrics = metrics;
+        mStats = metrics.registerExecutor("read");
+    }
+
+    /**
+     * Queues a read.
+     *
+     * @param priority PRIORITY_UI or PRIORITY_BACKGROUND.
+     * @param scope    The scope that cancels the read, may be null.
+     * @param work     The read to run.
+     * @param <T>      The type of the read's result.
+     * @return A Future for the result; cancelling it drops a queued read or interrupts a running one.
+     * @throws RejectedExecutionException If the queue is full.
+     */
+    <T> Future<T> submit(int priority, QueryScope scope, Callable<T> work) {
+        Task<T> task = new Task<>(work, priority, scope);
+        enqueue(task);
+        return task;
+    }
+
+    /**
+     * Queues a read with no result.
+     *
+     * @param priority PRIORITY_UI or PRIORITY_BACKGROUND.
+     * @param scope    The scope that cancels the read, may be null.
+     * @param work     The read to run.
+     * @return A Future that can cancel the read.
+     * @throws RejectedExecutionException If the queue is full.
+     */
+    Future<?> submit(int priority, QueryScope scope, Runnable work) {
+        return submit(priority, scope, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    // Hands a task to the pool unless the queue is full
+    private void enqueue(Task<?> task) {
+        if (mPool.getQueue().size() >= MAX_QUEUED) {
+            throw new RejectedExecutionException("Read queue full");
+        }
+        if (task.mQueuedAt != 0) {
+            mStats.onQueued();
+        }
+        if (task.mScope != null) {
+            task.mScope.add(task);
+        }
+        mPool.execute(task);
+    }
+
+    /**
+     * A queued read ordered by priority, then by submission.
+     */
+    private final class Task<T> extends FutureTask<T> implements Comparable<Task<?>> {
+        final int mPriority;
+        final long mSequence;
+        final QueryScope mScope;
+        // Time queued when metrics are enabled, otherwise 0
+        final long mQueuedAt;
+        // Set once the task has been counted as leaving the queue
+        private final AtomicBoolean mDequeued = new AtomicBoolean();
+
+        Task(Callable<T> work, int priority, QueryScope scope) {
+            super(work);
+            mPriority = priority;
+            mSequence = ReadExecutor.this.mSequence.getAndIncrement();
+            mScope = scope;
+            mQueuedAt = mMetrics.startTimer();
+        }
+
+        @Override
+        public void run() {
+            if (mQueuedAt != 0 && mDequeued.compareAndSet(false, true)) {
+                mStats.onStarted(System.nanoTime() - mQueuedAt);
+            }
+            super.run();
+        }
+
+        @Override
+        protected void done() {
+            if (mScope != null) {
+                mScope.remove(this);
+            }
+            if (isCancelled()) {
+                // Free the queue slot now instead of when a thread reaches it
+                mPool.remove(this);
+                if (mQueuedAt != 0 && mDequeued.compareAndSet(false, true)) {
+                    mStats.onDropped();
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(Task<?> other) {
+            if (mPriority != other.mPriority) {
+                return Integer.compare(mPriority, other.mPriority);
+            }
+            return Long.compare(mSequence, other.mSequence);
+        }
+    }
+}
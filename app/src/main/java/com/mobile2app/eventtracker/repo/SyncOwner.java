@@ -0,0 +1,41 @@
+package com.mobile2app.eventtracker.repo;
+
+/**
+ * Decides what becomes of the local tables when an account starts
+ * syncing. Tables that record no owner were filled before owners were
+ * recorded, or are empty on a new install; either way they belong to the
+ * account signing in, so they are kept and their outbox is sent on its
+ * behalf. Another account's tables are cleared only once its outbox is
+ * empty. Its unsent changes can only be written by that account, so while
+ * any remain they are kept, and the new account waits, rather than lost.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+final class SyncOwner {
+
+    // The tables are the account's own; sync them as they are
+    static final int KEEP = 0;
+    // The tables hold another account's unsent changes; leave them and do not sync
+    static final int HOLD = 1;
+    // The tables hold another account's events, all sent; clear them, then sync
+    static final int CLEAR = 2;
+
+    private SyncOwner() {
+    }
+
+    /**
+     * Decides what to do with the local tables before syncing an account.
+     *
+     * @param owner   The account the tables were last synced for, or null if none was recorded.
+     * @param uid     The account signing in.
+     * @param pending The number of outbox entries not yet sent.
+     * @return KEEP, HOLD, or CLEAR.
+     */
+    static int decide(String owner, String uid, int pending) {
+        if (owner == null || owner.equals(uid)) {
+            return KEEP;
+        }
+        return pending > 0 ? HOLD : CLEAR;
+    }
+}
@@ -0,0 +1,232 @@
+package com.mobile2app.eventtracker.repo;
+
+import static android.content.ContentValues.TAG;
+
+import android.util.Log;
+
+import com.mobile2app.eventtracker.remote.EventRemoteStore;
+import com.mobile2app.eventtracker.remote.RemoteChange;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Subscribes to a user's events in the remote store one window of start
+ * times at a time instead of the whole partition. The first window covers
+ * the next 30 days from the start of today; further windows are added
+ * only when the list is scrolled to its end, so what a client downloads
+ * is bounded by how far ahead the user has looked rather than by their
+ * whole history. Each
+ * window is a live query ordered by start time and capped at a fixed
+ * number of events; a window that fills its cap is continued from its
+ * last event before moving on to the next range.
+ *
+ * <p>A series is stored once at the start of its first occurrence, which
+ * may lie long before any window, so series are followed by one more
+ * query over the events with a recurrence rule, whatever their start.</p>
+ *
+ * <p>An event leaving a window query does not mean it was deleted: its
+ * start time may have moved or a limit may have pushed it out. Such events
+ * are read once more and passed on as either an update or a deletion.</p>
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+class UpcomingEventWindows {
+
+    // Range of start times covered by each window
+    static final long WINDOW_MS = TimeUnit.DAYS.toMillis(30);
+    // Most events a single window downloads
+    static final int WINDOW_LIMIT = 500;
+    // Furthest ahead of now a window may start
+    static final long MAX_HORIZON_MS = TimeUnit.DAYS.toMillis(2 * 365);
+
+    /**
+     * Receives the events seen through any window, on the store's thread.
+     */
+    interface Listener {
+        // Called for an event added to or changed in the store, or the tombstone of a deleted one
+        void onEvent(RemoteChange change);
+
+        // Called for an event no longer in the store at all
+        void onDeleted(String id);
+    }
+
+    // One subscribed window of start times [from, to), continuing after (from, fromKey) if set
+    private final class Window implements EventRemoteStore.WindowListener {
+        final long mFrom;
+        final String mFromKey;
+        final long mTo;
+        EventRemoteStore.Subscription mSubscription;
+        // Filled in once the initial contents have arrived; main thread only
+        boolean mLoaded;
+        long mCount;
+        long mLastStartTime;
+        String mLastKey;
+
+        Window(long from, String fromKey, long to) {
+            mFrom = from;
+            mFromKey = fromKey;
+            mTo = to;
+        }
+
+        @Override
+        public void onChanged(RemoteChange change) {
+            mListener.onEvent(change);
+        }
+
+        @Override
+        public void onRemoved(String id) {
+            resolveRemoved(id);
+        }
+
+        @Override
+        public void onFailed(Exception e) {
+            Log.w(TAG, "Event window [" + mFrom + ", " + mTo + ") cancelled.", e);
+        }
+
+        @Override
+        public void onLoaded(int count, long lastStartTime, String lastId) {
+            mMainThread.execute(() -> {
+                mLoaded = true;
+                mCount = count;
+                mLastStartTime = lastId == null ? mFrom : lastStartTime;
+                mLastKey = lastId;
+                if (mExtendPending && !mWindows.isEmpty() && mWindows.get(mWindows.size() - 1) == this) {
+                    mExtendPending = false;
+                    extend();
+                }
+            });
+        }
+    }
+
+    // Follows every series, whose occurrences may fall in any window
+    private final EventRemoteStore.ChangeListener mSeriesListener = new EventRemoteStore.ChangeListener() {
+        @Override
+        public void onChanged(RemoteChange change) {
+            mListener.onEvent(change);
+        }
+
+        @Override
+        public void onRemoved(String id) {
+            resolveRemoved(id);
+        }
+
+        @Override
+        public void onFailed(Exception e) {
+            Log.w(TAG, "Series query cancelled.", e);
+        }
+    };
+
+    private final EventRemoteStore mRemoteStore;
+    private final String mUid;
+    private final Listener mListener;
+    private final Executor mMainThread;
+    private EventRemoteStore.Subscription mSeriesSubscription;
+    // Subscribed windows in start time order; used on the main thread only
+    private final List<Window> mWindows = new ArrayList<>();
+    private boolean mExtendPending;
+
+    /**
+     * Creates the windows over a user's events.
+     *
+     * @param remoteStore The store holding the events.
+     * @param uid         The user whose events are listened to.
+     * @param listener    Receives the events seen through the windows.
+     * @param mainThread  Runs tasks on the main thread.
+     */
+    UpcomingEventWindows(EventRemoteStore remoteStore, String uid, Listener listener, Executor mainThread) {
+        mRemoteStore = remoteStore;
+        mUid = uid;
+        mListener = listener;
+        mMainThread = mainThread;
+    }
+
+    /**
+     * Subscribes to the series and the first window, starting at midnight
+     * today. Must be called on the main thread.
+     */
+    void open() {
+        if (mWindows.isEmpty()) {
+            mSeriesSubscription = mRemoteStore.listenSeries(mUid, mSeriesListener);
+            long from = startOfToday();
+            add(new Window(from, null, from + WINDOW_MS));
+        }
+    }
+
+    /**
+     * Requests the window after the last one. Does nothing until the last
+     * window has loaded, then extends once. Safe to call from any thread.
+     */
+    void requestMore() {
+        mMainThread.execute(() -> {
+            if (mWindows.isEmpty()) {
+                return;
+            }
+            if (!mWindows.get(mWindows.size() - 1).mLoaded) {
+                mExtendPending = true;
+                return;
+            }
+            extend();
+        });
+    }
+
+    /**
+     * Closes every window subscription. Must be called on the main thread.
+     */
+    void close() {
+        for (Window window : mWindows) {
+            window.mSubscription.close();
+        }
+        mWindows.clear();
+        if (mSeriesSubscription != null) {
+            mSeriesSubscription.close();
+            mSeriesSubscription = null;
+        }
+        mExtendPending = false;
+    }
+
+    // Adds the window following the last loaded one
+    private void extend() {
+        Window last = mWindows.get(mWindows.size() - 1);
+        if (last.mCount >= WINDOW_LIMIT && last.mLastKey != null) {
+            // The cap cut the window short; continue it from its last event
+            add(new Window(last.mLastStartTime, last.mLastKey, last.mTo));
+        } else if (last.mTo - System.currentTimeMillis() < MAX_HORIZON_MS) {
+            add(new Window(last.mTo, null, last.mTo + WINDOW_MS));
+        }
+    }
+
+    // Subscribes a window, which reports its initial contents through onLoaded
+    private void add(Window window) {
+        mWindows.add(window);
+        window.mSubscription = mRemoteStore.listenWindow(mUid, window.mFrom, window.mFromKey, window.mTo,
+                WINDOW_LIMIT, window);
+    }
+
+    // Reads an event that left a window to tell a deletion from a move
+    private void resolveRemoved(String id) {
+        mRemoteStore.loadEvent(mUid, id).whenComplete((change, e) -> {
+            if (e != null) {
+                Log.w(TAG, "Could not check removed event " + id + ".", e);
+            } else if (change != null) {
+                mListener.onEvent(change);
+            } else {
+                mListener.onDeleted(id);
+            }
+        });
+    }
+
+    // Returns local midnight at the start of today
+    private static long startOfToday() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTimeInMillis();
+    }
+}
@@ -0,0 +1,279 @@
+package com.mobile2app.eventtracker.repo;
+
+import static android.content.ContentValues.TAG;
+
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.mobile2app.eventtracker.remote.EventRemoteStore;
+import com.mobile2app.eventtracker.remote.RemoteChange;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Catches the local tables up with the remote store by pulling only the
+ * nodes changed since the last catch-up. Every node written carries the
+ * server time of its last write in its updatedAt child, and deletions are
+ * written as tombstones rather than removed, so a query ordered by
+ * updatedAt after a stored watermark returns every create, edit, and
+ * delete made meanwhile, on any device and at any start time. Resuming
+ * after a day offline downloads that day's changes and nothing else.
+ *
+ * <p>The watermark is the updatedAt of the last node applied, saved once
+ * each page has been committed to the local tables, so an interrupted
+ * catch-up resumes where it stopped and a page lost to a process kill or a
+ * failed commit is pulled again. The next page is read only after that.
+ * Pages continue from the (updatedAt, key) of their last node, so nodes
+ * sharing a time are neither skipped nor repeated across pages.</p>
+ *
+ * <p>Tombstones are kept for TOMBSTONE_RETENTION_MS and then pruned, at
+ * most once a day, by any device that has just caught up. A device whose
+ * watermark is older than that, less a day for clock differences, may
+ * have missed deletions whose tombstones are gone. It syncs in full
+ * instead, as does a device syncing a user for the first time. A full sync
+ * pages through every node from 0 and then reports which events are live,
+ * so rows deleted without a tombstone left can be removed. It is repeated
+ * on the next catch-up until one completes.</p>
+ *
+ * <p>Each catch-up starts a little before the watermark, since two writes
+ * stamped close together can become visible out of order; applying a node
+ * twice does no harm.</p>
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+class WatermarkSync {
+
+    // Most changed nodes downloaded in one page
+    static final int PAGE_SIZE = 500;
+    // How far before the watermark each catch-up starts reading
+    static final long OVERLAP_MS = 60_000;
+    // Preference holding the watermark of the user whose events are stored
+    static final String KEY_WATERMARK = "watermark";
+    // Stored before the first catch-up of a user on this device
+    private static final long NO_WATERMARK = Long.MIN_VALUE;
+    // Least time between catch-ups, so starting and resuming together pull once
+    static final long MIN_INTERVAL_MS = 30_000;
+    // How long a tombstone is kept before it may be pruned
+    static final long TOMBSTONE_RETENTION_MS = 30L * 24 * 60 * 60 * 1000;
+    // Age of a watermark that may have missed pruned tombstones, allowing a day of clock difference
+    static final long STALE_AFTER_MS = TOMBSTONE_RETENTION_MS - 24L * 60 * 60 * 1000;
+    // Least time between prunes from this device
+    static final long PRUNE_INTERVAL_MS = 24L * 60 * 60 * 1000;
+    // Preference set while a full sync has not completed
+    static final String KEY_FULL_SYNC = "full_sync";
+    // Preference holding the wall-clock time of the last prune
+    static final String KEY_PRUNED_AT = "tombstones_pruned_at";
+
+    /**
+     * Receives the changes pulled.
+     */
+    interface Listener {
+        /**
+         * Called with each page of events created, changed or deleted since
+         * the watermark, to be stored in one transaction.
+         *
+         * @param changes  The changes in the page, not empty.
+         * @param callback Told once the page is committed, or that it failed.
+         */
+        void onPage(List<RemoteChange> changes, PageCallback callback);
+
+        // Called before the first page of a full sync is read
+        void onFullSyncStarted();
+
+        /**
+         * Called once a full sync has read every node. Events stored before
+         * it started and missing from liveIds were deleted remotely.
+         *
+         * @param liveIds The ids of every event in the store that is not a tombstone.
+         */
+        void onFullSyncFinished(Set<String> liveIds);
+    }
+
+    /**
+     * Told, on any thread, whether a page was stored.
+     */
+    interface PageCallback {
+        // Called once every change in the page is committed
+        void onStored();
+
+        // Called if the page's transaction failed, so none of it was stored
+        void onFailed(RuntimeException error);
+    }
+
+    private final EventRemoteStore mRemoteStore;
+    private final String mUid;
+    private final SharedPreferences mPrefs;
+    private final Listener mListener;
+    // Runs each step of a catch-up on the main thread
+    private final Executor mMainThread;
+    // Main thread only
+    private boolean mRunning;
+    private boolean mClosed;
+    // Elapsed realtime the last catch-up ended, or 0 before the first
+    private long mFinishedAt;
+    // Live event ids read by the full sync running, or null if none runs
+    private Set<String> mLiveIds;
+
+    /**
+     * Creates the catch-up of a user's events.
+     *
+     * @param remoteStore The store changes are pulled from.
+     * @param uid         The user whose events are stored locally.
+     * @param prefs       The preferences the watermark is kept in.
+     * @param listener    Receives the changed and deleted events.
+     * @param mainThread  Runs tasks on the main thread.
+     */
+    WatermarkSync(EventRemoteStore remoteStore, String uid, SharedPreferences prefs, Listener listener,
+                  Executor mainThread) {
+        mRemoteStore = remoteStore;
+        mUid = uid;
+        mPrefs = prefs;
+        mListener = listener;
+        mMainThread = mainThread;
+    }
+
+    /**
+     * Pulls the changes made since the watermark, one page after another.
+     * Does nothing while a catch-up runs or shortly after one ended, when
+     * the windows have kept the tables current. Must be called on the main
+     * thread.
+     */
+    void catchUp() {
+        if (mClosed || mRunning
+                || (mFinishedAt != 0 && SystemClock.elapsedRealtime() - mFinishedAt < MIN_INTERVAL_MS)) {
+            return;
+        }
+        mRunning = true;
+        long watermark = mPrefs.getLong(KEY_WATERMARK, NO_WATERMARK);
+        if (watermark == NO_WATERMARK || mPrefs.getBoolean(KEY_FULL_SYNC, false)
+                || System.currentTimeMillis() - watermark > STALE_AFTER_MS) {
+            mPrefs.edit().putBoolean(KEY_FULL_SYNC, true).apply();
+            mLiveIds = new HashSet<>();
+            mListener.onFullSyncStarted();
+            pull(0, null, 0);
+        } else {
+            // Restart from just before the watermark; later pages continue from their last node
+            pull(watermark - OVERLAP_MS, null, 0);
+        }
+    }
+
+    /**
+     * Stops catching up, for example when the user signs out. A page
+     * arriving afterwards is dropped, since the tables may belong to
+     * another account by then.
+     */
+    void close() {
+        mClosed = true;
+    }
+
+    /**
+     * Downloads one page of changes and applies it, then, once it is
+     * stored, the next page from its last change until a page comes back
+     * short.
+     *
+     * @param updatedAt The time to start at.
+     * @param afterId   The id of the last change applied at that time, or
+     *                  null to start with every change at that time.
+     * @param applied   The number of changes applied by this catch-up so far.
+     */
+    private void pull(long updatedAt, String afterId, int applied) {
+        mRemoteStore.loadChanges(mUid, updatedAt, afterId, PAGE_SIZE).whenCompleteAsync((changes, e) -> {
+            if (mClosed) {
+                return;
+            }
+            if (e != null) {
+                fail("Event catch-up failed after " + applied + " changes.", e);
+                return;
+            }
+            if (changes.isEmpty()) {
+                complete();
+                return;
+            }
+            mListener.onPage(changes, new PageCallback() {
+                @Override
+                public void onStored() {
+                    mMainThread.execute(() -> onPageStored(changes, applied));
+                }
+
+                @Override
+                public void onFailed(RuntimeException error) {
+                    // The watermark still points before this page, so the next catch-up pulls it again
+                    mMainThread.execute(() -> {
+                        if (!mClosed) {
+                            fail("Could not store event catch-up after " + applied + " changes.", error);
+                        }
+                    });
+                }
+            });
+        }, mMainThread);
+    }
+
+    // Advances the watermark past a committed page, then reads the next one
+    private void onPageStored(List<RemoteChange> changes, int applied) {
+        if (mClosed) {
+            return;
+        }
+        if (mLiveIds != null) {
+            for (RemoteChange change : changes) {
+                if (!change.isDeleted()) {
+                    mLiveIds.add(change.getId());
+                }
+            }
+        }
+        RemoteChange last = changes.get(changes.size() - 1);
+        saveWatermark(last.getUpdatedAt());
+        if (changes.size() == PAGE_SIZE) {
+            pull(last.getUpdatedAt(), last.getId(), applied + changes.size());
+        } else {
+            complete();
+        }
+    }
+
+    // Ends a catch-up that stopped early; the windows stay live until the next start or resume
+    private void fail(String message, Throwable e) {
+        Log.w(TAG, message, e);
+        mLiveIds = null;
+        finish();
+    }
+
+    // Ends a catch-up that read every change, finishing a full sync and pruning old tombstones
+    private void complete() {
+        if (mLiveIds != null) {
+            mListener.onFullSyncFinished(mLiveIds);
+            mLiveIds = null;
+            mPrefs.edit().remove(KEY_FULL_SYNC).apply();
+        }
+        pruneTombstones();
+        finish();
+    }
+
+    // Removes tombstones past their retention, at most once per PRUNE_INTERVAL_MS
+    private void pruneTombstones() {
+        long now = System.currentTimeMillis();
+        if (now - mPrefs.getLong(KEY_PRUNED_AT, 0) < PRUNE_INTERVAL_MS) {
+            return;
+        }
+        mPrefs.edit().putLong(KEY_PRUNED_AT, now).apply();
+        mRemoteStore.pruneTombstones(mUid, now - TOMBSTONE_RETENTION_MS).whenComplete((pruned, e) -> {
+            if (e != null) {
+                Log.w(TAG, "Could not prune event tombstones.", e);
+            }
+        });
+    }
+
+    // Ends a catch-up
+    private void finish() {
+        mRunning = false;
+        mFinishedAt = SystemClock.elapsedRealtime();
+    }
+
+    // Saves how far the local tables are caught up
+    private void saveWatermark(long watermark) {
+        mPrefs.edit().putLong(KEY_WATERMARK, watermark).apply();
+    }
+}
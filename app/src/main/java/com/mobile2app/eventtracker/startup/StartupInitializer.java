@@ -0,0 +1,102 @@
+package com.mobile2app.eventtracker.startup;
+
+import android.os.SystemClock;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Runs the named setup tasks an app needs soon after launch on background
+ * threads, so they warm up while the first frame is drawn instead of
+ * blocking it. A task starts once the tasks it depends on have finished,
+ * and callers wait for a task only at the point they need its result by
+ * chaining on the future returned for it. Each task's duration is recorded
+ * in the startup report.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public final class StartupInitializer {
+
+    // Background threads shared by the startup tasks
+    private static final int NUMBER_OF_THREADS = 2;
+
+    private final ExecutorService mExecutor = Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+    private final Map<String, CompletableFuture<?>> mTasks = new ConcurrentHashMap<>();
+    private final StartupReport mReport;
+
+    /**
+     * Creates an initializer recording into the given report.
+     *
+     * @param report The report task durations are added to.
+     */
+    public StartupInitializer(StartupReport report) {
+        mReport = report;
+    }
+
+    /**
+     * Starts a task once its dependencies have finished. A failed dependency
+     * fails the task without running it.
+     *
+     * @param name         The unique name of the task.
+     * @param work         The setup work, run on a background thread.
+     * @param dependencies Names of tasks already added that must finish first.
+     * @param <T>          The type of the task's result.
+     * @return A future completed with the task's result.
+     */
+    public <T> CompletableFuture<T> add(String name, Supplier<T> work, String... dependencies) {
+        CompletableFuture<?>[] before = new CompletableFuture<?>[dependencies.length];
+        for (int i = 0; i < dependencies.length; i++) {
+            before[i] = require(dependencies[i]);
+        }
+        CompletableFuture<T> task = CompletableFuture.allOf(before).thenApplyAsync(ignored -> {
+            long start = SystemClock.uptimeMillis();
+            T result = work.get();
+            mReport.recordTask(name, SystemClock.uptimeMillis() - start);
+            return result;
+        }, mExecutor);
+        if (mTasks.putIfAbsent(name, task) != null) {
+            throw new IllegalStateException("Startup task already added: " + name);
+        }
+        return task;
+    }
+
+    /**
+     * Returns the future of a task that was added.
+     *
+     * @param name The name of the task.
+     * @param <T>  The type of the task's result.
+     * @return A future completed with the task's result.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> get(String name) {
+        return (CompletableFuture<T>) require(name);
+    }
+
+    /**
+     * Returns a future completed once all of the named tasks have finished.
+     *
+     * @param names The names of the tasks.
+     * @return A future completed after the last of the tasks.
+     */
+    public CompletableFuture<Void> whenAll(String... names) {
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[names.length];
+        for (int i = 0; i < names.length; i++) {
+            tasks[i] = require(names[i]);
+        }
+        return CompletableFuture.allOf(tasks);
+    }
+
+    // Returns the future of a task, failing fast on a misspelled name
+    private CompletableFuture<?> require(String name) {
+        CompletableFuture<?> task = mTasks.get(name);
+        if (task == null) {
+            throw new IllegalArgumentException("Unknown startup task: " + name);
+        }
+        return task;
+    }
+}
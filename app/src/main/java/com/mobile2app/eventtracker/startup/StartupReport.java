@@ -0,0 +1,172 @@
+package com.mobile2app.eventtracker.startup;
+
+import static android.content.ContentValues.TAG;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records how long a cold start takes, measured from the moment the
+ * process was forked. Time to first frame (ttff) is taken when the first
+ * activity draws, and time to interactive (tti) when it reports that it
+ * can handle input. Once both are known and every startup task has
+ * finished, the markers and task durations are appended as one JSON line
+ * to startup_report.jsonl in the app's files directory, tagged with the
+ * app version and device so runs from different builds can be compared.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public final class StartupReport {
+
+    // Report file in the app's files directory
+    public static final String FILE_NAME = "startup_report.jsonl";
+    // Marker names
+    public static final String MARKER_FIRST_FRAME = "ttff";
+    public static final String MARKER_INTERACTIVE = "tti";
+    public static final String MARKER_TASKS_DONE = "tasks_done";
+
+    private final Context mContext;
+    private final long mProcessStart = Process.getStartUptimeMillis();
+    private final Map<String, Long> mMarkers = new LinkedHashMap<>();
+    private final Map<String, Long> mTasks = new LinkedHashMap<>();
+    private boolean mTrackingFirstFrame;
+    private boolean mWritten;
+
+    /**
+     * Creates the report for this process.
+     *
+     * @param context The application context.
+     */
+    public StartupReport(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * Records a named point in startup as the time since the process started.
+     * Only the first mark of each name is kept.
+     *
+     * @param name The marker name.
+     */
+    public void mark(String name) {
+        long elapsed = SystemClock.uptimeMillis() - mProcessStart;
+        boolean complete;
+        synchronized (this) {
+            if (mMarkers.containsKey(name)) {
+                return;
+            }
+            mMarkers.put(name, elapsed);
+            complete = !mWritten && mMarkers.containsKey(MARKER_FIRST_FRAME)
+                    && mMarkers.containsKey(MARKER_INTERACTIVE) && mMarkers.containsKey(MARKER_TASKS_DONE);
+            mWritten |= complete;
+        }
+        if (complete) {
+            new Thread(this::write, "startup-report").start();
+        }
+    }
+
+    /**
+     * Records how long a startup task ran.
+     *
+     * @param name       The task name.
+     * @param durationMs The time the task took in milliseconds.
+     */
+    public synchronized void recordTask(String name, long durationMs) {
+        mTasks.put(name, durationMs);
+    }
+
+    /**
+     * Marks the first frame drawn by an activity. Only the first activity to
+     * call this in a process is tracked.
+     *
+     * @param activity The activity being launched, called from onCreate.
+     */
+    public void trackFirstFrame(Activity activity) {
+        synchronized (this) {
+            if (mTrackingFirstFrame) {
+                return;
+            }
+            mTrackingFirstFrame = true;
+        }
+        View content = activity.findViewById(android.R.id.content);
+        Handler handler = new Handler(Looper.getMainLooper());
+        content.getViewTreeObserver().addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+            private boolean mDrawn;
+
+            @Override
+            public void onDraw() {
+                if (mDrawn) {
+                    return;
+                }
+                mDrawn = true;
+                // The frame is on screen once this draw pass finishes
+                handler.postAtFrontOfQueue(() -> mark(MARKER_FIRST_FRAME));
+                // Listeners cannot be removed while they are being dispatched
+                handler.post(() -> {
+                    if (content.getViewTreeObserver().isAlive()) {
+                        content.getViewTreeObserver().removeOnDrawListener(this);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Marks the activity as ready for input and tells the system it is
+     * fully drawn. Must be called on the main thread.
+     *
+     * @param activity The activity that became interactive.
+     */
+    public void markInteractive(Activity activity) {
+        mark(MARKER_INTERACTIVE);
+        activity.reportFullyDrawn();
+    }
+
+    // Appends this start's markers to the report file
+    private void write() {
+        JSONObject line = new JSONObject();
+        try {
+            line.put("time", System.currentTimeMillis());
+            PackageInfo info = mContext.getPackageManager().getPackageInfo(
+                    mContext.getPackageName(), PackageManager.PackageInfoFlags.of(0));
+            line.put("version", info.versionName);
+            line.put("versionCode", info.getLongVersionCode());
+            line.put("device", Build.MANUFACTURER + " " + Build.MODEL);
+            line.put("sdk", Build.VERSION.SDK_INT);
+            synchronized (this) {
+                line.put("markers", new JSONObject(new LinkedHashMap<String, Object>(mMarkers)));
+                line.put("tasks", new JSONObject(new LinkedHashMap<String, Object>(mTasks)));
+            }
+        } catch (JSONException | PackageManager.NameNotFoundException e) {
+            Log.w(TAG, "Could not build startup report.", e);
+            return;
+        }
+        Log.i(TAG, "Startup: " + line);
+        try (Writer writer = new FileWriter(new File(mContext.getFilesDir(), FILE_NAME), true)) {
+            writer.write(line.toString());
+            writer.write('\n');
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write startup report.", e);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.mobile2app.eventtracker.transfer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streams event records to and from CSV as described by RFC 4180: a header
+ * row naming the columns, then one row per event. Fields holding a comma,
+ * quote, or line break are quoted, with quotes doubled. Records are read
+ * one at a time into a reused array, so a file of any size is read in the
+ * memory of its longest row.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+final class EventCsv {
+
+    // What ended a field
+    private static final int END_OF_FIELD = 0;
+    private static final int END_OF_RECORD = 1;
+    private static final int END_OF_FILE = 2;
+
+    private EventCsv() {
+    }
+
+    /**
+     * Reads records, matching the header's column names to EventTransfer.COLUMNS
+     * without regard to case or order. Unknown columns are ignored.
+     */
+    static final class RecordReader implements EventTransfer.RecordReader {
+        private final Reader mIn;
+        private final StringBuilder mField = new StringBuilder();
+        // Index into COLUMNS of each column of the file, or -1 if unknown
+        private int[] mColumns;
+        private int mPushedBack = -2;
+
+        RecordReader(Reader in) {
+            mIn = in;
+        }
+
+        @Override
+        public boolean next(String[] record) throws IOException {
+            if (mColumns == null) {
+                readHeader();
+            }
+            Arrays.fill(record, null);
+            int column = 0;
+            boolean any = false;
+            while (true) {
+                int end = readField();
+                if (end == END_OF_FILE && !any && mField.length() == 0) {
+                    return false;
+                }
+                any = true;
+                if (column < mColumns.length && mColumns[column] >= 0 && mField.length() > 0) {
+                    record[mColumns[column]] = mField.toString();
+                }
+                column++;
+                if (end != END_OF_FIELD) {
+                    return true;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            mIn.close();
+        }
+
+        // Reads the header row and maps its columns
+        private void readHeader() throws IOException {
+            List<Integer> columns = new ArrayList<>();
+            int end;
+            do {
+                end = readField();
+                columns.add(EventTransfer.columnIndex(mField.toString().trim()));
+            } while (end == END_OF_FIELD);
+            mColumns = new int[columns.size()];
+            for (int i = 0; i < mColumns.length; i++) {
+                mColumns[i] = columns.get(i);
+            }
+        }
+
+        // Reads one field into mField; returns what ended it
+        private int readField() throws IOException {
+            mField.setLength(0);
+            int c = read();
+            if (c == '"') {
+                while (true) {
+                    c = read();
+                    if (c < 0) {
+                        return END_OF_FILE;
+                    }
+                    if (c == '"') {
+                        c = read();
+                        if (c != '"') {
+                            break;
+                        }
+                    }
+                    mField.append((char) c);
+                }
+            }
+            while (true) {
+                if (c < 0) {
+                    return END_OF_FILE;
+                }
+                if (c == ',') {
+                    return END_OF_FIELD;
+                }
+                if (c == '\n') {
+                    return END_OF_RECORD;
+                }
+                if (c == '\r') {
+                    int next = read();
+                    if (next != '\n') {
+                        mPushedBack = next;
+                    }
+                    return END_OF_RECORD;
+                }
+                mField.append((char) c);
+                c = read();
+            }
+        }
+
+        private int read() throws IOException {
+            if (mPushedBack != -2) {
+                int c = mPushedBack;
+                mPushedBack = -2;
+                return c;
+            }
+            return mIn.read();
+        }
+    }
+
+    /**
+     * Writes a header row and then one row per record.
+     */
+    static final class RecordWriter implements EventTransfer.RecordWriter {
+        private final Writer mOut;
+
+        RecordWriter(Writer out) {
+            mOut = out;
+        }
+
+        @Override
+        public void begin() throws IOException {
+            String[] columns = EventTransfer.COLUMNS;
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    mOut.write(',');
+                }
+                mOut.write(columns[i]);
+            }
+            mOut.write("\r\n");
+        }
+
+        @Override
+        public void write(String[] record, boolean first) throws IOException {
+            for (int i = 0; i < record.length; i++) {
+                if (i > 0) {
+                    mOut.write(',');
+                }
+                writeField(record[i]);
+            }
+            mOut.write("\r\n");
+        }
+
+        @Override
+        public void end() {
+            // A CSV file needs no trailer
+        }
+
+        // Writes a field, quoting it only when it holds a separator, quote, or line break
+        private void writeField(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                mOut.write(value);
+                return;
+            }
+            mOut.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    mOut.write('"');
+                }
+                mOut.write(c);
+            }
+            mOut.write('"');
+        }
+    }
+}
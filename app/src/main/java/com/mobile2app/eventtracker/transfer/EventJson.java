@@ -0,0 +1,125 @@
+package com.mobile2app.eventtracker.transfer;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Streams event records to and from a JSON array holding one object per
+ * event, keyed by the column names. The reader pulls tokens one at a time
+ * and the writer emits each object as it is given, so neither ever holds
+ * more than one event, whatever the size of the file.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+final class EventJson {
+
+    private EventJson() {
+    }
+
+    /**
+     * Reads the objects of the top-level array. Unknown names are skipped,
+     * numbers are read as their text, and null values are left empty.
+     */
+    static final class RecordReader implements EventTransfer.RecordReader {
+        private final JsonReader mIn;
+        private boolean mStarted;
+
+        RecordReader(Reader in) {
+            mIn = new JsonReader(in);
+        }
+
+        @Override
+        public boolean next(String[] record) throws IOException {
+            try {
+                return read(record);
+            } catch (IllegalStateException e) {
+                // JsonReader reports a token of the wrong type this way
+                throw new IOException("Invalid event JSON", e);
+            }
+        }
+
+        // Reads the next object of the array into the record
+        private boolean read(String[] record) throws IOException {
+            if (!mStarted) {
+                mIn.beginArray();
+                mStarted = true;
+            }
+            if (!mIn.hasNext()) {
+                mIn.endArray();
+                return false;
+            }
+            Arrays.fill(record, null);
+            mIn.beginObject();
+            while (mIn.hasNext()) {
+                int column = EventTransfer.columnIndex(mIn.nextName());
+                if (column < 0) {
+                    mIn.skipValue();
+                } else if (mIn.peek() == JsonToken.NULL) {
+                    mIn.nextNull();
+                } else {
+                    record[column] = mIn.nextString();
+                }
+            }
+            mIn.endObject();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            mIn.close();
+        }
+    }
+
+    /**
+     * Writes the array one object at a time. Each object goes through a
+     * JsonWriter of its own, so the writer keeps no state across records
+     * and an export resumed after the last written object continues the
+     * same array.
+     */
+    static final class RecordWriter implements EventTransfer.RecordWriter {
+        private final Writer mOut;
+
+        RecordWriter(Writer out) {
+            mOut = out;
+        }
+
+        @Override
+        public void begin() throws IOException {
+            mOut.write('[');
+        }
+
+        @Override
+        public void write(String[] record, boolean first) throws IOException {
+            mOut.write(first ? "\n" : ",\n");
+            JsonWriter json = new JsonWriter(mOut);
+            json.beginObject();
+            String[] columns = EventTransfer.COLUMNS;
+            for (int i = 0; i < columns.length; i++) {
+                if (record[i] == null) {
+                    continue;
+                }
+                json.name(columns[i]);
+                if (i == EventTransfer.START_TIME) {
+                    json.value(Long.parseLong(record[i]));
+                } else {
+                    json.value(record[i]);
+                }
+            }
+            json.endObject();
+            // Flushes into mOut without closing it
+            json.flush();
+        }
+
+        @Override
+        public void end() throws IOException {
+            mOut.write("\n]\n");
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package com.mobile2app.eventtracker.transfer;
+
+import static android.content.ContentValues.TAG;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.OpenableColumns;
+import android.util.Log;
+
+import com.mobile2app.eventtracker.model.Event;
+import com.mobile2app.eventtracker.model.RecurrenceRule;
+import com.mobile2app.eventtracker.repo.EventRepository;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Imports and exports the events table as JSON or CSV without ever holding
+ * more than one chunk of it. Import parses the file one record at a time
+ * and stores every CHUNK_SIZE records in one transaction through the
+ * repository, so they are queued for upload like any local change. Export
+ * reads the table in keyset pages and writes each record as it is read.
+ *
+ * <p>Both directions checkpoint after every chunk, so a job killed with
+ * the process, or stopped by WorkManager, resumes where it stopped when
+ * it runs again. Import records how many records of a file it has stored
+ * and skips that many on resume; records without an id get one derived
+ * from the file and their position in it, so a chunk stored again after a
+ * kill overwrites itself instead of adding copies. Export writes to a file
+ * of its own, which cannot be truncated behind its back the way a
+ * document provider's file can, records its length and the key of the
+ * last event written, and copies it to the chosen document once
+ * complete. A series is exported as its one row with its rule.</p>
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public final class EventTransfer {
+
+    /**
+     * A file format events can be transferred in.
+     */
+    public enum Format {
+        JSON("application/json"),
+        CSV("text/csv");
+
+        private final String mMimeType;
+
+        Format(String mimeType) {
+            mMimeType = mimeType;
+        }
+
+        // Get the MIME type of files in this format
+        public String getMimeType() {
+            return mMimeType;
+        }
+    }
+
+    /**
+     * Told how far a transfer has come after every chunk.
+     */
+    public interface Progress {
+        /**
+         * Called after a chunk was stored or written.
+         *
+         * @param done  The records transferred so far, including those of earlier runs.
+         * @param total The records to transfer, or -1 if unknown before the end.
+         */
+        void onProgress(long done, long total);
+    }
+
+    /**
+     * Reads records one at a time into a reused array indexed like COLUMNS.
+     */
+    interface RecordReader extends Closeable {
+        // Fills the record, leaving missing columns null; returns false at the end
+        boolean next(String[] record) throws IOException;
+    }
+
+    /**
+     * Writes records one at a time from an array indexed like COLUMNS.
+     */
+    interface RecordWriter {
+        // Writes what comes before the first record
+        void begin() throws IOException;
+
+        // Writes one record; first is true for the first record of the file
+        void write(String[] record, boolean first) throws IOException;
+
+        // Writes what comes after the last record
+        void end() throws IOException;
+    }
+
+    // Column names of a record, in the order of a CSV export
+    static final String[] COLUMNS = {"id", "title", "date", "time", "timeZone", "startTime", "recurrence"};
+    static final int ID = 0;
+    static final int TITLE = 1;
+    static final int DATE = 2;
+    static final int TIME = 3;
+    static final int TIME_ZONE = 4;
+    static final int START_TIME = 5;
+    static final int RECURRENCE = 6;
+
+    // Records stored in one transaction, and events read per export page
+    static final int CHUNK_SIZE = 500;
+
+    private static final String TRANSFER_PREFS = "event_transfer";
+    private static final String KEY_IMPORT_SOURCE = "import_source";
+    private static final String KEY_IMPORT_RECORDS = "import_records";
+    private static final String KEY_EXPORT_TARGET = "export_target";
+    private static final String KEY_EXPORT_BYTES = "export_bytes";
+    private static final String KEY_EXPORT_START_TIME = "export_start_time";
+    private static final String KEY_EXPORT_ID = "export_id";
+    private static final String KEY_EXPORT_RECORDS = "export_records";
+    private static final String KEY_EXPORT_COMPLETE = "export_complete";
+    private static final String EXPORT_FILE = "event_export.tmp";
+
+    // How far ahead format detection may read before resetting
+    private static final int DETECT_LIMIT = 4096;
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    private final Context mContext;
+    private final EventRepository mRepository;
+    private final SharedPreferences mPrefs;
+
+    public EventTransfer(Context context) {
+        mContext = context.getApplicationContext();
+        mRepository = EventRepository.getInstance(mContext);
+        mPrefs = mContext.getSharedPreferences(TRANSFER_PREFS, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Imports the events of a JSON or CSV document, detecting the format
+     * from its first character. Resumes an interrupted import of the same
+     * document. Blocks, so must be called off the main thread.
+     *
+     * @param uri      The document to read.
+     * @param progress Told of the records read so far.
+     * @param stopped  Checked between chunks; the import checkpoints and returns once true.
+     * @return The number of records read, including those of earlier runs.
+     * @throws IOException          If the document cannot be read or parsed, or a chunk cannot be stored.
+     * @throws InterruptedException If interrupted while a chunk is stored.
+     */
+    public long importEvents(Uri uri, Progress progress, BooleanSupplier stopped)
+            throws IOException, InterruptedException {
+        String source = uri + "#" + querySize(uri);
+        long resumeAt = source.equals(mPrefs.getString(KEY_IMPORT_SOURCE, null))
+                ? mPrefs.getLong(KEY_IMPORT_RECORDS, 0) : 0;
+        if (resumeAt == 0) {
+            checkpointImport(source, 0);
+        }
+
+        InputStream stream = mContext.getContentResolver().openInputStream(uri);
+        if (stream == null) {
+            throw new FileNotFoundException("Cannot open " + uri);
+        }
+        String[] record = new String[COLUMNS.length];
+        List<Event> chunk = new ArrayList<>(CHUNK_SIZE);
+        long records = 0;
+        int skipped = 0;
+        try (InputStream in = stream; RecordReader reader = openReader(in)) {
+            while (reader.next(record)) {
+                long index = records++;
+                if (index < resumeAt) {
+                    // Stored by an earlier run
+                    continue;
+                }
+                Event event = toEvent(record, source, index);
+                if (event != null) {
+                    chunk.add(event);
+                } else {
+                    skipped++;
+                }
+                if ((records - resumeAt) % CHUNK_SIZE == 0) {
+                    store(chunk);
+                    checkpointImport(source, records);
+                    progress.onProgress(records, -1);
+                    if (stopped.getAsBoolean()) {
+                        return records;
+                    }
+                }
+            }
+        }
+        store(chunk);
+        mPrefs.edit().remove(KEY_IMPORT_SOURCE).remove(KEY_IMPORT_RECORDS).apply();
+        progress.onProgress(records, records);
+        if (skipped > 0) {
+            Log.w(TAG, "Skipped " + skipped + " imported records without a title.");
+        }
+        return records;
+    }
+
+    /**
+     * Exports every event to a document, resuming an interrupted export to
+     * the same document in the same format. Blocks, so must be called off
+     * the main thread.
+     *
+     * @param uri      The document to write, replaced once the export is complete.
+     * @param format   The format to write.
+     * @param progress Told of the events written so far.
+     * @param stopped  Checked between pages; the export checkpoints and returns once true.
+     * @return The number of events written, including those of earlier runs.
+     * @throws IOException If the file or the document cannot be written.
+     */
+    public long exportEvents(Uri uri, Format format, Progress progress, BooleanSupplier stopped)
+            throws IOException {
+        String target = uri + "#" + format.name();
+        File file = new File(mContext.getNoBackupFilesDir(), EXPORT_FILE);
+        boolean resume = target.equals(mPrefs.getString(KEY_EXPORT_TARGET, null))
+                && file.length() >= mPrefs.getLong(KEY_EXPORT_BYTES, Long.MAX_VALUE);
+        long records = resume ? mPrefs.getLong(KEY_EXPORT_RECORDS, 0) : 0;
+
+        if (!resume || !mPrefs.getBoolean(KEY_EXPORT_COMPLETE, false)) {
+            long total = mRepository.countEvents();
+            long startTime = resume ? mPrefs.getLong(KEY_EXPORT_START_TIME, Long.MIN_VALUE) : Long.MIN_VALUE;
+            String id = resume ? mPrefs.getString(KEY_EXPORT_ID, "") : "";
+            if (resume) {
+                // Drops whatever was written after the last checkpoint
+                try (RandomAccessFile truncate = new RandomAccessFile(file, "rw")) {
+                    truncate.setLength(mPrefs.getLong(KEY_EXPORT_BYTES, 0));
+                }
+            }
+            FileOutputStream out = new FileOutputStream(file, resume);
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+                RecordWriter recordWriter = format == Format.JSON
+                        ? new EventJson.RecordWriter(writer) : new EventCsv.RecordWriter(writer);
+                if (!resume) {
+                    recordWriter.begin();
+                }
+                String[] record = new String[COLUMNS.length];
+                while (true) {
+                    List<Event> page = mRepository.loadPageAfter(startTime, id, CHUNK_SIZE);
+                    for (Event event : page) {
+                        toRecord(event, record);
+                        recordWriter.write(record, records == 0);
+                        records++;
+                    }
+                    if (page.size() < CHUNK_SIZE) {
+                        recordWriter.end();
+                        writer.flush();
+                        checkpointExport(target, out.getChannel().position(), startTime, id, records, true);
+                        break;
+                    }
+                    Event last = page.get(page.size() - 1);
+                    startTime = last.getStartTime();
+                    id = last.getId();
+                    writer.flush();
+                    checkpointExport(target, out.getChannel().position(), startTime, id, records, false);
+                    progress.onProgress(records, Math.max(total, records));
+                    if (stopped.getAsBoolean()) {
+                        return records;
+                    }
+                }
+            }
+        }
+
+        // Copies the finished file; a kill during the copy redoes it on resume
+        ContentResolver resolver = mContext.getContentResolver();
+        try (InputStream in = new FileInputStream(file);
+             OutputStream out = resolver.openOutputStream(uri, "wt")) {
+            if (out == null) {
+                throw new FileNotFoundException("Cannot open " + uri);
+            }
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+        }
+        mPrefs.edit()
+                .remove(KEY_EXPORT_TARGET)
+                .remove(KEY_EXPORT_BYTES)
+                .remove(KEY_EXPORT_START_TIME)
+                .remove(KEY_EXPORT_ID)
+                .remove(KEY_EXPORT_RECORDS)
+                .remove(KEY_EXPORT_COMPLETE)
+                .apply();
+        if (!file.delete()) {
+            Log.w(TAG, "Could not delete " + file + ".");
+        }
+        progress.onProgress(records, records);
+        return records;
+    }
+
+    /**
+     * Returns the index into COLUMNS of a column name, ignoring case, or -1
+     * if the name is not a column.
+     */
+    static int columnIndex(String name) {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (COLUMNS[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Opens a reader for the format the document starts with
+    private static RecordReader openReader(InputStream stream) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+        in.mark(DETECT_LIMIT);
+        int first;
+        int read = 0;
+        do {
+            first = in.read();
+        } while (++read < DETECT_LIMIT
+                && (first == BYTE_ORDER_MARK || (first >= 0 && Character.isWhitespace(first))));
+        in.reset();
+        if (in.read() != BYTE_ORDER_MARK) {
+            in.reset();
+        }
+        if (first == '[' || first == '{') {
+            return new EventJson.RecordReader(in);
+        }
+        return new EventCsv.RecordReader(in);
+    }
+
+    /**
+     * Builds an event out of an imported record. The start time is taken
+     * from the record when given, since it is exact where the date and
+     * time are not, and recomputed from them otherwise.
+     *
+     * @return The event, or null if the record has no title.
+     */
+    private static Event toEvent(String[] record, String source, long index) {
+        String title = record[TITLE];
+        if (title == null || title.trim().isEmpty()) {
+            return null;
+        }
+        String id = record[ID];
+        if (id == null || id.isEmpty()) {
+            id = "import-" + UUID.nameUUIDFromBytes((source + "#" + index).getBytes(StandardCharsets.UTF_8));
+        }
+        Event event = new Event(id, title, record[DATE], record[TIME], record[TIME_ZONE]);
+        if (record[START_TIME] != null) {
+            try {
+                event.setStartTime(Long.parseLong(record[START_TIME].trim()));
+            } catch (NumberFormatException e) {
+                // Keep the start time computed from the date and time
+            }
+        }
+        RecurrenceRule rule = null;
+        try {
+            rule = RecurrenceRule.parse(record[RECURRENCE]);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Imported event " + id + " has an invalid recurrence; importing it as a single event.");
+        }
+        // Also sets the series end from the final start time
+        event.setRecurrenceRule(rule);
+        return event;
+    }
+
+    // Fills a record from an event
+    private static void toRecord(Event event, String[] record) {
+        record[ID] = event.getId();
+        record[TITLE] = event.getEventTitle();
+        record[DATE] = event.getEventDate();
+        record[TIME] = event.getEventTime();
+        record[TIME_ZONE] = event.getTimeZone();
+        record[START_TIME] = String.valueOf(event.getStartTime());
+        record[RECURRENCE] = event.getRecurrence();
+    }
+
+    // Stores a chunk in one transaction and empties it
+    private void store(List<Event> chunk) throws IOException, InterruptedException {
+        try {
+            mRepository.importEvents(chunk);
+        } catch (ExecutionException e) {
+            throw new IOException("Could not store imported events.", e.getCause());
+        }
+        chunk.clear();
+    }
+
+    // Returns the size of a document, or -1 if the provider does not know it
+    private long querySize(Uri uri) {
+        try (Cursor cursor = mContext.getContentResolver().query(uri,
+                new String[]{OpenableColumns.SIZE}, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst() && !cursor.isNull(0)) {
+                return cursor.getLong(0);
+            }
+        }
+        return -1;
+    }
+
+    // Records how many records of a document have been stored
+    private void checkpointImport(String source, long records) {
+        mPrefs.edit()
+                .putString(KEY_IMPORT_SOURCE, source)
+                .putLong(KEY_IMPORT_RECORDS, records)
+                .commit();
+    }
+
+    // Records how much of an export has been written to the file
+    private void checkpointExport(String target, long bytes, long startTime, String id, long records,
+                                  boolean complete) {
+        mPrefs.edit()
+                .putString(KEY_EXPORT_TARGET, target)
+                .putLong(KEY_EXPORT_BYTES, bytes)
+                .putLong(KEY_EXPORT_START_TIME, startTime)
+                .putString(KEY_EXPORT_ID, id)
+                .putLong(KEY_EXPORT_RECORDS, records)
+                .putBoolean(KEY_EXPORT_COMPLETE, complete)
+                .commit();
+    }
+}
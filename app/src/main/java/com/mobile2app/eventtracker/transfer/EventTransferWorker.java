@@ -0,0 +1,119 @@
+package com.mobile2app.eventtracker.transfer;
+
+import static android.content.ContentValues.TAG;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.io.IOException;
+
+/**
+ * Runs one import or export of events. WorkManager runs the job again if
+ * the process dies or the job is stopped before it finishes, and the
+ * transfer's checkpoints let that run continue where the last one stopped.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public class EventTransferWorker extends Worker {
+
+    // Unique work names, one job of each kind at a time
+    public static final String WORK_IMPORT = "event_import";
+    public static final String WORK_EXPORT = "event_export";
+
+    // Progress and output keys
+    public static final String KEY_DONE = "done";
+    public static final String KEY_TOTAL = "total";
+
+    private static final String KEY_MODE = "mode";
+    private static final String KEY_URI = "uri";
+    private static final String KEY_FORMAT = "format";
+    private static final String MODE_IMPORT = "import";
+    private static final String MODE_EXPORT = "export";
+
+    public EventTransferWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Starts importing a document, replacing any import still running.
+     *
+     * @param context Any context of this app.
+     * @param uri     The document to import, readable across restarts.
+     */
+    public static void enqueueImport(Context context, Uri uri) {
+        enqueue(context, WORK_IMPORT, MODE_IMPORT, new Data.Builder()
+                .putString(KEY_MODE, MODE_IMPORT)
+                .putString(KEY_URI, uri.toString())
+                .build());
+    }
+
+    /**
+     * Starts exporting every event to a document, replacing any export
+     * still running. The work is tagged with the format's name.
+     *
+     * @param context Any context of this app.
+     * @param uri     The document to write, writable across restarts.
+     * @param format  The format to write.
+     */
+    public static void enqueueExport(Context context, Uri uri, EventTransfer.Format format) {
+        enqueue(context, WORK_EXPORT, format.name(), new Data.Builder()
+                .putString(KEY_MODE, MODE_EXPORT)
+                .putString(KEY_URI, uri.toString())
+                .putString(KEY_FORMAT, format.name())
+                .build());
+    }
+
+    // Enqueues a transfer as unique work, tagged so its progress can be told apart
+    private static void enqueue(Context context, String name, String tag, Data input) {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(EventTransferWorker.class)
+                .setInputData(input)
+                .addTag(tag)
+                .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(name, ExistingWorkPolicy.REPLACE, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Data input = getInputData();
+        String uri = input.getString(KEY_URI);
+        if (uri == null) {
+            return Result.failure();
+        }
+        EventTransfer transfer = new EventTransfer(getApplicationContext());
+        EventTransfer.Progress progress = (done, total) -> setProgressAsync(new Data.Builder()
+                .putLong(KEY_DONE, done)
+                .putLong(KEY_TOTAL, total)
+                .build());
+        long done;
+        try {
+            if (MODE_EXPORT.equals(input.getString(KEY_MODE))) {
+                EventTransfer.Format format = EventTransfer.Format.valueOf(input.getString(KEY_FORMAT));
+                done = transfer.exportEvents(Uri.parse(uri), format, progress, this::isStopped);
+            } else {
+                done = transfer.importEvents(Uri.parse(uri), progress, this::isStopped);
+            }
+        } catch (IOException | SecurityException e) {
+            Log.e(TAG, "Event transfer failed.", e);
+            return Result.failure();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.retry();
+        }
+        if (isStopped()) {
+            // WorkManager runs the job again, which resumes from the checkpoint
+            return Result.retry();
+        }
+        return Result.success(new Data.Builder().putLong(KEY_DONE, done).build());
+    }
+}
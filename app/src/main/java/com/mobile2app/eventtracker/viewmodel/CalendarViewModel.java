@@ -0,0 +1,126 @@
+package com.mobile2app.eventtracker.viewmodel;
+
+import android.app.Application;
+
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
+
+import com.mobile2app.eventtracker.calendar.CalendarIndex;
+import com.mobile2app.eventtracker.model.Event;
+import com.mobile2app.eventtracker.repo.EventRepository;
+
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * ViewModel of the calendar screen. Holds the month shown and the day
+ * selected across configuration changes, reads the per-day counts of the
+ * shown weeks from the calendar index, and loads the agenda of the
+ * selected day with a range query over that day only.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public class CalendarViewModel extends AndroidViewModel {
+
+    // Days in the six weeks a month grid shows
+    public static final int GRID_DAYS = 42;
+
+    private final EventRepository mEventRepo;
+    private final CalendarIndex mCalendarIndex;
+    // Months since year 0 of the month shown
+    private final MutableLiveData<Integer> mMonth = new MutableLiveData<>();
+    // Number of the day whose agenda is shown
+    private final MutableLiveData<Long> mSelectedDay = new MutableLiveData<>();
+    private final LiveData<List<Event>> mAgenda;
+
+    /**
+     * Constructor for CalendarViewModel. Starts on the current month with today selected.
+     *
+     * @param application The application context, used to get the repository and index.
+     */
+    public CalendarViewModel(Application application) {
+        super(application);
+        mEventRepo = EventRepository.getInstance(application.getApplicationContext());
+        mCalendarIndex = CalendarIndex.getInstance(application);
+        mCalendarIndex.start();
+        Calendar today = Calendar.getInstance();
+        mMonth.setValue(today.get(Calendar.YEAR) * 12 + today.get(Calendar.MONTH));
+        mSelectedDay.setValue(mCalendarIndex.dayOf(today.getTimeInMillis()));
+        mAgenda = Transformations.switchMap(mSelectedDay, day -> mEventRepo.getEventsBetween(
+                mCalendarIndex.startOfDay(day), mCalendarIndex.startOfDay(day + 1)));
+    }
+
+    // Get the month shown, as months since year 0
+    public LiveData<Integer> getMonth() {
+        return mMonth;
+    }
+
+    // Get the number of the selected day
+    public LiveData<Long> getSelectedDay() {
+        return mSelectedDay;
+    }
+
+    // Get the events of the selected day in start time order
+    public LiveData<List<Event>> getAgenda() {
+        return mAgenda;
+    }
+
+    // Get the number bumped whenever the counts may have changed
+    public LiveData<Integer> getIndexVersion() {
+        return mCalendarIndex.getVersion();
+    }
+
+    /**
+     * Moves the month shown forward or back.
+     *
+     * @param months The number of months to move, negative to go back.
+     */
+    public void moveMonth(int months) {
+        Integer month = mMonth.getValue();
+        mMonth.setValue((month == null ? 0 : month) + months);
+    }
+
+    // Selects the day whose agenda is shown
+    public void selectDay(long day) {
+        mSelectedDay.setValue(day);
+    }
+
+    /**
+     * Returns the number of the first day of the grid showing a month: the
+     * start of the week holding the first of the month.
+     *
+     * @param month The month, as months since year 0.
+     * @return The number of the day.
+     */
+    public long firstGridDay(int month) {
+        Calendar first = Calendar.getInstance();
+        first.clear();
+        first.set(month / 12, month % 12, 1);
+        int lead = (first.get(Calendar.DAY_OF_WEEK) - first.getFirstDayOfWeek() + 7) % 7;
+        return mCalendarIndex.dayOf(first.getTimeInMillis()) - lead;
+    }
+
+    /**
+     * Counts the events on each day of a grid from the index, one lookup
+     * per day.
+     *
+     * @param firstDay The number of the first day of the grid.
+     * @return The count of each of the GRID_DAYS days.
+     */
+    public int[] countGrid(long firstDay) {
+        return mCalendarIndex.countDays(firstDay, GRID_DAYS);
+    }
+
+    // Returns the first instant of a day
+    public long startOfDay(long day) {
+        return mCalendarIndex.startOfDay(day);
+    }
+
+    // Rebuilds the index if the time zone changed while the screen was away
+    public void refresh() {
+        mCalendarIndex.start();
+    }
+}
@@ -5,8 +5,14 @@ import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 
 import com.mobile2app.eventtracker.model.Event;
+import com.mobile2app.eventtracker.model.EventColumns;
+import com.mobile2app.eventtracker.model.StringPool;
+import com.mobile2app.eventtracker.repo.EventPager;
 import com.mobile2app.eventtracker.repo.EventRepository;
+import com.mobile2app.eventtracker.repo.QueryScope;
 import java.util.List;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 /**
  * ViewModel class that prepares and manages the data for the UI related to Event List.
@@ -18,6 +24,11 @@ import java.util.List;
 public class EventListViewModel extends AndroidViewModel {
 
     private final EventRepository mEventRepo;
+    private EventPager mEventPager;
+    // Cancels the reads started for this screen once it is gone
+    private final QueryScope mQueryScope = new QueryScope();
+    // Rejected edits count already reported, so a recreated view does not report it again
+    private int mReportedRejections;
 
     /**
      * Constructor for EventListViewModel. Initializes the EventRepository instance.
@@ -27,6 +38,9 @@ public class EventListViewModel extends AndroidViewModel {
     public EventListViewModel(Application application) {
         super(application);
         mEventRepo = EventRepository.getInstance(application.getApplicationContext());
+        Integer rejections = mEventRepo.getRejectedEdits().getValue();
+        mReportedRejections = rejections == null ? 0 : rejections;
+        mEventRepo.startSync();
     }
 
     /**
@@ -38,6 +52,70 @@ public class EventListViewModel extends AndroidViewModel {
         return mEventRepo.getEvents();
     }
 
+    /**
+     * Retrieves a LiveData object containing the pages of events loaded so far.
+     * The first page is requested on first use; further pages are loaded by
+     * calling loadMoreEvents as the list scrolls.
+     *
+     * @return A LiveData object containing the loaded events in chronological order.
+     */
+    public LiveData<EventColumns> getEventPages() {
+        if (mEventPager == null) {
+            mEventPager = mEventRepo.openEventPager();
+        }
+        return mEventPager.getEvents();
+    }
+
+    /**
+     * Sends the signed-in user's unsent changes, then stops syncing their
+     * events. Called before signing out.
+     *
+     * @param callback Told on the main thread whether syncing stopped.
+     */
+    public void stopSync(EventRepository.StopSyncCallback callback) {
+        mEventRepo.stopSync(callback);
+    }
+
+    /**
+     * Requests the next page of events if more are available.
+     */
+    public void loadMoreEvents() {
+        if (mEventPager != null) {
+            mEventPager.loadMore();
+        }
+    }
+
+    /**
+     * Retrieves a LiveData object containing the events starting within a time range.
+     *
+     * @param from Inclusive start of the range in epoch milliseconds.
+     * @param to   Exclusive end of the range in epoch milliseconds.
+     * @return A LiveData object containing the list of Event objects.
+     */
+    public LiveData<List<Event>> getEventsBetween(long from, long to) {
+        return mEventRepo.getEventsBetween(from, to);
+    }
+
+    /**
+     * Searches event titles by word prefix, ordered by relevance.
+     *
+     * @param text     The text typed by the user.
+     * @param limit    The most results to return.
+     * @param callback Receives the results as columns on a background thread,
+     *                 in a pool of their own released with them.
+     * @return A Future that cancels the search when a newer one supersedes it.
+     * @throws java.util.concurrent.RejectedExecutionException If too many reads are already waiting.
+     */
+    public Future<?> searchEvents(String text, int limit, Consumer<EventColumns> callback) {
+        return mEventRepo.searchEvents(text, limit, true, mQueryScope,
+                events -> callback.accept(EventColumns.of(new StringPool(), events)));
+    }
+
+    // Returns an id for a new event, made on the device so it works offline
+    public String newEventId() {
+        return mEventRepo.newEventId();
+    }
+
     /**
      * Adds an event to the database.
      *
@@ -57,6 +135,42 @@ public class EventListViewModel extends AndroidViewModel {
         mEventRepo.updateEvent(event);
     }
 
+    /**
+     * Edits one field of an event from the list. Edits are shown at once and
+     * written together once the user pauses.
+     *
+     * @param id    The id of the event.
+     * @param field EventPatchBuffer.FIELD_DATE or EventPatchBuffer.FIELD_TIME.
+     * @param value The new value of the field.
+     */
+    public void patchEvent(String id, String field, String value) {
+        mEventRepo.patchEvent(id, field, value);
+    }
+
+    /**
+     * Retrieves the number of events whose inline edits were rolled back.
+     *
+     * @return A LiveData object holding the count since the app started.
+     */
+    public LiveData<Integer> getRejectedEdits() {
+        return mEventRepo.getRejectedEdits();
+    }
+
+    /**
+     * Checks whether a rejected edits count includes rejections this screen
+     * has not reported yet, and marks them reported.
+     *
+     * @param count The count delivered by getRejectedEdits.
+     * @return True if the user should be told.
+     */
+    public boolean takeNewRejections(int count) {
+        if (count <= mReportedRejections) {
+            return false;
+        }
+        mReportedRejections = count;
+        return true;
+    }
+
     /**
      * Deletes an event from the database.
      *
@@ -64,4 +178,21 @@ public class EventListViewModel extends AndroidViewModel {
      */    public void deleteEvent(Event event) {
         mEventRepo.deleteEvent(event);
     }
+
+    /**
+     * Cancels reads still queued or running for this screen, writes pending
+     * inline edits, and closes the event pager, releasing the strings of its
+     * pages, when the ViewModel is no longer used.
+     */
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        mQueryScope.close();
+        // Write pending inline edits now rather than after the debounce
+        mEventRepo.flushPatches();
+        if (mEventPager != null) {
+            mEventRepo.closeEventPager(mEventPager);
+            mEventPager = null;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+package com.mobile2app.eventtracker.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the matchinfo score and that the bounded ranking keeps the best
+ * matches wherever they appear in the match cursor.
+ */
+public class EventSearchResultTest {
+
+    // Builds a one-phrase, one-column pcnx blob
+    private static byte[] matchInfo(int rows, int hits, int rowsWithHits) {
+        int[] ints = {1, 1, rows, hits, hits, rowsWithHits};
+        byte[] blob = new byte[ints.length * 4];
+        for (int i = 0; i < ints.length; i++) {
+            blob[i * 4] = (byte) ints[i];
+            blob[i * 4 + 1] = (byte) (ints[i] >> 8);
+            blob[i * 4 + 2] = (byte) (ints[i] >> 16);
+            blob[i * 4 + 3] = (byte) (ints[i] >> 24);
+        }
+        return blob;
+    }
+
+    // Collects the ids of the kept matches in rank order
+    private static List<String> ids(EventSearchResult.TopResults top) {
+        List<String> ids = new ArrayList<>();
+        for (EventSearchResult result : top.toList()) {
+            ids.add(result.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void score_weightsHitsByRarity() {
+        double once = EventSearchResult.score(matchInfo(100, 1, 10));
+        assertEquals(Math.log(11), once, 1e-9);
+        assertEquals(2 * once, EventSearchResult.score(matchInfo(100, 2, 10)), 1e-9);
+        assertEquals(0, EventSearchResult.score(null), 0);
+        assertEquals(0, EventSearchResult.score(new byte[4]), 0);
+    }
+
+    @Test
+    public void topResults_keepsBestMatchesFoundLateInTheCursor() {
+        EventSearchResult.TopResults top = new EventSearchResult.TopResults(2);
+        for (int i = 0; i < 1000; i++) {
+            top.offer(new EventSearchResult(i, String.format("a%04d", i), matchInfo(1000, 1, 900)));
+        }
+        top.offer(new EventSearchResult(5000, "best", matchInfo(1000, 3, 900)));
+        top.offer(new EventSearchResult(4000, "second", matchInfo(1000, 2, 900)));
+        assertEquals(Arrays.asList("best", "second"), ids(top));
+    }
+
+    @Test
+    public void topResults_breaksTiesChronologically() {
+        EventSearchResult.TopResults top = new EventSearchResult.TopResults(3);
+        byte[] info = matchInfo(10, 1, 5);
+        top.offer(new EventSearchResult(30, "c", info));
+        top.offer(new EventSearchResult(10, "b", info));
+        top.offer(new EventSearchResult(10, "a", info));
+        top.offer(new EventSearchResult(20, "d", info));
+        assertEquals(Arrays.asList("a", "b", "d"), ids(top));
+    }
+
+    @Test
+    public void topResults_zeroLimitKeepsNothing() {
+        EventSearchResult.TopResults top = new EventSearchResult.TopResults(0);
+        top.offer(new EventSearchResult(1, "a", matchInfo(1, 1, 1)));
+        assertTrue(top.toList().isEmpty());
+    }
+}
@@ -0,0 +1,88 @@
+package com.mobile2app.eventtracker.model;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how stored times read and write around midnight and noon, and
+ * how they are displayed on 12 and 24-hour clocks.
+ */
+public class EventTimeCodecTest {
+
+    private static final String DATE = "08/18/2024";
+
+    // Returns the hour of day a stored time parses to
+    private static int hourOf(String time) {
+        return EventTimeCodec.hourOfDay(EventTimeCodec.parse(DATE, time));
+    }
+
+    @Test
+    public void parse_readsOldAndNewMidnightAndNoon() {
+        assertEquals(0, hourOf("0:15AM"));
+        // The old pickers wrote noon as 12 AM
+        assertEquals(12, hourOf("12:00AM"));
+        assertEquals(12, hourOf("12:30PM"));
+        assertEquals(13, hourOf("1:05PM"));
+        assertEquals(11, hourOf("11:59AM"));
+        assertEquals(23, hourOf("11:59PM"));
+    }
+
+    @Test
+    public void parse_missingOrMalformedTimeIsMidnight() {
+        long packed = EventTimeCodec.parse(DATE, null);
+        assertEquals(EventTimeCodec.pack(2024, 8, 18, 0, 0), packed);
+        assertEquals(packed, EventTimeCodec.parse(DATE, ""));
+        assertEquals(packed, EventTimeCodec.parse(DATE, "25:00PM"));
+        assertEquals(EventTimeCodec.UNKNOWN, EventTimeCodec.parse("18/2024", "9:00AM"));
+        assertEquals(EventTimeCodec.UNKNOWN, EventTimeCodec.parse("13/01/2024", "9:00AM"));
+    }
+
+    @Test
+    public void storedTime_writesMidnightAsZeroAndNoonAsPm() {
+        assertEquals("0:00AM", EventTimeCodec.storedTime(0, 0));
+        assertEquals("12:00PM", EventTimeCodec.storedTime(12, 0));
+        assertEquals("9:05AM", EventTimeCodec.storedTime(9, 5));
+        assertEquals("11:59PM", EventTimeCodec.storedTime(23, 59));
+        assertEquals(DATE, EventTimeCodec.storedDate(2024, 8, 18));
+    }
+
+    @Test
+    public void storedTime_roundTripsEveryMinute() {
+        for (int hour = 0; hour < 24; hour++) {
+            for (int minute = 0; minute < 60; minute++) {
+                long packed = EventTimeCodec.parse(DATE, EventTimeCodec.storedTime(hour, minute));
+                assertEquals(EventTimeCodec.pack(2024, 8, 18, hour, minute), packed);
+            }
+        }
+    }
+
+    @Test
+    public void formatTime_shows12ForMidnightAndNoonHours() {
+        EventTimeCodec codec = EventTimeCodec.getInstance(Locale.US, false);
+        assertEquals("12:00 AM", codec.displayTime("0:00AM"));
+        assertEquals("12:00 PM", codec.displayTime("12:00PM"));
+        assertEquals("12:45 PM", codec.displayTime("12:45AM"));
+        assertEquals("1:05 PM", codec.displayTime("1:05PM"));
+    }
+
+    @Test
+    public void formatTime_uses24HourClock() {
+        EventTimeCodec codec = EventTimeCodec.getInstance(Locale.US, true);
+        assertEquals("00:05", codec.displayTime("0:05AM"));
+        assertEquals("12:00", codec.displayTime("12:00PM"));
+        assertEquals("23:59", codec.displayTime("11:59PM"));
+    }
+
+    @Test
+    public void formatDate_followsLocaleOrder() {
+        long packed = EventTimeCodec.pack(2024, 8, 18, 9, 30);
+        char[] out = new char[EventTimeCodec.BUFFER_LENGTH];
+        EventTimeCodec us = EventTimeCodec.getInstance(Locale.US, false);
+        assertEquals("08/18/2024", new String(out, 0, us.formatDate(packed, out)));
+        EventTimeCodec germany = EventTimeCodec.getInstance(Locale.GERMANY, true);
+        assertEquals("18.08.2024", new String(out, 0, germany.formatDate(packed, out)));
+    }
+}
@@ -0,0 +1,129 @@
+package com.mobile2app.eventtracker.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the occurrences a recurrence rule generates within a window.
+ */
+public class RecurrenceRuleTest {
+
+    private static final TimeZone NEW_YORK = TimeZone.getTimeZone("America/New_York");
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    // Returns a wall-clock time in a zone as epoch milliseconds
+    private static long at(TimeZone zone, int year, int month, int day, int hour, int minute) {
+        Calendar calendar = Calendar.getInstance(zone);
+        calendar.clear();
+        calendar.set(year, month, day, hour, minute);
+        return calendar.getTimeInMillis();
+    }
+
+    // Collects every occurrence in a window
+    private static List<Long> occurrences(RecurrenceRule rule, long seriesStart, TimeZone zone, long from, long to) {
+        List<Long> starts = new ArrayList<>();
+        PrimitiveIterator.OfLong iterator = rule.occurrences(seriesStart, zone, from, to);
+        while (iterator.hasNext()) {
+            starts.add(iterator.nextLong());
+        }
+        return starts;
+    }
+
+    @Test
+    public void weekly_everyOtherWeekWithinWindow() {
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=WEEKLY;INTERVAL=2");
+        long start = at(UTC, 2024, Calendar.JANUARY, 1, 9, 0);
+        List<Long> starts = occurrences(rule, start,
+                UTC, at(UTC, 2024, Calendar.FEBRUARY, 1, 0, 0), at(UTC, 2024, Calendar.MARCH, 1, 0, 0));
+        assertEquals(Arrays.asList(
+                at(UTC, 2024, Calendar.FEBRUARY, 12, 9, 0),
+                at(UTC, 2024, Calendar.FEBRUARY, 26, 9, 0)), starts);
+    }
+
+    @Test
+    public void windowBeforeSeries_startsAtFirstOccurrence() {
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=DAILY");
+        long start = at(UTC, 2024, Calendar.MAY, 10, 8, 0);
+        List<Long> starts = occurrences(rule, start, UTC, 0, start + 2 * 24 * 60 * 60 * 1000L + 1);
+        assertEquals(3, starts.size());
+        assertEquals(start, (long) starts.get(0));
+    }
+
+    @Test
+    public void daily_keepsWallClockAcrossDaylightSaving() {
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=DAILY");
+        long start = at(NEW_YORK, 2024, Calendar.MARCH, 9, 9, 30);
+        List<Long> starts = occurrences(rule, start, NEW_YORK, start, at(NEW_YORK, 2024, Calendar.MARCH, 12, 0, 0));
+        assertEquals(Arrays.asList(
+                start,
+                at(NEW_YORK, 2024, Calendar.MARCH, 10, 9, 30),
+                at(NEW_YORK, 2024, Calendar.MARCH, 11, 9, 30)), starts);
+        // Clocks go forward on March 10, so that day is an hour short
+        assertEquals(23 * 60 * 60 * 1000L, starts.get(1) - starts.get(0));
+    }
+
+    @Test
+    public void monthly_onThe31stSkipsShortMonths() {
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=MONTHLY");
+        long start = at(UTC, 2024, Calendar.JANUARY, 31, 12, 0);
+        List<Long> starts = occurrences(rule, start, UTC, start, at(UTC, 2024, Calendar.JUNE, 1, 0, 0));
+        assertEquals(Arrays.asList(
+                start,
+                at(UTC, 2024, Calendar.MARCH, 31, 12, 0),
+                at(UTC, 2024, Calendar.MAY, 31, 12, 0)), starts);
+    }
+
+    @Test
+    public void untilAndExceptions_endAndSkipOccurrences() {
+        long start = at(UTC, 2024, Calendar.JUNE, 1, 10, 0);
+        long skipped = at(UTC, 2024, Calendar.JUNE, 2, 10, 0);
+        long until = at(UTC, 2024, Calendar.JUNE, 4, 10, 0);
+        RecurrenceRule rule = new RecurrenceRule(RecurrenceRule.Frequency.DAILY, 1, until, new long[0])
+                .withException(skipped);
+        assertTrue(rule.isException(skipped));
+        List<Long> starts = occurrences(rule, start, UTC, start, Long.MAX_VALUE);
+        assertEquals(Arrays.asList(
+                start,
+                at(UTC, 2024, Calendar.JUNE, 3, 10, 0),
+                until), starts);
+    }
+
+    @Test
+    public void nextAfter_returnsFollowingOccurrenceOrEnd() {
+        long start = at(UTC, 2024, Calendar.JUNE, 1, 10, 0);
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=DAILY;UNTIL=" + at(UTC, 2024, Calendar.JUNE, 3, 10, 0));
+        assertEquals(at(UTC, 2024, Calendar.JUNE, 2, 10, 0), rule.nextAfter(start, UTC, start));
+        assertEquals(-1, rule.nextAfter(start, UTC, at(UTC, 2024, Calendar.JUNE, 3, 10, 0)));
+    }
+
+    @Test
+    public void farWindow_isReachedWithoutWalkingEveryStep() {
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=DAILY");
+        long start = at(UTC, 2000, Calendar.JANUARY, 1, 7, 0);
+        long from = at(UTC, 2090, Calendar.JANUARY, 1, 0, 0);
+        List<Long> starts = occurrences(rule, start, UTC, from, from + 24 * 60 * 60 * 1000L);
+        assertEquals(Arrays.asList(at(UTC, 2090, Calendar.JANUARY, 1, 7, 0)), starts);
+    }
+
+    @Test
+    public void parse_roundTripsTextForm() {
+        String text = "FREQ=WEEKLY;INTERVAL=3;UNTIL=1735689600000;EXDATE=100,200";
+        assertEquals(text, RecurrenceRule.parse("EXDATE=200,100;UNTIL=1735689600000;INTERVAL=3;FREQ=WEEKLY")
+                .toString());
+        assertEquals(text, RecurrenceRule.parse(text).toString());
+        assertNull(RecurrenceRule.parse(""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_rejectsRuleWithoutFrequency() {
+        RecurrenceRule.parse("INTERVAL=2");
+    }
+}
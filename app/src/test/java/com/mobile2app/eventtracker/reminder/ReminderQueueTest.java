@@ -0,0 +1,96 @@
+package com.mobile2app.eventtracker.reminder;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the reminder queue hands out reminders in fire time order
+ * as events are added, moved, and removed.
+ */
+public class ReminderQueueTest {
+
+    // Removes every reminder, earliest first, returning the event ids in order
+    private static List<String> drain(ReminderQueue queue) {
+        List<String> ids = new ArrayList<>();
+        long last = Long.MIN_VALUE;
+        while (queue.size() > 0) {
+            ReminderQueue.Entry entry = queue.peek();
+            assertTrue("fired out of order", entry.fireTime >= last);
+            last = entry.fireTime;
+            ids.add(entry.eventId);
+            queue.remove(entry.eventId);
+        }
+        return ids;
+    }
+
+    @Test
+    public void peek_returnsEarliestReminder() {
+        ReminderQueue queue = new ReminderQueue();
+        queue.put("c", 3000, 300);
+        queue.put("a", 1000, 100);
+        queue.put("b", 2000, 200);
+        assertEquals("a", queue.peek().eventId);
+        assertEquals(Arrays.asList("a", "b", "c"), drain(queue));
+        assertNull(queue.peek());
+    }
+
+    @Test
+    public void put_movesUpdatedReminderEarlierAndLater() {
+        ReminderQueue queue = new ReminderQueue();
+        queue.put("a", 1000, 100);
+        queue.put("b", 2000, 200);
+        queue.put("c", 3000, 300);
+        queue.put("c", 500, 50);
+        assertEquals("c", queue.peek().eventId);
+        queue.put("c", 5000, 500);
+        assertEquals(3, queue.size());
+        assertEquals(5000, queue.get("c").startTime);
+        assertEquals(Arrays.asList("a", "b", "c"), drain(queue));
+    }
+
+    @Test
+    public void remove_keepsOrderOfRest() {
+        ReminderQueue queue = new ReminderQueue();
+        for (int i = 0; i < 10; i++) {
+            queue.put("e" + i, i * 1000, i * 100);
+        }
+        queue.remove("e0");
+        queue.remove("e5");
+        queue.remove("missing");
+        assertNull(queue.get("e5"));
+        assertEquals(Arrays.asList("e1", "e2", "e3", "e4", "e6", "e7", "e8", "e9"), drain(queue));
+    }
+
+    @Test
+    public void randomUpdates_drainInFireTimeOrder() {
+        ReminderQueue queue = new ReminderQueue();
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            String id = "e" + random.nextInt(300);
+            if (random.nextInt(4) == 0) {
+                queue.remove(id);
+            } else {
+                long fireTime = random.nextInt(100000);
+                queue.put(id, fireTime + 600000, fireTime);
+            }
+        }
+        int size = queue.size();
+        assertEquals(size, drain(queue).size());
+    }
+
+    @Test
+    public void nextFireTime_skipsOffsetsAlreadyPast() {
+        long[] offsets = {60 * 60 * 1000, 15 * 60 * 1000, 0};
+        long start = 10 * 60 * 60 * 1000L;
+        assertEquals(start - offsets[0], ReminderQueue.nextFireTime(start, offsets, 0));
+        assertEquals(start - offsets[1], ReminderQueue.nextFireTime(start, offsets, start - offsets[0]));
+        assertEquals(start, ReminderQueue.nextFireTime(start, offsets, start - 1));
+        assertEquals(-1, ReminderQueue.nextFireTime(start, offsets, start));
+    }
+}
@@ -0,0 +1,209 @@
+package com.mobile2app.eventtracker.repo;
+
+import com.mobile2app.eventtracker.metrics.MetricsRegistry;
+import com.mobile2app.eventtracker.model.Event;
+import com.mobile2app.eventtracker.remote.InMemoryEventRemoteStore;
+import com.mobile2app.eventtracker.remote.RemoteChange;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the sync engine, its windows and its catch-up against the in-memory
+ * remote store with injected latency, while another device writes to the
+ * same partition, and reports the latency from a remote write being sent
+ * to its change committing on the write lane. The tables are the in-memory
+ * FakeEventTables, so a commit here is the batcher's transaction over them
+ * rather than SQLite.
+ */
+public class EventSyncLoadTest {
+
+    private static final String UID = "load-test";
+    private static final long LATENCY_MS = 20;
+    private static final long JITTER_MS = 20;
+    // Events seeded before the engine starts, all inside the first window
+    private static final int EVENTS = 400;
+    // Edits and deletions sent by the other device, each to a different event
+    private static final int EDITS = 300;
+    private static final double DELETE_RATE = 0.05;
+    private static final long TIMEOUT_MS = 20_000;
+
+    private InMemoryEventRemoteStore mStore;
+    private FakeEventTables mTables;
+    // Stands in for the main thread
+    private ExecutorService mMain;
+    private ExecutorService mWriteLane;
+    private EventSyncEngine mEngine;
+    // Send time of each pending remote edit by title, and of each deletion by id
+    private final Map<String, Long> mSentAt = new ConcurrentHashMap<>();
+    // Nanoseconds from send to commit of each change, added on the write lane
+    private final List<Long> mLatencies = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() {
+        mStore = new InMemoryEventRemoteStore(LATENCY_MS, JITTER_MS, 0, 42);
+        mTables = new FakeEventTables();
+        mMain = Executors.newSingleThreadExecutor();
+        mWriteLane = Executors.newSingleThreadExecutor();
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        EventWriteBatcher batcher = new EventWriteBatcher(mTables::runInTransaction, mTables.eventDao(),
+                mTables.outboxDao(), mWriteLane, this::onCommitted, metrics);
+        mEngine = new EventSyncEngine(batcher, mStore, mTables.eventDao(), mTables.outboxDao(),
+                new ReadExecutor(2, metrics), mWriteLane, metrics, new FakeSharedPreferences(), mMain);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mMain.submit(mEngine::stop).get();
+        mMain.shutdownNow();
+        mWriteLane.shutdownNow();
+        mStore.shutdown();
+    }
+
+    // Times the changes of each committed batch that were sent by the other device
+    private void onCommitted(List<Event> changed, Set<String> deletedIds, boolean hasLocal) {
+        long now = System.nanoTime();
+        for (Event event : changed) {
+            Long sentAt = mSentAt.remove(deletedIds.contains(event.getId()) ? event.getId() : event.getEventTitle());
+            if (sentAt != null) {
+                mLatencies.add(now - sentAt);
+            }
+        }
+    }
+
+    // Writes events to the store in batches, as a device's outbox flush does, returning their ids
+    private List<String> seed(int count, long firstStart, long step) throws Exception {
+        List<String> ids = new ArrayList<>(count);
+        Map<String, Event> batch = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            String id = mStore.newKey();
+            ids.add(id);
+            batch.put(id, event(id, "Event " + i, firstStart + i * step));
+            if (batch.size() == 100 || i == count - 1) {
+                mStore.write(UID, batch, Collections.<String>emptyList()).get();
+                batch = new HashMap<>();
+            }
+        }
+        return ids;
+    }
+
+    private static Event event(String id, String title, long startTime) {
+        Event event = new Event(id, title, "01/15/2025", "9:00AM", "UTC");
+        event.setStartTime(startTime);
+        return event;
+    }
+
+    // Waits for a condition, failing the test after the timeout
+    private static void await(String what, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            assertTrue("timed out waiting for " + what, System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static long percentileMs(List<Long> sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return TimeUnit.NANOSECONDS.toMillis(sorted.get(Math.max(0, index)));
+    }
+
+    @Test
+    public void catchUp_storesEventsOutsideEveryWindow() throws Exception {
+        // Started before today, so only the catch-up can bring them in
+        long past = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2);
+        List<String> ids = seed(EVENTS, past, -TimeUnit.MINUTES.toMillis(1));
+
+        long start = System.nanoTime();
+        mMain.submit(() -> mEngine.start(UID)).get();
+        await("the catch-up", () -> mTables.size() == EVENTS);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        System.out.printf(Locale.US, "catch-up: %d events committed in %d ms (store latency %d+%d ms)%n",
+                EVENTS, elapsedMs, LATENCY_MS, JITTER_MS);
+        for (String id : ids) {
+            assertNotNull(id, mTables.get(id));
+        }
+    }
+
+    @Test
+    public void remoteEdits_reachTheTablesThroughTheWindows() throws Exception {
+        long soon = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+        List<String> ids = seed(EVENTS, soon, TimeUnit.MINUTES.toMillis(1));
+        mMain.submit(() -> mEngine.start(UID)).get();
+        await("the initial window", () -> mTables.size() == EVENTS);
+
+        // Another device edits or deletes distinct events, without waiting for each write
+        Random random = new Random(7);
+        List<String> shuffled = new ArrayList<>(ids);
+        Collections.shuffle(shuffled, random);
+        List<String> deleted = new ArrayList<>();
+        Map<String, String> titles = new HashMap<>();
+        for (int i = 0; i < EDITS; i++) {
+            String id = shuffled.get(i);
+            if (random.nextDouble() < DELETE_RATE) {
+                deleted.add(id);
+                mSentAt.put(id, System.nanoTime());
+                mStore.write(UID, Collections.<String, Event>emptyMap(), Collections.singletonList(id));
+            } else {
+                String title = "Edit " + i;
+                titles.put(id, title);
+                Event edit = event(id, title, soon + ids.indexOf(id) * TimeUnit.MINUTES.toMillis(1));
+                mSentAt.put(title, System.nanoTime());
+                mStore.write(UID, Collections.singletonMap(id, edit), Collections.<String>emptyList());
+            }
+            Thread.sleep(1);
+        }
+        await("every remote edit", mSentAt::isEmpty);
+
+        assertEquals(EVENTS - deleted.size(), mTables.size());
+        for (String id : deleted) {
+            assertNull(id, mTables.get(id));
+        }
+        for (Map.Entry<String, String> title : titles.entrySet()) {
+            assertEquals(title.getValue(), mTables.get(title.getKey()).getEventTitle());
+        }
+        List<Long> latencies;
+        synchronized (mLatencies) {
+            latencies = new ArrayList<>(mLatencies);
+        }
+        Collections.sort(latencies);
+        assertEquals(EDITS, latencies.size());
+        System.out.printf(Locale.US,
+                "remote change to commit: n=%d p50=%d ms p90=%d ms p99=%d ms max=%d ms (store latency %d+%d ms)%n",
+                latencies.size(), percentileMs(latencies, 0.50), percentileMs(latencies, 0.90),
+                percentileMs(latencies, 0.99), percentileMs(latencies, 1.0), LATENCY_MS, JITTER_MS);
+    }
+
+    @Test
+    public void closedWindows_stopPushingChanges() throws Exception {
+        long soon = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+        String id = seed(1, soon, 0).get(0);
+        mMain.submit(() -> mEngine.start(UID)).get();
+        await("the initial window", () -> mTables.size() == 1);
+        mMain.submit(mEngine::stop).get();
+
+        mStore.write(UID, Collections.singletonMap(id, event(id, "After stop", soon)),
+                Collections.<String>emptyList()).get();
+        Thread.sleep(10 * (LATENCY_MS + JITTER_MS));
+        assertEquals("Event 0", mTables.get(id).getEventTitle());
+        assertEquals(1, mStore.size(UID));
+        RemoteChange stored = mStore.loadEvent(UID, id).get();
+        assertEquals("After stop", stored.getEvent().getEventTitle());
+    }
+}
@@ -0,0 +1,146 @@
+package com.mobile2app.eventtracker.repo;
+
+import com.mobile2app.eventtracker.model.Event;
+import com.mobile2app.eventtracker.model.PendingMutation;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * In-memory Event and PendingMutation tables behind the DAO interfaces,
+ * for running the write batcher and the sync engine on the JVM. Only the
+ * queries those classes make are answered; any other throws. Statements
+ * and transactions hold one lock, so a transaction is applied whole.
+ */
+class FakeEventTables {
+
+    private final Map<String, Event> mEvents = new HashMap<>();
+    private final NavigableMap<Long, PendingMutation> mOutbox = new TreeMap<>();
+    private long mNextSeq = 1;
+    private final EventDao mEventDao;
+    private final OutboxDao mOutboxDao;
+
+    FakeEventTables() {
+        mEventDao = (EventDao) Proxy.newProxyInstance(EventDao.class.getClassLoader(),
+                new Class<?>[]{EventDao.class}, (proxy, method, args) -> eventQuery(method.getName(), args));
+        mOutboxDao = (OutboxDao) Proxy.newProxyInstance(OutboxDao.class.getClassLoader(),
+                new Class<?>[]{OutboxDao.class}, (proxy, method, args) -> outboxQuery(method.getName(), args));
+    }
+
+    EventDao eventDao() {
+        return mEventDao;
+    }
+
+    OutboxDao outboxDao() {
+        return mOutboxDao;
+    }
+
+    // Runs statements as one transaction
+    synchronized void runInTransaction(Runnable body) {
+        body.run();
+    }
+
+    // Returns the stored row of an event, or null
+    synchronized Event get(String id) {
+        return mEvents.get(id);
+    }
+
+    // Returns the number of stored events
+    synchronized int size() {
+        return mEvents.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized Object eventQuery(String name, Object[] args) {
+        switch (name) {
+            case "loadEvent":
+                return mEvents.get((String) args[0]);
+            case "loadEvents": {
+                List<Event> events = new ArrayList<>();
+                for (String id : (List<String>) args[0]) {
+                    Event event = mEvents.get(id);
+                    if (event != null) {
+                        events.add(event);
+                    }
+                }
+                return events;
+            }
+            case "addEvents":
+                for (Event event : (List<Event>) args[0]) {
+                    mEvents.put(event.getId(), event);
+                }
+                return null;
+            case "deleteEventsById": {
+                int deleted = 0;
+                for (String id : (List<String>) args[0]) {
+                    if (mEvents.remove(id) != null) {
+                        deleted++;
+                    }
+                }
+                return deleted;
+            }
+            case "loadAllIds":
+                return new ArrayList<>(mEvents.keySet());
+            default:
+                throw new UnsupportedOperationException("EventDao." + name);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized Object outboxQuery(String name, Object[] args) {
+        switch (name) {
+            case "addMutation":
+                return add((PendingMutation) args[0]);
+            case "addMutations":
+                for (PendingMutation mutation : (List<PendingMutation>) args[0]) {
+                    add(mutation);
+                }
+                return null;
+            case "getPending": {
+                List<PendingMutation> pending = new ArrayList<>();
+                for (PendingMutation mutation : mOutbox.values()) {
+                    if (pending.size() == (Integer) args[0]) {
+                        break;
+                    }
+                    pending.add(mutation);
+                }
+                return pending;
+            }
+            case "deleteUpTo": {
+                Map<Long, PendingMutation> head = mOutbox.headMap((Long) args[0], true);
+                int deleted = head.size();
+                head.clear();
+                return deleted;
+            }
+            case "getPendingIds": {
+                Set<String> ids = new LinkedHashSet<>();
+                List<String> wanted = (List<String>) args[0];
+                for (PendingMutation mutation : mOutbox.values()) {
+                    if (wanted.contains(mutation.getEventId())) {
+                        ids.add(mutation.getEventId());
+                    }
+                }
+                return new ArrayList<>(ids);
+            }
+            case "countPending":
+                return mOutbox.size();
+            default:
+                throw new UnsupportedOperationException("OutboxDao." + name);
+        }
+    }
+
+    // Appends a mutation with the next sequence number
+    private long add(PendingMutation mutation) {
+        long seq = mNextSeq++;
+        mutation.setSeq(seq);
+        mOutbox.put(seq, mutation);
+        return seq;
+    }
+}
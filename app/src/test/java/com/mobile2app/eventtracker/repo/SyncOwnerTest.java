@@ -0,0 +1,31 @@
+package com.mobile2app.eventtracker.repo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks what becomes of the local tables when an account starts syncing.
+ */
+public class SyncOwnerTest {
+    @Test
+    public void upgradeWithoutOwner_keepsTablesAndOutbox() {
+        assertEquals(SyncOwner.KEEP, SyncOwner.decide(null, "alice", 3));
+        assertEquals(SyncOwner.KEEP, SyncOwner.decide(null, "alice", 0));
+    }
+
+    @Test
+    public void sameOwner_keepsTables() {
+        assertEquals(SyncOwner.KEEP, SyncOwner.decide("alice", "alice", 3));
+    }
+
+    @Test
+    public void switchWithUnsentChanges_holdsTables() {
+        assertEquals(SyncOwner.HOLD, SyncOwner.decide("alice", "bob", 1));
+    }
+
+    @Test
+    public void switchWithEmptyOutbox_clearsTables() {
+        assertEquals(SyncOwner.CLEAR, SyncOwner.decide("alice", "bob", 0));
+    }
+}
@@ -0,0 +1,167 @@
+package com.mobile2app.eventtracker.repo;
+
+import com.mobile2app.eventtracker.model.Event;
+import com.mobile2app.eventtracker.remote.InMemoryEventRemoteStore;
+import com.mobile2app.eventtracker.remote.RemoteChange;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the catch-up watermark only moves past a page once the page
+ * has been stored, against the in-memory remote store.
+ */
+public class WatermarkSyncTest {
+
+    private static final String UID = "alice";
+
+    // A page handed to the listener with the callback that reports its commit
+    private static final class Page {
+        final List<RemoteChange> mChanges;
+        final WatermarkSync.PageCallback mCallback;
+
+        Page(List<RemoteChange> changes, WatermarkSync.PageCallback callback) {
+            mChanges = changes;
+            mCallback = callback;
+        }
+    }
+
+    private InMemoryEventRemoteStore mStore;
+    private FakeSharedPreferences mPrefs;
+    // Stands in for the main thread
+    private ExecutorService mMain;
+    private final BlockingQueue<Page> mPages = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Set<String>> mFullSyncs = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() {
+        mStore = new InMemoryEventRemoteStore();
+        mPrefs = new FakeSharedPreferences();
+        mMain = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        mMain.shutdownNow();
+        mStore.shutdown();
+    }
+
+    // Writes events to the store in one update
+    private void writeEvents(int count) throws Exception {
+        Map<String, Event> events = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            String id = mStore.newKey();
+            events.put(id, new Event(id, "Event " + i, "01/15/2025", "9:00AM", "UTC"));
+        }
+        mStore.write(UID, events, Collections.<String>emptyList()).get();
+    }
+
+    // Starts a catch-up on the main thread
+    private WatermarkSync catchUp() throws Exception {
+        WatermarkSync sync = new WatermarkSync(mStore, UID, mPrefs, new WatermarkSync.Listener() {
+            @Override
+            public void onPage(List<RemoteChange> changes, WatermarkSync.PageCallback callback) {
+                mPages.add(new Page(changes, callback));
+            }
+
+            @Override
+            public void onFullSyncStarted() {
+            }
+
+            @Override
+            public void onFullSyncFinished(Set<String> liveIds) {
+                mFullSyncs.add(liveIds);
+            }
+        }, mMain);
+        mMain.submit(sync::catchUp).get();
+        return sync;
+    }
+
+    // Waits for the tasks already posted to the main thread
+    private void drainMain() throws Exception {
+        mMain.submit(() -> { }).get();
+    }
+
+    private Page nextPage() throws InterruptedException {
+        Page page = mPages.poll(5, TimeUnit.SECONDS);
+        assertNotNull("no page delivered", page);
+        return page;
+    }
+
+    @Test
+    public void watermark_advancesOnlyOnceThePageIsStored() throws Exception {
+        writeEvents(3);
+        catchUp();
+        Page page = nextPage();
+        assertEquals(3, page.mChanges.size());
+        drainMain();
+        assertFalse(mPrefs.contains(WatermarkSync.KEY_WATERMARK));
+
+        page.mCallback.onStored();
+        Set<String> live = mFullSyncs.poll(5, TimeUnit.SECONDS);
+        assertNotNull(live);
+        assertEquals(3, live.size());
+        drainMain();
+        assertEquals(page.mChanges.get(2).getUpdatedAt(), mPrefs.getLong(WatermarkSync.KEY_WATERMARK, 0));
+        assertFalse(mPrefs.contains(WatermarkSync.KEY_FULL_SYNC));
+    }
+
+    @Test
+    public void failedPage_leavesWatermarkAndIsPulledAgain() throws Exception {
+        writeEvents(2);
+        catchUp();
+        Page page = nextPage();
+        page.mCallback.onFailed(new IllegalStateException("disk full"));
+        drainMain();
+        assertFalse(mPrefs.contains(WatermarkSync.KEY_WATERMARK));
+        assertTrue(mPrefs.getBoolean(WatermarkSync.KEY_FULL_SYNC, false));
+        assertNull(mFullSyncs.poll());
+
+        // The next start reads the same changes again
+        catchUp();
+        Page retry = nextPage();
+        assertEquals(page.mChanges.size(), retry.mChanges.size());
+        assertEquals(page.mChanges.get(0).getId(), retry.mChanges.get(0).getId());
+    }
+
+    @Test
+    public void nextPage_isReadOnlyAfterThePreviousOneIsStored() throws Exception {
+        writeEvents(WatermarkSync.PAGE_SIZE + 1);
+        catchUp();
+        Page first = nextPage();
+        assertEquals(WatermarkSync.PAGE_SIZE, first.mChanges.size());
+        assertNull(mPages.poll(200, TimeUnit.MILLISECONDS));
+
+        first.mCallback.onStored();
+        Page second = nextPage();
+        assertEquals(1, second.mChanges.size());
+        drainMain();
+        assertEquals(first.mChanges.get(WatermarkSync.PAGE_SIZE - 1).getUpdatedAt(),
+                mPrefs.getLong(WatermarkSync.KEY_WATERMARK, 0));
+    }
+
+    @Test
+    public void closedSync_dropsAStoredPage() throws Exception {
+        writeEvents(1);
+        WatermarkSync sync = catchUp();
+        Page page = nextPage();
+        mMain.submit(sync::close).get();
+        page.mCallback.onStored();
+        drainMain();
+        assertFalse(mPrefs.contains(WatermarkSync.KEY_WATERMARK));
+    }
+}
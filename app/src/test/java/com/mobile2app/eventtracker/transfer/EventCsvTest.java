@@ -0,0 +1,94 @@
+package com.mobile2app.eventtracker.transfer;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that records survive being written to CSV and read back,
+ * whatever separators, quotes, or line breaks their fields hold.
+ */
+public class EventCsvTest {
+
+    // Writes records as CSV
+    private static String write(String[]... records) throws IOException {
+        StringWriter out = new StringWriter();
+        EventCsv.RecordWriter writer = new EventCsv.RecordWriter(out);
+        writer.begin();
+        for (int i = 0; i < records.length; i++) {
+            writer.write(records[i], i == 0);
+        }
+        writer.end();
+        return out.toString();
+    }
+
+    // Reads every record of a CSV text
+    private static List<String[]> read(String csv) throws IOException {
+        List<String[]> records = new ArrayList<>();
+        EventCsv.RecordReader reader = new EventCsv.RecordReader(new StringReader(csv));
+        String[] record = new String[EventTransfer.COLUMNS.length];
+        while (reader.next(record)) {
+            records.add(record.clone());
+        }
+        reader.close();
+        return records;
+    }
+
+    // Returns a record with every column set
+    private static String[] record(String id, String title) {
+        return new String[]{id, title, "08/18/2024", "9:30 AM", "America/New_York", "1724002200000",
+                "FREQ=WEEKLY;INTERVAL=2"};
+    }
+
+    @Test
+    public void plainFields_areWrittenUnquoted() throws IOException {
+        String csv = write(record("e1", "Standup"));
+        assertEquals("id,title,date,time,timeZone,startTime,recurrence\r\n"
+                + "e1,Standup,08/18/2024,9:30 AM,America/New_York,1724002200000,FREQ=WEEKLY;INTERVAL=2\r\n", csv);
+    }
+
+    @Test
+    public void specialCharacters_roundTrip() throws IOException {
+        String[][] records = {
+                record("e1", "Lunch, then coffee"),
+                record("e2", "Say \"hi\""),
+                record("e3", "Line one\nline two"),
+                record("e4", "Windows\r\nbreak"),
+                record("e5", "\"\""),
+                record("e6", ",\",\n"),
+        };
+        String csv = write(records);
+        assertTrue(csv.contains("\"Lunch, then coffee\""));
+        assertTrue(csv.contains("\"Say \"\"hi\"\"\""));
+        List<String[]> read = read(csv);
+        assertEquals(records.length, read.size());
+        for (int i = 0; i < records.length; i++) {
+            assertArrayEquals(records[i], read.get(i));
+        }
+    }
+
+    @Test
+    public void nullFields_readBackAsNull() throws IOException {
+        String[] record = {"e1", "Title", "08/18/2024", null, null, null, null};
+        List<String[]> read = read(write(record));
+        assertEquals(1, read.size());
+        assertArrayEquals(record, read.get(0));
+    }
+
+    @Test
+    public void header_matchesColumnsByNameInAnyOrderAndCase() throws IOException {
+        List<String[]> read = read("TITLE,Extra,id\n\"A, B\",x,e9\nC,y,e10");
+        assertEquals(2, read.size());
+        assertEquals("e9", read.get(0)[EventTransfer.ID]);
+        assertEquals("A, B", read.get(0)[EventTransfer.TITLE]);
+        assertNull(read.get(0)[EventTransfer.DATE]);
+        assertEquals("e10", read.get(1)[EventTransfer.ID]);
+        assertEquals("C", read.get(1)[EventTransfer.TITLE]);
+    }
+}
@@ -0,0 +1,84 @@
+package com.mobile2app.eventtracker.benchmark;
+
+import com.mobile2app.eventtracker.model.Event;
+import com.mobile2app.eventtracker.model.EventDayIndex;
+import com.mobile2app.eventtracker.model.EventTimes;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures drawing the counts of a six week month grid from the day index,
+ * against scanning every event for the grid, and the cost of applying one
+ * edit to the index.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DayIndexBenchmark {
+
+    private static final int GRID_DAYS = 42;
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private List<Event> mEvents;
+    private EventDayIndex mIndex;
+    private long mFirstDay;
+    private int mMonth;
+    private int mEdit;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        TimeZone utc = TimeZone.getTimeZone("UTC");
+        mEvents = EventDataset.events(size, EventDataset.SEED);
+        mIndex = new EventDayIndex(utc);
+        for (Event event : mEvents) {
+            mIndex.put(event.getId(), event.getStartTime(), null, event.getTimeZone());
+        }
+        mFirstDay = mIndex.dayOf(EventTimes.parseStartTime("06/01/2025", null, utc));
+    }
+
+    @Benchmark
+    public int[] countGridFromIndex() {
+        // A different month each call, as when paging through the calendar
+        mMonth = (mMonth + 1) % 120;
+        return mIndex.countDays(mFirstDay + mMonth * 30L, GRID_DAYS);
+    }
+
+    @Benchmark
+    public int[] countGridByScan() {
+        mMonth = (mMonth + 1) % 120;
+        long firstDay = mFirstDay + mMonth * 30L;
+        int[] counts = new int[GRID_DAYS];
+        for (Event event : mEvents) {
+            long day = mIndex.dayOf(event.getStartTime()) - firstDay;
+            if (day >= 0 && day < GRID_DAYS) {
+                counts[(int) day]++;
+            }
+        }
+        return counts;
+    }
+
+    @Benchmark
+    public int applyEdit() {
+        Event event = mEvents.get(mEdit);
+        mEdit = (mEdit + 1) % mEvents.size();
+        mIndex.put(event.getId(), event.getStartTime() + 24L * 60 * 60 * 1000, null, event.getTimeZone());
+        return mIndex.size();
+    }
+}
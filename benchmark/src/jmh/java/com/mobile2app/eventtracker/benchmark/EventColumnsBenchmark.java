@@ -0,0 +1,95 @@
+package com.mobile2app.eventtracker.benchmark;
+
+import com.mobile2app.eventtracker.model.Event;
+import com.mobile2app.eventtracker.model.EventColumns;
+import com.mobile2app.eventtracker.model.StringPool;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the list of Event objects the UI used to keep with the columnar
+ * EventColumns store: building it from query results, scanning start
+ * times, and filtering a time range. Run with -prof gc to compare the
+ * allocation of each.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EventColumnsBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private List<Event> mEvents;
+    private EventColumns mColumns;
+    private long mFrom;
+    private long mTo;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mEvents = EventDataset.events(size, EventDataset.SEED);
+        Collections.sort(mEvents, Event.START_ORDER);
+        mColumns = EventColumns.of(new StringPool(), mEvents);
+        // The middle tenth of the time span
+        long first = mEvents.get(0).getStartTime();
+        long span = mEvents.get(size - 1).getStartTime() - first;
+        mFrom = first + span / 2;
+        mTo = mFrom + span / 10;
+    }
+
+    @Benchmark
+    public EventColumns buildColumns() {
+        return EventColumns.of(new StringPool(), mEvents);
+    }
+
+    @Benchmark
+    public long scanList() {
+        long sum = 0;
+        for (Event event : mEvents) {
+            sum += event.getStartTime();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long scanColumns() {
+        long sum = 0;
+        EventColumns columns = mColumns;
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            sum += columns.getStartTime(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public List<Event> filterList() {
+        List<Event> result = new ArrayList<>();
+        for (Event event : mEvents) {
+            if (event.getStartTime() >= mFrom && event.getStartTime() < mTo) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public EventColumns filterColumns() {
+        return mColumns.between(mFrom, mTo);
+    }
+}
@@ -0,0 +1,104 @@
+package com.mobile2app.eventtracker.benchmark;
+
+import com.mobile2app.eventtracker.model.Event;
+import com.mobile2app.eventtracker.model.EventTimeCodec;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Seeded generator of events shaped like the "EventTracker" node: push-id
+ * keys with title, "MM/dd/yyyy" date, and "h:mmAM" time values. The same
+ * size and seed always produce the same data so runs are comparable.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+final class EventDataset {
+
+    // Seed shared by every benchmark
+    static final long SEED = 20240818L;
+
+    private static final String PUSH_CHARS =
+            "-0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz";
+    private static final String[] TITLE_WORDS = {
+            "Career", "Fair", "Team", "Standup", "Dentist", "Lunch", "Review",
+            "Planning", "Yoga", "Concert", "Birthday", "Meetup", "Workshop", "Call"
+    };
+
+    private EventDataset() {
+    }
+
+    /**
+     * Generates the children of the "EventTracker" node as a DataSnapshot would expose them.
+     *
+     * @param size The number of events.
+     * @param seed The random seed.
+     * @return Event nodes keyed by push id, in key order.
+     */
+    static Map<String, Map<String, Object>> snapshot(int size, long seed) {
+        Random random = new Random(seed);
+        Map<String, Map<String, Object>> nodes = new LinkedHashMap<>(size * 2);
+        long pushTime = 1_700_000_000_000L;
+        for (int i = 0; i < size; i++) {
+            pushTime += 1 + random.nextInt(1000);
+            Map<String, Object> node = new LinkedHashMap<>();
+            node.put("title", title(random));
+            node.put("date", date(random));
+            node.put("time", time(random));
+            nodes.put(pushId(pushTime, random), node);
+        }
+        return nodes;
+    }
+
+    /**
+     * Generates events as they are built from the snapshot.
+     *
+     * @param size The number of events.
+     * @param seed The random seed.
+     * @return The events in push-id order.
+     */
+    static List<Event> events(int size, long seed) {
+        List<Event> events = new ArrayList<>(size);
+        for (Map.Entry<String, Map<String, Object>> entry : snapshot(size, seed).entrySet()) {
+            Map<String, Object> node = entry.getValue();
+            events.add(new Event(entry.getKey(), (String) node.get("title"),
+                    (String) node.get("date"), (String) node.get("time"), "UTC"));
+        }
+        return events;
+    }
+
+    // Builds a 20 character push id: 8 characters of timestamp then 12 random ones
+    private static String pushId(long time, Random random) {
+        char[] id = new char[20];
+        for (int i = 7; i >= 0; i--) {
+            id[i] = PUSH_CHARS.charAt((int) (time % 64));
+            time /= 64;
+        }
+        for (int i = 8; i < 20; i++) {
+            id[i] = PUSH_CHARS.charAt(random.nextInt(64));
+        }
+        return new String(id);
+    }
+
+    private static String title(Random random) {
+        return TITLE_WORDS[random.nextInt(TITLE_WORDS.length)] + " "
+                + TITLE_WORDS[random.nextInt(TITLE_WORDS.length)];
+    }
+
+    // Writes a date the way the picker listeners do
+    private static String date(Random random) {
+        int monthOfYear = random.nextInt(12);
+        int dayOfMonth = 1 + random.nextInt(28);
+        int year = 2020 + random.nextInt(10);
+        return EventTimeCodec.storedDate(year, monthOfYear + 1, dayOfMonth);
+    }
+
+    // Writes a time the way the picker listeners do
+    private static String time(Random random) {
+        return EventTimeCodec.storedTime(random.nextInt(24), random.nextInt(60));
+    }
+}
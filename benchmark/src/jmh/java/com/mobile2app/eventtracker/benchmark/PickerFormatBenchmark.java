@@ -0,0 +1,108 @@
+package com.mobile2app.eventtracker.benchmark;
+
+import com.mobile2app.eventtracker.model.EventTimeCodec;
+import com.mobile2app.eventtracker.model.EventTimes;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing the stored date and time strings the picker listeners
+ * save, writing display text of packed values into a reused buffer as the
+ * list binds rows, and parsing the stored strings back into start times.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PickerFormatBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private int[] mYears;
+    private int[] mMonths;
+    private int[] mDays;
+    private int[] mHours;
+    private int[] mMinutes;
+    private String[] mDates;
+    private String[] mTimes;
+    private long[] mPacked;
+    private final TimeZone mZone = TimeZone.getTimeZone("UTC");
+    private final EventTimeCodec mCodec = EventTimeCodec.getInstance(Locale.US, false);
+    private final char[] mText = new char[EventTimeCodec.BUFFER_LENGTH];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(EventDataset.SEED);
+        mYears = new int[size];
+        mMonths = new int[size];
+        mDays = new int[size];
+        mHours = new int[size];
+        mMinutes = new int[size];
+        mDates = new String[size];
+        mTimes = new String[size];
+        mPacked = new long[size];
+        for (int i = 0; i < size; i++) {
+            mYears[i] = 2020 + random.nextInt(10);
+            mMonths[i] = random.nextInt(12);
+            mDays[i] = 1 + random.nextInt(28);
+            mHours[i] = random.nextInt(24);
+            mMinutes[i] = random.nextInt(60);
+            mDates[i] = EventTimeCodec.storedDate(mYears[i], mMonths[i] + 1, mDays[i]);
+            mTimes[i] = EventTimeCodec.storedTime(mHours[i], mMinutes[i]);
+            mPacked[i] = EventTimeCodec.pack(mYears[i], mMonths[i] + 1, mDays[i], mHours[i], mMinutes[i]);
+        }
+    }
+
+    @Benchmark
+    public void formatDates(Blackhole blackhole) {
+        for (int i = 0; i < size; i++) {
+            blackhole.consume(EventTimeCodec.storedDate(mYears[i], mMonths[i] + 1, mDays[i]));
+        }
+    }
+
+    @Benchmark
+    public void formatTimes(Blackhole blackhole) {
+        for (int i = 0; i < size; i++) {
+            blackhole.consume(EventTimeCodec.storedTime(mHours[i], mMinutes[i]));
+        }
+    }
+
+    @Benchmark
+    public void formatDisplayText(Blackhole blackhole) {
+        for (int i = 0; i < size; i++) {
+            blackhole.consume(mCodec.formatDate(mPacked[i], mText));
+            blackhole.consume(mCodec.formatTime(mPacked[i], mText));
+        }
+    }
+
+    @Benchmark
+    public void parsePacked(Blackhole blackhole) {
+        for (int i = 0; i < size; i++) {
+            blackhole.consume(EventTimeCodec.parse(mDates[i], mTimes[i]));
+        }
+    }
+
+    @Benchmark
+    public void parseStartTimes(Blackhole blackhole) {
+        for (int i = 0; i < size; i++) {
+            blackhole.consume(EventTimes.parseStartTime(mDates[i], mTimes[i], mZone));
+        }
+    }
+}
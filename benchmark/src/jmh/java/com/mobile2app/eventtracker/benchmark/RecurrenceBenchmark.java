@@ -0,0 +1,76 @@
+package com.mobile2app.eventtracker.benchmark;
+
+import com.mobile2app.eventtracker.model.Event;
+import com.mobile2app.eventtracker.model.EventOccurrences;
+import com.mobile2app.eventtracker.model.EventTimes;
+import com.mobile2app.eventtracker.model.RecurrenceRule;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading a month of occurrences out of series stored one row
+ * each, against building the copies users used to save for each
+ * occurrence over the years the dataset spans.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RecurrenceBenchmark {
+
+    @Param({"100", "1000"})
+    public int series;
+
+    private List<Event> mSeries;
+    private long mFrom;
+    private long mTo;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mSeries = EventDataset.events(series, EventDataset.SEED);
+        Random random = new Random(EventDataset.SEED);
+        RecurrenceRule.Frequency[] frequencies = RecurrenceRule.Frequency.values();
+        for (Event event : mSeries) {
+            event.setRecurrenceRule(new RecurrenceRule(frequencies[random.nextInt(frequencies.length)],
+                    1, RecurrenceRule.FOREVER, new long[0]));
+        }
+        TimeZone utc = TimeZone.getTimeZone("UTC");
+        mFrom = EventTimes.parseStartTime("06/01/2029", null, utc);
+        mTo = EventTimes.parseStartTime("07/01/2029", null, utc);
+    }
+
+    @Benchmark
+    public List<Event> expandMonth() {
+        return EventOccurrences.between(mSeries, mFrom, mTo, Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public List<Event> firstPageOfMonth() {
+        return EventOccurrences.between(mSeries, mFrom, mTo, 20);
+    }
+
+    @Benchmark
+    public int countMonth() {
+        return EventOccurrences.count(mSeries, mFrom, mTo);
+    }
+
+    @Benchmark
+    public List<Event> materializeCopies() {
+        return EventOccurrences.between(mSeries, 0, mTo, Integer.MAX_VALUE);
+    }
+}
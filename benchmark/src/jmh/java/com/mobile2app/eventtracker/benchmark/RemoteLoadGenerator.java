@@ -0,0 +1,292 @@
+package com.mobile2app.eventtracker.benchmark;
+
+import com.mobile2app.eventtracker.model.Event;
+import com.mobile2app.eventtracker.model.EventTimeCodec;
+import com.mobile2app.eventtracker.remote.InMemoryEventRemoteStore;
+import com.mobile2app.eventtracker.remote.RemoteChange;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Seeded, store-only load test of the event sync protocol against the
+ * in-memory remote store, for a plain JVM with no network. It loads a
+ * user's partition with generated events in batches, as the outbox flush
+ * sends them. Then writer clients edit and delete random events
+ * concurrently while reader clients page through changes as the watermark
+ * catch-up does. It reports load and edit throughput, and the latency
+ * from an edit being sent to each reader reading it.
+ * <p>
+ * The clients speak the protocol directly. EventSyncEngine, WatermarkSync
+ * and Room are not run, so the numbers cover the store and the protocol,
+ * not the outbox, the write lane, or applying changes to the local
+ * tables. The app's EventSyncLoadTest runs those classes, windows
+ * included, against this store and reports the remote change to commit
+ * latency.
+ * </p>
+ * <p>
+ * Options, all optional, as name=value arguments:
+ * events (10000 to 1000000), edits, writers, readers, batch, latencyMs,
+ * jitterMs, faultRate, deleteRate, pollMs, seed.
+ * </p>
+ *
+ * <pre>
+ *   ./gradlew :benchmark:loadTest -Pargs="events=1000000 writers=8 latencyMs=40"
+ * </pre>
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public final class RemoteLoadGenerator {
+
+    private static final String UID = "load-test";
+    // Most changes a reader pulls at once, as WatermarkSync does
+    private static final int PAGE_SIZE = 500;
+
+    private final Map<String, String> mOptions;
+    private final int mEvents;
+    private final int mEdits;
+    private final int mWriters;
+    private final int mReaders;
+    private final int mBatch;
+    private final double mDeleteRate;
+    private final long mPollMs;
+    private final long mSeed;
+    private final InMemoryEventRemoteStore mStore;
+    // Send time of each edit by the title it wrote
+    private final Map<String, Long> mSentAt = new ConcurrentHashMap<>();
+    private final AtomicLong mFaults = new AtomicLong();
+
+    private RemoteLoadGenerator(Map<String, String> options) {
+        mOptions = options;
+        mEvents = (int) Math.max(10_000, Math.min(1_000_000, option("events", 100_000)));
+        mEdits = (int) option("edits", 50_000);
+        mWriters = (int) option("writers", 4);
+        mReaders = (int) option("readers", 2);
+        mBatch = (int) option("batch", 200);
+        mDeleteRate = Double.parseDouble(options.getOrDefault("deleteRate", "0.02"));
+        mPollMs = option("pollMs", 10);
+        mSeed = option("seed", EventDataset.SEED);
+        mStore = new InMemoryEventRemoteStore(option("latencyMs", 20), option("jitterMs", 30),
+                Double.parseDouble(options.getOrDefault("faultRate", "0.01")), mSeed);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals <= 0) {
+                throw new IllegalArgumentException("Expected name=value, got " + arg);
+            }
+            options.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        new RemoteLoadGenerator(options).run();
+    }
+
+    private long option(String name, long fallback) {
+        String value = mOptions.get(name);
+        return value == null ? fallback : Long.parseLong(value);
+    }
+
+    private void run() throws InterruptedException {
+        System.out.printf(Locale.US, "store-only: events=%d edits=%d writers=%d readers=%d batch=%d seed=%d%n",
+                mEvents, mEdits, mWriters, mReaders, mBatch, mSeed);
+        List<Event> events = EventDataset.events(mEvents, mSeed);
+        String[] ids = new String[events.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = events.get(i).getId();
+        }
+
+        long start = System.nanoTime();
+        load(events);
+        report("load", mEvents, System.nanoTime() - start);
+
+        // Readers start caught up with the load, as devices that synced it
+        long watermark = get(() -> mStore.loadNewestUpdatedAt(UID));
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Reader> readers = new ArrayList<>();
+        for (int i = 0; i < mReaders; i++) {
+            Reader reader = new Reader(watermark, writing);
+            readers.add(reader);
+            reader.start();
+        }
+        List<Thread> writers = new ArrayList<>();
+        int perWriter = mEdits / mWriters;
+        start = System.nanoTime();
+        for (int i = 0; i < mWriters; i++) {
+            int writer = i;
+            Thread thread = new Thread(() -> edit(writer, perWriter, ids), "writer-" + i);
+            writers.add(thread);
+            thread.start();
+        }
+        for (Thread thread : writers) {
+            thread.join();
+        }
+        report("edits", (long) perWriter * mWriters, System.nanoTime() - start);
+        writing.set(false);
+        for (Reader reader : readers) {
+            reader.join();
+        }
+        for (int i = 0; i < readers.size(); i++) {
+            readers.get(i).report(i);
+        }
+        System.out.printf(Locale.US, "injected faults retried: %d, nodes stored: %d%n",
+                mFaults.get(), mStore.size(UID));
+        mStore.shutdown();
+    }
+
+    // Writes the generated events in batches, one in flight at a time
+    private void load(List<Event> events) {
+        Map<String, Event> batch = new HashMap<>();
+        for (Event event : events) {
+            batch.put(event.getId(), event);
+            if (batch.size() == mBatch) {
+                write(batch, Collections.<String>emptyList());
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch, Collections.<String>emptyList());
+        }
+    }
+
+    /**
+     * Sends one writer's stream of edits: mostly a new title and time on a
+     * random event, sometimes a deletion. Each title is unique, so readers
+     * can tell which edit they read.
+     */
+    private void edit(int writer, int count, String[] ids) {
+        Random random = new Random(mSeed + 1 + writer);
+        for (int n = 0; n < count; n++) {
+            String id = ids[random.nextInt(ids.length)];
+            if (random.nextDouble() < mDeleteRate) {
+                write(Collections.<String, Event>emptyMap(), Collections.singletonList(id));
+                continue;
+            }
+            String title = "edit " + writer + "-" + n;
+            Event event = new Event(id, title, EventTimeCodec.storedDate(2025, 1 + random.nextInt(12),
+                    1 + random.nextInt(28)), EventTimeCodec.storedTime(random.nextInt(24), random.nextInt(60)), "UTC");
+            mSentAt.put(title, System.nanoTime());
+            write(Collections.singletonMap(id, event), Collections.<String>emptyList());
+        }
+    }
+
+    // Writes until the store accepts, as the outbox flush retries
+    private void write(Map<String, Event> events, List<String> deletedIds) {
+        get(() -> mStore.write(UID, events, deletedIds));
+    }
+
+    // Waits for a call, retrying injected faults
+    private <T> T get(Supplier<CompletableFuture<T>> call) {
+        while (true) {
+            try {
+                return call.get().get();
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof IOException)) {
+                    throw new IllegalStateException(e.getCause());
+                }
+                mFaults.incrementAndGet();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static void report(String phase, long operations, long nanos) {
+        double seconds = nanos / 1e9;
+        System.out.printf(Locale.US, "%s: %d in %.2f s, %.0f/s%n", phase, operations, seconds, operations / seconds);
+    }
+
+    /**
+     * A client pulling changes from its watermark, as WatermarkSync does,
+     * and timing the edits it reads. An edit replaced by a later write
+     * before the reader pulled it is never seen, so fewer edits are timed
+     * than were sent.
+     */
+    private final class Reader extends Thread {
+        private final AtomicBoolean mWriting;
+        private long mUpdatedAt;
+        private String mAfterId;
+        private long[] mLatencies = new long[1024];
+        private int mSeen;
+        private long mRead;
+        private long mDeleted;
+
+        Reader(long watermark, AtomicBoolean writing) {
+            super("reader");
+            mUpdatedAt = watermark;
+            mWriting = writing;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                // Read before pulling, so a short page after the last edit means caught up
+                boolean writing = mWriting.get();
+                List<RemoteChange> changes = get(() -> mStore.loadChanges(UID, mUpdatedAt, mAfterId, PAGE_SIZE));
+                long now = System.nanoTime();
+                for (RemoteChange change : changes) {
+                    mRead++;
+                    if (change.isDeleted()) {
+                        mDeleted++;
+                        continue;
+                    }
+                    Long sentAt = mSentAt.get(change.getEvent().getEventTitle());
+                    if (sentAt != null) {
+                        if (mSeen == mLatencies.length) {
+                            mLatencies = Arrays.copyOf(mLatencies, mSeen * 2);
+                        }
+                        mLatencies[mSeen++] = now - sentAt;
+                    }
+                }
+                if (!changes.isEmpty()) {
+                    RemoteChange last = changes.get(changes.size() - 1);
+                    mUpdatedAt = last.getUpdatedAt();
+                    mAfterId = last.getId();
+                }
+                if (changes.size() < PAGE_SIZE) {
+                    if (!writing) {
+                        return;
+                    }
+                    try {
+                        Thread.sleep(mPollMs);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        // Prints what the reader read and its latency percentiles
+        void report(int index) {
+            long[] latencies = Arrays.copyOf(mLatencies, mSeen);
+            Arrays.sort(latencies);
+            System.out.printf(Locale.US,
+                    "reader %d: read %d changes (%d deletions), timed %d edits; latency ms p50=%.1f p95=%.1f p99=%.1f max=%.1f%n",
+                    index, mRead, mDeleted, mSeen, percentile(latencies, 0.50), percentile(latencies, 0.95),
+                    percentile(latencies, 0.99), percentile(latencies, 1.0));
+        }
+
+        private double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.mobile2app.eventtracker.benchmark;
+
+import com.mobile2app.eventtracker.model.Event;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures assembling the SMS digest of events. The concatenation
+ * benchmark repeats the message[0] += ... loop from
+ * UserEventsFragment.checkPermissions, which copies the whole message for
+ * every event, so it only runs at the two smaller sizes; a single run at a
+ * million events would take hours.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SmsDigestBenchmark {
+
+    // Digest assembled with StringBuilder at every dataset size
+    @State(Scope.Benchmark)
+    public static class Dataset {
+        @Param({"1000", "100000", "1000000"})
+        public int size;
+
+        List<Event> mEvents;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            mEvents = EventDataset.events(size, EventDataset.SEED);
+        }
+    }
+
+    // Quadratic concatenation baseline, limited to sizes that finish
+    @State(Scope.Benchmark)
+    public static class SmallDataset {
+        @Param({"1000", "10000"})
+        public int size;
+
+        List<Event> mEvents;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            mEvents = EventDataset.events(size, EventDataset.SEED);
+        }
+    }
+
+    @Benchmark
+    public String concatenation(SmallDataset dataset) {
+        final String[] message = {"Your upcoming events:\n"};
+        for (Event event : dataset.mEvents) {
+            message[0] += event.getEventTitle() + ": " + event.getEventDate() + "\n";
+        }
+        return message[0];
+    }
+
+    @Benchmark
+    public String stringBuilder(Dataset dataset) {
+        StringBuilder message = new StringBuilder("Your upcoming events:\n");
+        for (Event event : dataset.mEvents) {
+            message.append(event.getEventTitle()).append(": ").append(event.getEventDate()).append('\n');
+        }
+        return message.toString();
+    }
+}
@@ -0,0 +1,56 @@
+package com.mobile2app.eventtracker.benchmark;
+
+import com.mobile2app.eventtracker.model.Event;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures rebuilding the event list from snapshot-shaped input, as the
+ * ValueEventListener in UserEventsFragment did on every data change.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SnapshotListBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private Map<String, Map<String, Object>> mSnapshot;
+    private final List<Event> mList = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mSnapshot = EventDataset.snapshot(size, EventDataset.SEED);
+    }
+
+    @Benchmark
+    public List<Event> rebuildFromSnapshot() {
+        mList.clear();
+        for (Map.Entry<String, Map<String, Object>> snapshot : mSnapshot.entrySet()) {
+            Map<String, Object> node = snapshot.getValue();
+            String id = snapshot.getKey();
+            String title = (String) node.get("title");
+            String date = (String) node.get("date");
+            String time = (String) node.get("time");
+            mList.add(new Event(id, title, date, time, "UTC"));
+        }
+        return mList;
+    }
+}
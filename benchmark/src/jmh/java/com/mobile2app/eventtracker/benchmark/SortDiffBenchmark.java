@@ -0,0 +1,99 @@
+package com.mobile2app.eventtracker.benchmark;
+
+import com.mobile2app.eventtracker.model.Event;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures sorting events into (start time, id) order and diffing two
+ * versions of the list by id, as a list adapter does after an update.
+ * The second version has one percent of its events edited, removed, or added.
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SortDiffBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private List<Event> mUnsorted;
+    private List<Event> mOld;
+    private List<Event> mNew;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mUnsorted = EventDataset.events(size, EventDataset.SEED);
+        mOld = new ArrayList<>(mUnsorted);
+        mOld.sort(Event.START_ORDER);
+
+        Random random = new Random(EventDataset.SEED);
+        mNew = new ArrayList<>(mOld);
+        int edits = Math.max(1, size / 100);
+        for (int i = 0; i < edits; i++) {
+            int index = random.nextInt(mNew.size());
+            Event event = mNew.get(index);
+            switch (i % 3) {
+                case 0:
+                    mNew.set(index, new Event(event.getId(), event.getEventTitle() + " (moved)",
+                            event.getEventDate(), event.getEventTime(), "UTC"));
+                    break;
+                case 1:
+                    mNew.remove(index);
+                    break;
+                default:
+                    mNew.add(new Event(event.getId() + "x", event.getEventTitle(),
+                            event.getEventDate(), event.getEventTime(), "UTC"));
+                    break;
+            }
+        }
+        mNew.sort(Event.START_ORDER);
+    }
+
+    @Benchmark
+    public List<Event> sortByStart() {
+        List<Event> events = new ArrayList<>(mUnsorted);
+        Collections.sort(events, Event.START_ORDER);
+        return events;
+    }
+
+    @Benchmark
+    public int diffById() {
+        Map<String, Event> old = new HashMap<>(mOld.size() * 2);
+        for (Event event : mOld) {
+            old.put(event.getId(), event);
+        }
+        int changes = 0;
+        for (Event event : mNew) {
+            Event previous = old.remove(event.getId());
+            if (previous == null
+                    || !Objects.equals(previous.getEventTitle(), event.getEventTitle())
+                    || !Objects.equals(previous.getEventDate(), event.getEventDate())
+                    || !Objects.equals(previous.getEventTime(), event.getEventTime())) {
+                changes++;
+            }
+        }
+        // Whatever is left was removed
+        return changes + old.size();
+    }
+}
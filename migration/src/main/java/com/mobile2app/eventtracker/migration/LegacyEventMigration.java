@@ -0,0 +1,216 @@
+package com.mobile2app.eventtracker.migration;
+
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.ValueEventListener;
+import com.mobile2app.eventtracker.model.EventTimes;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Moves the events saved before accounts were partitioned from the shared
+ * "EventTracker" node into their owners' "users/{uid}/events" partitions.
+ * It runs on a server with the Admin SDK, so the clients no longer need to
+ * read the shared node at all and the database rules deny it.
+ *
+ * <p>The legacy nodes were written with a title, a date and a time only,
+ * never with the account that created them, so nothing in the database
+ * says whose a node is. The owners are given in a file of
+ * "legacyKey,uid" lines, blank lines and lines starting with '#' ignored,
+ * built from whatever records the project keeps. Nodes the file does not
+ * name are reported and left where they are.</p>
+ *
+ * <p>The node is read in key order one batch at a time. Each batch is one
+ * atomic multi-path update that writes the attributed nodes into their
+ * partitions, stamped with the server time so devices pull them on their
+ * next catch-up, and removes them from the shared node. A run that stops
+ * can simply be started again, and so can one with a longer owners file:
+ * moved nodes are gone, so only the unattributed ones are read twice.
+ * Moved nodes gain the numeric start time that windowed queries order
+ * by, computed in the zone the dates were entered in.</p>
+ *
+ * <p>Options, as name=value arguments: database (required), owners
+ * (required), zone (default: this machine's), batch (default 100) and
+ * dryRun (default false, counts without writing).</p>
+ *
+ * @author Michael Gagujas
+ * @since 2024-08-18
+ */
+public final class LegacyEventMigration {
+
+    // Legacy node every user's events used to be stored under
+    static final String LEGACY_EVENTS_NODE = "EventTracker";
+    // Paths of a partition's events, as FirebaseEventRemoteStore names them
+    static final String USERS_NODE = "users";
+    static final String EVENTS_CHILD = "events";
+    static final String UPDATED_AT_CHILD = "updatedAt";
+
+    private final DatabaseReference mRoot;
+    private final Map<String, String> mOwners;
+    private final TimeZone mZone;
+    private final int mBatch;
+    private final boolean mDryRun;
+    private int mMoved;
+    private int mUnowned;
+
+    private LegacyEventMigration(DatabaseReference root, Map<String, String> owners, TimeZone zone,
+                                 int batch, boolean dryRun) {
+        mRoot = root;
+        mOwners = owners;
+        mZone = zone;
+        mBatch = batch;
+        mDryRun = dryRun;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals <= 0) {
+                throw new IllegalArgumentException("Expected name=value, got " + arg);
+            }
+            options.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        String database = required(options, "database");
+        Map<String, String> owners = readOwners(required(options, "owners"));
+        String zone = options.get("zone");
+        FirebaseApp.initializeApp(FirebaseOptions.builder()
+                .setCredentials(GoogleCredentials.getApplicationDefault())
+                .setDatabaseUrl(database)
+                .build());
+        new LegacyEventMigration(FirebaseDatabase.getInstance().getReference(), owners,
+                zone == null ? TimeZone.getDefault() : TimeZone.getTimeZone(zone),
+                Integer.parseInt(options.getOrDefault("batch", "100")),
+                Boolean.parseBoolean(options.get("dryRun"))).run();
+        // The Admin SDK keeps non-daemon threads alive
+        System.exit(0);
+    }
+
+    private static String required(Map<String, String> options, String name) {
+        String value = options.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing " + name + "=");
+        }
+        return value;
+    }
+
+    /**
+     * Reads the "legacyKey,uid" lines of the owners file.
+     *
+     * @param path The path of the file.
+     * @return The uid owning each listed legacy key.
+     * @throws IOException If the file cannot be read.
+     */
+    static Map<String, String> readOwners(String path) throws IOException {
+        Map<String, String> owners = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int comma = line.indexOf(',');
+                if (comma <= 0 || comma == line.length() - 1) {
+                    throw new IllegalArgumentException("Line " + number + ": expected legacyKey,uid");
+                }
+                owners.put(line.substring(0, comma).trim(), line.substring(comma + 1).trim());
+            }
+        }
+        return owners;
+    }
+
+    private void run() throws InterruptedException, ExecutionException {
+        System.out.printf(Locale.US, "%s: owners=%d zone=%s batch=%d%n",
+                mDryRun ? "dry run" : "moving", mOwners.size(), mZone.getID(), mBatch);
+        String lastKey = null;
+        boolean last;
+        do {
+            // startAt is inclusive, so read one more and skip the key already handled
+            Query query = mRoot.child(LEGACY_EVENTS_NODE).orderByKey();
+            if (lastKey != null) {
+                query = query.startAt(lastKey);
+            }
+            DataSnapshot batch = read(query.limitToFirst(mBatch + 1));
+            Map<String, Object> updates = new HashMap<>();
+            int read = 0;
+            for (DataSnapshot child : batch.getChildren()) {
+                String key = child.getKey();
+                if (key.equals(lastKey)) {
+                    continue;
+                }
+                if (read == mBatch) {
+                    break;
+                }
+                read++;
+                lastKey = key;
+                String uid = mOwners.get(key);
+                if (uid == null) {
+                    System.out.println("unowned: " + key);
+                    mUnowned++;
+                    continue;
+                }
+                updates.put(USERS_NODE + "/" + uid + "/" + EVENTS_CHILD + "/" + key, toNode(child));
+                updates.put(LEGACY_EVENTS_NODE + "/" + key, null);
+                mMoved++;
+            }
+            if (!updates.isEmpty() && !mDryRun) {
+                mRoot.updateChildrenAsync(updates).get();
+            }
+            last = read < mBatch;
+            System.out.printf(Locale.US, "moved=%d unowned=%d%n", mMoved, mUnowned);
+        } while (!last);
+        System.out.printf(Locale.US, "done: moved=%d unowned=%d%n", mMoved, mUnowned);
+    }
+
+    // Returns the partition node for a legacy node, as FirebaseEventRemoteStore.toNode writes it
+    private Map<String, Object> toNode(DataSnapshot legacy) {
+        String title = legacy.child("title").getValue(String.class);
+        String date = legacy.child("date").getValue(String.class);
+        String time = legacy.child("time").getValue(String.class);
+        Map<String, Object> node = new HashMap<>();
+        node.put("title", title == null ? "" : title);
+        node.put("date", date);
+        node.put("time", time);
+        node.put("startTime", EventTimes.parseStartTime(date, time, mZone));
+        node.put("timeZone", mZone.getID());
+        node.put(UPDATED_AT_CHILD, ServerValue.TIMESTAMP);
+        return node;
+    }
+
+    // Reads a query once, blocking until the server answers
+    private static DataSnapshot read(Query query) throws InterruptedException, ExecutionException {
+        CompletableFuture<DataSnapshot> result = new CompletableFuture<>();
+        query.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot snapshot) {
+                result.complete(snapshot);
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                result.completeExceptionally(error.toException());
+            }
+        });
+        return result.get();
+    }
+}